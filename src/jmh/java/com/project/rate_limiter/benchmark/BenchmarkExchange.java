@@ -0,0 +1,108 @@
+package com.project.rate_limiter.benchmark;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Request and response stand-ins that keep the few fields the filter touches in plain fields.
+ * Spring's mocks store headers and attributes in maps with lower-cased keys, which would allocate
+ * on every call and hide the filter's own allocation in {@code -prof gc}.
+ */
+final class BenchmarkExchange {
+	
+	private BenchmarkExchange() {
+	}
+	
+	static final class Request extends HttpServletRequestWrapper {
+		
+		private final String uri;
+		private final String algorithm;
+		private String userId;
+		private Object filtered;
+		
+		Request(String uri, String algorithm) {
+			super(new MockHttpServletRequest("GET", uri));
+			this.uri = uri;
+			this.algorithm = algorithm;
+		}
+		
+		void userId(String userId) {
+			this.userId = userId;
+		}
+		
+		@Override
+		public String getHeader(String name) {
+			if("X-User-Id".equals(name)) { return userId; }
+			if("X-RateLimit-Alg".equals(name)) { return algorithm; }
+			return null;
+		}
+		
+		@Override
+		public String getRequestURI() {
+			return uri;
+		}
+		
+		@Override
+		public DispatcherType getDispatcherType() {
+			return DispatcherType.REQUEST;
+		}
+		
+		@Override
+		public Object getAttribute(String name) {
+			return filtered;
+		}
+		
+		@Override
+		public void setAttribute(String name, Object value) {
+			filtered = value;
+		}
+		
+		@Override
+		public void removeAttribute(String name) {
+			filtered = null;
+		}
+		
+		@Override
+		public boolean isAsyncStarted() {
+			return false;
+		}
+	}
+	
+	static final class Response extends HttpServletResponseWrapper {
+		
+		private int status;
+		private int headers;
+		
+		Response() {
+			super(new MockHttpServletResponse());
+		}
+		
+		void clear() {
+			status = 200;
+			headers = 0;
+		}
+		
+		@Override
+		public void setStatus(int status) {
+			this.status = status;
+		}
+		
+		@Override
+		public int getStatus() {
+			return status;
+		}
+		
+		@Override
+		public void setHeader(String name, String value) {
+			headers += value.length();
+		}
+		
+		int headers() {
+			return headers;
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package com.project.rate_limiter.benchmark;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.project.rate_limiter.RateLimiterApplication;
+import com.project.rate_limiter.decision.DecisionClient;
+import com.project.rate_limiter.decision.DecisionServer;
+import com.project.rate_limiter.decision.Descriptor;
+import com.project.rate_limiter.decision.RemoteDecision;
+
+/**
+ * Decisions per second through the binary {@link DecisionServer} against the HTTP path, both
+ * served by one running application on loopback with limits high enough that nearly every request
+ * is admitted. The HTTP benchmark is a keep-alive {@code GET /limiter/api/check} through the
+ * filter; the binary ones are one descriptor per round trip, 32 pipelined calls per thread, and
+ * batches of 100 descriptors. The score counts decisions, not calls.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class DecisionServerBenchmark {
+	
+	private static final int KEYS = 10_000;
+	
+	private static final int PIPELINE_DEPTH = 32;
+	
+	private static final int BATCH_SIZE = 100;
+	
+	@State(Scope.Benchmark)
+	public static class Application {
+		
+		ConfigurableApplicationContext context;
+		DecisionClient client;
+		HttpClient http;
+		URI check;
+		
+		@Setup(Level.Trial)
+		public void start() {
+			System.setProperty("spring.devtools.restart.enabled", "false");
+			// arguments, as they take precedence over application.properties
+			context = new SpringApplicationBuilder(RateLimiterApplication.class).run(
+					"--server.port=0",
+					"--logging.level.root=WARN",
+					"--rate.request.limit.count=60000",
+					"--rate.request.limit.timeperiod=1000",
+					"--rate.request.limit.refill.rate=60000",
+					"--rate.decision-server.enabled=true",
+					"--rate.decision-server.bind=127.0.0.1",
+					"--rate.decision-server.port=0");
+			int decisionPort = context.getBean(DecisionServer.class).port();
+			client = new DecisionClient(new InetSocketAddress("127.0.0.1", decisionPort), 2, 5_000);
+			int httpPort = ((WebServerApplicationContext) context).getWebServer().getPort();
+			http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+			check = URI.create("http://127.0.0.1:" + httpPort + "/limiter/api/check");
+		}
+		
+		@TearDown(Level.Trial)
+		public void stop() {
+			client.close();
+			context.close();
+		}
+	}
+	
+	@State(Scope.Thread)
+	public static class Keys {
+		
+		private final String[] names = KeyDistribution.keys(KEYS);
+		
+		private int next;
+		
+		String next() {
+			next = next + 1 == names.length ? 0 : next + 1;
+			return names[next];
+		}
+	}
+	
+	@Benchmark
+	public int http(Application app, Keys keys) throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder(app.check).header("X-User-Id", keys.next()).GET().build();
+		return app.http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+	
+	@Benchmark
+	public RemoteDecision binary(Application app, Keys keys) {
+		return app.client.decide(keys.next(), "", 1);
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(PIPELINE_DEPTH)
+	public int binaryPipelined(Application app, Keys keys) {
+		List<CompletableFuture<List<RemoteDecision>>> calls = new ArrayList<>(PIPELINE_DEPTH);
+		for(int i=0; i<PIPELINE_DEPTH; i++) {
+			calls.add(app.client.decide(List.of(Descriptor.of(keys.next()))));
+		}
+		int allowed = 0;
+		for(CompletableFuture<List<RemoteDecision>> call : calls) {
+			allowed += call.join().get(0).isAllowed() ? 1 : 0;
+		}
+		return allowed;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public List<RemoteDecision> binaryBatch(Application app, Keys keys) {
+		List<Descriptor> batch = new ArrayList<>(BATCH_SIZE);
+		for(int i=0; i<BATCH_SIZE; i++) {
+			batch.add(Descriptor.of(keys.next()));
+		}
+		return app.client.decide(batch).join();
+	}
+}
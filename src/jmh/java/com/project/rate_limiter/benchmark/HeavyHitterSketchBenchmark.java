@@ -0,0 +1,85 @@
+package com.project.rate_limiter.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.project.rate_limiter.metrics.CountMinSketch;
+
+/**
+ * False-positive rate of the prefilter's sketch against its memory: counts one request from each
+ * of N distinct IPv4-style keys and prints the share whose estimate is still over the threshold,
+ * i.e. the light keys that would be decided exactly anyway. The score is the time to count all
+ * keys. Run with {@code -Djmh.args="HeavyHitterSketchBenchmark"}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Benchmark)
+public class HeavyHitterSketchBenchmark {
+	
+	private static final long NOW = 1_700_000_000_000L;
+	
+	@Param({ "256", "1024", "4096", "16384" })
+	public int memoryKb;
+	
+	@Param({ "100000", "1000000", "4000000" })
+	public int keys;
+	
+	@Param({ "4" })
+	public int depth;
+	
+	@Param({ "3" })
+	public int threshold;
+	
+	private String[] ips;
+	
+	private CountMinSketch sketch;
+	
+	@Setup(Level.Trial)
+	public void keys() {
+		ips = new String[keys];
+		for(int i=0; i<keys; i++) {
+			ips[i] = (10 + (i >>> 24)) + "." + ((i >>> 16) & 0xff) + "." + ((i >>> 8) & 0xff) + "." + (i & 0xff);
+		}
+	}
+	
+	@Setup(Level.Invocation)
+	public void emptySketch() {
+		sketch = CountMinSketch.ofBytes(memoryKb * 1024L, depth, 3_600_000L, NOW);
+	}
+	
+	@Benchmark
+	public CountMinSketch count() {
+		for(String ip : ips) {
+			sketch.add(ip, 1, NOW);
+		}
+		return sketch;
+	}
+	
+	@TearDown(Level.Invocation)
+	public void report() {
+		int falsePositives = 0;
+		for(String ip : ips) {
+			if(sketch.estimate(ip) > threshold) {
+				falsePositives++;
+			}
+		}
+		System.out.printf("%n%d KiB, %d keys: %d x %d counters, false positives %.4f%n", memoryKb, keys,
+				sketch.depth(), sketch.width(), (double) falsePositives / keys);
+	}
+}
@@ -0,0 +1,68 @@
+package com.project.rate_limiter.benchmark;
+
+import java.util.SplittableRandom;
+
+/**
+ * How benchmark requests are spread over limiter keys. Sequences are precomputed so that picking
+ * the next key costs an array read and never shows up in the measurement.
+ */
+public enum KeyDistribution {
+	
+	/** Every request hits one key: worst case for CAS contention. */
+	SINGLE,
+	
+	/** Keys drawn uniformly: worst case for state map size and cache misses. */
+	UNIFORM,
+	
+	/** Keys drawn from a Zipf(0.99) law: a few hot users and a long tail, like real traffic. */
+	ZIPFIAN;
+	
+	private static final double ZIPF_EXPONENT = 0.99;
+	
+	public int[] sample(int keys, int length, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		int[] sequence = new int[length];
+		switch(this) {
+			case SINGLE -> { }
+			case UNIFORM -> {
+				for(int i=0; i<length; i++) {
+					sequence[i] = random.nextInt(keys);
+				}
+			}
+			case ZIPFIAN -> {
+				double[] cumulative = new double[keys];
+				double sum = 0;
+				for(int k=0; k<keys; k++) {
+					sum += 1.0 / Math.pow(k + 1, ZIPF_EXPONENT);
+					cumulative[k] = sum;
+				}
+				for(int i=0; i<length; i++) {
+					sequence[i] = lowerBound(cumulative, random.nextDouble() * sum);
+				}
+			}
+		}
+		return sequence;
+	}
+	
+	public static String[] keys(int keys) {
+		String[] names = new String[keys];
+		for(int k=0; k<keys; k++) {
+			names[k] = "user-" + k;
+		}
+		return names;
+	}
+	
+	private static int lowerBound(double[] cumulative, double target) {
+		int low = 0;
+		int high = cumulative.length - 1;
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(cumulative[mid] < target) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,132 @@
+package com.project.rate_limiter.benchmark;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import com.project.rate_limiter.service.RateLimiter;
+import com.project.rate_limiter.service.redis.RedisLeasingTokenBucketRateLimiterService;
+import com.project.rate_limiter.service.redis.RedisLimiterScripts;
+import com.project.rate_limiter.service.redis.RedisTokenBucketRateLimiterService;
+import com.project.rate_limiter.store.StateStoreSettings;
+
+import redis.embedded.RedisServer;
+
+/**
+ * The pure Redis token bucket against the leasing one, on an embedded Redis started for the
+ * trial: decisions per second and latency percentiles for eight threads sharing four hot keys.
+ * After every iteration it prints the Redis calls made per decision, which leasing should cut to
+ * a small fraction. Run with {@code -Djmh.args="LeasingTokenBucketBenchmark"}.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 5)
+@Threads(8)
+@Fork(1)
+public class LeasingTokenBucketBenchmark {
+
+	private static final int KEYS = 4;
+	private static final int CAPACITY = 5_000;
+	private static final double REFILL_RATE = 20_000;
+
+	public enum Backend { REMOTE, LEASING }
+
+	@State(Scope.Benchmark)
+	public static class Redis {
+
+		@Param({ "REMOTE", "LEASING" })
+		public Backend backend;
+
+		RedisServer server;
+		LettuceConnectionFactory connections;
+		RateLimiter limiter;
+		RedisLeasingTokenBucketRateLimiterService leasing;
+		final LongAdder decisions = new LongAdder();
+		long decisionsBefore;
+		long callsBefore;
+
+		@Setup(Level.Trial)
+		public void start() throws IOException {
+			int port;
+			try(ServerSocket socket = new ServerSocket(0)) {
+				port = socket.getLocalPort();
+			}
+			server = new RedisServer(port);
+			server.start();
+			connections = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+			connections.afterPropertiesSet();
+			connections.start();
+
+			RedisLimiterScripts scripts = new RedisLimiterScripts(new StringRedisTemplate(connections), "bench", null);
+			if(backend == Backend.LEASING) {
+				leasing = new RedisLeasingTokenBucketRateLimiterService(CAPACITY, REFILL_RATE, 100, 500, scripts, StateStoreSettings.DEFAULTS);
+				limiter = leasing;
+			} else {
+				limiter = new RedisTokenBucketRateLimiterService(CAPACITY, REFILL_RATE, scripts);
+			}
+		}
+
+		@Setup(Level.Iteration)
+		public void mark() {
+			decisionsBefore = decisions.sum();
+			callsBefore = remoteCalls();
+		}
+
+		@TearDown(Level.Iteration)
+		public void report() {
+			long decided = decisions.sum() - decisionsBefore;
+			long calls = remoteCalls() - callsBefore;
+			System.out.printf("%n%s: %d decisions, %d Redis calls, %.4f per decision%n", backend, decided, calls,
+					decided == 0 ? 0.0 : (double) calls / decided);
+		}
+
+		@TearDown(Level.Trial)
+		public void stop() throws IOException {
+			connections.destroy();
+			server.stop();
+		}
+
+		/** Every decision of the pure Redis bucket is one script call. */
+		private long remoteCalls() {
+			return leasing != null ? leasing.remoteCalls() : decisions.sum();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Key {
+
+		String name;
+
+		@Setup(Level.Trial)
+		public void pick(ThreadParams thread) {
+			name = "key-" + thread.getThreadIndex() % KEYS;
+		}
+	}
+
+	@Benchmark
+	public boolean decision(Redis redis, Key key) {
+		redis.decisions.increment();
+		return redis.limiter.decision(key.name).isAllowed();
+	}
+}
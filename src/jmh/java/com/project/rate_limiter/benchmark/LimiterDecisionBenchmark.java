@@ -0,0 +1,117 @@
+package com.project.rate_limiter.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.entity.MutableDecision;
+import com.project.rate_limiter.entity.RateLimiterDecision;
+import com.project.rate_limiter.service.RateLimiter;
+
+/**
+ * {@code RateLimiter.decision(String, long)} for every local algorithm.
+ * <p>
+ * Time comes from a per-thread virtual clock instead of the wall clock, so the allowed/blocked mix
+ * is the same on every machine: {@code ALLOWED} advances the clock fast enough that each key stays
+ * under its limit, {@code BLOCKED} sends a thousand requests per permit. Throughput mode gives
+ * ops/s, sample mode gives the latency percentiles; run with {@code -t} to vary the thread count.
+ * {@code decisionInto} is the filter's allocation-free path and should stay near 0 B/op.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LimiterDecisionBenchmark {
+	
+	private static final int LIMIT = 1_000;
+	private static final long WINDOW_MS = 1_000;
+	private static final int SEQUENCE_LENGTH = 1 << 20;
+	
+	public enum Workload { ALLOWED, BLOCKED }
+	
+	@State(Scope.Benchmark)
+	public static class Shared {
+		
+		@Param({ "TOKEN_BUCKET", "FIXED_WINDOW", "SLIDING_WINDOW", "SLIDING_WINDOW_COUNTER", "SLIDING_WINDOW_RING", "LEAKY_BUCKET", "GCRA" })
+		public RateLimiterAlgorithm algorithm;
+		
+		@Param({ "SINGLE", "UNIFORM", "ZIPFIAN" })
+		public KeyDistribution distribution;
+		
+		@Param({ "100000" })
+		public int keys;
+		
+		@Param({ "ALLOWED", "BLOCKED" })
+		public Workload workload;
+		
+		RateLimiter limiter;
+		String[] names;
+		long start;
+		
+		@Setup(Level.Trial)
+		public void setUp() {
+			limiter = Limiters.create(algorithm, LIMIT, WINDOW_MS);
+			names = KeyDistribution.keys(keys);
+			start = System.currentTimeMillis();
+		}
+	}
+	
+	@State(Scope.Thread)
+	public static class Cursor {
+		
+		final MutableDecision holder = new MutableDecision();
+		int[] sequence;
+		int position;
+		long ticks;
+		int ticksPerMs;
+		long msPerTick;
+		
+		@Setup(Level.Trial)
+		public void setUp(Shared shared, BenchmarkParams params, ThreadParams thread) {
+			sequence = shared.distribution.sample(shared.keys, SEQUENCE_LENGTH, 42L + thread.getThreadIndex());
+			if(shared.workload == Workload.ALLOWED) {
+				// every thread may send one request per key per ms of virtual time
+				ticksPerMs = 1;
+				msPerTick = params.getThreads();
+			} else {
+				ticksPerMs = 1_000;
+				msPerTick = 1;
+			}
+		}
+		
+		String nextKey(String[] names) {
+			String key = names[sequence[position]];
+			position = (position + 1) & (SEQUENCE_LENGTH - 1);
+			return key;
+		}
+		
+		long nextTime(long start) {
+			return start + (ticks++ / ticksPerMs) * msPerTick;
+		}
+	}
+	
+	@Benchmark
+	public RateLimiterDecision decision(Shared shared, Cursor cursor) {
+		return shared.limiter.decision(cursor.nextKey(shared.names), cursor.nextTime(shared.start));
+	}
+	
+	@Benchmark
+	public MutableDecision decisionInto(Shared shared, Cursor cursor) {
+		return shared.limiter.decision(cursor.nextKey(shared.names), cursor.nextTime(shared.start), cursor.holder);
+	}
+}
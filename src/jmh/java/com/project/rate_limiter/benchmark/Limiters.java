@@ -0,0 +1,59 @@
+package com.project.rate_limiter.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.policy.PolicyEngine;
+import com.project.rate_limiter.policy.PolicyProperties;
+import com.project.rate_limiter.policy.PolicyProperties.Rule;
+import com.project.rate_limiter.service.AdaptiveConcurrencyLimiter;
+import com.project.rate_limiter.service.AdaptiveLimitSettings;
+import com.project.rate_limiter.service.FixedSizeRateLimiterService;
+import com.project.rate_limiter.service.GcraRateLimiterService;
+import com.project.rate_limiter.service.LeakyBucketRateLimiterService;
+import com.project.rate_limiter.service.RateLimiter;
+import com.project.rate_limiter.service.RateLimiterFactory;
+import com.project.rate_limiter.service.SlidingWindowCounterRateLimiterService;
+import com.project.rate_limiter.service.SlidingWindowRateLimiterService;
+import com.project.rate_limiter.service.SlidingWindowRingRateLimiterService;
+import com.project.rate_limiter.service.TokenBucketRateLimiterService;
+import com.project.rate_limiter.store.StateStoreSettings;
+
+/**
+ * Builds the in-process limiters the way Spring would, without starting a context.
+ */
+final class Limiters {
+	
+	private Limiters() {
+	}
+	
+	static RateLimiter create(RateLimiterAlgorithm algorithm, int limit, long windowMs) {
+		return create(algorithm, limit, windowMs, StateStoreSettings.DEFAULTS);
+	}
+	
+	static RateLimiter create(RateLimiterAlgorithm algorithm, int limit, long windowMs, StateStoreSettings settings) {
+		return switch(algorithm) {
+			case TOKEN_BUCKET -> new TokenBucketRateLimiterService(limit, limit * 1000.0 / windowMs, settings);
+			case FIXED_WINDOW -> new FixedSizeRateLimiterService(limit, windowMs, settings);
+			case SLIDING_WINDOW -> new SlidingWindowRateLimiterService(limit, windowMs, settings);
+			case SLIDING_WINDOW_COUNTER -> new SlidingWindowCounterRateLimiterService(limit, windowMs, 10, settings);
+			case SLIDING_WINDOW_RING -> new SlidingWindowRingRateLimiterService(limit, windowMs, 10, settings);
+			case LEAKY_BUCKET -> new LeakyBucketRateLimiterService(limit, limit * 1000.0 / windowMs, windowMs, settings);
+			case GCRA -> new GcraRateLimiterService(limit, windowMs, settings);
+			case ADAPTIVE_CONCURRENCY -> new AdaptiveConcurrencyLimiter("benchmark", AdaptiveLimitSettings.DEFAULTS.withMaxLimit(limit));
+		};
+	}
+	
+	static PolicyEngine policies(List<Rule> rules) {
+		RateLimiterFactory factory = new RateLimiterFactory("local", StateStoreSettings.DEFAULTS, AdaptiveLimitSettings.DEFAULTS, null, null, null, 10, 100, 50, 2_000);
+		return new PolicyEngine(new PolicyProperties(true, RateLimiterAlgorithm.TOKEN_BUCKET, "X-Tenant-Tier", "X-Tenant-Id", rules), 
+				factory);
+	}
+	
+	static List<RateLimiter> all(int limit, long windowMs) {
+		return Arrays.stream(RateLimiterAlgorithm.values())
+				.map(algorithm -> create(algorithm, limit, windowMs))
+				.toList();
+	}
+}
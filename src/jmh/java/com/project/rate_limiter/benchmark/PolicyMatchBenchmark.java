@@ -0,0 +1,72 @@
+package com.project.rate_limiter.benchmark;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.policy.CompiledPolicy;
+import com.project.rate_limiter.policy.PolicyEngine;
+import com.project.rate_limiter.policy.PolicyProperties.KeySource;
+import com.project.rate_limiter.policy.PolicyProperties.Limit;
+import com.project.rate_limiter.policy.PolicyProperties.Rule;
+
+/**
+ * Policy lookup cost as the rule set grows: with the segment trie the time per match should stay
+ * flat from ten rules to ten thousand.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PolicyMatchBenchmark {
+	
+	@Param({ "10", "1000", "10000" })
+	public int rules;
+	
+	private PolicyEngine engine;
+	private MockHttpServletRequest literal;
+	private MockHttpServletRequest wildcard;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		List<Limit> limits = List.of(new Limit(RateLimiterAlgorithm.FIXED_WINDOW, 10, Duration.ofSeconds(1), null, null));
+		List<Rule> configured = new ArrayList<>();
+		for(int i=0; i<rules; i++) {
+			configured.add(new Rule("service-" + i, "/api/service-" + i + "/*/items", List.of("GET"), null, Map.of(), KeySource.USER, null, limits));
+		}
+		configured.add(new Rule("api", "/api/**", List.of(), null, Map.of(), KeySource.USER, null, limits));
+		engine = Limiters.policies(configured);
+		
+		literal = new MockHttpServletRequest("GET", "/api/service-" + (rules / 2) + "/42/items");
+		wildcard = new MockHttpServletRequest("POST", "/api/unknown/42/items");
+	}
+	
+	@Benchmark
+	public CompiledPolicy literalMatch() {
+		return engine.match(literal);
+	}
+	
+	@Benchmark
+	public CompiledPolicy fallbackMatch() {
+		return engine.match(wildcard);
+	}
+}
@@ -0,0 +1,105 @@
+package com.project.rate_limiter.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.filter.KeyResolver;
+import com.project.rate_limiter.filter.RateLimiterFilter;
+import com.project.rate_limiter.metrics.LimiterMetrics;
+import com.project.rate_limiter.service.HeavyHitterPrefilter;
+import com.project.rate_limiter.service.PermitWaiter;
+import com.project.rate_limiter.service.RateLimiter;
+import com.project.rate_limiter.service.ShapingQueue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+
+/**
+ * End-to-end cost of {@link RateLimiterFilter}: algorithm header parsing, key extraction, the
+ * decision and the response headers, with the application's default limit of 5 per 6 s. Request and
+ * response are field-backed stand-ins reused per thread, so {@code -prof gc} shows what the filter
+ * itself allocates: near 0 B/op once the keys exist.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateLimiterFilterBenchmark {
+	
+	private static final int SEQUENCE_LENGTH = 1 << 20;
+	
+	private static final FilterChain NO_OP_CHAIN = (request, response) -> { };
+	
+	@State(Scope.Benchmark)
+	public static class Shared {
+		
+		@Param({ "TOKEN_BUCKET", "FIXED_WINDOW", "SLIDING_WINDOW", "SLIDING_WINDOW_COUNTER", "SLIDING_WINDOW_RING" })
+		public RateLimiterAlgorithm algorithm;
+		
+		@Param({ "SINGLE", "ZIPFIAN" })
+		public KeyDistribution distribution;
+		
+		@Param({ "100000" })
+		public int keys;
+		
+		RateLimiterFilter filter;
+		String[] names;
+		
+		@Setup(Level.Trial)
+		public void setUp() {
+			List<RateLimiter> limiters = Limiters.all(5, 6_000);
+			filter = new RateLimiterFilter(limiters, new LimiterMetrics(new SimpleMeterRegistry(), limiters, 20, 16), 
+					Limiters.policies(List.of()), new PermitWaiter(0, 0), new ShapingQueue(0, 0, new SimpleMeterRegistry()),
+					KeyResolver.DEFAULTS, HeavyHitterPrefilter.DISABLED);
+			names = KeyDistribution.keys(keys);
+		}
+	}
+	
+	@State(Scope.Thread)
+	public static class Exchange {
+		
+		BenchmarkExchange.Request request;
+		BenchmarkExchange.Response response;
+		int[] sequence;
+		int position;
+		
+		@Setup(Level.Trial)
+		public void setUp(Shared shared, ThreadParams thread) {
+			request = new BenchmarkExchange.Request("/limiter/api/data", shared.algorithm.name());
+			response = new BenchmarkExchange.Response();
+			sequence = shared.distribution.sample(shared.keys, SEQUENCE_LENGTH, 42L + thread.getThreadIndex());
+		}
+		
+		void next(String[] names) {
+			request.userId(names[sequence[position]]);
+			position = (position + 1) & (SEQUENCE_LENGTH - 1);
+			response.clear();
+		}
+	}
+	
+	@Benchmark
+	public int filter(Shared shared, Exchange exchange) throws ServletException, IOException {
+		exchange.next(shared.names);
+		shared.filter.doFilter(exchange.request, exchange.response, NO_OP_CHAIN);
+		return exchange.response.getStatus();
+	}
+}
@@ -0,0 +1,80 @@
+package com.project.rate_limiter.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.project.rate_limiter.service.TokenBucketRateLimiterService;
+import com.project.rate_limiter.snapshot.SnapshotFile;
+import com.project.rate_limiter.snapshot.SnapshotSummary;
+import com.project.rate_limiter.store.StateStoreSettings;
+
+/**
+ * Warm-restart cost: time to restore a token bucket snapshot of N keys into an empty limiter,
+ * i.e. mapping the file, checking its CRC and rebuilding the state map. Run with
+ * {@code -Djmh.args="SnapshotLoadBenchmark"}; 10M keys need the 4 GB heap set below.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class SnapshotLoadBenchmark {
+	
+	private static final long NOW = 1_700_000_000_000L;
+	
+	@Param({ "1000000", "10000000" })
+	public int keys;
+	
+	private StateStoreSettings settings;
+	private Path file;
+	private TokenBucketRateLimiterService target;
+	
+	@Setup(Level.Trial)
+	public void writeSnapshot() throws IOException {
+		settings = new StateStoreSettings(keys, 3_600_000L, 8);
+		file = Files.createTempFile("limiter-state", ".snapshot");
+		
+		TokenBucketRateLimiterService source = new TokenBucketRateLimiterService(100, 10, settings);
+		for(int i=0; i<keys; i++) {
+			source.decision("user-" + i, NOW);
+		}
+		SnapshotSummary written = SnapshotFile.write(file, Map.of("bucket", source), NOW);
+		System.out.printf("%nsnapshot: %d keys, %d MB, written in %d ms%n", 
+				written.entries(), written.bytes() >> 20, written.durationMs());
+	}
+	
+	@Setup(Level.Invocation)
+	public void emptyLimiter() {
+		target = null;
+		System.gc();
+		target = new TokenBucketRateLimiterService(100, 10, settings);
+	}
+	
+	@Benchmark
+	public SnapshotSummary load() throws IOException {
+		return SnapshotFile.read(file, Map.of("bucket", target), NOW + 1_000);
+	}
+	
+	@TearDown(Level.Trial)
+	public void deleteSnapshot() throws IOException {
+		Files.deleteIfExists(file);
+	}
+}
@@ -0,0 +1,87 @@
+package com.project.rate_limiter.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.service.RateLimiter;
+import com.project.rate_limiter.store.StateStoreSettings;
+
+/**
+ * Memory per key of the on-heap and off-heap stores: fills a limiter with N distinct IPv4-style
+ * keys and prints the retained heap (after a GC) and the off-heap table size per key. The score is
+ * the time to insert all keys. Run with {@code -Djmh.args="StateStoreFootprintBenchmark"}; the
+ * sliding log has no off-heap store and reports its heap either way.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g", "-XX:MaxDirectMemorySize=2g" })
+@State(Scope.Benchmark)
+public class StateStoreFootprintBenchmark {
+	
+	private static final long NOW = 1_700_000_000_000L;
+	
+	private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+	
+	@Param({ "TOKEN_BUCKET", "FIXED_WINDOW", "SLIDING_WINDOW", "GCRA" })
+	public RateLimiterAlgorithm algorithm;
+	
+	@Param({ "HEAP", "OFF_HEAP" })
+	public String store;
+	
+	@Param({ "10000000" })
+	public int keys;
+	
+	private RateLimiter limiter;
+	private long heapBefore;
+	
+	@Setup(Level.Invocation)
+	public void emptyLimiter() {
+		limiter = null;
+		heapBefore = usedHeapAfterGc();
+		limiter = Limiters.create(algorithm, 100, 10_000, 
+				new StateStoreSettings(keys, 3_600_000L, 8, "OFF_HEAP".equals(store)));
+	}
+	
+	@Benchmark
+	public RateLimiter fill() {
+		for(int i=0; i<keys; i++) {
+			String ip = (10 + (i >>> 24)) + "." + ((i >>> 16) & 0xff) + "." + ((i >>> 8) & 0xff) + "." + (i & 0xff);
+			limiter.decision(ip, NOW);
+		}
+		return limiter;
+	}
+	
+	@TearDown(Level.Invocation)
+	public void report() {
+		double heapPerKey = (double) (usedHeapAfterGc() - heapBefore) / keys;
+		boolean offHeap = "OFF_HEAP".equals(store) && algorithm != RateLimiterAlgorithm.SLIDING_WINDOW;
+		double offHeapPerKey = offHeap ? (double) limiter.estimatedMemoryBytes() / keys : 0;
+		System.out.printf("%n%s %s: %d keys, heap %.1f B/key, off-heap %.1f B/key%n", algorithm, store, 
+				limiter.storeStats().size(), heapPerKey, offHeapPerKey);
+	}
+	
+	private static long usedHeapAfterGc() {
+		for(int i=0; i<3; i++) {
+			System.gc();
+		}
+		return MEMORY.getHeapMemoryUsage().getUsed();
+	}
+}
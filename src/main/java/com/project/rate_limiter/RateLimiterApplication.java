@@ -2,9 +2,6 @@ package com.project.rate_limiter;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.boot.web.client.RestTemplateBuilder;
-import org.springframework.context.annotation.Bean;
-import org.springframework.web.client.RestTemplate;
 
 @SpringBootApplication
 public class RateLimiterApplication {
@@ -12,9 +9,4 @@ public class RateLimiterApplication {
 	public static void main(String[] args) {
 		SpringApplication.run(RateLimiterApplication.class, args);
 	}
-
-	@Bean
-	public RestTemplate restTemplate(RestTemplateBuilder builder) {
-		return builder.build();
-	}
 }
@@ -15,6 +15,7 @@ public class SecurityConfig {
 			request.requestMatchers("/limiter/api/**").permitAll()
 				   .requestMatchers("/swagger-ui/**", "swagger-ui.html", "/v3/api-docs/**").permitAll()
 				   .requestMatchers("/limiter/demo/**").permitAll()
+				   .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
 				.anyRequest().authenticated())
 			.csrf( csrf -> csrf.disable())
 			.httpBasic(Customizer.withDefaults());
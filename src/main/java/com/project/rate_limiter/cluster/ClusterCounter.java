@@ -0,0 +1,115 @@
+package com.project.rate_limiter.cluster;
+
+import java.util.Arrays;
+
+/**
+ * Replicated usage of one key in one generation: a PN-counter with a row per cluster member, plus
+ * the tokens a token bucket forfeited while full, as a max-register.
+ * <p>
+ * Each member only ever raises its own row, so merging a peer's row is taking the maximum and
+ * rows can be shipped any number of times, in any order. A newer generation replaces an older
+ * one outright. The share fields are this member's alone and are never shipped.
+ * <p>
+ * Every method must be called holding the counter's monitor.
+ */
+final class ClusterCounter {
+	
+	private long generation;
+	
+	private final long[] taken;
+	
+	private final long[] returned;
+	
+	private double forfeited;
+	
+	private long shareInterval = Long.MIN_VALUE;
+	
+	private long shareBase;
+	
+	private long share;
+	
+	ClusterCounter(long generation, int members) {
+		this.generation = generation;
+		this.taken = new long[members];
+		this.returned = new long[members];
+	}
+	
+	long generation() {
+		return generation;
+	}
+	
+	/** Starts {@code next} with every row cleared and {@code carried} tokens already owed. */
+	void reset(long next, double carried) {
+		generation = next;
+		Arrays.fill(taken, 0);
+		Arrays.fill(returned, 0);
+		forfeited = carried;
+		shareInterval = Long.MIN_VALUE;
+	}
+	
+	/** Permits in use across the cluster, as far as this member has heard. */
+	long used() {
+		long used = 0;
+		for(int i=0; i<taken.length; i++) {
+			used += taken[i] - returned[i];
+		}
+		return used;
+	}
+	
+	long used(int member) {
+		return taken[member] - returned[member];
+	}
+	
+	long taken(int member) {
+		return taken[member];
+	}
+	
+	long returned(int member) {
+		return returned[member];
+	}
+	
+	double forfeited() {
+		return forfeited;
+	}
+	
+	void forfeitAtLeast(double tokens) {
+		forfeited = Math.max(forfeited, tokens);
+	}
+	
+	void take(int member, int permits) {
+		taken[member] += permits;
+	}
+	
+	/** Gives back at most what {@code member} holds, so the counter never goes below zero. */
+	void giveBack(int member, int permits) {
+		returned[member] += Math.min(permits, used(member));
+	}
+	
+	/** Joins a peer's row of the same generation. */
+	void merge(int member, long peerTaken, long peerReturned, double peerForfeited) {
+		taken[member] = Math.max(taken[member], peerTaken);
+		returned[member] = Math.max(returned[member], peerReturned);
+		forfeited = Math.max(forfeited, peerForfeited);
+	}
+	
+	/** Whether the share was last opened for an interval other than {@code interval}. */
+	boolean shareExpired(long interval) {
+		return interval != shareInterval;
+	}
+	
+	/** The share opened last, whichever interval it was for; 0 before the first. */
+	long share() {
+		return share;
+	}
+	
+	/** Lets {@code member} take {@code permits} more in {@code interval}, counted from its usage now. */
+	void openShare(int member, long interval, long permits) {
+		shareInterval = interval;
+		shareBase = used(member);
+		share = permits;
+	}
+	
+	long shareLeft(int member) {
+		return share - (used(member) - shareBase);
+	}
+}
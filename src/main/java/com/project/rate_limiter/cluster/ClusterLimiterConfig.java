@@ -0,0 +1,37 @@
+package com.project.rate_limiter.cluster;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.store.StateStoreSettings;
+
+/**
+ * The fixed window and token bucket of the cluster backend. The other algorithms have no bean
+ * under it, as each node would enforce them on its own and a client spread over N nodes would get
+ * N times its limit; only the adaptive concurrency limit, which counts one node's own requests
+ * in flight, stays per node.
+ */
+@Configuration
+@ConditionalOnProperty(name = "rate.limiter.backend", havingValue = "cluster")
+public class ClusterLimiterConfig {
+	
+	@Bean
+	public ClusterRateLimiterService clusterFixedWindowLimiter(@Value("${rate.request.limit.count}") int limit,
+			@Value("${rate.request.limit.timeperiod}") long timeWindowMs,
+			GossipNode gossip, StateStoreSettings storeSettings) {
+		return new ClusterRateLimiterService("fixed-window", RateLimiterAlgorithm.FIXED_WINDOW, limit, timeWindowMs, 0, 
+				gossip, storeSettings);
+	}
+	
+	@Bean
+	public ClusterRateLimiterService clusterTokenBucketLimiter(@Value("${rate.request.limit.count}") int capacity,
+			@Value("${rate.request.limit.timeperiod}") long timeWindowMs,
+			@Value("${rate.request.limit.refill.rate}") double refillRatePerSecond,
+			GossipNode gossip, StateStoreSettings storeSettings) {
+		return new ClusterRateLimiterService("token-bucket", RateLimiterAlgorithm.TOKEN_BUCKET, capacity, timeWindowMs, 
+				refillRatePerSecond, gossip, storeSettings);
+	}
+}
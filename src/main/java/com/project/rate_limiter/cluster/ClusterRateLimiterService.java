@@ -0,0 +1,302 @@
+package com.project.rate_limiter.cluster;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.entity.MutableDecision;
+import com.project.rate_limiter.entity.RateLimiterDecision;
+import com.project.rate_limiter.service.RateLimiter;
+import com.project.rate_limiter.store.LimiterStateStore;
+import com.project.rate_limiter.store.LimiterStateStore.Entry;
+import com.project.rate_limiter.store.LimiterStateStore.StateWrite;
+import com.project.rate_limiter.store.StateStoreSettings;
+import com.project.rate_limiter.store.StateStoreStats;
+
+/**
+ * Fixed window or token bucket whose per-key usage is replicated between the nodes of a cluster
+ * by {@link GossipNode}, with no shared store and no network call on the decision path.
+ * <p>
+ * Time is cut into generations aligned to the epoch, so every node rolls a key over at the same
+ * moment: the window itself for the fixed window, and the time to fill the bucket (at least one
+ * second) for the token bucket, which carries the tokens it still owes into the next generation.
+ * Within a generation a key's usage is a {@link ClusterCounter}.
+ * <p>
+ * A node only learns of its peers' requests one gossip round later, so between rounds it holds
+ * itself to its share of what the cluster has left: in each gossip interval a node takes at most
+ * the remaining permits divided by the live members, rounded up. As long as gossip gets through
+ * within an interval, the cluster as a whole admits at most the limit plus one permit per member
+ * and interval from the rounding. Members that stop gossiping drop out of the division after the
+ * peer timeout, so the others can use their share; on each side of a partition nodes then admit
+ * the full remainder, and the cluster admits up to one limit per side until the partition heals.
+ */
+public class ClusterRateLimiterService implements RateLimiter {
+	
+	private final String name;
+	
+	private final RateLimiterAlgorithm algorithm;
+	
+	private final int LIMIT;
+	
+	private final long GENERATION_MS;
+	
+	private final double REFILL_PER_MS;
+	
+	private final GossipNode gossip;
+	
+	private final int SELF;
+	
+	private final long INTERVAL_MS;
+	
+	private final LimiterStateStore<ClusterCounter> counters;
+	
+	private final StateWrite<ClusterCounter, MutableDecision> decider = this::decide;
+	
+	private final Set<String> changed = ConcurrentHashMap.newKeySet();
+	
+	/** The keys shipped in the last round, shipped once more in case that datagram was lost. */
+	private List<String> shippedLastRound = List.of();
+	
+	/**
+	 * @param name       identifies this limiter to the other nodes, which must use the same name
+	 *                   and limits for it
+	 * @param refillRate tokens per second, token bucket only
+	 */
+	public ClusterRateLimiterService(String name, RateLimiterAlgorithm algorithm, int count, long periodMs, double refillRate,
+			GossipNode gossip, StateStoreSettings storeSettings) {
+		if(!supports(algorithm)) {
+			throw new IllegalArgumentException("Cluster mode does not support " + algorithm);
+		}
+		if(count <= 0 || periodMs <= 0 || (algorithm == RateLimiterAlgorithm.TOKEN_BUCKET && refillRate <= 0)) {
+			throw new IllegalArgumentException("Cluster limits must be positive");
+		}
+		this.name = name;
+		this.algorithm = algorithm;
+		this.LIMIT = count;
+		this.REFILL_PER_MS = refillRate / 1000.0;
+		this.GENERATION_MS = algorithm == RateLimiterAlgorithm.FIXED_WINDOW
+				? periodMs : Math.max(1_000, (long) Math.ceil(count / REFILL_PER_MS));
+		this.gossip = gossip;
+		this.SELF = gossip.nodeIndex();
+		// a share lasts two rounds, so that peers have usually heard of the last one when it is renewed
+		this.INTERVAL_MS = 2 * gossip.intervalMs();
+		int members = gossip.memberCount();
+		// a token bucket untouched for a whole generation is full again, so dropping it loses nothing
+		long idleGenerations = algorithm == RateLimiterAlgorithm.FIXED_WINDOW ? 0 : 1;
+		this.counters = new LimiterStateStore<>(now -> new ClusterCounter(generation(now), members),
+				(counter, now) -> generationOf(counter) < generation(now) - idleGenerations, storeSettings);
+		gossip.register(this);
+	}
+	
+	public static boolean supports(RateLimiterAlgorithm algorithm) {
+		return algorithm == RateLimiterAlgorithm.FIXED_WINDOW || algorithm == RateLimiterAlgorithm.TOKEN_BUCKET;
+	}
+	
+	public String name() {
+		return name;
+	}
+	
+	@Override
+	public RateLimiterAlgorithm algorithm() {
+		return algorithm;
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime) {
+		return decision(user, currentTime, 1);
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime, int permits) {
+		return decision(user, currentTime, permits, new MutableDecision()).toDecision();
+	}
+	
+	@Override
+	public MutableDecision decision(String user, long currentTime, MutableDecision into) {
+		return decision(user, currentTime, 1, into);
+	}
+	
+	@Override
+	public MutableDecision decision(String user, long currentTime, int permits, MutableDecision into) {
+		counters.update(user, currentTime, into.forPermits(permits), decider);
+		if(into.isAllowed()) {
+			changed.add(user);
+		}
+		return into;
+	}
+	
+	@Override
+	public void refund(String user, long currentTime, int permits) {
+		counters.update(user, currentTime, (counter, now) -> {
+			synchronized(counter) {
+				counter.giveBack(SELF, permits);
+			}
+			return null;
+		});
+		changed.add(user);
+	}
+	
+	@Override
+	public boolean hasState(String user) {
+		return counters.get(user) != null;
+	}
+	
+	@Override
+	public StateStoreStats storeStats() {
+		return counters.stats();
+	}
+	
+	@Override
+	public long estimatedMemoryBytes() {
+		// header, eight fields and the two rows
+		return counters.estimatedBytes(80 + 2 * (16 + 8L * gossip.memberCount()));
+	}
+	
+	/** The permits in use for {@code user} across the cluster, as far as this node has heard. */
+	public long used(String user) {
+		Entry<ClusterCounter> entry = counters.get(user);
+		if(entry == null) { return 0; }
+		ClusterCounter counter = entry.state();
+		synchronized(counter) {
+			return counter.used();
+		}
+	}
+	
+	/**
+	 * Hands this node's row of every key changed since the last round, and of those shipped in the
+	 * last round, to {@code sink}. Called by the gossip sender thread only.
+	 */
+	void collectDeltas(GossipNode.DeltaSink sink) {
+		List<String> round = new ArrayList<>();
+		for(Iterator<String> keys = changed.iterator(); keys.hasNext(); ) {
+			round.add(keys.next());
+			keys.remove();
+		}
+		Set<String> keys = new LinkedHashSet<>(round);
+		keys.addAll(shippedLastRound);
+		shippedLastRound = round;
+		
+		for(String key : keys) {
+			Entry<ClusterCounter> entry = counters.get(key);
+			if(entry == null) { continue; }
+			ClusterCounter counter = entry.state();
+			long generation;
+			long taken;
+			long returned;
+			double forfeited;
+			synchronized(counter) {
+				generation = counter.generation();
+				taken = counter.taken(SELF);
+				returned = counter.returned(SELF);
+				forfeited = counter.forfeited();
+			}
+			sink.write(key, generation, taken, returned, forfeited);
+		}
+	}
+	
+	/** Ships every key in the next round, for a peer that has (re)joined and missed earlier rounds. */
+	void shipAll() {
+		counters.forEachKey(changed::add);
+	}
+	
+	/** Joins a peer's row for {@code key}; rows of a generation this node has left are dropped. */
+	void merge(int member, String key, long generation, long taken, long returned, double forfeited, long currentTime) {
+		counters.update(key, currentTime, (counter, now) -> {
+			synchronized(counter) {
+				advance(counter, generation);
+				if(counter.generation() == generation) {
+					counter.merge(member, taken, returned, forfeited);
+				}
+			}
+			return null;
+		});
+	}
+	
+	private void decide(ClusterCounter counter, long currentTime, MutableDecision into) {
+		int permits = into.permits();
+		synchronized(counter) {
+			advance(counter, generation(currentTime));
+			long available = available(counter, currentTime);
+			if(permits > available) {
+				into.block(retryAfter(counter, currentTime, permits - Math.max(0, available)));
+				return;
+			}
+			long interval = currentTime / INTERVAL_MS;
+			if(counter.shareExpired(interval)) {
+				// peers not yet heard from since the interval began may have used a share like ours unseen
+				long unseen = gossip.peersBehind(interval * INTERVAL_MS) * counter.share();
+				counter.openShare(SELF, interval, gossip.shareOf(available - unseen, interval));
+			}
+			long shareLeft = counter.shareLeft(SELF);
+			// a request larger than the whole share may still open an interval on its own
+			if(permits > shareLeft && (shareLeft < counter.share() || counter.share() == 0)) {
+				into.block(INTERVAL_MS - currentTime % INTERVAL_MS);
+				return;
+			}
+			counter.take(SELF, permits);
+			into.allow((int) Math.min(Integer.MAX_VALUE, available - permits), timeToFull(counter, currentTime));
+		}
+	}
+	
+	/** Moves {@code counter} on to {@code generation}, carrying over what a token bucket still owes. */
+	private void advance(ClusterCounter counter, long generation) {
+		if(generation <= counter.generation()) { return; }
+		double owed = 0;
+		if(algorithm == RateLimiterAlgorithm.TOKEN_BUCKET) {
+			owed = LIMIT - Math.min(LIMIT, tokens(counter, generation * GENERATION_MS));
+		}
+		counter.reset(generation, owed);
+	}
+	
+	/** Permits this node may hand out now, before its share is considered; negative when over-admitted. */
+	private long available(ClusterCounter counter, long currentTime) {
+		if(algorithm == RateLimiterAlgorithm.FIXED_WINDOW) {
+			return LIMIT - counter.used();
+		}
+		double tokens = tokens(counter, currentTime);
+		if(tokens > LIMIT) {
+			// a full bucket forfeits its refill, as the single-node bucket does by capping
+			counter.forfeitAtLeast(counter.forfeited() + tokens - LIMIT);
+			return LIMIT;
+		}
+		return (long) Math.floor(tokens);
+	}
+	
+	private double tokens(ClusterCounter counter, long currentTime) {
+		long elapsed = currentTime - counter.generation() * GENERATION_MS;
+		return LIMIT + REFILL_PER_MS * elapsed - counter.used() - counter.forfeited();
+	}
+	
+	private long retryAfter(ClusterCounter counter, long currentTime, long missing) {
+		if(algorithm == RateLimiterAlgorithm.FIXED_WINDOW || missing > LIMIT) {
+			return generationEnd(counter, currentTime);
+		}
+		return (long) Math.ceil(missing / REFILL_PER_MS);
+	}
+	
+	private long timeToFull(ClusterCounter counter, long currentTime) {
+		if(algorithm == RateLimiterAlgorithm.FIXED_WINDOW) {
+			return generationEnd(counter, currentTime);
+		}
+		return (long) Math.ceil(Math.max(0, LIMIT - tokens(counter, currentTime)) / REFILL_PER_MS);
+	}
+	
+	private long generationEnd(ClusterCounter counter, long currentTime) {
+		return Math.max(0, (counter.generation() + 1) * GENERATION_MS - currentTime);
+	}
+	
+	private long generation(long currentTime) {
+		return Math.floorDiv(currentTime, GENERATION_MS);
+	}
+	
+	private static long generationOf(ClusterCounter counter) {
+		synchronized(counter) {
+			return counter.generation();
+		}
+	}
+
+}
@@ -0,0 +1,12 @@
+package com.project.rate_limiter.cluster;
+
+public record ClusterStats(
+		int nodeIndex,
+		int members,
+		int liveMembers,
+		long datagramsSent,
+		long datagramsReceived,
+		long datagramsRejected,
+		long entriesSent,
+		long entriesMerged
+) {}
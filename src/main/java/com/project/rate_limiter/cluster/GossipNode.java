@@ -0,0 +1,404 @@
+package com.project.rate_limiter.cluster;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * This node's end of the cluster's gossip channel: one UDP socket, bound to this node's entry in
+ * {@code rate.cluster.members}.
+ * <p>
+ * Every {@code rate.cluster.gossip-interval-ms} a single sender thread collects the rows of the
+ * keys each {@link ClusterRateLimiterService} changed since the last two rounds, packs them into
+ * datagrams and sends them to every other member; a round with nothing to ship still sends the
+ * bare header, as a heartbeat. Shipping every change twice covers a lost datagram without
+ * acknowledgements, and every key is shipped again when a peer (re)joins, after a restart or a
+ * partition. A receiver thread merges what arrives. Members that have not been heard
+ * from for {@code rate.cluster.peer-timeout-ms} no longer count towards the share of the limit a
+ * node may use between rounds.
+ * <p>
+ * Datagram layout, big-endian: magic, version, sender index, send time, then groups of limiter name, entry
+ * count and entries of key, generation, taken, returned and forfeited tokens. Strings are a
+ * 2-byte length and UTF-8.
+ */
+@Component
+@ConditionalOnProperty(name = "rate.limiter.backend", havingValue = "cluster")
+public class GossipNode {
+	
+	private static final short MAGIC = 0x524c;
+	
+	private static final byte VERSION = 1;
+	
+	/** Fits an Ethernet frame, so datagrams between hosts are never fragmented. */
+	private static final int MAX_DATAGRAM = 1400;
+	
+	private static final int HEADER_BYTES = 2 + 1 + 2 + 8;
+	
+	private static final int SENT_AT_OFFSET = 2 + 1 + 2;
+	
+	private static final int ENTRY_BYTES = 8 + 8 + 8 + 8;
+	
+	private final InetSocketAddress[] members;
+	
+	private final int SELF;
+	
+	private final long INTERVAL_MS;
+	
+	private final long PEER_TIMEOUT_MS;
+	
+	private final DatagramChannel channel;
+	
+	private final Map<String, ClusterRateLimiterService> limiters = new ConcurrentHashMap<>();
+	
+	private final AtomicLongArray lastHeard;
+	
+	/** Per peer, the send time of the latest datagram received, by the peer's clock. */
+	private final AtomicLongArray heardUpTo;
+	
+	private final Set<Integer> cutOff = ConcurrentHashMap.newKeySet();
+	
+	private volatile int liveMembers = 1;
+	
+	private volatile int liveRank;
+	
+	/** Which peers counted as live in the last round; replaced, never modified, once published. */
+	private volatile boolean[] peerLive;
+	
+	private volatile boolean running = true;
+	
+	private final Thread receiver;
+	
+	private final ScheduledExecutorService sender;
+	
+	private final Datagram out;
+	
+	private final LongAdder datagramsSent = new LongAdder();
+	private final LongAdder datagramsReceived = new LongAdder();
+	private final LongAdder datagramsRejected = new LongAdder();
+	private final LongAdder entriesSent = new LongAdder();
+	private final LongAdder entriesMerged = new LongAdder();
+	
+	/**
+	 * @param members   comma-separated {@code host:port} of every node, in the same order on all of them
+	 * @param nodeIndex this node's position in {@code members}
+	 */
+	public GossipNode(@Value("${rate.cluster.members:127.0.0.1:7101}") String members,
+			@Value("${rate.cluster.node-index:0}") int nodeIndex,
+			@Value("${rate.cluster.gossip-interval-ms:5}") long intervalMs,
+			@Value("${rate.cluster.peer-timeout-ms:500}") long peerTimeoutMs) throws IOException {
+		this.members = Arrays.stream(members.split(","))
+				.map(String::strip)
+				.filter(member -> !member.isEmpty())
+				.map(GossipNode::address)
+				.toArray(InetSocketAddress[]::new);
+		if(nodeIndex < 0 || nodeIndex >= this.members.length) {
+			throw new IllegalArgumentException("rate.cluster.node-index must point into rate.cluster.members");
+		}
+		if(this.members.length > Short.MAX_VALUE || intervalMs <= 0) {
+			throw new IllegalArgumentException("Invalid cluster size or gossip interval");
+		}
+		this.SELF = nodeIndex;
+		this.INTERVAL_MS = intervalMs;
+		this.PEER_TIMEOUT_MS = peerTimeoutMs;
+		this.lastHeard = new AtomicLongArray(this.members.length);
+		this.peerLive = new boolean[this.members.length];
+		this.heardUpTo = new AtomicLongArray(this.members.length);
+		this.out = new Datagram();
+		
+		InetSocketAddress self = this.members[nodeIndex];
+		this.channel = DatagramChannel.open(self.getAddress() instanceof Inet6Address
+				? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET);
+		this.channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+		this.channel.bind(self);
+		
+		this.receiver = new Thread(this::receiveLoop, "cluster-gossip-receiver");
+		this.receiver.setDaemon(true);
+		this.receiver.start();
+		this.sender = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "cluster-gossip-sender");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.sender.scheduleAtFixedRate(this::gossip, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+	}
+	
+	/** Ships the changes of {@code limiter} from now on; replaces an earlier limiter of the same name. */
+	public void register(ClusterRateLimiterService limiter) {
+		limiters.put(limiter.name(), limiter);
+	}
+	
+	public int nodeIndex() {
+		return SELF;
+	}
+	
+	public int memberCount() {
+		return members.length;
+	}
+	
+	public long intervalMs() {
+		return INTERVAL_MS;
+	}
+	
+	/** This node and the peers heard from within the peer timeout, as of the last round. */
+	public int liveMembers() {
+		return liveMembers;
+	}
+	
+	/**
+	 * This node's part of {@code remaining} permits in gossip interval {@code interval}: an equal
+	 * split among the live members, with the permits that do not divide evenly going to different
+	 * members in turn, so the parts add up to exactly {@code remaining}.
+	 */
+	public long shareOf(long remaining, long interval) {
+		if(remaining <= 0) { return 0; }
+		int live = liveMembers;
+		long turn = Math.floorMod(liveRank + interval, live);
+		return remaining / live + (turn < remaining % live ? 1 : 0);
+	}
+	
+	/**
+	 * The live peers whose latest datagram was sent before {@code time}: their requests since
+	 * then may not have reached this node yet.
+	 */
+	public int peersBehind(long time) {
+		boolean[] live = peerLive;
+		int behind = 0;
+		for(int i=0; i<members.length; i++) {
+			if(live[i] && heardUpTo.get(i) < time) { behind++; }
+		}
+		return behind;
+	}
+	
+	public ClusterStats stats() {
+		return new ClusterStats(SELF, members.length, liveMembers, datagramsSent.sum(), datagramsReceived.sum(),
+				datagramsRejected.sum(), entriesSent.sum(), entriesMerged.sum());
+	}
+	
+	/** Drops all traffic to and from {@code member} while {@code cut}, to simulate a partition. */
+	void cutOff(int member, boolean cut) {
+		if(cut) {
+			cutOff.add(member);
+		} else {
+			cutOff.remove(member);
+		}
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		running = false;
+		sender.shutdownNow();
+		receiver.interrupt();
+		try {
+			channel.close();
+		} catch (IOException ex) {
+			// nothing left to release
+		}
+	}
+	
+	private void gossip() {
+		try {
+			long now = System.currentTimeMillis();
+			int live = 1;
+			int rank = 0;
+			boolean joined = false;
+			boolean[] wasLive = peerLive;
+			boolean[] isLive = new boolean[members.length];
+			for(int i=0; i<members.length; i++) {
+				boolean heard = i != SELF && !cutOff.contains(i) && now - lastHeard.get(i) <= PEER_TIMEOUT_MS;
+				joined |= heard && !wasLive[i];
+				isLive[i] = heard;
+				live += heard ? 1 : 0;
+				rank += heard && i < SELF ? 1 : 0;
+			}
+			peerLive = isLive;
+			liveMembers = live;
+			liveRank = rank;
+			
+			for(ClusterRateLimiterService limiter : limiters.values()) {
+				if(joined) {
+					// a peer that was down or cut off has missed rounds: bring it up to date with everything
+					limiter.shipAll();
+				}
+				out.group(limiter.name());
+				limiter.collectDeltas(out);
+			}
+			out.flush();
+		} catch (RuntimeException ex) {
+			// a failed round must not cancel the schedule; the next one ships the same keys again
+		}
+	}
+	
+	private void receiveLoop() {
+		ByteBuffer in = ByteBuffer.allocate(65_536);
+		while(running) {
+			in.clear();
+			try {
+				channel.receive(in);
+			} catch (ClosedChannelException ex) {
+				break;
+			} catch (IOException ex) {
+				continue;
+			}
+			in.flip();
+			receive(in);
+		}
+	}
+	
+	private void receive(ByteBuffer in) {
+		try {
+			if(in.getShort() != MAGIC || in.get() != VERSION) {
+				datagramsRejected.increment();
+				return;
+			}
+			int sender = in.getShort();
+			if(sender < 0 || sender >= members.length || sender == SELF) {
+				datagramsRejected.increment();
+				return;
+			}
+			long sentAt = in.getLong();
+			if(cutOff.contains(sender)) { return; }
+			long now = System.currentTimeMillis();
+			lastHeard.set(sender, now);
+			heardUpTo.accumulateAndGet(sender, sentAt, Math::max);
+			datagramsReceived.increment();
+			
+			while(in.hasRemaining()) {
+				ClusterRateLimiterService limiter = limiters.get(readString(in));
+				int entries = in.getShort() & 0xffff;
+				for(int i=0; i<entries; i++) {
+					String key = readString(in);
+					long generation = in.getLong();
+					long taken = in.getLong();
+					long returned = in.getLong();
+					double forfeited = in.getDouble();
+					if(limiter != null) {
+						limiter.merge(sender, key, generation, taken, returned, forfeited, now);
+						entriesMerged.increment();
+					}
+				}
+			}
+		} catch (BufferUnderflowException | IllegalArgumentException ex) {
+			datagramsRejected.increment();
+		}
+	}
+	
+	private static String readString(ByteBuffer in) {
+		byte[] bytes = new byte[in.getShort() & 0xffff];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	private static InetSocketAddress address(String member) {
+		int colon = member.lastIndexOf(':');
+		if(colon <= 0) {
+			throw new IllegalArgumentException("Cluster member must be host:port, got " + member);
+		}
+		String host = member.substring(0, colon);
+		if(host.startsWith("[") && host.endsWith("]")) {
+			host = host.substring(1, host.length() - 1);
+		}
+		return new InetSocketAddress(host, Integer.parseInt(member.substring(colon + 1)));
+	}
+	
+	/** The datagram being filled by the sender thread; full ones are sent as entries are added. */
+	private final class Datagram implements DeltaSink {
+		
+		private final ByteBuffer buffer = ByteBuffer.allocate(MAX_DATAGRAM);
+		
+		private byte[] group;
+		
+		private int countAt = -1;
+		
+		private int count;
+		
+		Datagram() {
+			header();
+		}
+		
+		void group(String name) {
+			group = name.getBytes(StandardCharsets.UTF_8);
+			countAt = -1;
+		}
+		
+		@Override
+		public void write(String key, long generation, long taken, long returned, double forfeited) {
+			byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+			int groupBytes = countAt < 0 ? 2 + group.length + 2 : 0;
+			if(HEADER_BYTES + 2 + group.length + 2 + 2 + keyBytes.length + ENTRY_BYTES > MAX_DATAGRAM) {
+				// too long to ship at all; the key stays limited by each node on its own
+				return;
+			}
+			if(buffer.position() + groupBytes + 2 + keyBytes.length + ENTRY_BYTES > MAX_DATAGRAM) {
+				send();
+				groupBytes = 2 + group.length + 2;
+			}
+			if(groupBytes > 0) {
+				buffer.putShort((short) group.length).put(group);
+				countAt = buffer.position();
+				count = 0;
+				buffer.putShort((short) 0);
+			}
+			buffer.putShort((short) keyBytes.length).put(keyBytes)
+					.putLong(generation).putLong(taken).putLong(returned).putDouble(forfeited);
+			buffer.putShort(countAt, (short) ++count);
+			entriesSent.increment();
+		}
+		
+		/** Sends what has been filled in; a round that filled in nothing sends the header alone. */
+		void flush() {
+			send();
+		}
+		
+		private void send() {
+			// stamped now rather than when the buffer was last cleared, a round earlier for a heartbeat
+			buffer.putLong(SENT_AT_OFFSET, System.currentTimeMillis());
+			buffer.flip();
+			for(int i=0; i<members.length; i++) {
+				if(i == SELF || cutOff.contains(i)) { continue; }
+				try {
+					channel.send(buffer, members[i]);
+					datagramsSent.increment();
+				} catch (IOException ex) {
+					// the peer is down or unreachable; it catches up from later rounds
+				}
+				buffer.rewind();
+			}
+			header();
+			countAt = -1;
+		}
+		
+		private void header() {
+			buffer.clear();
+			// the send time is filled in by send()
+			buffer.putShort(MAGIC).put(VERSION).putShort((short) SELF).putLong(0L);
+		}
+	}
+	
+	/** Receives the rows a limiter ships in a round. */
+	public interface DeltaSink {
+		
+		void write(String key, long generation, long taken, long returned, double forfeited);
+	}
+}
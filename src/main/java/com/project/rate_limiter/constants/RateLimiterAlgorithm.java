@@ -3,11 +3,31 @@ package com.project.rate_limiter.constants;
 public enum RateLimiterAlgorithm {
 	TOKEN_BUCKET,
 	SLIDING_WINDOW,
-	FIXED_WINDOW;
+	FIXED_WINDOW,
+	SLIDING_WINDOW_COUNTER,
+	SLIDING_WINDOW_RING,
+	LEAKY_BUCKET,
+	GCRA,
+	ADAPTIVE_CONCURRENCY;
 	
+	private static final RateLimiterAlgorithm[] VALUES = values();
+	
+	/** Case-insensitive, whitespace-tolerant lookup that compares in place instead of building an upper-cased copy. */
 	public static RateLimiterAlgorithm from(String arg) {
 		if(arg == null || arg.isBlank()) { return TOKEN_BUCKET; }
 		
-		return RateLimiterAlgorithm.valueOf(arg.trim().toUpperCase());
+		int start = 0;
+		int end = arg.length();
+		// isBlank() only knows whitespace, so a value of control characters alone can still empty out here
+		while(start < end && arg.charAt(start) <= ' ') { start++; }
+		while(start < end && arg.charAt(end - 1) <= ' ') { end--; }
+		
+		for(RateLimiterAlgorithm algorithm : VALUES) {
+			String name = algorithm.name();
+			if(name.length() == end - start && arg.regionMatches(true, start, name, 0, name.length())) {
+				return algorithm;
+			}
+		}
+		throw new IllegalArgumentException("No enum constant " + RateLimiterAlgorithm.class.getCanonicalName() + "." + arg.trim());
 	}
 }
@@ -1,47 +1,64 @@
 package com.project.rate_limiter.controller;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.HttpStatusCodeException;
-import org.springframework.web.client.RestTemplate;
 
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
 import com.project.rate_limiter.controller.dto.DemoEvent;
 import com.project.rate_limiter.controller.dto.DemoRunRequest;
 import com.project.rate_limiter.controller.dto.DemoRunResponse;
+import com.project.rate_limiter.controller.dto.LoadRunRequest;
+import com.project.rate_limiter.entity.RateLimiterDecision;
 import com.project.rate_limiter.helper.ResponseTextHelper;
+import com.project.rate_limiter.load.ExpectedLimit;
+import com.project.rate_limiter.load.LoadHarness;
+import com.project.rate_limiter.load.LoadReport;
+import com.project.rate_limiter.load.TrafficEvent;
+import com.project.rate_limiter.load.TrafficLogs;
+import com.project.rate_limiter.service.RateLimiter;
+import com.project.rate_limiter.service.RateLimiterFactory;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
-@Tag(name = "Demo Playground", description = "Run prebuilt scenarios to visualize algorithm tradeoffs")
+/**
+ * Demo scenarios and load runs. Every run gets fresh in-process limiters and a virtual clock, so
+ * nothing sleeps, the outcome is the same on every run and no real client's quota is touched.
+ */
+@Tag(name = "Demo Playground", description = "Run prebuilt scenarios and simulated load to visualize algorithm tradeoffs")
 @RestController
 @RequestMapping("/limiter/demo")
 public class DemoRunController {
 	
-	private final RestTemplate restTemplate;
+	private static final int MAX_THREADS = 64;
 	
-	@Value("${rate.request.limit.count}")
-	private int limit;
+	private final RateLimiterFactory factory;
 	
-	@Value("${rate.request.limit.timeperiod}")
-	private long timePeriodLimitInMs;
+	private final int limit;
 	
-	@Value("${rate.request.limit.refill.rate:1}")
-	private int refillRate;
-
-	public DemoRunController(RestTemplate restTemplate) {
-		this.restTemplate = restTemplate;
+	private final long timePeriodLimitInMs;
+	
+	private final double refillRate;
+	
+	public DemoRunController(RateLimiterFactory factory,
+			@Value("${rate.request.limit.count}") int limit,
+			@Value("${rate.request.limit.timeperiod}") long timePeriodLimitInMs,
+			@Value("${rate.request.limit.refill.rate:1}") double refillRate) {
+		this.factory = factory;
+		this.limit = limit;
+		this.timePeriodLimitInMs = timePeriodLimitInMs;
+		this.refillRate = refillRate;
 	}
 	
 	@Operation(
@@ -50,21 +67,117 @@ public class DemoRunController {
 		Runs a preconfigured traffic pattern and returns a with status (200/429).\n
 		→ Initial burst consumes all available tokens (5 tokens - 1 token refilled per second) \n
 		→ No tokens left so requests are blocked \n
-		→ Refill rate is 1 sec so after waiting 1 second, one token refills \n
+		→ Refill rate is 1 sec so after the clock advances 1 second, one token refills \n
 		→ Requests made at 1 sec interval so they are immediately consumed on each subsequent request.
 		"""
 	)
 	@PostMapping("/run/token")
-	public DemoRunResponse runTokenBucketDemo(@RequestBody DemoRunRequest request) throws InterruptedException{
-		String alg = "TOKEN_BUCKET";
-		String scenario = "TOKEN_BUCKET_BURST_REFILL";
+	public DemoRunResponse runTokenBucketDemo(@RequestBody DemoRunRequest request) {
+		return run(RateLimiterAlgorithm.TOKEN_BUCKET, request, this::runTokenBucketBurstRefill);
+	}
+	
+	@Operation(
+		summary = "Run a rate limiting demo scenario using sliding window algorithm as backend logic",
+		description = """
+		Runs a preconfigured traffic pattern and returns a with status (200/429).\n
+		→ Burst fills the rolling window (5 requests per 6 seconds) \n
+		→ Further requests are blocked until the oldest request expires \n
+		→ The clock advances by one window, so the window slides forward \n
+		→ All request data outside time window are purged and capacity gradually becomes available again.
+		"""
+	)
+	@PostMapping("/run/sliding")
+	public DemoRunResponse runSlidingWindowDemo(@RequestBody DemoRunRequest request) {
+		return run(RateLimiterAlgorithm.SLIDING_WINDOW, request, this::runSlidingWindowSmooth);
+	}
+	
+	@Operation(
+		summary = "Run a rate limiting demo scenario using fixed window algorithm as backend logic",
+		description = """
+		Runs a preconfigured traffic pattern and returns a with status (200/429). \n
+		→ The clock advances to just before the window ends \n
+		→ Burst fills the fixed window (5 requests per 6 seconds) \n
+		→ Request counter reaches its limit so further calls blocked \n
+		→ When the fixed time window resets, the counter is cleared (5 requests available again for next 6 seconds window) \n
+		→ At boundary, a new burst is triggered and allowed \n
+		→ As a result in a window of 6 seconds we are able to trigger more than 5 calls (double-dip effect)
+		"""
+	)
+	@PostMapping("/run/fixed")
+	public DemoRunResponse runFixedWindowDemo(@RequestBody DemoRunRequest request) {
+		return run(RateLimiterAlgorithm.FIXED_WINDOW, request, this::runFixedWindowBoundaryBurst);
+	}
+	
+	@Operation(
+		summary = "Drive limiters with generated open-loop traffic on a virtual clock",
+		description = """
+		Generates Poisson, bursty or constant arrivals over uniform, Zipfian or single keys, and decides
+		every request with each of the given algorithms (all rate limits when none are given) on the same
+		traffic. Reports throughput, CPU time, latency percentiles and how close the admitted permits
+		came to what the configured limit allows.
+		"""
+	)
+	@PostMapping("/load")
+	public ResponseEntity<List<LoadReport>> runLoad(@RequestBody LoadRunRequest request) {
+		if(request.traffic() == null) {
+			return ResponseEntity.badRequest().build();
+		}
+		List<TrafficEvent> events = request.traffic().generate(System.currentTimeMillis());
+		List<RateLimiterAlgorithm> algorithms = request.algorithms() == null || request.algorithms().isEmpty()
+				? Arrays.stream(RateLimiterAlgorithm.values()).filter(alg -> alg != RateLimiterAlgorithm.ADAPTIVE_CONCURRENCY).toList()
+				: request.algorithms();
+		
+		List<LoadReport> reports = new ArrayList<>();
+		try {
+			for(RateLimiterAlgorithm algorithm : algorithms) {
+				reports.add(replay(algorithm, events, request.limit(), request.periodMs(), request.refillRate(), request.threads()));
+			}
+		} catch (IllegalArgumentException ex) {
+			return ResponseEntity.badRequest().build();
+		}
+		return ResponseEntity.ok(reports);
+	}
+	
+	@Operation(
+		summary = "Replay a recorded request log on a virtual clock",
+		description = "One request per line as timeMs,key[,permits]. Limits default to the configured ones."
+	)
+	@PostMapping(path = "/replay", consumes = MediaType.TEXT_PLAIN_VALUE)
+	public ResponseEntity<LoadReport> replayLog(@RequestBody String log,
+			@RequestParam RateLimiterAlgorithm algorithm,
+			@RequestParam(required = false) Integer limit,
+			@RequestParam(required = false) Long periodMs,
+			@RequestParam(required = false) Double refillRate,
+			@RequestParam(defaultValue = "1") int threads) {
+		try {
+			return ResponseEntity.ok(replay(algorithm, TrafficLogs.parse(log), limit, periodMs, refillRate, threads));
+		} catch (IllegalArgumentException ex) {
+			// a malformed line, or limits the algorithm rejects
+			return ResponseEntity.badRequest().build();
+		}
+	}
+	
+	private LoadReport replay(RateLimiterAlgorithm algorithm, List<TrafficEvent> events,
+			Integer count, Long periodMs, Double rate, Integer threads) {
+		int runLimit = count == null ? limit : count;
+		long runPeriod = periodMs == null ? timePeriodLimitInMs : periodMs;
+		double runRate = rate == null ? refillRate : rate;
+		int runThreads = threads == null ? 1 : Math.min(MAX_THREADS, Math.max(1, threads));
+		
+		RateLimiter limiter = factory.createLocal(algorithm, runLimit, runPeriod, runRate);
+		return LoadHarness.run(limiter, events, runThreads, ExpectedLimit.of(algorithm, runLimit, runPeriod, runRate));
+	}
+	
+	private DemoRunResponse run(RateLimiterAlgorithm algorithm, DemoRunRequest request, Scenario scenario) {
+		String alg = algorithm.name();
 		String userId = (request.userId() == null || request.userId().isBlank() ) ? "demo_user" : request.userId();
 		
 		List<DemoEvent> timeline = new ArrayList<>();
 		
 		Map<String, Object> config = ResponseTextHelper.buildConfig(alg, limit, timePeriodLimitInMs, refillRate);
 		
-		runTokenBucketBurstRefill(alg, scenario, userId, timeline);
+		RateLimiter limiter = factory.createLocal(algorithm, limit, timePeriodLimitInMs, refillRate);
+		scenario.run(limiter, userId, System.currentTimeMillis(), timeline);
 		
 		int allowed = (int) timeline.stream().filter(e -> e.status() == 200).count();
 		int blocked = (int) timeline.stream().filter(e -> e.status() == 429).count();
@@ -72,159 +185,72 @@ public class DemoRunController {
 		return new DemoRunResponse(alg, allowed, blocked, config, timeline);
 	}
 	
-	@Operation(
-			summary = "Run a rate limiting demo scenario using sliding window algorithm as backend logic",
-			description = """
-			Runs a preconfigured traffic pattern and returns a with status (200/429).\n
-			→ Burst fills the rolling window (5 requests per 6 seconds) \n
-			→ Further requests are blocked until the oldest request expires \n 
-			→ System triggered to sleep wait for certain time, the window slides forward \n
-			→ All request data outside time window are purged and capacity gradually becomes available again.
-			"""
-		)
-		@PostMapping("/run/sliding")
-		public DemoRunResponse runSlidingWindowDemo(@RequestBody DemoRunRequest request) throws InterruptedException{
-			String alg = "SLIDING_WINDOW";
-			String scenario = "SLIDING_WINDOW_SMOOTH";
-			String userId = (request.userId() == null || request.userId().isBlank() ) ? "demo_user" : request.userId();
-			
-			List<DemoEvent> timeline = new ArrayList<>();
-			
-			Map<String, Object> config = ResponseTextHelper.buildConfig(alg, limit, timePeriodLimitInMs, refillRate);
-			
-			runSlidingWindowSmooth(alg, scenario, userId, timeline);
-			
-			int allowed = (int) timeline.stream().filter(e -> e.status() == 200).count();
-			int blocked = (int) timeline.stream().filter(e -> e.status() == 429).count();
-			
-			return new DemoRunResponse(alg, allowed, blocked, config, timeline);
-		}
-	
-	@Operation(
-			summary = "Run a rate limiting demo scenario using fixed window algorithm as backend logic",
-			description = """
-					Runs a preconfigured traffic pattern and returns a with status (200/429). \n
-					→ System sleep wait for 5 seconds \n
-					→ Burst fills the fixed window (5 requests per 6 seconds) \n
-					→ Request counter reaches its limit so further calls blocked \n 
-					→ When the fixed time window resets, the counter is cleared (5 requests available again for next 6 seconds window) \n
-					→ At boundary, a new burst is triggered and allowed \n
-					→ As a result in a window of 6 seconds we are able to trigger more than 5 calls (double-dip effect)
-					"""
-		)
-		@PostMapping("/run/fixed")
-		public DemoRunResponse runFixedWindowDemo(@RequestBody DemoRunRequest request) throws InterruptedException{
-			String alg = "FIXED_WINDOW";
-			String scenario = "FIXED_WINDOW_BOUNDARY_BURST";
-			String userId = (request.userId() == null || request.userId().isBlank() ) ? "demo_user" : request.userId();
-			
-			List<DemoEvent> timeline = new ArrayList<>();
-			
-			Map<String, Object> config = ResponseTextHelper.buildConfig(alg, limit, timePeriodLimitInMs, refillRate);
-			
-			runFixedWindowBoundaryBurst(alg, scenario, userId, timeline);
-			
-			int allowed = (int) timeline.stream().filter(e -> e.status() == 200).count();
-			int blocked = (int) timeline.stream().filter(e -> e.status() == 429).count();
-			
-			return new DemoRunResponse(alg, allowed, blocked, config, timeline);
-		}
-	
-	private void runFixedWindowBoundaryBurst(String alg, String scenario, String userId, 
-			List<DemoEvent> timeline) throws InterruptedException {
-		callCheck(alg, userId, 1, timeline);
+	private void runFixedWindowBoundaryBurst(RateLimiter limiter, String userId, long now,
+			List<DemoEvent> timeline) {
+		callCheck(limiter, userId, now, timeline);
 		
-		long waitMs = Math.max(0, timePeriodLimitInMs - 200);
-		Thread.sleep(waitMs);
+		now += Math.max(0, timePeriodLimitInMs - 200);
 		
-		//Limit - 1: burst calls 
+		//Limit + 1: burst calls
 		for(int i=0; i<Math.max(0, limit+1); i++) {
-			callCheck(alg, userId, timeline.size() + 1, timeline);
+			callCheck(limiter, userId, now, timeline);
 		}
 		
-		timeline.add(new DemoEvent(0, 0, 0, "triggered system sleep and counter resets as 6 seconds are up"));
-		Thread.sleep(250);
+		timeline.add(new DemoEvent(0, 0, 0, "clock advanced 250 ms and counter resets as the window is up"));
+		now += 250;
 		
 		//Burst call again
 		for(int i=0; i<limit; i++) {
-			callCheck(alg, userId, timeline.size() + 1, timeline);
+			callCheck(limiter, userId, now, timeline);
 		}
 	}
 	
-	private void runSlidingWindowSmooth(String alg, String scenario, String userId, 
-			List<DemoEvent> timeline) throws InterruptedException {
+	private void runSlidingWindowSmooth(RateLimiter limiter, String userId, long now,
+			List<DemoEvent> timeline) {
 		
 		for(int i=0; i<limit; i++) {
-			callCheck(alg, userId, i+1, timeline);
+			callCheck(limiter, userId, now, timeline);
 		}
 		
 		for(int i=0; i<5; i++) {
-			callCheck(alg, userId, timeline.size()+1, timeline);
+			callCheck(limiter, userId, now, timeline);
 		}
 		
-		timeline.add(new DemoEvent(0, 0, 0, "triggered sleep for system: "+timePeriodLimitInMs+" Ms"));
+		timeline.add(new DemoEvent(0, 0, 0, "clock advanced by: "+timePeriodLimitInMs+" Ms"));
 		
-		Thread.sleep(Math.max(200, timePeriodLimitInMs));
+		now += Math.max(200, timePeriodLimitInMs);
 		
 		for(int i=0; i<5; i++) {
-			callCheck(alg, userId, timeline.size()+1, timeline);
-			Thread.sleep(150);
+			callCheck(limiter, userId, now, timeline);
+			now += 150;
 		}
 	}
 	
-	private void runTokenBucketBurstRefill(String alg, String scenario, String userId, 
-			List<DemoEvent> timeline) throws InterruptedException {
+	private void runTokenBucketBurstRefill(RateLimiter limiter, String userId, long now,
+			List<DemoEvent> timeline) {
 		
 		int burst = limit + 3;
 		
 		for(int i=0; i<burst; i++) {
-			callCheck(alg, userId, i+1, timeline);
+			callCheck(limiter, userId, now, timeline);
 		}
 		
 		timeline.add(new DemoEvent(0, 0, 0, "triggered calls at 1 sec interval"));
 		
 		for(int i=0; i<5; i++) {
-			Thread.sleep(1000);
-			callCheck(alg, userId, timeline.size()+1, timeline);
+			now += 1000;
+			callCheck(limiter, userId, now, timeline);
 		}
 	}
 	
-	private void callCheck(String alg, String userId, int index,
-			List<DemoEvent> timeline) {
-		
-		HttpHeaders headers = new HttpHeaders();
-		headers.set("X-RateLimit-Alg", alg);
-		headers.set("X-User-Id", userId);
-		
-		HttpEntity<Void> entity = new HttpEntity<>(headers);
-		int status;
-		HttpHeaders resultHeaders;
-		
-		try{
-			ResponseEntity<String> res = restTemplate.exchange(
-				"http://localhost:8080/limiter/api/check",
-				HttpMethod.GET,
-				entity,
-				String.class);
-			status = res.getStatusCode().value();
-			resultHeaders = res.getHeaders();
-		} catch (HttpStatusCodeException ex) {
-			status = ex.getStatusCode().value();
-			resultHeaders = ex.getResponseHeaders();
-			if(resultHeaders == null ) { resultHeaders = new HttpHeaders(); }
-		} catch (Exception ex) {
-			status = 0;
-			resultHeaders = new HttpHeaders();
-		}
-		
-		long remaining = parseLong(resultHeaders.getFirst("X-RateLimit-Remaining"));
-		long retryAfterMs = parseLong(resultHeaders.getFirst("X-RateLimit-RetryAfter-Ms"));
-		
-		timeline.add(new DemoEvent(status, remaining, retryAfterMs, ""));
+	private void callCheck(RateLimiter limiter, String userId, long now, List<DemoEvent> timeline) {
+		RateLimiterDecision decision = limiter.decision(userId, now);
+		int status = decision.isAllowed() ? 200 : 429;
+		timeline.add(new DemoEvent(status, decision.remaining(), decision.retryAfterMs(), ""));
 	}
 	
-	private long parseLong(String v) {
-		try { return (v==null) ? 0 : Long.parseLong(v); }
-		catch (Exception ex) { return 0; }
+	@FunctionalInterface
+	private interface Scenario {
+		void run(RateLimiter limiter, String userId, long start, List<DemoEvent> timeline);
 	}
 }
@@ -0,0 +1,173 @@
+package com.project.rate_limiter.controller;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.project.rate_limiter.cluster.ClusterStats;
+import com.project.rate_limiter.cluster.GossipNode;
+import com.project.rate_limiter.decision.DecisionServer;
+import com.project.rate_limiter.decision.DecisionServerStats;
+import com.project.rate_limiter.metrics.LimiterMetrics;
+import com.project.rate_limiter.metrics.SpaceSavingTopK.HeavyHitter;
+import com.project.rate_limiter.policy.PolicyReloader;
+import com.project.rate_limiter.policy.PolicyStatus;
+import com.project.rate_limiter.service.HeavyHitterPrefilter;
+import com.project.rate_limiter.service.PrefilterStats;
+import com.project.rate_limiter.service.RateLimiter;
+import com.project.rate_limiter.snapshot.LimiterSnapshots;
+import com.project.rate_limiter.snapshot.SnapshotStatus;
+import com.project.rate_limiter.service.redis.RedisBatchStats;
+import com.project.rate_limiter.service.redis.RedisDecisionBatcher;
+import com.project.rate_limiter.store.StateStoreStats;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+@Tag(name = "Limiter Admin", description = "Operational views of the limiter state")
+@RestController
+@RequestMapping("/limiter/admin")
+public class LimiterAdminController {
+	
+	private final List<RateLimiter> limiters;
+	
+	private final ObjectProvider<RedisDecisionBatcher> batcher;
+	
+	private final LimiterMetrics metrics;
+	
+	private final PolicyReloader policies;
+	
+	private final ObjectProvider<LimiterSnapshots> snapshots;
+	
+	private final ObjectProvider<GossipNode> gossip;
+	
+	private final HeavyHitterPrefilter prefilter;
+	
+	private final ObjectProvider<DecisionServer> decisionServer;
+	
+	public LimiterAdminController(List<RateLimiter> limiters, ObjectProvider<RedisDecisionBatcher> batcher,
+			LimiterMetrics metrics, PolicyReloader policies, ObjectProvider<LimiterSnapshots> snapshots,
+			ObjectProvider<GossipNode> gossip, HeavyHitterPrefilter prefilter, ObjectProvider<DecisionServer> decisionServer) {
+		this.limiters = limiters;
+		this.batcher = batcher;
+		this.metrics = metrics;
+		this.policies = policies;
+		this.snapshots = snapshots;
+		this.gossip = gossip;
+		this.prefilter = prefilter;
+		this.decisionServer = decisionServer;
+	}
+	
+	@Operation(summary = "Per-algorithm state map size and eviction counters")
+	@GetMapping("/stats")
+	public Map<String, StateStoreStats> stats() {
+		Map<String, StateStoreStats> stats = new TreeMap<>();
+		for(RateLimiter limiter : limiters) {
+			stats.put(limiter.algorithm().name(), limiter.storeStats());
+		}
+		return stats;
+	}
+	
+	@Operation(summary = "Redis batching fill ratio and added queueing latency")
+	@GetMapping("/redis-batching")
+	public ResponseEntity<RedisBatchStats> redisBatching() {
+		RedisDecisionBatcher current = batcher.getIfAvailable();
+		return current == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(current.stats());
+	}
+	
+	@Operation(summary = "Gossip traffic and live members; 404 unless rate.limiter.backend=cluster")
+	@GetMapping("/cluster")
+	public ResponseEntity<ClusterStats> cluster() {
+		GossipNode current = gossip.getIfAvailable();
+		return current == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(current.stats());
+	}
+	
+	@Operation(summary = "Connections and frames of the binary decision server; 404 unless rate.decision-server.enabled")
+	@GetMapping("/decision-server")
+	public ResponseEntity<DecisionServerStats> decisionServer() {
+		DecisionServer current = decisionServer.getIfAvailable();
+		return current == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(current.stats());
+	}
+	
+	@Operation(summary = "Most frequently blocked keys (approximate, bounded Space-Saving summary)")
+	@GetMapping("/top-offenders")
+	public List<HeavyHitter> topOffenders(@RequestParam(defaultValue = "10") int limit) {
+		return metrics.topOffenders(limit);
+	}
+	
+	@Operation(summary = "Keys currently over the prefilter threshold, by decayed request count; 404 unless rate.prefilter.enabled")
+	@GetMapping("/heavy-hitters")
+	public ResponseEntity<List<HeavyHitter>> heavyHitters(@RequestParam(defaultValue = "10") int limit) {
+		return prefilter.enabled() ? ResponseEntity.ok(prefilter.heavyHitters(limit)) : ResponseEntity.notFound().build();
+	}
+	
+	@Operation(summary = "Count-Min prefilter size, error bound and how many requests skipped the exact limiters")
+	@GetMapping("/prefilter")
+	public PrefilterStats prefilter() {
+		return prefilter.stats();
+	}
+	
+	@Operation(summary = "Rate limit policies in force, their version and the last reload error")
+	@GetMapping("/policies")
+	public PolicyStatus policies() {
+		return policies.status();
+	}
+	
+	@Operation(summary = "Re-read rate.policy.file; per-key state carries over to the new limits")
+	@PostMapping("/policies/reload")
+	public ResponseEntity<PolicyStatus> reloadPolicies() {
+		try {
+			if(policies.reloadFromFile() < 0) {
+				return ResponseEntity.notFound().build();
+			}
+		} catch (IOException | RuntimeException ex) {
+			return ResponseEntity.badRequest().body(policies.status());
+		}
+		return ResponseEntity.ok(policies.status());
+	}
+	
+	@Operation(summary = "Replace the policies with an uploaded YAML document of rate.policy.* keys")
+	@PutMapping(path = "/policies", consumes = {"application/yaml", MediaType.TEXT_PLAIN_VALUE})
+	public ResponseEntity<PolicyStatus> replacePolicies(@RequestBody String yaml) {
+		try {
+			policies.reloadFromYaml(yaml);
+		} catch (IOException | RuntimeException ex) {
+			return ResponseEntity.badRequest().body(policies.status());
+		}
+		return ResponseEntity.ok(policies.status());
+	}
+	
+	@Operation(summary = "Last state snapshot written and loaded; 404 unless rate.snapshot.enabled")
+	@GetMapping("/snapshot")
+	public ResponseEntity<SnapshotStatus> snapshot() {
+		LimiterSnapshots current = snapshots.getIfAvailable();
+		return current == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(current.status());
+	}
+	
+	@Operation(summary = "Write a state snapshot now")
+	@PostMapping("/snapshot")
+	public ResponseEntity<SnapshotStatus> writeSnapshot() {
+		LimiterSnapshots current = snapshots.getIfAvailable();
+		if(current == null) {
+			return ResponseEntity.notFound().build();
+		}
+		try {
+			current.write();
+		} catch (IOException ex) {
+			return ResponseEntity.internalServerError().body(current.status());
+		}
+		return ResponseEntity.ok(current.status());
+	}
+}
@@ -0,0 +1,15 @@
+package com.project.rate_limiter.controller.dto;
+
+import java.util.List;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.load.TrafficModel;
+
+public record LoadRunRequest(
+	List<RateLimiterAlgorithm> algorithms,
+	Integer limit,
+	Long periodMs,
+	Double refillRate,
+	Integer threads,
+	TrafficModel traffic
+) {}
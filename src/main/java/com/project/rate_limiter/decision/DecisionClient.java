@@ -0,0 +1,273 @@
+package com.project.rate_limiter.decision;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client of a {@link DecisionServer}, for services that limit their own requests remotely. It is
+ * thread-safe and meant to be shared: it keeps a fixed pool of connections, spreads calls over
+ * them in turn and pipelines on each, so a call never waits for an earlier one's response. A
+ * thread sending while another is writing leaves its frame to that thread, which writes all
+ * waiting frames in one go.
+ * <p>
+ * A connection is opened on first use and again after it fails; the calls in flight on it fail
+ * with the {@link IOException}. A call not answered within the timeout fails with a
+ * {@link java.util.concurrent.TimeoutException}. Either way the caller decides whether to let the
+ * request through. A failed call whose frame was still queued is never sent, on that connection
+ * or the next, so the server does not charge for it.
+ */
+public class DecisionClient implements AutoCloseable {
+	
+	private final InetSocketAddress server;
+	
+	private final long TIMEOUT_MS;
+	
+	private final Connection[] connections;
+	
+	private final AtomicInteger next = new AtomicInteger();
+	
+	private final AtomicInteger ids = new AtomicInteger();
+	
+	private volatile boolean closed;
+	
+	/**
+	 * @param connections connections kept to the server
+	 * @param timeoutMs   how long a call may wait for its response
+	 */
+	public DecisionClient(InetSocketAddress server, int connections, long timeoutMs) {
+		if(connections < 1 || timeoutMs < 1) {
+			throw new IllegalArgumentException("A client needs at least one connection and a positive timeout");
+		}
+		this.server = server;
+		this.TIMEOUT_MS = timeoutMs;
+		this.connections = new Connection[connections];
+		for(int i=0; i<connections; i++) {
+			this.connections[i] = new Connection(i);
+		}
+	}
+	
+	/** Decides every descriptor of {@code batch} in one round trip; the decisions are in the same order. */
+	public CompletableFuture<List<RemoteDecision>> decide(List<Descriptor> batch) {
+		if(closed) {
+			return CompletableFuture.failedFuture(new IOException("Decision client closed"));
+		}
+		int id = ids.incrementAndGet();
+		ByteBuffer frame;
+		try {
+			frame = DecisionProtocol.request(id, batch);
+		} catch(IllegalArgumentException ex) {
+			return CompletableFuture.failedFuture(ex);
+		}
+		return connections[Math.floorMod(next.getAndIncrement(), connections.length)].send(id, frame);
+	}
+	
+	/** One descriptor, waiting for its decision. */
+	public RemoteDecision decide(String key, String policy, int cost) {
+		return decide(List.of(new Descriptor(key, policy, cost))).join().get(0);
+	}
+	
+	@Override
+	public void close() {
+		closed = true;
+		for(Connection connection : connections) {
+			connection.fail(new IOException("Decision client closed"));
+		}
+	}
+	
+	/** A frame waiting to be written, with the connection it was sent on and the call it answers. */
+	private record Pending(SocketChannel channel, ByteBuffer frame, CompletableFuture<List<RemoteDecision>> response) {}
+	
+	/** One pipelined connection and the thread reading its responses. */
+	private final class Connection {
+		
+		private final int index;
+		
+		private final Map<Integer, CompletableFuture<List<RemoteDecision>>> inFlight = new ConcurrentHashMap<>();
+		
+		private final Queue<Pending> waiting = new ConcurrentLinkedQueue<>();
+		
+		private final ReentrantLock writing = new ReentrantLock();
+		
+		private volatile SocketChannel channel;
+		
+		Connection(int index) {
+			this.index = index;
+		}
+		
+		CompletableFuture<List<RemoteDecision>> send(int id, ByteBuffer frame) {
+			CompletableFuture<List<RemoteDecision>> response = new CompletableFuture<>();
+			SocketChannel current;
+			try {
+				current = connected();
+			} catch (IOException ex) {
+				response.completeExceptionally(ex);
+				return response;
+			}
+			inFlight.put(id, response);
+			response.orTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS).whenComplete((decisions, error) -> inFlight.remove(id));
+			waiting.add(new Pending(current, frame, response));
+			// whoever holds the lock writes the frames queued meanwhile; checked again after unlocking
+			while(!waiting.isEmpty() && writing.tryLock()) {
+				try {
+					drain();
+				} finally {
+					writing.unlock();
+				}
+			}
+			return response;
+		}
+		
+		/**
+		 * Writes the queued frames, each run of them to the connection it was queued for. A frame
+		 * whose call has already failed or whose connection is gone is dropped instead.
+		 */
+		private void drain() {
+			List<ByteBuffer> frames = new ArrayList<>();
+			SocketChannel target = null;
+			Pending pending;
+			while((pending = waiting.poll()) != null) {
+				if(pending.response().isDone() || !pending.channel().isOpen()) {
+					pending.response().completeExceptionally(new IOException("Decision server connection lost before sending"));
+					continue;
+				}
+				if(pending.channel() != target) {
+					write(target, frames);
+					target = pending.channel();
+				}
+				frames.add(pending.frame());
+			}
+			write(target, frames);
+		}
+		
+		private void write(SocketChannel target, List<ByteBuffer> frames) {
+			if(frames.isEmpty()) {
+				return;
+			}
+			ByteBuffer[] buffers = frames.toArray(ByteBuffer[]::new);
+			frames.clear();
+			long remaining = 0;
+			for(ByteBuffer buffer : buffers) {
+				remaining += buffer.remaining();
+			}
+			try {
+				while(remaining > 0) {
+					remaining -= target.write(buffers);
+				}
+			} catch (IOException ex) {
+				fail(target, ex);
+			}
+		}
+		
+		private synchronized SocketChannel connected() throws IOException {
+			SocketChannel current = channel;
+			if(current != null) {
+				return current;
+			}
+			if(closed) {
+				throw new IOException("Decision client closed");
+			}
+			current = SocketChannel.open(server);
+			current.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			channel = current;
+			SocketChannel reading = current;
+			Thread reader = new Thread(() -> readLoop(reading), "decision-client-" + index);
+			reader.setDaemon(true);
+			reader.start();
+			return current;
+		}
+		
+		private void readLoop(SocketChannel current) {
+			ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+			try {
+				while(true) {
+					if(current.read(in) < 0) {
+						throw new EOFException("Decision server closed the connection");
+					}
+					in.flip();
+					int needed = 0;
+					while(in.remaining() >= 4) {
+						int length = in.getInt(in.position());
+						if(length < DecisionProtocol.HEADER_BYTES) {
+							throw new IllegalArgumentException("Invalid frame length " + length);
+						}
+						if(in.remaining() < 4 + length) {
+							needed = 4 + length;
+							break;
+						}
+						response(in.slice(in.position() + 4, length));
+						in.position(in.position() + 4 + length);
+					}
+					in = needed > in.capacity() ? ByteBuffer.allocate(needed).put(in) : in.compact();
+				}
+			} catch (IOException | BufferUnderflowException | IllegalArgumentException ex) {
+				fail(current, ex instanceof IOException io ? io : new IOException("Malformed response", ex));
+			}
+		}
+		
+		private void response(ByteBuffer frame) {
+			if(frame.get() != DecisionProtocol.VERSION) {
+				throw new IllegalArgumentException("Unsupported protocol version");
+			}
+			int id = frame.getInt();
+			RemoteDecision[] decisions = new RemoteDecision[frame.getShort() & 0xffff];
+			for(int i=0; i<decisions.length; i++) {
+				decisions[i] = DecisionProtocol.decision(frame);
+			}
+			CompletableFuture<List<RemoteDecision>> response = inFlight.remove(id);
+			if(response != null) {
+				response.complete(Arrays.asList(decisions));
+			}
+		}
+		
+		void fail(IOException error) {
+			SocketChannel current = channel;
+			if(current != null) {
+				fail(current, error);
+			}
+		}
+		
+		/** Drops {@code failed} if it is still the connection in use, failing the calls waiting on it. */
+		private void fail(SocketChannel failed, IOException error) {
+			synchronized(this) {
+				if(channel == failed) {
+					channel = null;
+				}
+			}
+			try {
+				failed.close();
+			} catch (IOException ex) {
+				// already gone
+			}
+			// frames not yet written would otherwise go out on the next connection after their calls failed
+			waiting.removeIf(pending -> {
+				if(pending.channel() != failed) {
+					return false;
+				}
+				pending.response().completeExceptionally(error);
+				return true;
+			});
+			for(Integer id : inFlight.keySet()) {
+				CompletableFuture<List<RemoteDecision>> response = inFlight.remove(id);
+				if(response != null) {
+					response.completeExceptionally(error);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package com.project.rate_limiter.decision;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.project.rate_limiter.decision.RemoteDecision.Status;
+
+/**
+ * Frames of the decision protocol, shared by {@link DecisionServer} and {@link DecisionClient}.
+ * Every frame is a 4-byte length followed by that many bytes, big-endian:
+ * <pre>
+ * request:  version | request id | count | count x (key, policy, cost)
+ * response: version | request id | count | count x (status, remaining, retry after, reset in, delay)
+ * </pre>
+ * The version is a byte, the id and cost 4 bytes and the count 2 bytes, unsigned. Strings are a
+ * 2-byte length and UTF-8. The times of a decision are milliseconds, 4 bytes each and capped at
+ * {@link Integer#MAX_VALUE}; its status is a byte, the ordinal of {@link Status}. The response to
+ * a request carries its id and one decision per descriptor, in order; responses to pipelined
+ * requests may arrive in any order.
+ */
+final class DecisionProtocol {
+	
+	static final byte VERSION = 1;
+	
+	/** Version, request id and count. */
+	static final int HEADER_BYTES = 1 + 4 + 2;
+	
+	static final int DECISION_BYTES = 1 + 4 + 4 + 4 + 4;
+	
+	static final int MAX_BATCH = 0xffff;
+	
+	static final int MAX_STRING_BYTES = 0xffff;
+	
+	private static final Status[] STATUSES = Status.values();
+	
+	private DecisionProtocol() {
+	}
+	
+	static ByteBuffer request(int id, List<Descriptor> batch) {
+		if(batch.size() > MAX_BATCH) {
+			throw new IllegalArgumentException("A batch holds at most " + MAX_BATCH + " descriptors");
+		}
+		byte[][] strings = new byte[batch.size() * 2][];
+		int length = HEADER_BYTES;
+		for(int i=0; i<batch.size(); i++) {
+			strings[2 * i] = utf8(batch.get(i).key());
+			strings[2 * i + 1] = utf8(batch.get(i).policy());
+			length += 2 + strings[2 * i].length + 2 + strings[2 * i + 1].length + 4;
+		}
+		ByteBuffer frame = ByteBuffer.allocate(4 + length);
+		frame.putInt(length).put(VERSION).putInt(id).putShort((short) batch.size());
+		for(int i=0; i<batch.size(); i++) {
+			frame.putShort((short) strings[2 * i].length).put(strings[2 * i])
+					.putShort((short) strings[2 * i + 1].length).put(strings[2 * i + 1])
+					.putInt(batch.get(i).cost());
+		}
+		return frame.flip();
+	}
+	
+	static ByteBuffer response(int id, RemoteDecision[] decisions) {
+		int length = HEADER_BYTES + decisions.length * DECISION_BYTES;
+		ByteBuffer frame = ByteBuffer.allocate(4 + length);
+		frame.putInt(length).put(VERSION).putInt(id).putShort((short) decisions.length);
+		for(RemoteDecision decision : decisions) {
+			frame.put((byte) decision.status().ordinal())
+					.putInt(decision.remaining())
+					.putInt(millis(decision.retryAfterMs()))
+					.putInt(millis(decision.timeToFullMs()))
+					.putInt(millis(decision.delayMs()));
+		}
+		return frame.flip();
+	}
+	
+	static RemoteDecision decision(ByteBuffer in) {
+		int status = in.get();
+		if(status < 0 || status >= STATUSES.length) {
+			throw new IllegalArgumentException("Unknown decision status " + status);
+		}
+		return new RemoteDecision(STATUSES[status], in.getInt(), in.getInt(), in.getInt(), in.getInt());
+	}
+	
+	static String readString(ByteBuffer in) {
+		int length = in.getShort() & 0xffff;
+		if(length > in.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+		in.position(in.position() + length);
+		return value;
+	}
+	
+	private static byte[] utf8(String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		if(bytes.length > MAX_STRING_BYTES) {
+			throw new IllegalArgumentException("Keys and policy names are at most " + MAX_STRING_BYTES + " bytes");
+		}
+		return bytes;
+	}
+	
+	private static int millis(long ms) {
+		return (int) Math.min(Integer.MAX_VALUE, Math.max(0, ms));
+	}
+}
@@ -0,0 +1,478 @@
+package com.project.rate_limiter.decision;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.filter.KeyResolver;
+import com.project.rate_limiter.filter.RateLimiterFilter;
+import com.project.rate_limiter.metrics.LimiterMetrics;
+import com.project.rate_limiter.policy.CompiledPolicy;
+import com.project.rate_limiter.policy.PolicyEngine;
+import com.project.rate_limiter.policy.PolicyLimit;
+import com.project.rate_limiter.policy.PolicyProperties.KeySource;
+import com.project.rate_limiter.service.CompositeRateLimiter;
+import com.project.rate_limiter.service.HeavyHitterPrefilter;
+import com.project.rate_limiter.service.RateLimiter;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Decides for other services over TCP, without an HTTP request per check: a client sends
+ * batches of {@link Descriptor}s in the frames of {@link DecisionProtocol} and gets a decision for
+ * each back in one response. Descriptors are decided by the same limiters and policies as the
+ * filter, so a key shares its quota between both paths.
+ * <p>
+ * One acceptor thread hands connections to {@code rate.decision-server.io-threads} event loops,
+ * each a selector serving its connections without blocking. A loop decides the frames it reads
+ * itself; the in-process limiters answer at once, and a Redis limiter completes its batch later
+ * from its own thread, so a connection may have many requests in flight and gets their responses
+ * in the order they are decided. The responses decided while reading one chunk of input go out in
+ * a single write. A connection whose responses pile up unread stops being read until they drain.
+ * <p>
+ * A request never waits for a permit or a shaping delay here: the decision reports the delay and
+ * leaves the waiting to the caller. Concurrency limits are not offered, since the protocol has no
+ * way to report a request's completion. A malformed frame closes the connection.
+ */
+@Component
+@ConditionalOnProperty(name = "rate.decision-server.enabled", havingValue = "true")
+public class DecisionServer {
+	
+	/** Responses held for a connection before it is no longer read. */
+	private static final int MAX_QUEUED_RESPONSES = 1024;
+	
+	private static final int INITIAL_BUFFER_BYTES = 16 * 1024;
+	
+	private static final CompletionStage<RemoteDecision> UNKNOWN_POLICY = CompletableFuture.completedStage(RemoteDecision.UNKNOWN_POLICY);
+	
+	private static final CompletionStage<RemoteDecision> INVALID = CompletableFuture.completedStage(RemoteDecision.INVALID);
+	
+	private final Map<RateLimiterAlgorithm, RateLimiter> limiters = new EnumMap<>(RateLimiterAlgorithm.class);
+	
+	private final LimiterMetrics metrics;
+	
+	private final PolicyEngine policies;
+	
+	private final KeyResolver keys;
+	
+	private final int MAX_FRAME_BYTES;
+	
+	private final ServerSocketChannel server;
+	
+	private final EventLoop[] loops;
+	
+	private final Thread acceptor;
+	
+	private volatile boolean running = true;
+	
+	private final AtomicInteger openConnections = new AtomicInteger();
+	private final LongAdder connectionsAccepted = new LongAdder();
+	private final LongAdder framesReceived = new LongAdder();
+	private final LongAdder framesRejected = new LongAdder();
+	private final LongAdder descriptorsDecided = new LongAdder();
+	
+	/**
+	 * @param port       0 picks a free port, reported by {@link #port()}
+	 * @param maxFrameKb largest request accepted
+	 */
+	public DecisionServer(List<RateLimiter> limiters, LimiterMetrics metrics, PolicyEngine policies, KeyResolver keys,
+			HeavyHitterPrefilter prefilter,
+			@Value("${rate.decision-server.bind:0.0.0.0}") String bind,
+			@Value("${rate.decision-server.port:7200}") int port,
+			@Value("${rate.decision-server.io-threads:2}") int ioThreads,
+			@Value("${rate.decision-server.max-frame-kb:1024}") int maxFrameKb) throws IOException {
+		if(ioThreads < 1 || maxFrameKb < 1) {
+			throw new IllegalArgumentException("rate.decision-server.io-threads and max-frame-kb must be positive");
+		}
+		for(RateLimiter limiter : limiters) {
+			this.limiters.put(limiter.algorithm(), prefilter.wrap(limiter));
+		}
+		this.metrics = metrics;
+		this.policies = policies;
+		this.keys = keys;
+		this.MAX_FRAME_BYTES = maxFrameKb * 1024;
+		
+		this.server = ServerSocketChannel.open();
+		this.server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+		this.server.bind(new InetSocketAddress(bind, port));
+		
+		this.loops = new EventLoop[ioThreads];
+		for(int i=0; i<ioThreads; i++) {
+			loops[i] = new EventLoop(Selector.open());
+			Thread thread = new Thread(loops[i], "decision-server-io-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+		this.acceptor = new Thread(this::acceptLoop, "decision-server-acceptor");
+		this.acceptor.setDaemon(true);
+		this.acceptor.start();
+	}
+	
+	public int port() {
+		return server.socket().getLocalPort();
+	}
+	
+	public DecisionServerStats stats() {
+		return new DecisionServerStats(port(), loops.length, openConnections.get(), connectionsAccepted.sum(),
+				framesReceived.sum(), framesRejected.sum(), descriptorsDecided.sum());
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		running = false;
+		try {
+			server.close();
+		} catch (IOException ex) {
+			// nothing left to release
+		}
+		for(EventLoop loop : loops) {
+			loop.selector.wakeup();
+		}
+	}
+	
+	/**
+	 * Decides one descriptor. A policy name is looked up first; an algorithm name is honoured
+	 * only where {@code rate.policy.client-algorithm} lets clients pick one, as with
+	 * {@code X-RateLimit-Alg}.
+	 */
+	CompletionStage<RemoteDecision> decide(String key, String policyName, int cost, long now) {
+		if(cost < 1) { return INVALID; }
+		if(!policyName.isEmpty()) {
+			CompiledPolicy policy = policies.policy(policyName);
+			if(policy != null) {
+				return decide(policy, keys.identityKey(key), cost, now);
+			}
+		}
+		
+		RateLimiterAlgorithm alg;
+		if(policyName.isEmpty()) {
+			alg = policies.defaultAlgorithm();
+		} else if(!policies.clientAlgorithm()) {
+			return UNKNOWN_POLICY;
+		} else {
+			try {
+				alg = RateLimiterAlgorithm.from(policyName);
+			} catch(IllegalArgumentException ex) {
+				return UNKNOWN_POLICY;
+			}
+		}
+		RateLimiter limiter = limiters.get(alg);
+		if(limiter == null) { return UNKNOWN_POLICY; }
+		if(limiter.holdsPermits()) { return INVALID; }
+		
+		String user = keys.identityKey(key);
+		return limiter.decisionAsync(user, now, cost).handle((decision, error) -> {
+			if(error != null) { return failure(error); }
+			metrics.record(alg, user, decision.isAllowed());
+			return RemoteDecision.of(decision);
+		});
+	}
+	
+	/** Every limit of the policy counts against the descriptor's key, except the global ones. */
+	private CompletionStage<RemoteDecision> decide(CompiledPolicy policy, String user, int cost, long now) {
+		CompositeRateLimiter composite = policy.composite();
+		if(composite.holdsPermits()) { return INVALID; }
+		PolicyLimit[] limits = policy.limits();
+		String[] levelKeys = new String[limits.length];
+		for(int i=0; i<limits.length; i++) {
+			levelKeys[i] = limits[i].key() == KeySource.GLOBAL ? RateLimiterFilter.GLOBAL_KEY : user;
+		}
+		return composite.decisionAsync(levelKeys, now, cost).handle((decision, error) -> {
+			if(error != null) { return failure(error); }
+			metrics.record(limits[decision.level()].algorithm(), levelKeys[decision.level()], decision.isAllowed());
+			return RemoteDecision.of(decision);
+		});
+	}
+	
+	private static RemoteDecision failure(Throwable error) {
+		Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+		// an argument the limiter refuses, as opposed to a store it could not reach
+		return cause instanceof IllegalArgumentException ? RemoteDecision.INVALID : RemoteDecision.FAILED;
+	}
+	
+	private void acceptLoop() {
+		int next = 0;
+		while(running) {
+			SocketChannel channel;
+			try {
+				channel = server.accept();
+			} catch (ClosedChannelException ex) {
+				break;
+			} catch (IOException ex) {
+				continue;
+			}
+			try {
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			} catch (IOException ex) {
+				close(channel);
+				continue;
+			}
+			connectionsAccepted.increment();
+			openConnections.incrementAndGet();
+			loops[next].add(channel);
+			next = (next + 1) % loops.length;
+		}
+	}
+	
+	private static void close(SocketChannel channel) {
+		try {
+			channel.close();
+		} catch (IOException ex) {
+			// already gone
+		}
+	}
+	
+	/** One selector thread and the connections it serves. */
+	private final class EventLoop implements Runnable {
+		
+		private final Selector selector;
+		
+		private final Queue<SocketChannel> incoming = new ConcurrentLinkedQueue<>();
+		
+		EventLoop(Selector selector) {
+			this.selector = selector;
+		}
+		
+		void add(SocketChannel channel) {
+			incoming.add(channel);
+			selector.wakeup();
+		}
+		
+		@Override
+		public void run() {
+			try {
+				while(running) {
+					selector.select();
+					SocketChannel channel;
+					while((channel = incoming.poll()) != null) {
+						register(channel);
+					}
+					for(SelectionKey key : selector.selectedKeys()) {
+						Connection connection = (Connection) key.attachment();
+						try {
+							if(key.isValid() && key.isWritable()) {
+								connection.flush();
+							}
+							if(key.isValid() && key.isReadable()) {
+								connection.read();
+							}
+						} catch (IOException | RuntimeException ex) {
+							connection.close();
+						}
+					}
+					selector.selectedKeys().clear();
+				}
+			} catch (IOException | ClosedSelectorException ex) {
+				// the server is shutting down
+			} finally {
+				for(SelectionKey key : selector.keys()) {
+					((Connection) key.attachment()).close();
+				}
+				try {
+					selector.close();
+				} catch (IOException ex) {
+					// nothing left to release
+				}
+			}
+		}
+		
+		private void register(SocketChannel channel) {
+			try {
+				Connection connection = new Connection(channel, selector);
+				connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+			} catch (ClosedChannelException ex) {
+				openConnections.decrementAndGet();
+			}
+		}
+	}
+	
+	/**
+	 * A client connection. Input is only touched by its loop; responses are queued and written
+	 * under the connection's lock, by the loop or by whichever thread completed a batch.
+	 */
+	private final class Connection {
+		
+		private final SocketChannel channel;
+		
+		private final Selector selector;
+		
+		private SelectionKey key;
+		
+		private ByteBuffer in = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+		
+		private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+		
+		/** Set while the loop decides what it read; responses then wait for one write at the end. */
+		private boolean reading;
+		
+		private boolean closed;
+		
+		Connection(SocketChannel channel, Selector selector) {
+			this.channel = channel;
+			this.selector = selector;
+		}
+		
+		void read() throws IOException {
+			if(channel.read(in) < 0) {
+				close();
+				return;
+			}
+			in.flip();
+			int needed = 0;
+			synchronized(this) {
+				reading = true;
+			}
+			try {
+				while(in.remaining() >= 4) {
+					int length = in.getInt(in.position());
+					if(length < DecisionProtocol.HEADER_BYTES || length > MAX_FRAME_BYTES) {
+						framesRejected.increment();
+						close();
+						return;
+					}
+					if(in.remaining() < 4 + length) {
+						needed = 4 + length;
+						break;
+					}
+					ByteBuffer frame = in.slice(in.position() + 4, length);
+					in.position(in.position() + 4 + length);
+					if(!frame(frame)) {
+						framesRejected.increment();
+						close();
+						return;
+					}
+				}
+			} finally {
+				synchronized(this) {
+					reading = false;
+					flushQueued();
+				}
+			}
+			in.compact();
+			if(needed > in.capacity()) {
+				ByteBuffer larger = ByteBuffer.allocate(needed);
+				in.flip();
+				in = larger.put(in);
+			}
+		}
+		
+		/** Decodes a whole frame before deciding any of it, so a malformed one charges nothing. */
+		private boolean frame(ByteBuffer frame) {
+			int id;
+			String[] users;
+			String[] policyNames;
+			int[] costs;
+			try {
+				if(frame.get() != DecisionProtocol.VERSION) { return false; }
+				id = frame.getInt();
+				int count = frame.getShort() & 0xffff;
+				users = new String[count];
+				policyNames = new String[count];
+				costs = new int[count];
+				for(int i=0; i<count; i++) {
+					users[i] = DecisionProtocol.readString(frame);
+					policyNames[i] = DecisionProtocol.readString(frame);
+					costs[i] = frame.getInt();
+				}
+				if(frame.hasRemaining()) { return false; }
+			} catch (BufferUnderflowException ex) {
+				return false;
+			}
+			framesReceived.increment();
+			
+			RemoteDecision[] decisions = new RemoteDecision[users.length];
+			if(decisions.length == 0) {
+				send(DecisionProtocol.response(id, decisions));
+				return true;
+			}
+			AtomicInteger pending = new AtomicInteger(decisions.length);
+			long now = System.currentTimeMillis();
+			for(int i=0; i<decisions.length; i++) {
+				int index = i;
+				decide(users[i], policyNames[i], costs[i], now).whenComplete((decision, error) -> {
+					decisions[index] = error == null ? decision : RemoteDecision.FAILED;
+					if(pending.decrementAndGet() == 0) {
+						descriptorsDecided.add(decisions.length);
+						send(DecisionProtocol.response(id, decisions));
+					}
+				});
+			}
+			return true;
+		}
+		
+		synchronized void send(ByteBuffer response) {
+			if(closed) { return; }
+			out.add(response);
+			if(!reading) {
+				flushQueued();
+			}
+		}
+		
+		synchronized void flush() {
+			flushQueued();
+		}
+		
+		/** Writes what the socket takes, and leaves the rest for the loop to write when it can. */
+		private void flushQueued() {
+			if(closed || key == null) { return; }
+			try {
+				while(!out.isEmpty()) {
+					channel.write(out.toArray(ByteBuffer[]::new));
+					while(!out.isEmpty() && !out.peek().hasRemaining()) {
+						out.poll();
+					}
+					if(!out.isEmpty()) {
+						// the socket is full: read no more while the client is not reading its responses
+						int ops = out.size() > MAX_QUEUED_RESPONSES ? SelectionKey.OP_WRITE : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+						if(key.interestOps() != ops) {
+							key.interestOps(ops);
+							selector.wakeup();
+						}
+						return;
+					}
+				}
+				if(key.interestOps() != SelectionKey.OP_READ) {
+					key.interestOps(SelectionKey.OP_READ);
+				}
+			} catch (IOException | RuntimeException ex) {
+				close();
+			}
+		}
+		
+		synchronized void close() {
+			if(closed) { return; }
+			closed = true;
+			out.clear();
+			if(key != null) {
+				key.cancel();
+			}
+			DecisionServer.close(channel);
+			openConnections.decrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,11 @@
+package com.project.rate_limiter.decision;
+
+public record DecisionServerStats(
+		int port,
+		int ioThreads,
+		int openConnections,
+		long connectionsAccepted,
+		long framesReceived,
+		long framesRejected,
+		long descriptorsDecided
+) {}
@@ -0,0 +1,28 @@
+package com.project.rate_limiter.decision;
+
+/**
+ * One request to decide remotely.
+ *
+ * @param key    who the request is counted against, as an {@code X-User-Id} would be
+ * @param policy a rate limit policy by name, an algorithm name when {@code rate.policy.client-algorithm}
+ *               allows it, or empty for the default algorithm
+ * @param cost   permits the request takes from every limit it is charged against
+ */
+public record Descriptor(
+		String key,
+		String policy,
+		int cost
+) {
+	
+	public Descriptor {
+		if(key == null) {
+			throw new IllegalArgumentException("A descriptor needs a key");
+		}
+		policy = policy == null ? "" : policy;
+	}
+	
+	/** One permit of the default algorithm. */
+	public static Descriptor of(String key) {
+		return new Descriptor(key, "", 1);
+	}
+}
@@ -0,0 +1,41 @@
+package com.project.rate_limiter.decision;
+
+import com.project.rate_limiter.entity.Admission;
+
+/**
+ * The decision for one {@link Descriptor}, with the same fields the filter reports in its
+ * {@code X-RateLimit-*} headers.
+ */
+public record RemoteDecision(
+		Status status,
+		int remaining,
+		long retryAfterMs,
+		long timeToFullMs,
+		long delayMs
+) implements Admission {
+	
+	static final RemoteDecision UNKNOWN_POLICY = new RemoteDecision(Status.UNKNOWN_POLICY, 0, 0, 0, 0);
+	static final RemoteDecision INVALID = new RemoteDecision(Status.INVALID, 0, 0, 0, 0);
+	static final RemoteDecision FAILED = new RemoteDecision(Status.FAILED, 0, 0, 0, 0);
+	
+	public enum Status {
+		ALLOWED,
+		BLOCKED,
+		/** Names neither a policy nor, where clients may pick one, an algorithm. */
+		UNKNOWN_POLICY,
+		/** A cost below one, or a limit that cannot be decided remotely such as a concurrency limit. */
+		INVALID,
+		/** The limiter failed, for instance because Redis did not answer; the caller picks fail-open or closed. */
+		FAILED
+	}
+	
+	static RemoteDecision of(Admission decision) {
+		return new RemoteDecision(decision.isAllowed() ? Status.ALLOWED : Status.BLOCKED, decision.remaining(),
+				decision.retryAfterMs(), decision.timeToFullMs(), decision.delayMs());
+	}
+	
+	@Override
+	public boolean isAllowed() {
+		return status == Status.ALLOWED;
+	}
+}
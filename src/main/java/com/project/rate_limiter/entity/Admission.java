@@ -0,0 +1,16 @@
+package com.project.rate_limiter.entity;
+
+/** Read-only view of a decision, whether a {@link RateLimiterDecision} or a {@link MutableDecision}. */
+public interface Admission {
+	
+	boolean isAllowed();
+	
+	int remaining();
+	
+	long retryAfterMs();
+	
+	long timeToFullMs();
+	
+	/** How long to hold an admitted request before letting it through; 0 unless it was shaped. */
+	long delayMs();
+}
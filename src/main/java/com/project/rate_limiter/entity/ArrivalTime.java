@@ -0,0 +1,37 @@
+package com.project.rate_limiter.entity;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * GCRA state in a single long: the theoretical arrival time (TAT) of the next request, in epoch
+ * microseconds. A TAT in the past is an idle key.
+ */
+public class ArrivalTime implements PackedState {
+	
+	private static final VarHandle STATE;
+	
+	static {
+		try {
+			STATE = MethodHandles.lookup().findVarHandle(ArrivalTime.class, "state", long.class);
+		} catch (ReflectiveOperationException ex) {
+			throw new ExceptionInInitializerError(ex);
+		}
+	}
+	
+	private volatile long state;
+	
+	public ArrivalTime(long tatMicros) {
+		this.state = tatMicros;
+	}
+	
+	@Override
+	public long get() {
+		return state;
+	}
+	
+	@Override
+	public boolean compareAndSet(long expected, long updated) {
+		return STATE.compareAndSet(this, expected, updated);
+	}
+}
@@ -0,0 +1,59 @@
+package com.project.rate_limiter.entity;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Fixed window state packed into a single long so it can be updated with one CAS:
+ * the upper 43 bits hold the window start (epoch ms), the lower 21 bits the request count.
+ */
+public class FixedWindowCounter implements PackedState {
+	
+	public static final int COUNT_BITS = 21;
+	public static final int MAX_COUNT = (1 << COUNT_BITS) - 1;
+	
+	private static final VarHandle STATE;
+	
+	static {
+		try {
+			STATE = MethodHandles.lookup().findVarHandle(FixedWindowCounter.class, "state", long.class);
+		} catch (ReflectiveOperationException ex) {
+			throw new ExceptionInInitializerError(ex);
+		}
+	}
+	
+	private volatile long state;
+	
+	public FixedWindowCounter(long limitWindowStart) {
+		this.state = pack(limitWindowStart, 0);
+	}
+	
+	/** A counter starting from an already packed {@code state}. */
+	public static FixedWindowCounter of(long state) {
+		FixedWindowCounter counter = new FixedWindowCounter(0);
+		counter.state = state;
+		return counter;
+	}
+	
+	@Override
+	public long get() {
+		return state;
+	}
+	
+	@Override
+	public boolean compareAndSet(long expected, long updated) {
+		return STATE.compareAndSet(this, expected, updated);
+	}
+	
+	public static long pack(long limitWindowStart, int numberOfRequestsMade) {
+		return (limitWindowStart << COUNT_BITS) | numberOfRequestsMade;
+	}
+	
+	public static long limitWindowStart(long state) {
+		return state >>> COUNT_BITS;
+	}
+	
+	public static int numberOfRequestsMade(long state) {
+		return (int) (state & MAX_COUNT);
+	}
+}
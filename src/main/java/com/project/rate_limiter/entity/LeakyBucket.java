@@ -0,0 +1,38 @@
+package com.project.rate_limiter.entity;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Leaky bucket state in a single long: the time, in epoch microseconds, at which everything
+ * queued in the bucket has leaked out. A drain time in the past is an empty bucket, so the
+ * state needs no separate level and no refill clock.
+ */
+public class LeakyBucket implements PackedState {
+	
+	private static final VarHandle STATE;
+	
+	static {
+		try {
+			STATE = MethodHandles.lookup().findVarHandle(LeakyBucket.class, "state", long.class);
+		} catch (ReflectiveOperationException ex) {
+			throw new ExceptionInInitializerError(ex);
+		}
+	}
+	
+	private volatile long state;
+	
+	public LeakyBucket(long drainMicros) {
+		this.state = drainMicros;
+	}
+	
+	@Override
+	public long get() {
+		return state;
+	}
+	
+	@Override
+	public boolean compareAndSet(long expected, long updated) {
+		return STATE.compareAndSet(this, expected, updated);
+	}
+}
@@ -0,0 +1,118 @@
+package com.project.rate_limiter.entity;
+
+/**
+ * Reusable counterpart of {@link RateLimiterDecision} for the request hot path: the filter keeps one
+ * per thread and the limiters write into it, so deciding a request allocates nothing.
+ */
+public final class MutableDecision implements Admission {
+	
+	private boolean allowed;
+	private int remaining;
+	private long retryAfterMs;
+	private long timeToFullMs;
+	private long delayMs;
+	private int permits = 1;
+	
+	/**
+	 * Sets the permits the next decision is for. The limiters set this before deciding, so that
+	 * their per-key update can read it from here instead of capturing it.
+	 */
+	public MutableDecision forPermits(int permits) {
+		if(permits < 1) {
+			throw new IllegalArgumentException("A request takes at least one permit, not " + permits);
+		}
+		this.permits = permits;
+		return this;
+	}
+	
+	public int permits() {
+		return permits;
+	}
+	
+	public MutableDecision allow(int remaining, long timeToFullMs) {
+		this.allowed = true;
+		this.remaining = remaining;
+		this.retryAfterMs = 0;
+		this.timeToFullMs = timeToFullMs;
+		this.delayMs = 0;
+		return this;
+	}
+	
+	/** Admits the request to go on once {@code delayMs} has passed. */
+	public MutableDecision allowAfter(long delayMs, int remaining, long timeToFullMs) {
+		allow(remaining, timeToFullMs);
+		this.delayMs = delayMs;
+		return this;
+	}
+	
+	/** Holds an admitted request for at least {@code delayMs}; a shorter delay is left as it is. */
+	public MutableDecision delayAtLeast(long delayMs) {
+		if(allowed && delayMs > this.delayMs) {
+			this.delayMs = delayMs;
+		}
+		return this;
+	}
+	
+	public MutableDecision block(long retryAfterMs) {
+		this.allowed = false;
+		this.remaining = 0;
+		this.retryAfterMs = retryAfterMs;
+		this.timeToFullMs = retryAfterMs;
+		this.delayMs = 0;
+		return this;
+	}
+	
+	public MutableDecision set(RateLimiterDecision decision) {
+		this.allowed = decision.isAllowed();
+		this.remaining = decision.remaining();
+		this.retryAfterMs = decision.retryAfterMs();
+		this.timeToFullMs = decision.timeToFullMs();
+		this.delayMs = decision.delayMs();
+		return this;
+	}
+	
+	public MutableDecision set(MutableDecision decision) {
+		this.allowed = decision.allowed;
+		this.remaining = decision.remaining;
+		this.retryAfterMs = decision.retryAfterMs;
+		this.timeToFullMs = decision.timeToFullMs;
+		this.delayMs = decision.delayMs;
+		return this;
+	}
+	
+	/** Blocked beats allowed, then the longer wait, then the fewer remaining requests. */
+	public boolean isMoreRestrictiveThan(MutableDecision other) {
+		if(allowed != other.allowed) { return !allowed; }
+		if(!allowed) { return retryAfterMs > other.retryAfterMs; }
+		return remaining < other.remaining;
+	}
+	
+	@Override
+	public boolean isAllowed() {
+		return allowed;
+	}
+	
+	@Override
+	public int remaining() {
+		return remaining;
+	}
+	
+	@Override
+	public long retryAfterMs() {
+		return retryAfterMs;
+	}
+	
+	@Override
+	public long timeToFullMs() {
+		return timeToFullMs;
+	}
+	
+	@Override
+	public long delayMs() {
+		return delayMs;
+	}
+	
+	public RateLimiterDecision toDecision() {
+		return new RateLimiterDecision(allowed, remaining, retryAfterMs, timeToFullMs, delayMs);
+	}
+}
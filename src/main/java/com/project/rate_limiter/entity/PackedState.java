@@ -0,0 +1,12 @@
+package com.project.rate_limiter.entity;
+
+/**
+ * Per-key limiter state that fits in one long and is updated with a CAS, whether it lives in an
+ * object on the heap or in a slot of an off-heap table.
+ */
+public interface PackedState {
+	
+	long get();
+	
+	boolean compareAndSet(long expected, long updated);
+}
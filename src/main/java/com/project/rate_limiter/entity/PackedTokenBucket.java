@@ -0,0 +1,58 @@
+package com.project.rate_limiter.entity;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Token bucket state packed into a single long and updated with one CAS.
+ * <p>
+ * The upper 24 bits hold the tokens as an unsigned 16.8 fixed-point number, the lower 40 bits
+ * the last refill time in microseconds (wrapping every ~12.7 days). The refill arithmetic lives
+ * in {@link TokenBucketSpec} so a bucket carries no per-key configuration.
+ */
+public class PackedTokenBucket implements PackedState {
+	
+	public static final int FRACTION_BITS = 8;
+	public static final int TIME_BITS = 40;
+	public static final long ONE_TOKEN = 1L << FRACTION_BITS;
+	public static final int MAX_CAPACITY = (1 << (Long.SIZE - TIME_BITS - FRACTION_BITS)) - 1;
+	public static final long TIME_MASK = (1L << TIME_BITS) - 1;
+	
+	private static final VarHandle STATE;
+	
+	static {
+		try {
+			STATE = MethodHandles.lookup().findVarHandle(PackedTokenBucket.class, "state", long.class);
+		} catch (ReflectiveOperationException ex) {
+			throw new ExceptionInInitializerError(ex);
+		}
+	}
+	
+	private volatile long state;
+	
+	public PackedTokenBucket(long state) {
+		this.state = state;
+	}
+	
+	@Override
+	public long get() {
+		return state;
+	}
+	
+	@Override
+	public boolean compareAndSet(long expected, long updated) {
+		return STATE.compareAndSet(this, expected, updated);
+	}
+	
+	public static long pack(long tokenUnits, long timeMicros) {
+		return (tokenUnits << TIME_BITS) | (timeMicros & TIME_MASK);
+	}
+	
+	public static long tokenUnits(long state) {
+		return state >>> TIME_BITS;
+	}
+	
+	public static long timeMicros(long state) {
+		return state & TIME_MASK;
+	}
+}
@@ -1,8 +1,18 @@
 package com.project.rate_limiter.entity;
 
+/**
+ * @param delayMs how long an admitted request should be held before it goes on; only a shaping
+ *                limiter such as the leaky bucket sets it
+ */
 public record RateLimiterDecision(
 		boolean isAllowed,
 		int remaining,
 		long retryAfterMs,
-		long timeToFullMs
-) {}
\ No newline at end of file
+		long timeToFullMs,
+		long delayMs
+) implements Admission {
+	
+	public RateLimiterDecision(boolean isAllowed, int remaining, long retryAfterMs, long timeToFullMs) {
+		this(isAllowed, remaining, retryAfterMs, timeToFullMs, 0);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,154 @@
+package com.project.rate_limiter.entity;
+
+import java.util.Arrays;
+
+/**
+ * Timestamps of the requests admitted in the current sliding window, oldest first, in a primitive
+ * ring that grows on demand up to the request limit. An entry can stand for several permits, for
+ * a request that took many or for requests admitted in the same millisecond; the weights live in
+ * a parallel array that is only allocated once some entry weighs more than one. Not thread-safe;
+ * callers lock the instance.
+ */
+public class RequestLog {
+	
+	private static final int INITIAL_CAPACITY = 8;
+	
+	private final int maxSize;
+	private long[] timestamps;
+	private int[] weights;
+	private int head;
+	private int size;
+	private int total;
+	
+	public RequestLog(int maxSize) {
+		this.maxSize = Math.max(1, maxSize);
+		this.timestamps = new long[Math.min(this.maxSize, INITIAL_CAPACITY)];
+	}
+	
+	/** Drops every entry older than {@code cutoff}; returns how many permits were dropped. */
+	public int purgeOlderThan(long cutoff) {
+		int purged = 0;
+		while(size > 0 && timestamps[head] < cutoff) {
+			purged += weightAt(head);
+			head = (head + 1) % timestamps.length;
+			size--;
+		}
+		total -= purged;
+		return purged;
+	}
+	
+	public void add(long timestamp) {
+		add(timestamp, 1);
+	}
+	
+	/** Records {@code permits} at {@code timestamp}, in the newest entry if it has the same timestamp. */
+	public void add(long timestamp, int permits) {
+		if(size > 0 && newest() == timestamp) {
+			int last = slot(size - 1);
+			setWeight(last, weightAt(last) + permits);
+		} else {
+			if(size == timestamps.length) {
+				grow();
+			}
+			int slot = slot(size);
+			timestamps[slot] = timestamp;
+			if(weights != null || permits != 1) {
+				setWeight(slot, permits);
+			}
+			size++;
+		}
+		total += permits;
+	}
+	
+	/** Takes up to {@code permits} back off the newest entry, if it was recorded at {@code timestamp}. */
+	public void refund(long timestamp, int permits) {
+		if(size == 0 || newest() != timestamp) { return; }
+		int last = slot(size - 1);
+		int weight = weightAt(last);
+		int refunded = Math.min(weight, permits);
+		if(refunded == weight) {
+			size--;
+		} else {
+			weights[last] = weight - refunded;
+		}
+		total -= refunded;
+	}
+	
+	/** Number of entries; see {@link #total()} for the permits they hold. */
+	public int size() {
+		return size;
+	}
+	
+	public int total() {
+		return total;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	public long oldest() {
+		return timestamps[head];
+	}
+	
+	/** The {@code i}-th timestamp, oldest first. */
+	public long get(int i) {
+		return timestamps[slot(i)];
+	}
+	
+	/** Permits held by the {@code i}-th entry. */
+	public int weight(int i) {
+		return weightAt(slot(i));
+	}
+	
+	public long newest() {
+		return timestamps[slot(size - 1)];
+	}
+	
+	/**
+	 * Timestamp of the entry whose expiry, together with the older ones', frees at least
+	 * {@code permits}; the newest if only the whole log does.
+	 */
+	public long expiring(int permits) {
+		int freed = 0;
+		for(int i=0; i<size; i++) {
+			freed += weight(i);
+			if(freed >= permits) { return get(i); }
+		}
+		return newest();
+	}
+	
+	private int slot(int i) {
+		return (head + i) % timestamps.length;
+	}
+	
+	private int weightAt(int slot) {
+		return weights == null ? 1 : weights[slot];
+	}
+	
+	private void setWeight(int slot, int weight) {
+		if(weights == null) {
+			weights = new int[timestamps.length];
+			Arrays.fill(weights, 1);
+		}
+		weights[slot] = weight;
+	}
+	
+	private void grow() {
+		if(size >= maxSize) {
+			throw new IllegalStateException("Request log is full");
+		}
+		int capacity = Math.min(maxSize, timestamps.length * 2);
+		long[] grown = new long[capacity];
+		int[] grownWeights = weights == null ? null : new int[capacity];
+		for(int i=0; i<size; i++) {
+			grown[i] = timestamps[slot(i)];
+			if(grownWeights != null) {
+				grownWeights[i] = weights[slot(i)];
+			}
+		}
+		timestamps = grown;
+		weights = grownWeights;
+		head = 0;
+	}
+}
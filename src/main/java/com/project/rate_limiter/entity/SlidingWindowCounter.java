@@ -0,0 +1,72 @@
+package com.project.rate_limiter.entity;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Sliding window counter state packed into a single long: the low 24 bits of the current
+ * window index, the previous window's count (20 bits) and the current window's count (20 bits).
+ */
+public class SlidingWindowCounter implements PackedState {
+	
+	public static final int COUNT_BITS = 20;
+	public static final int MAX_COUNT = (1 << COUNT_BITS) - 1;
+	public static final int WINDOW_BITS = Long.SIZE - 2 * COUNT_BITS;
+	public static final long WINDOW_MASK = (1L << WINDOW_BITS) - 1;
+	
+	private static final VarHandle STATE;
+	
+	static {
+		try {
+			STATE = MethodHandles.lookup().findVarHandle(SlidingWindowCounter.class, "state", long.class);
+		} catch (ReflectiveOperationException ex) {
+			throw new ExceptionInInitializerError(ex);
+		}
+	}
+	
+	private volatile long state;
+	
+	public SlidingWindowCounter(long windowIndex) {
+		this.state = pack(windowIndex, 0, 0);
+	}
+	
+	/** A counter starting from an already packed {@code state}. */
+	public static SlidingWindowCounter of(long state) {
+		SlidingWindowCounter counter = new SlidingWindowCounter(0);
+		counter.state = state;
+		return counter;
+	}
+	
+	@Override
+	public long get() {
+		return state;
+	}
+	
+	@Override
+	public boolean compareAndSet(long expected, long updated) {
+		return STATE.compareAndSet(this, expected, updated);
+	}
+	
+	public static long pack(long windowIndex, int previousCount, int currentCount) {
+		return ((windowIndex & WINDOW_MASK) << (2 * COUNT_BITS))
+				| ((long) previousCount << COUNT_BITS)
+				| currentCount;
+	}
+	
+	public static long windowIndex(long state) {
+		return state >>> (2 * COUNT_BITS);
+	}
+	
+	public static int previousCount(long state) {
+		return (int) ((state >>> COUNT_BITS) & MAX_COUNT);
+	}
+	
+	public static int currentCount(long state) {
+		return (int) (state & MAX_COUNT);
+	}
+	
+	/** Number of whole windows between the stored index and {@code windowIndex}, modulo the index width. */
+	public static long windowsElapsed(long state, long windowIndex) {
+		return ((windowIndex & WINDOW_MASK) - windowIndex(state)) & WINDOW_MASK;
+	}
+}
@@ -0,0 +1,81 @@
+package com.project.rate_limiter.entity;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size ring of sub-window counters. It costs one int per slot regardless of the request
+ * limit, and advancing it clears at most every slot once.
+ */
+public class SlidingWindowRing {
+	
+	private final int[] counts;
+	private long headIndex;
+	private int total;
+	
+	public SlidingWindowRing(int subWindows, long subWindowIndex) {
+		this.counts = new int[subWindows];
+		this.headIndex = subWindowIndex;
+	}
+	
+	/** Drops sub-windows that fell out of the window ending at {@code subWindowIndex}. */
+	public void advance(long subWindowIndex) {
+		long steps = subWindowIndex - headIndex;
+		if(steps <= 0) { return; }
+		
+		if(steps >= counts.length) {
+			Arrays.fill(counts, 0);
+			total = 0;
+		} else {
+			for(long i=headIndex+1; i<=subWindowIndex; i++) {
+				int slot = slot(i);
+				total -= counts[slot];
+				counts[slot] = 0;
+			}
+		}
+		headIndex = subWindowIndex;
+	}
+	
+	public void increment() {
+		add(1);
+	}
+	
+	public void add(int requests) {
+		counts[slot(headIndex)] += requests;
+		total += requests;
+	}
+	
+	public int subWindows() {
+		return counts.length;
+	}
+	
+	/** Requests counted in {@code subWindowIndex}, 0 once it has left the ring. */
+	public int count(long subWindowIndex) {
+		if(subWindowIndex > headIndex || headIndex - subWindowIndex >= counts.length) { return 0; }
+		return counts[slot(subWindowIndex)];
+	}
+	
+	public int total() {
+		return total;
+	}
+	
+	public long headIndex() {
+		return headIndex;
+	}
+	
+	/**
+	 * Index of the sub-window whose expiry, together with the older ones', frees at least
+	 * {@code requests}; the head if only the whole ring does.
+	 */
+	public long expiringIndex(int requests) {
+		int freed = 0;
+		for(long i=headIndex-counts.length+1; i<headIndex; i++) {
+			freed += counts[slot(i)];
+			if(freed >= requests) { return i; }
+		}
+		return headIndex;
+	}
+	
+	private int slot(long subWindowIndex) {
+		return (int) Math.floorMod(subWindowIndex, (long) counts.length);
+	}
+}
@@ -0,0 +1,110 @@
+package com.project.rate_limiter.entity;
+
+import static com.project.rate_limiter.entity.PackedTokenBucket.FRACTION_BITS;
+import static com.project.rate_limiter.entity.PackedTokenBucket.ONE_TOKEN;
+import static com.project.rate_limiter.entity.PackedTokenBucket.TIME_BITS;
+import static com.project.rate_limiter.entity.PackedTokenBucket.TIME_MASK;
+
+/**
+ * Capacity and refill rate of a {@link PackedTokenBucket}, plus the pure functions that
+ * refill a packed state.
+ * <p>
+ * The refill rate is kept in token units (1/256 token) per second, so rates such as 0.5/s or
+ * 2000/s are exact. Refill only moves the bucket clock forward by the time that was actually
+ * converted into whole units; the sub-unit remainder stays in the clock, so repeated refills
+ * never drift above the configured rate.
+ */
+public final class TokenBucketSpec {
+	
+	private static final long MICROS_PER_SECOND = 1_000_000L;
+	private static final long MICROS_PER_MS = 1_000L;
+	
+	/** Backwards time steps smaller than this are clock skew between threads, not a wrapped clock. */
+	private static final long MAX_CLOCK_SKEW_MICROS = 60 * MICROS_PER_SECOND;
+	
+	private final int capacity;
+	private final long capacityUnits;
+	private final long unitsPerSecond;
+	private final long fullRefillMicros;
+	
+	public TokenBucketSpec(int capacity, double refillRatePerSecond) {
+		if(capacity < 1 || capacity > PackedTokenBucket.MAX_CAPACITY) {
+			throw new IllegalArgumentException("Token bucket capacity must be between 1 and " + PackedTokenBucket.MAX_CAPACITY);
+		}
+		long unitsPerSecond = Math.round(refillRatePerSecond * ONE_TOKEN);
+		if(unitsPerSecond < 1) {
+			throw new IllegalArgumentException("Token bucket refill rate must be at least 1/" + ONE_TOKEN + " tokens per second");
+		}
+		this.capacity = capacity;
+		this.capacityUnits = (long) capacity << FRACTION_BITS;
+		this.unitsPerSecond = unitsPerSecond;
+		this.fullRefillMicros = ceilDiv(capacityUnits * MICROS_PER_SECOND, unitsPerSecond);
+	}
+	
+	public int capacity() {
+		return capacity;
+	}
+	
+	public double refillRatePerSecond() {
+		return (double) unitsPerSecond / ONE_TOKEN;
+	}
+	
+	public long capacityUnits() {
+		return capacityUnits;
+	}
+	
+	public long full(long nowMicros) {
+		return PackedTokenBucket.pack(capacityUnits, nowMicros);
+	}
+	
+	/**
+	 * Returns {@code state} with the tokens earned since its last refill added.
+	 */
+	public long refill(long state, long nowMicros) {
+		long tokenUnits = PackedTokenBucket.tokenUnits(state);
+		if(tokenUnits >= capacityUnits) {
+			return PackedTokenBucket.pack(capacityUnits, nowMicros);
+		}
+		
+		long last = PackedTokenBucket.timeMicros(state);
+		long elapsed = signedElapsed(last, nowMicros);
+		if(elapsed < 0 && elapsed > -MAX_CLOCK_SKEW_MICROS) {
+			return state;
+		}
+		if(elapsed < 0 || elapsed >= fullRefillMicros) {
+			return PackedTokenBucket.pack(capacityUnits, nowMicros);
+		}
+		
+		long added = elapsed * unitsPerSecond / MICROS_PER_SECOND;
+		if(tokenUnits + added >= capacityUnits) {
+			return PackedTokenBucket.pack(capacityUnits, nowMicros);
+		}
+		long consumedMicros = ceilDiv(added * MICROS_PER_SECOND, unitsPerSecond);
+		return PackedTokenBucket.pack(tokenUnits + added, (last + consumedMicros) & TIME_MASK);
+	}
+	
+	/**
+	 * Milliseconds until a refilled {@code state} holds {@code targetUnits}, counting the
+	 * not-yet-converted time already carried in its clock.
+	 */
+	public long millisUntil(long state, long nowMicros, long targetUnits) {
+		long missing = targetUnits - PackedTokenBucket.tokenUnits(state);
+		if(missing <= 0) { return 0L; }
+		long carried = Math.max(0, signedElapsed(PackedTokenBucket.timeMicros(state), nowMicros));
+		long waitMicros = Math.max(0, ceilDiv(missing * MICROS_PER_SECOND, unitsPerSecond) - carried);
+		return ceilDiv(waitMicros, MICROS_PER_MS);
+	}
+	
+	/** Sign-extends the wrapped 40-bit clock difference. */
+	private static long signedElapsed(long lastMicros, long nowMicros) {
+		return ((nowMicros - lastMicros) << (Long.SIZE - TIME_BITS)) >> (Long.SIZE - TIME_BITS);
+	}
+	
+	public static long toMicros(long epochMillis) {
+		return epochMillis * MICROS_PER_MS;
+	}
+	
+	private static long ceilDiv(long x, long y) {
+		return -Math.floorDiv(-x, y);
+	}
+}
@@ -0,0 +1,83 @@
+package com.project.rate_limiter.entity;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Batch of tokens a node has leased from the shared bucket for one key.
+ * <p>
+ * {@link #tryTake} is the lock-free fast path. Everything else is only called while holding the
+ * lease's monitor, by the one thread refreshing it from the shared store.
+ */
+public class TokenLease {
+	
+	private static final VarHandle PERMITS;
+	
+	static {
+		try {
+			PERMITS = MethodHandles.lookup().findVarHandle(TokenLease.class, "permits", long.class);
+		} catch (ReflectiveOperationException ex) {
+			throw new ExceptionInInitializerError(ex);
+		}
+	}
+	
+	private volatile long permits;
+	private volatile long expiresAt;
+	private volatile long blockedUntil;
+	
+	private long leaseStart;
+	private long leaseGranted;
+	private double ratePerSecond;
+	
+	/**
+	 * Takes one leased permit and returns how many are left, or -1 if the lease is used up or expired.
+	 */
+	public long tryTake(long currentTime) {
+		while(true) {
+			long current = permits;
+			if(current <= 0 || currentTime >= expiresAt) { return -1; }
+			if(PERMITS.compareAndSet(this, current, current - 1)) { return current - 1; }
+		}
+	}
+	
+	public long blockedUntil() {
+		return blockedUntil;
+	}
+	
+	public long expiresAt() {
+		return expiresAt;
+	}
+	
+	/** Removes and returns the permits left over from the previous lease. */
+	public long drain() {
+		return Math.max(0, (long) PERMITS.getAndSet(this, 0L));
+	}
+	
+	/**
+	 * Size of the next lease: the tokens this key consumed per lease period recently, so a hot key
+	 * makes one remote call per period while a cold key leases a single token at a time.
+	 */
+	public int nextLeaseSize(long currentTime, long leaseTtlMs, int maxLease, long leftover) {
+		if(leaseGranted > 0) {
+			long elapsed = Math.max(1, currentTime - leaseStart);
+			double observed = (leaseGranted - leftover) * 1000.0 / elapsed;
+			ratePerSecond = ratePerSecond == 0 ? observed : 0.5 * ratePerSecond + 0.5 * observed;
+		}
+		long size = (long) Math.ceil(ratePerSecond * leaseTtlMs / 1000.0);
+		return (int) Math.max(1, Math.min(maxLease, size));
+	}
+	
+	/** Installs a fresh lease of {@code granted} tokens, keeping one for the calling request. */
+	public long grant(long granted, long currentTime, long leaseTtlMs) {
+		leaseStart = currentTime;
+		leaseGranted = granted;
+		expiresAt = currentTime + leaseTtlMs;
+		permits = granted - 1;
+		return granted - 1;
+	}
+	
+	public void block(long until) {
+		leaseGranted = 0;
+		blockedUntil = until;
+	}
+}
@@ -0,0 +1,25 @@
+package com.project.rate_limiter.filter;
+
+/**
+ * Pre-rendered decimal strings for the small numbers that make up almost every rate limit header
+ * (remaining counts, millisecond delays within a typical window), so writing them allocates nothing.
+ */
+final class HeaderValues {
+	
+	private static final int CACHED = 8192;
+	
+	private static final String[] VALUES = new String[CACHED];
+	
+	static {
+		for(int i=0; i<CACHED; i++) {
+			VALUES[i] = Integer.toString(i);
+		}
+	}
+	
+	private HeaderValues() {
+	}
+	
+	static String of(long value) {
+		return value >= 0 && value < CACHED ? VALUES[(int) value] : Long.toString(value);
+	}
+}
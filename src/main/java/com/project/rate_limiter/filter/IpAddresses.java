@@ -0,0 +1,171 @@
+package com.project.rate_limiter.filter;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * IP literals as raw bytes: parsing without any DNS lookup, masking to a prefix and formatting
+ * in one canonical text form, so that every spelling of an address or prefix gives the same key.
+ */
+final class IpAddresses {
+	
+	private IpAddresses() {
+	}
+	
+	/**
+	 * The 4 or 16 bytes of an IP literal, or null when {@code text} is not one. Accepts the
+	 * forms proxies write into {@code X-Forwarded-For}: {@code 203.0.113.7:4711} and
+	 * {@code [2001:db8::1]:443} as well as bare addresses. IPv4-mapped IPv6 addresses come
+	 * back as IPv4.
+	 */
+	static byte[] parse(String text) {
+		if(text == null) { return null; }
+		String literal = text.strip();
+		if(literal.isEmpty()) { return null; }
+		
+		if(literal.charAt(0) == '[') {
+			int close = literal.indexOf(']');
+			if(close < 0) { return null; }
+			literal = literal.substring(1, close);
+		} else {
+			int colon = literal.indexOf(':');
+			if(colon >= 0 && colon == literal.lastIndexOf(':')) {
+				// a single colon is an IPv4 address with a port
+				literal = literal.substring(0, colon);
+			}
+		}
+		
+		if(literal.indexOf(':') < 0) {
+			return parseIpv4(literal);
+		}
+		int zone = literal.indexOf('%');
+		if(zone >= 0) {
+			// a link-local scope such as %eth0 is not part of the client's identity
+			literal = literal.substring(0, zone);
+		}
+		for(int i=0; i<literal.length(); i++) {
+			char c = literal.charAt(i);
+			if(Character.digit(c, 16) < 0 && c != ':' && c != '.') { return null; }
+		}
+		try {
+			// bracketed, the text is only ever read as an IPv6 literal and never looked up
+			return InetAddress.getByName("[" + literal + "]").getAddress();
+		} catch (UnknownHostException | SecurityException ex) {
+			return null;
+		}
+	}
+	
+	/** The address with all but the first {@code bits} bits cleared, as text with the prefix length. */
+	static String format(byte[] address, int bits) {
+		byte[] masked = mask(address, bits);
+		String text = masked.length == 4 ? formatIpv4(masked) : formatIpv6(masked);
+		return bits >= masked.length * 8 ? text : text + "/" + bits;
+	}
+	
+	static byte[] mask(byte[] address, int bits) {
+		byte[] masked = address.clone();
+		for(int i=0; i<masked.length; i++) {
+			int keep = bits - i * 8;
+			if(keep <= 0) {
+				masked[i] = 0;
+			} else if(keep < 8) {
+				masked[i] &= (byte) (0xff << (8 - keep));
+			}
+		}
+		return masked;
+	}
+	
+	/** A CIDR block such as {@code 10.0.0.0/8}; a bare address is a block of one. */
+	record Cidr(byte[] network, int bits) {
+		
+		static Cidr parse(String text) {
+			String block = text.strip();
+			int slash = block.indexOf('/');
+			byte[] address = IpAddresses.parse(slash < 0 ? block : block.substring(0, slash));
+			if(address == null) {
+				throw new IllegalArgumentException("Not an IP address or CIDR block: " + text);
+			}
+			int bits = address.length * 8;
+			if(slash >= 0) {
+				try {
+					bits = Integer.parseInt(block.substring(slash + 1));
+				} catch (NumberFormatException ex) {
+					bits = -1;
+				}
+				if(bits < 0 || bits > address.length * 8) {
+					throw new IllegalArgumentException("Invalid prefix length in " + text);
+				}
+			}
+			return new Cidr(mask(address, bits), bits);
+		}
+		
+		boolean contains(byte[] address) {
+			if(address.length != network.length) { return false; }
+			byte[] masked = mask(address, bits);
+			for(int i=0; i<masked.length; i++) {
+				if(masked[i] != network[i]) { return false; }
+			}
+			return true;
+		}
+	}
+	
+	private static byte[] parseIpv4(String literal) {
+		byte[] address = new byte[4];
+		int octet = 0;
+		int value = -1;
+		for(int i=0; i<literal.length(); i++) {
+			char c = literal.charAt(i);
+			if(c == '.') {
+				if(value < 0 || octet == 3) { return null; }
+				address[octet++] = (byte) value;
+				value = -1;
+			} else if(c >= '0' && c <= '9') {
+				value = (value < 0 ? 0 : value * 10) + (c - '0');
+				if(value > 255) { return null; }
+			} else {
+				return null;
+			}
+		}
+		if(value < 0 || octet != 3) { return null; }
+		address[3] = (byte) value;
+		return address;
+	}
+	
+	private static String formatIpv4(byte[] address) {
+		return (address[0] & 0xff) + "." + (address[1] & 0xff) + "." + (address[2] & 0xff) + "." + (address[3] & 0xff);
+	}
+	
+	/** RFC 5952 text: lower-case hex, no leading zeros, the longest run of zero groups as {@code ::}. */
+	private static String formatIpv6(byte[] address) {
+		int[] groups = new int[8];
+		for(int i=0; i<8; i++) {
+			groups[i] = ((address[2 * i] & 0xff) << 8) | (address[2 * i + 1] & 0xff);
+		}
+		int runStart = -1;
+		int runLength = 0;
+		for(int i=0; i<8; ) {
+			if(groups[i] != 0) { i++; continue; }
+			int j = i;
+			while(j < 8 && groups[j] == 0) { j++; }
+			if(j - i > runLength && j - i > 1) {
+				runStart = i;
+				runLength = j - i;
+			}
+			i = j;
+		}
+		
+		StringBuilder text = new StringBuilder(39);
+		for(int i=0; i<8; i++) {
+			if(i == runStart) {
+				text.append("::");
+				i += runLength - 1;
+				continue;
+			}
+			if(text.length() > 0 && text.charAt(text.length() - 1) != ':') {
+				text.append(':');
+			}
+			text.append(Integer.toHexString(groups[i]));
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,132 @@
+package com.project.rate_limiter.filter;
+
+import java.util.Arrays;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.project.rate_limiter.filter.IpAddresses.Cidr;
+import com.project.rate_limiter.store.OffHeapStateTable;
+
+/**
+ * Turns the identities of a request into limiter keys.
+ * <p>
+ * Client addresses are taken from behind {@code rate.key.trusted-proxies} when the connection
+ * comes from one of them, by walking {@code X-Forwarded-For} from the right past every trusted
+ * hop; from anyone else the header is ignored, since clients can write anything into it. The
+ * address is then cut to {@code rate.key.ipv4-prefix} or {@code rate.key.ipv6-prefix} bits, so
+ * that a client cannot get a fresh quota by rotating through the addresses of its own network:
+ * a single IPv6 subscriber usually holds a whole /64 or /56.
+ * <p>
+ * With {@code rate.key.hash} every key is replaced by its 64-bit hash in hex, so a state entry
+ * never keeps a long header value alive and every key is short. Two identities with the same
+ * hash share a quota; {@code rate.key.hash-verify} appends a second, independent hash so that
+ * this cannot happen in practice, at 16 more characters per key.
+ */
+@Component
+public class KeyResolver {
+	
+	/** The property defaults: no trusted proxies, whole IPv4 addresses and IPv6 /64s, no hashing. */
+	public static final KeyResolver DEFAULTS = new KeyResolver("", 32, 64, false, false);
+	
+	static final String HASH_PREFIX = "#";
+	
+	private static final long VERIFY_SEED = 0x9e3779b97f4a7c15L;
+	
+	private final Cidr[] trusted;
+	
+	private final int IPV4_PREFIX;
+	
+	private final int IPV6_PREFIX;
+	
+	private final boolean HASH;
+	
+	private final boolean VERIFY;
+	
+	/**
+	 * @param trustedProxies comma-separated addresses or CIDR blocks of the proxies in front of
+	 *                       this service; empty to ignore {@code X-Forwarded-For}
+	 */
+	public KeyResolver(@Value("${rate.key.trusted-proxies:}") String trustedProxies,
+			@Value("${rate.key.ipv4-prefix:32}") int ipv4Prefix,
+			@Value("${rate.key.ipv6-prefix:64}") int ipv6Prefix,
+			@Value("${rate.key.hash:false}") boolean hash,
+			@Value("${rate.key.hash-verify:false}") boolean verify) {
+		if(ipv4Prefix < 0 || ipv4Prefix > 32 || ipv6Prefix < 0 || ipv6Prefix > 128) {
+			throw new IllegalArgumentException("Key prefixes must be 0-32 bits for IPv4 and 0-128 for IPv6");
+		}
+		this.trusted = Arrays.stream(trustedProxies.split(","))
+				.filter(block -> !block.isBlank())
+				.map(Cidr::parse)
+				.toArray(Cidr[]::new);
+		this.IPV4_PREFIX = ipv4Prefix;
+		this.IPV6_PREFIX = ipv6Prefix;
+		this.HASH = hash;
+		this.VERIFY = verify;
+	}
+	
+	/** Whether {@link #clientKey} reads {@code X-Forwarded-For}; callers skip collecting it otherwise. */
+	public boolean trustsForwardedFor() {
+		return trusted.length > 0;
+	}
+	
+	/**
+	 * The key of the client behind the connection from {@code remoteAddr}: its address, or the
+	 * prefix it belongs to.
+	 *
+	 * @param forwardedFor every {@code X-Forwarded-For} value of the request, comma-separated in
+	 *                     order; may be null
+	 */
+	public String clientKey(String remoteAddr, String forwardedFor) {
+		if(remoteAddr == null) {
+			return identityKey("unknown");
+		}
+		if(!HASH && trusted.length == 0 && IPV4_PREFIX == 32 && remoteAddr.indexOf(':') < 0) {
+			// the container's IPv4 text is already canonical
+			return remoteAddr;
+		}
+		byte[] address = IpAddresses.parse(remoteAddr);
+		if(address == null) {
+			return identityKey(remoteAddr);
+		}
+		if(trusted.length > 0 && forwardedFor != null) {
+			address = behindProxies(address, forwardedFor);
+		}
+		return identityKey(IpAddresses.format(address, address.length == 4 ? IPV4_PREFIX : IPV6_PREFIX));
+	}
+	
+	/** The key of an identity given by the client, such as a user or tenant id. */
+	public String identityKey(String identity) {
+		if(!HASH) {
+			return identity;
+		}
+		String hashed = HASH_PREFIX + Long.toHexString(OffHeapStateTable.hash(identity));
+		return VERIFY ? hashed + Long.toHexString(OffHeapStateTable.hash(identity, VERIFY_SEED)) : hashed;
+	}
+	
+	/**
+	 * The first hop from the right that is not a trusted proxy. A hop that does not parse ends the
+	 * walk at the proxy that reported it, as everything left of it may have been forged.
+	 */
+	private byte[] behindProxies(byte[] remote, String forwardedFor) {
+		byte[] hop = remote;
+		int end = forwardedFor.length();
+		while(isTrusted(hop) && end >= 0) {
+			int comma = forwardedFor.lastIndexOf(',', end - 1);
+			byte[] previous = IpAddresses.parse(forwardedFor.substring(comma + 1, end));
+			if(previous == null) {
+				return hop;
+			}
+			hop = previous;
+			end = comma;
+		}
+		return hop;
+	}
+	
+	private boolean isTrusted(byte[] address) {
+		for(Cidr block : trusted) {
+			if(block.contains(address)) { return true; }
+		}
+		return false;
+	}
+}
@@ -1,90 +1,427 @@
 package com.project.rate_limiter.filter;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import com.project.rate_limiter.constants.RateLimiterAlgorithm;
-import com.project.rate_limiter.entity.RateLimiterDecision;
-import com.project.rate_limiter.service.FixedSizeRateLimiterService;
-import com.project.rate_limiter.service.SlidingWindowRateLimiterService;
-import com.project.rate_limiter.service.TokenBucketRateLimiterService;
+import com.project.rate_limiter.entity.Admission;
+import com.project.rate_limiter.entity.MutableDecision;
+import com.project.rate_limiter.metrics.LimiterMetrics;
+import com.project.rate_limiter.policy.CompiledPolicy;
+import com.project.rate_limiter.policy.PolicyEngine;
+import com.project.rate_limiter.policy.PolicyLimit;
+import com.project.rate_limiter.policy.PolicyProperties.KeySource;
+import com.project.rate_limiter.service.CompositeRateLimiter;
+import com.project.rate_limiter.service.HeavyHitterPrefilter;
+import com.project.rate_limiter.service.CompositeRateLimiter.LevelDecision;
+import com.project.rate_limiter.service.PermitWaiter;
+import com.project.rate_limiter.service.RateLimiter;
+import com.project.rate_limiter.service.ShapingQueue;
 
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 @Component
+@ConditionalOnWebApplication(type = Type.SERVLET)
 public class RateLimiterFilter extends OncePerRequestFilter{
 	
-	private FixedSizeRateLimiterService fixedSizeService;
-	private SlidingWindowRateLimiterService slidingWService;
-	private TokenBucketRateLimiterService tokenBService;
+	static final String INVALID_ALGORITHM_MESSAGE = "Invalid algorithm. Use " + 
+			String.join(", ", Arrays.stream(RateLimiterAlgorithm.values()).map(Enum::name).toList());
 	
-	public RateLimiterFilter(FixedSizeRateLimiterService fixedSizeService,
-				SlidingWindowRateLimiterService slidingWService,
-				TokenBucketRateLimiterService tokenBService) {
-		this.fixedSizeService = fixedSizeService;
-		this.slidingWService = slidingWService;
-		this.tokenBService = tokenBService;
+	/** For a known algorithm the backend does not offer, such as one that counts in one process only. */
+	static String unavailableAlgorithmMessage(Collection<RateLimiterAlgorithm> available) {
+		return "Algorithm not available with this backend. Use " + String.join(", ", available.stream().map(Enum::name).toList());
+	}
+	
+	private static final String ALREADY_FILTERED_ATTRIBUTE = RateLimiterFilter.class.getName() + ALREADY_FILTERED_SUFFIX;
+	
+	// the decision is consumed before doFilterInternal returns, so one holder per thread is enough
+	private static final ThreadLocal<MutableDecision> DECISIONS = ThreadLocal.withInitial(MutableDecision::new);
+	private static final ThreadLocal<MutableDecision> LIMIT_DECISIONS = ThreadLocal.withInitial(MutableDecision::new);
+	private static final ThreadLocal<String[]> LIMIT_KEYS = ThreadLocal.withInitial(() -> new String[4]);
+	
+	/** The one key every request shares for limits keyed {@code GLOBAL}. */
+	public static final String GLOBAL_KEY = "*";
+	
+	/** Slack on top of the longest wait before the container times a held request out. */
+	private static final long HOLD_TIMEOUT_MARGIN_MS = 10_000;
+	
+	private final Map<RateLimiterAlgorithm, RateLimiter> limiters = new EnumMap<>(RateLimiterAlgorithm.class);
+	
+	private final String unavailableAlgorithmMessage;
+	
+	private final LimiterMetrics metrics;
+	
+	private final PolicyEngine policies;
+	
+	private final PermitWaiter waiter;
+	
+	private final ShapingQueue shaping;
+	
+	private final KeyResolver keys;
+	
+	public RateLimiterFilter(List<RateLimiter> limiters, LimiterMetrics metrics, PolicyEngine policies, PermitWaiter waiter,
+			ShapingQueue shaping, KeyResolver keys, HeavyHitterPrefilter prefilter) {
+		for(RateLimiter limiter : limiters) {
+			this.limiters.put(limiter.algorithm(), prefilter.wrap(limiter));
+		}
+		this.unavailableAlgorithmMessage = unavailableAlgorithmMessage(this.limiters.keySet());
+		this.metrics = metrics;
+		this.policies = policies;
+		this.waiter = waiter;
+		this.shaping = shaping;
+		this.keys = keys;
+	}
+	
+	@Override
+	protected String getAlreadyFilteredAttributeName() {
+		// the inherited version concatenates the filter name on every request
+		return ALREADY_FILTERED_ATTRIBUTE;
 	}
 	
 	@Override
 	protected boolean shouldNotFilter(HttpServletRequest request) {
-		String path = request.getRequestURI();
-		
+		return isExempt(request.getRequestURI());
+	}
+	
+	/** Documentation, demo, admin and actuator endpoints are never limited. */
+	static boolean isExempt(String path) {
 		return path.startsWith("/swagger-ui") || 
 			   path.startsWith("/v3/api-docs") ||
-			   path.startsWith("/limiter/demo");
+			   path.startsWith("/limiter/demo") ||
+			   path.startsWith("/limiter/admin") ||
+			   path.startsWith("/actuator");
 	}
 	
 	@Override
 	protected void doFilterInternal(HttpServletRequest request, 
 			HttpServletResponse response, 
 			FilterChain filterChain) throws ServletException, IOException {
-		String algRaw = request.getHeader("X-RateLimit-Alg");
-		
-		if(algRaw == null || algRaw.isBlank()) {
-			algRaw = request.getParameter("alg");
+		CompiledPolicy policy = policies.match(request);
+		if(policy != null) {
+			applyPolicy(policy, request, response, filterChain);
+			return;
 		}
 		
 		RateLimiterAlgorithm alg;
-		try {
-			alg = RateLimiterAlgorithm.from(algRaw);
-		} catch(IllegalArgumentException ex) {
+		if(policies.clientAlgorithm()) {
+			String algRaw = request.getHeader("X-RateLimit-Alg");
+			
+			if(algRaw == null || algRaw.isBlank()) {
+				algRaw = request.getParameter("alg");
+			}
+			
+			try {
+				alg = RateLimiterAlgorithm.from(algRaw);
+			} catch(IllegalArgumentException ex) {
+				response.setStatus(HttpStatus.BAD_REQUEST.value());
+				response.getWriter().write(INVALID_ALGORITHM_MESSAGE);
+				return;
+			}
+		} else {
+			alg = policies.defaultAlgorithm();
+		}
+		
+		RateLimiter limiter = limiters.get(alg);
+		if(limiter == null) {
 			response.setStatus(HttpStatus.BAD_REQUEST.value());
-			response.getWriter().write("Invalid algorithm. Use TOKEN_BUCKET, FIXED_WINDOW, SLIDING_WINDOW");
+			response.getWriter().write(unavailableAlgorithmMessage);
+			return;
+		}
+		
+		String key = userKey(request);
+		long now = System.currentTimeMillis();
+		MutableDecision decision;
+		if(metrics.sampleLatency()) {
+			long started = System.nanoTime();
+			decision = limiter.decision(key, now, DECISIONS.get());
+			metrics.recordLatency(alg, System.nanoTime() - started);
+		} else {
+			decision = limiter.decision(key, now, DECISIONS.get());
+		}
+		
+		if(!limiter.holdsPermits() && waiter.shouldWait(decision) && request.isAsyncSupported()) {
+			RateLimiterAlgorithm held = alg;
+			hold(request, response, waiter.await(decision.toDecision(), now, time -> limiter.decisionAsync(key, time, 1)),
+					outcome -> {
+						metrics.record(held, key, outcome.isAllowed());
+						setHeaders(response, held, key, outcome);
+						return key;
+					}, () -> limiter.refund(key, System.currentTimeMillis(), 1));
 			return;
 		}
+		metrics.record(alg, key, decision.isAllowed());
 		
-		String key = request.getHeader("X-User-Id");
-		if(key == null || key.isBlank()) {
-			key = request.getRemoteAddr();
+		SlotRelease slots = limiter.holdsPermits() && decision.isAllowed()
+				? (latencyNanos, overloaded) -> limiter.release(key, latencyNanos, overloaded) : null;
+		respond(request, response, filterChain, alg, key, decision, slots, () -> limiter.refund(key, System.currentTimeMillis(), 1));
+	}
+	
+	/**
+	 * The limits of the policy are charged together, each against its own key, or not at all when
+	 * one blocks; the most restrictive outcome decides and is reported.
+	 */
+	private void applyPolicy(CompiledPolicy policy, HttpServletRequest request, 
+			HttpServletResponse response, 
+			FilterChain filterChain) throws ServletException, IOException {
+		PolicyLimit[] limits = policy.limits();
+		String[] keys = LIMIT_KEYS.get();
+		if(keys.length < limits.length) {
+			keys = new String[limits.length];
+			LIMIT_KEYS.set(keys);
+		}
+		for(int i=0; i<limits.length; i++) {
+			keys[i] = key(limits[i].key(), request);
 		}
 		
-		RateLimiterDecision decision = switch(alg) {
-			case TOKEN_BUCKET -> tokenBService.decision(key);
-			case SLIDING_WINDOW -> slidingWService.decision(key);
-			case FIXED_WINDOW -> fixedSizeService.decision(key);
+		boolean timed = metrics.sampleLatency();
+		long started = timed ? System.nanoTime() : 0L;
+		MutableDecision decision = DECISIONS.get();
+		int permits = policy.permits(request);
+		long now = System.currentTimeMillis();
+		CompositeRateLimiter composite = policy.composite();
+		int level = composite.decision(keys, now, permits, decision, LIMIT_DECISIONS.get());
+		PolicyLimit binding = limits[level];
+		if(timed) {
+			metrics.recordLatency(binding.algorithm(), System.nanoTime() - started);
+		}
+		
+		response.setHeader("X-RateLimit-Policy", policy.name());
+		response.setHeader("X-RateLimit-Cost", HeaderValues.of(permits));
+		if(!composite.holdsPermits() && waiter.shouldWait(decision) && request.isAsyncSupported()) {
+			// the per-thread key array is reused by the next request on this thread
+			String[] held = Arrays.copyOf(keys, limits.length);
+			LevelDecision first = new LevelDecision(level, decision.toDecision());
+			hold(request, response, waiter.await(first, now, time -> composite.decisionAsync(held, time, permits)),
+					outcome -> {
+						PolicyLimit decided = limits[outcome.level()];
+						metrics.record(decided.algorithm(), held[outcome.level()], outcome.isAllowed());
+						response.setHeader("X-RateLimit-Limit", HeaderValues.of(decided.count()));
+						setHeaders(response, decided.algorithm(), held[outcome.level()], outcome);
+						return held[outcome.level()];
+					}, () -> composite.refund(held, System.currentTimeMillis(), permits));
+			return;
+		}
+		
+		String key = keys[level];
+		metrics.record(binding.algorithm(), key, decision.isAllowed());
+		response.setHeader("X-RateLimit-Limit", HeaderValues.of(binding.count()));
+		String[] held = Arrays.copyOf(keys, limits.length);
+		SlotRelease slots = composite.holdsPermits() && decision.isAllowed()
+				? (latencyNanos, overloaded) -> composite.release(held, latencyNanos, overloaded) : null;
+		respond(request, response, filterChain, binding.algorithm(), key, decision, slots, 
+				() -> composite.refund(held, System.currentTimeMillis(), permits));
+	}
+	
+	private String key(KeySource source, HttpServletRequest request) {
+		return switch(source) {
+			case USER -> userKey(request);
+			case IP -> clientKey(request);
+			case TENANT -> {
+				String tenant = request.getHeader(policies.tenantHeader());
+				yield tenant == null || tenant.isBlank() ? userKey(request) : keys.identityKey(tenant);
+			}
+			case GLOBAL -> GLOBAL_KEY;
 		};
+	}
+	
+	/**
+	 * @param slots  frees the concurrency slots an admitted request holds; null when it holds none
+	 * @param refund gives back what the decision charged, should the request be turned away after all
+	 */
+	private void respond(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain,
+			RateLimiterAlgorithm alg, String key, MutableDecision decision, SlotRelease slots, 
+			Runnable refund) throws ServletException, IOException {
+		setHeaders(response, alg, key, decision);
 		
+		if(!decision.isAllowed()) {
+			reject(response, decision.retryAfterMs());
+			return;
+		}
+		
+		if(decision.delayMs() > 0 && request.isAsyncSupported()) {
+			if(slots != null) {
+				// the request goes on in an async dispatch this filter does not see, so it cannot hold a slot
+				slots.release(-1, false);
+			}
+			AsyncContext async = request.startAsync(request, response);
+			async.setTimeout(decision.delayMs() + HOLD_TIMEOUT_MARGIN_MS);
+			release(async, response, key, decision, refund);
+			return;
+		}
+		
+		if(slots == null) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+		long started = System.nanoTime();
+		boolean served = false;
+		try {
+			filterChain.doFilter(request, response);
+			served = true;
+		} finally {
+			if(!served) {
+				slots.release(-1, false);
+			} else if(request.isAsyncStarted()) {
+				request.getAsyncContext().addListener(new AsyncCompletion(slots, started));
+			} else {
+				slots.release(System.nanoTime() - started, isOverloaded(response.getStatus()));
+			}
+		}
+	}
+	
+	/** Service Unavailable and Gateway Timeout are what a downstream at its capacity answers. */
+	static boolean isOverloaded(int status) {
+		return status == HttpStatus.SERVICE_UNAVAILABLE.value() || status == HttpStatus.GATEWAY_TIMEOUT.value();
+	}
+	
+	/**
+	 * Puts the request in async mode until {@code outcome} completes, so no container thread
+	 * waits with it. An admitted request then continues with an async dispatch, which this filter
+	 * lets straight through; a rejected one is answered from the completing thread.
+	 *
+	 * @param report writes the headers and metrics of the final decision and returns the key that
+	 *               decided it
+	 * @param refund as for {@link #respond}
+	 */
+	private <T extends Admission> void hold(HttpServletRequest request, HttpServletResponse response,
+			CompletionStage<T> outcome, Function<T, String> report, Runnable refund) {
+		AsyncContext async = request.startAsync(request, response);
+		async.setTimeout(waiter.maxWaitMs() + shaping.maxDelayMs() + HOLD_TIMEOUT_MARGIN_MS);
+		long started = System.nanoTime();
+		outcome.whenComplete((decision, error) -> {
+			if(error != null) {
+				response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+				async.complete();
+				return;
+			}
+			String key = report.apply(decision);
+			response.setHeader("X-RateLimit-Waited-Ms", HeaderValues.of((System.nanoTime() - started) / 1_000_000));
+			if(decision.isAllowed()) {
+				release(async, response, key, decision, refund);
+			} else {
+				reject(response, decision.retryAfterMs());
+				async.complete();
+			}
+		});
+	}
+	
+	/**
+	 * Lets an admitted request in async mode go on with an async dispatch, after the shaping
+	 * delay of its decision if there is one. When the {@link ShapingQueue} has no room for it the
+	 * request is rejected instead, to retry once its delay would have been over, and what it was
+	 * charged is given back: otherwise every retry would push the key's backlog further out.
+	 */
+	private void release(AsyncContext async, HttpServletResponse response, String key, Admission decision, Runnable refund) {
+		if(decision.delayMs() == 0) {
+			async.dispatch();
+			return;
+		}
+		CompletableFuture<Void> released = shaping.hold(key, decision.delayMs());
+		if(released == null) {
+			refund.run();
+			response.setHeader("X-RateLimit-RetryAfter-Ms", HeaderValues.of(decision.delayMs()));
+			reject(response, decision.delayMs());
+			async.complete();
+			return;
+		}
+		response.setHeader("X-RateLimit-Delay-Ms", HeaderValues.of(decision.delayMs()));
+		released.whenComplete((ignored, error) -> {
+			if(error != null) {
+				refund.run();
+				response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+				async.complete();
+			} else {
+				async.dispatch();
+			}
+		});
+	}
+	
+	private static void setHeaders(HttpServletResponse response, RateLimiterAlgorithm alg, String key, Admission decision) {
 		response.setHeader("X-RateLimit-Algorithm", alg.name());
 		response.setHeader("X-RateLimit-Key", key);
-		response.setHeader("X-RateLimit-Remaining", String.valueOf(decision.remaining()));
-		response.setHeader("X-RateLimit-RetryAfter-Ms", String.valueOf(decision.retryAfterMs()));
-		response.setHeader("X-RateLimit-ResetIn-Ms", String.valueOf(decision.timeToFullMs()));
+		response.setHeader("X-RateLimit-Remaining", HeaderValues.of(decision.remaining()));
+		response.setHeader("X-RateLimit-RetryAfter-Ms", HeaderValues.of(decision.retryAfterMs()));
+		response.setHeader("X-RateLimit-ResetIn-Ms", HeaderValues.of(decision.timeToFullMs()));
+	}
+	
+	private static void reject(HttpServletResponse response, long retryAfterMs) {
+		response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+		long retryAfterSeconds = Math.max(1, (retryAfterMs + 999) / 1000);
+		response.setHeader("Retry-After", HeaderValues.of(retryAfterSeconds));
+	}
+	
+	/** Frees the concurrency slots of one request, exactly once. */
+	@FunctionalInterface
+	private interface SlotRelease {
 		
-		if(!decision.isAllowed()) {
-			response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
-			long retryAfterSeconds = Math.max(1, (long)Math.ceil(decision.retryAfterMs() / 1000L));
-			response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
-			return;
+		void release(long latencyNanos, boolean overloaded);
+	}
+	
+	/** Holds the slots of a request whose handler went async until the async request completes. */
+	private static final class AsyncCompletion implements AsyncListener {
+		
+		private final SlotRelease slots;
+		
+		private final long started;
+		
+		private volatile boolean timedOut;
+		
+		AsyncCompletion(SlotRelease slots, long started) {
+			this.slots = slots;
+			this.started = started;
+		}
+		
+		@Override
+		public void onComplete(AsyncEvent event) {
+			int status = ((HttpServletResponse) event.getAsyncContext().getResponse()).getStatus();
+			slots.release(System.nanoTime() - started, timedOut || isOverloaded(status));
+		}
+		
+		@Override
+		public void onTimeout(AsyncEvent event) {
+			timedOut = true;
 		}
 		
-		filterChain.doFilter(request, response);
-	}	
+		@Override
+		public void onError(AsyncEvent event) {
+		}
+		
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+			// a handler restarting async mode drops the listeners registered before
+			event.getAsyncContext().addListener(this);
+		}
+	}
+	
+	private String userKey(HttpServletRequest request) {
+		String user = request.getHeader("X-User-Id");
+		return user == null || user.isBlank() ? clientKey(request) : keys.identityKey(user);
+	}
+	
+	private String clientKey(HttpServletRequest request) {
+		String forwardedFor = keys.trustsForwardedFor()
+				? String.join(",", Collections.list(request.getHeaders("X-Forwarded-For"))) : null;
+		return keys.clientKey(request.getRemoteAddr(), forwardedFor);
+	}
 
 }
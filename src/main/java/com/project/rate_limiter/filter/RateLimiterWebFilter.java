@@ -0,0 +1,271 @@
+package com.project.rate_limiter.filter;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.LongFunction;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.entity.Admission;
+import com.project.rate_limiter.metrics.LimiterMetrics;
+import com.project.rate_limiter.policy.CompiledPolicy;
+import com.project.rate_limiter.policy.PolicyEngine;
+import com.project.rate_limiter.policy.PolicyLimit;
+import com.project.rate_limiter.policy.PolicyProperties.KeySource;
+import com.project.rate_limiter.service.CompositeRateLimiter;
+import com.project.rate_limiter.service.HeavyHitterPrefilter;
+import com.project.rate_limiter.service.PermitWaiter;
+import com.project.rate_limiter.service.RateLimiter;
+import com.project.rate_limiter.service.ShapingQueue;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * The WebFlux counterpart of {@link RateLimiterFilter}, for running the limiter inside a reactive
+ * gateway: same policies, client-selected algorithm and response headers, but no blocking on the
+ * event loop. Decisions come from {@link RateLimiter#decisionAsync}, which the Redis limiters
+ * complete when their script replies, and a request held by the {@link PermitWaiter} is a timer
+ * task rather than a parked thread, as is a request delayed by the {@link ShapingQueue}. Only
+ * registered when the application runs on WebFlux.
+ */
+@Component
+@ConditionalOnWebApplication(type = Type.REACTIVE)
+public class RateLimiterWebFilter implements WebFilter {
+	
+	private final Map<RateLimiterAlgorithm, RateLimiter> limiters = new EnumMap<>(RateLimiterAlgorithm.class);
+	
+	private final String unavailableAlgorithmMessage;
+	
+	private final LimiterMetrics metrics;
+	
+	private final PolicyEngine policies;
+	
+	private final PermitWaiter waiter;
+	
+	private final ShapingQueue shaping;
+	
+	private final KeyResolver keys;
+	
+	public RateLimiterWebFilter(List<RateLimiter> limiters, LimiterMetrics metrics, PolicyEngine policies, PermitWaiter waiter,
+			ShapingQueue shaping, KeyResolver keys, HeavyHitterPrefilter prefilter) {
+		for(RateLimiter limiter : limiters) {
+			this.limiters.put(limiter.algorithm(), prefilter.wrap(limiter));
+		}
+		this.unavailableAlgorithmMessage = RateLimiterFilter.unavailableAlgorithmMessage(this.limiters.keySet());
+		this.metrics = metrics;
+		this.policies = policies;
+		this.waiter = waiter;
+		this.shaping = shaping;
+		this.keys = keys;
+	}
+	
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+		ServerHttpRequest request = exchange.getRequest();
+		String path = request.getPath().value();
+		if(RateLimiterFilter.isExempt(path)) {
+			return chain.filter(exchange);
+		}
+		
+		CompiledPolicy policy = policies.match(request.getMethod().name(), path, request.getHeaders(), HttpHeaders::getFirst);
+		if(policy != null) {
+			return applyPolicy(policy, exchange, chain);
+		}
+		
+		RateLimiterAlgorithm alg;
+		if(policies.clientAlgorithm()) {
+			String algRaw = request.getHeaders().getFirst("X-RateLimit-Alg");
+			
+			if(algRaw == null || algRaw.isBlank()) {
+				algRaw = request.getQueryParams().getFirst("alg");
+			}
+			
+			try {
+				alg = RateLimiterAlgorithm.from(algRaw);
+			} catch(IllegalArgumentException ex) {
+				return badRequest(exchange.getResponse(), RateLimiterFilter.INVALID_ALGORITHM_MESSAGE);
+			}
+		} else {
+			alg = policies.defaultAlgorithm();
+		}
+		
+		RateLimiter limiter = limiters.get(alg);
+		if(limiter == null) {
+			return badRequest(exchange.getResponse(), unavailableAlgorithmMessage);
+		}
+		String key = userKey(request);
+		return decide(exchange.getResponse(), !limiter.holdsPermits(), time -> limiter.decisionAsync(key, time, 1))
+				.flatMap(decision -> {
+					metrics.record(alg, key, decision.isAllowed());
+					SlotRelease slots = limiter.holdsPermits() && decision.isAllowed()
+							? (latencyNanos, overloaded) -> limiter.release(key, latencyNanos, overloaded) : null;
+					return respond(exchange, chain, alg, key, decision, slots, () -> limiter.refund(key, System.currentTimeMillis(), 1));
+				});
+	}
+	
+	private static Mono<Void> badRequest(ServerHttpResponse response, String message) {
+		response.setStatusCode(HttpStatus.BAD_REQUEST);
+		DataBuffer body = response.bufferFactory().wrap(message.getBytes(StandardCharsets.UTF_8));
+		return response.writeWith(Mono.just(body));
+	}
+	
+	/** As in {@link RateLimiterFilter}, every limit of the policy is charged or none is. */
+	private Mono<Void> applyPolicy(CompiledPolicy policy, ServerWebExchange exchange, WebFilterChain chain) {
+		ServerHttpRequest request = exchange.getRequest();
+		PolicyLimit[] limits = policy.limits();
+		String[] keys = new String[limits.length];
+		for(int i=0; i<limits.length; i++) {
+			keys[i] = key(limits[i].key(), request);
+		}
+		HttpHeaders headers = request.getHeaders();
+		int permits = policy.permits(headers, HttpHeaders::getFirst, headers.getContentLength());
+		
+		HttpHeaders out = exchange.getResponse().getHeaders();
+		out.set("X-RateLimit-Policy", policy.name());
+		out.set("X-RateLimit-Cost", HeaderValues.of(permits));
+		CompositeRateLimiter composite = policy.composite();
+		return decide(exchange.getResponse(), !composite.holdsPermits(), time -> composite.decisionAsync(keys, time, permits))
+				.flatMap(decision -> {
+					PolicyLimit binding = limits[decision.level()];
+					String key = keys[decision.level()];
+					metrics.record(binding.algorithm(), key, decision.isAllowed());
+					out.set("X-RateLimit-Limit", HeaderValues.of(binding.count()));
+					SlotRelease slots = composite.holdsPermits() && decision.isAllowed()
+							? (latencyNanos, overloaded) -> composite.release(keys, latencyNanos, overloaded) : null;
+					return respond(exchange, chain, binding.algorithm(), key, decision, slots, 
+							() -> composite.refund(keys, System.currentTimeMillis(), permits));
+				});
+	}
+	
+	/**
+	 * Decides now and, when the waiter takes the request, again until it is admitted or gives up.
+	 * Concurrency limits are never waited for: their slots free up as requests complete, not on a
+	 * schedule the waiter could follow.
+	 */
+	private <T extends Admission> Mono<T> decide(ServerHttpResponse response, boolean mayWait,
+			LongFunction<CompletionStage<T>> attempt) {
+		long now = System.currentTimeMillis();
+		return Mono.fromCompletionStage(() -> attempt.apply(now)).flatMap(first -> {
+			if(!mayWait || !waiter.shouldWait(first)) {
+				return Mono.just(first);
+			}
+			long started = System.nanoTime();
+			return Mono.fromCompletionStage(() -> waiter.await(first, now, attempt))
+					.doOnNext(held -> response.getHeaders().set("X-RateLimit-Waited-Ms",
+							HeaderValues.of((System.nanoTime() - started) / 1_000_000)));
+		});
+	}
+	
+	private String key(KeySource source, ServerHttpRequest request) {
+		return switch(source) {
+			case USER -> userKey(request);
+			case IP -> clientKey(request);
+			case TENANT -> {
+				String tenant = request.getHeaders().getFirst(policies.tenantHeader());
+				yield tenant == null || tenant.isBlank() ? userKey(request) : keys.identityKey(tenant);
+			}
+			case GLOBAL -> RateLimiterFilter.GLOBAL_KEY;
+		};
+	}
+	
+	/**
+	 * @param slots frees the concurrency slots an admitted request holds, once the rest of the
+	 *              chain has completed, errored or been cancelled; null when it holds none
+	 * @param refund gives back what the decision charged, for a delayed request the shaping queue
+	 *               has no room for
+	 */
+	private Mono<Void> respond(ServerWebExchange exchange, WebFilterChain chain,
+			RateLimiterAlgorithm alg, String key, Admission decision, SlotRelease slots, Runnable refund) {
+		ServerHttpResponse response = exchange.getResponse();
+		HttpHeaders headers = response.getHeaders();
+		headers.set("X-RateLimit-Algorithm", alg.name());
+		headers.set("X-RateLimit-Key", key);
+		headers.set("X-RateLimit-Remaining", HeaderValues.of(decision.remaining()));
+		headers.set("X-RateLimit-RetryAfter-Ms", HeaderValues.of(decision.retryAfterMs()));
+		headers.set("X-RateLimit-ResetIn-Ms", HeaderValues.of(decision.timeToFullMs()));
+		
+		if(!decision.isAllowed()) {
+			return reject(response, decision.retryAfterMs());
+		}
+		
+		if(decision.delayMs() > 0) {
+			if(slots != null) {
+				// as in RateLimiterFilter, a delayed request gives its slot back rather than hold it while it waits
+				slots.release(-1, false);
+			}
+			CompletableFuture<Void> released = shaping.hold(key, decision.delayMs());
+			if(released == null) {
+				// no room in the shaping queue: retry once the delay would have been over, without the
+				// charge, which would otherwise push the key's backlog further out with every retry
+				refund.run();
+				headers.set("X-RateLimit-RetryAfter-Ms", HeaderValues.of(decision.delayMs()));
+				return reject(response, decision.delayMs());
+			}
+			headers.set("X-RateLimit-Delay-Ms", HeaderValues.of(decision.delayMs()));
+			return Mono.fromFuture(released).then(Mono.defer(() -> chain.filter(exchange)));
+		}
+		
+		if(slots == null) {
+			return chain.filter(exchange);
+		}
+		long started = System.nanoTime();
+		return chain.filter(exchange).doFinally(signal -> {
+			if(signal == SignalType.ON_COMPLETE) {
+				HttpStatusCode status = response.getStatusCode();
+				slots.release(System.nanoTime() - started, status != null && RateLimiterFilter.isOverloaded(status.value()));
+			} else {
+				slots.release(-1, false);
+			}
+		});
+	}
+	
+	/** Frees the concurrency slots of one request, exactly once. */
+	@FunctionalInterface
+	private interface SlotRelease {
+		
+		void release(long latencyNanos, boolean overloaded);
+	}
+	
+	private static Mono<Void> reject(ServerHttpResponse response, long retryAfterMs) {
+		response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+		long retryAfterSeconds = Math.max(1, (retryAfterMs + 999) / 1000);
+		response.getHeaders().set("Retry-After", HeaderValues.of(retryAfterSeconds));
+		return response.setComplete();
+	}
+	
+	private String userKey(ServerHttpRequest request) {
+		String user = request.getHeaders().getFirst("X-User-Id");
+		return user == null || user.isBlank() ? clientKey(request) : keys.identityKey(user);
+	}
+	
+	private String clientKey(ServerHttpRequest request) {
+		List<String> forwardedFor = keys.trustsForwardedFor() ? request.getHeaders().get("X-Forwarded-For") : null;
+		return keys.clientKey(remoteAddress(request), forwardedFor == null ? null : String.join(",", forwardedFor));
+	}
+	
+	private static String remoteAddress(ServerHttpRequest request) {
+		InetSocketAddress remote = request.getRemoteAddress();
+		if(remote == null) {
+			return null;
+		}
+		return remote.getAddress() != null ? remote.getAddress().getHostAddress() : remote.getHostString();
+	}
+}
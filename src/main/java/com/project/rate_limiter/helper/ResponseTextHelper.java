@@ -9,12 +9,12 @@ import java.util.Map;
 import com.project.rate_limiter.controller.dto.DemoEvent;
 
 public class ResponseTextHelper {
-		
+	
 	public static Map<String, Object> buildConfig(String algorithm, int limit, 
-			long timePeriodLimitInMs, int refillRate) {
+			long timePeriodLimitInMs, double refillRate) {
 	    Map<String, Object> cfg = new HashMap<>();	    
 	    switch (algorithm) {
-	        case "FIXED_WINDOW", "SLIDING_WINDOW" -> {
+	        case "FIXED_WINDOW", "SLIDING_WINDOW", "SLIDING_WINDOW_COUNTER", "SLIDING_WINDOW_RING", "GCRA" -> {
 	        	cfg.put("limit", limit);
 	        	cfg.put("timePeriodLimitIn_Ms", timePeriodLimitInMs);
 	        }
@@ -22,12 +22,16 @@ public class ResponseTextHelper {
 	        	cfg.put("capacity", limit);
 	        	cfg.put("refillRatePerSec", refillRate);
 	        }
+	        case "LEAKY_BUCKET" -> {
+	        	cfg.put("capacity", limit);
+	        	cfg.put("leakRatePerSec", refillRate);
+	        }
 	        default -> {}
 	    };
-
+	
 	    return cfg;
 	}
-
+	
 	public static List<Map<String, Object>> generateTimeline(List<DemoEvent> responseTimeline) {
 		List<Map<String, Object>> timeline = new ArrayList<>();
 		
@@ -0,0 +1,26 @@
+package com.project.rate_limiter.load;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+
+/**
+ * What a perfect limiter admits per key: a burst of {@code burst} permits from an idle key, then
+ * {@code ratePerSecond} sustained. Over a span of {@code t} seconds no key should get more than
+ * {@code burst + ratePerSecond * t} permits.
+ */
+public record ExpectedLimit(
+	int burst,
+	double ratePerSecond
+) {
+	
+	/** The limit that the algorithm's settings describe. */
+	public static ExpectedLimit of(RateLimiterAlgorithm algorithm, int count, long periodMs, double refillRate) {
+		return switch(algorithm) {
+			case TOKEN_BUCKET, LEAKY_BUCKET -> new ExpectedLimit(count, refillRate);
+			default -> new ExpectedLimit(count, count * 1000.0 / periodMs);
+		};
+	}
+	
+	public long permitsOver(long spanMs) {
+		return burst + (long) Math.floor(ratePerSecond * spanMs / 1000);
+	}
+}
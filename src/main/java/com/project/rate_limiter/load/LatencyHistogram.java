@@ -0,0 +1,87 @@
+package com.project.rate_limiter.load;
+
+/**
+ * Log-linear histogram of nanosecond latencies: each power of two is split into 16 buckets, so a
+ * percentile is read to within about 6%. Recording is an array increment and allocates nothing.
+ * Not thread-safe; give each thread its own and {@link #merge} them afterwards.
+ */
+public class LatencyHistogram {
+	
+	private static final int SUB_BITS = 4;
+	
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	
+	private final long[] counts = new long[(64 - SUB_BITS + 1) * SUB_BUCKETS];
+	
+	private long total;
+	
+	private long max;
+	
+	private long sum;
+	
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts[index(value)]++;
+		total++;
+		sum += value;
+		if(value > max) { max = value; }
+	}
+	
+	public LatencyHistogram merge(LatencyHistogram other) {
+		for(int i=0; i<counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		total += other.total;
+		sum += other.sum;
+		max = Math.max(max, other.max);
+		return this;
+	}
+	
+	public long count() {
+		return total;
+	}
+	
+	/** Upper bound, in nanoseconds, of the bucket holding the given quantile (0 to 1). */
+	public long percentile(double quantile) {
+		if(total == 0) { return 0; }
+		long rank = Math.max(1, (long) Math.ceil(quantile * total));
+		long seen = 0;
+		for(int i=0; i<counts.length; i++) {
+			seen += counts[i];
+			if(seen >= rank) {
+				return Math.min(max, upperBound(i));
+			}
+		}
+		return max;
+	}
+	
+	public Summary summary() {
+		return new Summary(total, total == 0 ? 0 : sum / total, percentile(0.5), percentile(0.9),
+				percentile(0.99), percentile(0.999), max);
+	}
+	
+	/** Latency percentiles in nanoseconds. */
+	public record Summary(
+		long count,
+		long meanNs,
+		long p50Ns,
+		long p90Ns,
+		long p99Ns,
+		long p999Ns,
+		long maxNs
+	) {}
+	
+	private static int index(long value) {
+		if(value < SUB_BUCKETS) { return (int) value; }
+		int magnitude = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS + 1;
+		int sub = (int) (value >>> (magnitude - 1)) & (SUB_BUCKETS - 1);
+		return magnitude * SUB_BUCKETS + sub;
+	}
+	
+	private static long upperBound(int index) {
+		int magnitude = index / SUB_BUCKETS;
+		int sub = index % SUB_BUCKETS;
+		if(magnitude == 0) { return sub; }
+		return ((long) (SUB_BUCKETS + sub + 1) << (magnitude - 1)) - 1;
+	}
+}
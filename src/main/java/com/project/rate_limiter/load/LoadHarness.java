@@ -0,0 +1,221 @@
+package com.project.rate_limiter.load;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.project.rate_limiter.entity.MutableDecision;
+import com.project.rate_limiter.service.RateLimiter;
+
+/**
+ * Drives a limiter with a traffic log on a virtual clock: each request is decided at its logged
+ * time, with no sleeping, so minutes of traffic are replayed in milliseconds of CPU time.
+ * <p>
+ * The threads claim the log in short runs of consecutive requests, so they stay within a few
+ * milliseconds of virtual time of each other, as request threads share one wall clock. Running
+ * each thread through a separate part of the log would not do: the state stores expire entries
+ * by the caller's clock, and a thread far ahead would evict keys that are live for the others.
+ * As with real concurrent requests, a key's requests may reach the limiter slightly out of order.
+ * The measured loop only decides and records the latency and outcome; per-key accounting
+ * happens after the clock stops.
+ */
+public final class LoadHarness {
+	
+	private static final byte ALLOWED = 0;
+	
+	private static final byte DELAYED = 1;
+	
+	private static final byte BLOCKED = 2;
+	
+	/** Requests claimed at once; small enough to keep the threads in step. */
+	private static final int CHUNK = 64;
+	
+	private LoadHarness() {
+	}
+	
+	public static LoadReport run(RateLimiter limiter, List<TrafficEvent> events, int threads, ExpectedLimit expected) {
+		int workers = Math.max(1, threads);
+		Log log = new Log(events);
+		AtomicInteger cursor = new AtomicInteger();
+		
+		ExecutorService pool = Executors.newFixedThreadPool(workers, task -> {
+			Thread thread = new Thread(task, "load-harness");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			CountDownLatch ready = new CountDownLatch(workers);
+			CountDownLatch go = new CountDownLatch(1);
+			List<Future<Worker>> running = new ArrayList<>();
+			for(int w=0; w<workers; w++) {
+				running.add(pool.submit(() -> {
+					Worker worker = new Worker();
+					ready.countDown();
+					go.await();
+					worker.run(limiter, log, cursor);
+					return worker;
+				}));
+			}
+			ready.await();
+			long start = System.nanoTime();
+			go.countDown();
+			List<Worker> finished = new ArrayList<>();
+			for(Future<Worker> worker : running) {
+				finished.add(worker.get());
+			}
+			long wallNanos = System.nanoTime() - start;
+			return report(limiter, log, finished, workers, wallNanos, expected);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Load run interrupted", ex);
+		} catch (ExecutionException ex) {
+			throw new IllegalStateException("Load run failed", ex.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+	
+	private static LoadReport report(RateLimiter limiter, Log log, List<Worker> workers, int threads, long wallNanos,
+			ExpectedLimit expected) {
+		LatencyHistogram latency = new LatencyHistogram();
+		long cpuNanos = 0;
+		for(Worker worker : workers) {
+			latency.merge(worker.latency);
+			cpuNanos += Math.max(0, worker.cpuNanos);
+		}
+		
+		Map<String, KeyTally> tallies = new HashMap<>();
+		long admitted = 0;
+		long delayed = 0;
+		for(int i=0; i<log.size; i++) {
+			boolean allowed = log.outcomes[i] != BLOCKED;
+			if(allowed) { admitted++; }
+			if(log.outcomes[i] == DELAYED) { delayed++; }
+			tallies.computeIfAbsent(log.keys[i], key -> new KeyTally())
+				.add(log.times[i], log.permits[i], allowed, expected);
+		}
+		
+		long offeredPermits = 0;
+		long admittedPermits = 0;
+		long idealPermits = 0;
+		int overAdmittedKeys = 0;
+		long overAdmittedPermits = 0;
+		for(KeyTally tally : tallies.values()) {
+			long ideal = Math.min(tally.offered, expected.permitsOver(tally.lastMs - tally.firstMs));
+			offeredPermits += tally.offered;
+			admittedPermits += tally.admitted;
+			idealPermits += ideal;
+			if(tally.excess > 0) {
+				overAdmittedKeys++;
+				overAdmittedPermits += tally.excess;
+			}
+		}
+		
+		long requests = log.size;
+		double wallMs = wallNanos / 1_000_000.0;
+		return new LoadReport(limiter.algorithm().name(), threads, requests, admitted, requests - admitted, delayed,
+				tallies.size(), wallMs, cpuNanos / 1_000_000.0, wallNanos == 0 ? 0 : requests * 1e9 / wallNanos,
+				offeredPermits, admittedPermits, idealPermits,
+				idealPermits == 0 ? 1 : (double) admittedPermits / idealPermits,
+				overAdmittedKeys, overAdmittedPermits, latency.summary());
+	}
+	
+	/** The log as parallel arrays, so the measured loop stays lean, with a slot for each outcome. */
+	private static final class Log {
+		
+		final int size;
+		
+		final long[] times;
+		
+		final String[] keys;
+		
+		final int[] permits;
+		
+		final byte[] outcomes;
+		
+		Log(List<TrafficEvent> events) {
+			this.size = events.size();
+			this.times = new long[size];
+			this.keys = new String[size];
+			this.permits = new int[size];
+			this.outcomes = new byte[size];
+			for(int i=0; i<size; i++) {
+				TrafficEvent event = events.get(i);
+				times[i] = event.timeMs();
+				keys[i] = event.key();
+				permits[i] = event.permits();
+			}
+		}
+	}
+	
+	private static final class Worker {
+		
+		final LatencyHistogram latency = new LatencyHistogram();
+		
+		long cpuNanos;
+		
+		void run(RateLimiter limiter, Log log, AtomicInteger cursor) {
+			ThreadMXBean cpu = ManagementFactory.getThreadMXBean();
+			boolean measureCpu = cpu.isCurrentThreadCpuTimeSupported();
+			long cpuStart = measureCpu ? cpu.getCurrentThreadCpuTime() : 0;
+			MutableDecision holder = new MutableDecision();
+			int from;
+			while((from = cursor.getAndAdd(CHUNK)) < log.size) {
+				int to = Math.min(log.size, from + CHUNK);
+				for(int i=from; i<to; i++) {
+					long started = System.nanoTime();
+					limiter.decision(log.keys[i], log.times[i], log.permits[i], holder);
+					latency.record(System.nanoTime() - started);
+					log.outcomes[i] = !holder.isAllowed() ? BLOCKED : holder.delayMs() > 0 ? DELAYED : ALLOWED;
+				}
+			}
+			cpuNanos = measureCpu ? cpu.getCurrentThreadCpuTime() - cpuStart : -1;
+		}
+	}
+	
+	/**
+	 * One key's traffic, fed in time order. Admitted permits are also run through a token bucket
+	 * of the expected limit: any it has no token for overshot the limit over some span, however
+	 * short, which is how a fixed window's double dip at a boundary shows up.
+	 */
+	private static final class KeyTally {
+		
+		long offered;
+		
+		long admitted;
+		
+		long excess;
+		
+		long firstMs = Long.MAX_VALUE;
+		
+		long lastMs;
+		
+		double tokens = -1;
+		
+		long lastAdmittedMs;
+		
+		void add(long timeMs, int permits, boolean allowed, ExpectedLimit expected) {
+			offered += permits;
+			firstMs = Math.min(firstMs, timeMs);
+			lastMs = Math.max(lastMs, timeMs);
+			if(!allowed) { return; }
+			
+			admitted += permits;
+			tokens = tokens < 0 ? expected.burst()
+					: Math.min(expected.burst(), tokens + expected.ratePerSecond() * (timeMs - lastAdmittedMs) / 1000);
+			lastAdmittedMs = timeMs;
+			long fits = Math.min(permits, (long) Math.floor(tokens + 1e-9));
+			excess += permits - fits;
+			tokens -= fits;
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package com.project.rate_limiter.load;
+
+/**
+ * Outcome of one {@link LoadHarness} run.
+ *
+ * @param wallMs              real time spent deciding, all threads together
+ * @param cpuMs               CPU time of the deciding threads, where the JVM measures it
+ * @param delayed             admitted requests that came with a shaping delay
+ * @param idealPermits        permits a perfect limiter would have admitted, see {@link ExpectedLimit}
+ * @param admitAccuracy       admitted over ideal permits; above 1 means the limit was overshot
+ * @param overAdmittedKeys    keys that at some point got more than the limit allows
+ * @param overAdmittedPermits permits admitted beyond the limit, over all keys
+ * @param latency             time per decision, including about 20-30 ns of clock reads
+ */
+public record LoadReport(
+	String algorithm,
+	int threads,
+	long requests,
+	long admitted,
+	long blocked,
+	long delayed,
+	int keys,
+	double wallMs,
+	double cpuMs,
+	double decisionsPerSecond,
+	long offeredPermits,
+	long admittedPermits,
+	long idealPermits,
+	double admitAccuracy,
+	int overAdmittedKeys,
+	long overAdmittedPermits,
+	LatencyHistogram.Summary latency
+) {}
@@ -0,0 +1,10 @@
+package com.project.rate_limiter.load;
+
+/**
+ * One request of a generated or recorded traffic log, at a virtual time in epoch milliseconds.
+ */
+public record TrafficEvent(
+	long timeMs,
+	String key,
+	int permits
+) {}
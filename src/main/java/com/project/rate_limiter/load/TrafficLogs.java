@@ -0,0 +1,67 @@
+package com.project.rate_limiter.load;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reads and writes recorded request logs for replay: one request per line as
+ * {@code timeMs,key[,permits]}, with blank lines and lines starting with {@code #} ignored.
+ * Logs merged from several servers need not be in time order; they are sorted on reading.
+ */
+public final class TrafficLogs {
+	
+	private TrafficLogs() {
+	}
+	
+	public static List<TrafficEvent> parse(String log) {
+		try {
+			return read(new StringReader(log));
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+	
+	public static List<TrafficEvent> read(Reader source) throws IOException {
+		List<TrafficEvent> events = new ArrayList<>();
+		BufferedReader reader = new BufferedReader(source);
+		String line;
+		int number = 0;
+		while((line = reader.readLine()) != null) {
+			number++;
+			line = line.strip();
+			if(line.isEmpty() || line.startsWith("#")) { continue; }
+			
+			String[] fields = line.split(",");
+			if(fields.length < 2 || fields.length > 3 || fields[1].isBlank()) {
+				throw new IllegalArgumentException("Line " + number + ": expected timeMs,key[,permits]");
+			}
+			try {
+				int permits = fields.length == 3 ? Integer.parseInt(fields[2].strip()) : 1;
+				if(permits < 1) {
+					throw new IllegalArgumentException("Line " + number + ": permits must be at least 1");
+				}
+				events.add(new TrafficEvent(Long.parseLong(fields[0].strip()), fields[1].strip(), permits));
+			} catch (NumberFormatException ex) {
+				throw new IllegalArgumentException("Line " + number + ": " + ex.getMessage());
+			}
+		}
+		// stable, so requests logged in the same millisecond keep their order
+		events.sort(Comparator.comparingLong(TrafficEvent::timeMs));
+		return events;
+	}
+	
+	public static void write(List<TrafficEvent> events, Appendable out) throws IOException {
+		for(TrafficEvent event : events) {
+			out.append(Long.toString(event.timeMs())).append(',').append(event.key());
+			if(event.permits() != 1) {
+				out.append(',').append(Integer.toString(event.permits()));
+			}
+			out.append('\n');
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package com.project.rate_limiter.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Open-loop synthetic traffic: arrivals follow their own clock whatever the limiter answers, as
+ * they do from a real client population. Generation is seeded, so a model always yields the same
+ * log and algorithms can be compared on identical traffic.
+ *
+ * @param arrivals      how requests are spaced in time
+ * @param ratePerSecond mean arrival rate over all keys
+ * @param burstSize     requests arriving together in a {@code BURSTY} burst
+ * @param keys          how requests are spread over keys
+ * @param keyCount      distinct keys
+ * @param zipfExponent  skew of {@code ZIPFIAN} keys; 0.99 when unset
+ * @param durationMs    virtual time covered by the log
+ * @param seed          random seed
+ */
+public record TrafficModel(
+	Arrivals arrivals,
+	double ratePerSecond,
+	int burstSize,
+	Keys keys,
+	int keyCount,
+	double zipfExponent,
+	long durationMs,
+	long seed
+) {
+	
+	/** Upper bound on generated requests, so that one model cannot exhaust the heap. */
+	public static final long MAX_EVENTS = 10_000_000;
+	
+	public enum Arrivals {
+		/** Evenly spaced. */
+		CONSTANT,
+		/** Poisson process: exponentially distributed gaps. */
+		POISSON,
+		/** Bursts of {@code burstSize} requests at once, the bursts themselves a Poisson process. */
+		BURSTY
+	}
+	
+	public enum Keys { SINGLE, UNIFORM, ZIPFIAN }
+	
+	public TrafficModel {
+		arrivals = arrivals == null ? Arrivals.POISSON : arrivals;
+		keys = keys == null ? Keys.UNIFORM : keys;
+		burstSize = Math.max(1, burstSize);
+		keyCount = keys == Keys.SINGLE ? 1 : Math.max(1, keyCount);
+		zipfExponent = zipfExponent > 0 ? zipfExponent : 0.99;
+		if(!(ratePerSecond > 0) || durationMs < 1) {
+			throw new IllegalArgumentException("Traffic needs a positive rate and duration");
+		}
+		if(ratePerSecond * durationMs / 1000 > MAX_EVENTS) {
+			throw new IllegalArgumentException("Traffic would exceed " + MAX_EVENTS + " requests");
+		}
+	}
+	
+	/** The requests of this model, one permit each, starting at {@code startMs}. */
+	public List<TrafficEvent> generate(long startMs) {
+		SplittableRandom random = new SplittableRandom(seed);
+		String[] names = new String[keyCount];
+		for(int k=0; k<keyCount; k++) {
+			names[k] = "user-" + k;
+		}
+		double[] cumulative = keys == Keys.ZIPFIAN ? zipfCumulative() : null;
+		
+		List<TrafficEvent> events = new ArrayList<>((int) Math.min(MAX_EVENTS, ratePerSecond * durationMs / 1000 + 16));
+		double meanGapMicros = 1_000_000 / ratePerSecond;
+		double endMicros = durationMs * 1_000.0;
+		double clock = 0;
+		while(true) {
+			int arriving = 1;
+			switch(arrivals) {
+				case CONSTANT -> clock += meanGapMicros;
+				case POISSON -> clock += exponential(random, meanGapMicros);
+				case BURSTY -> {
+					clock += exponential(random, meanGapMicros * burstSize);
+					arriving = burstSize;
+				}
+			}
+			if(clock >= endMicros) { return events; }
+			
+			long timeMs = startMs + (long) (clock / 1_000);
+			for(int i=0; i<arriving && events.size() < MAX_EVENTS; i++) {
+				events.add(new TrafficEvent(timeMs, names[nextKey(random, cumulative)], 1));
+			}
+		}
+	}
+	
+	private int nextKey(SplittableRandom random, double[] cumulative) {
+		return switch(keys) {
+			case SINGLE -> 0;
+			case UNIFORM -> random.nextInt(keyCount);
+			case ZIPFIAN -> lowerBound(cumulative, random.nextDouble() * cumulative[keyCount - 1]);
+		};
+	}
+	
+	private double[] zipfCumulative() {
+		double[] cumulative = new double[keyCount];
+		double sum = 0;
+		for(int k=0; k<keyCount; k++) {
+			sum += 1.0 / Math.pow(k + 1, zipfExponent);
+			cumulative[k] = sum;
+		}
+		return cumulative;
+	}
+	
+	private static double exponential(SplittableRandom random, double mean) {
+		return -mean * Math.log(1.0 - random.nextDouble());
+	}
+	
+	private static int lowerBound(double[] cumulative, double target) {
+		int low = 0;
+		int high = cumulative.length - 1;
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(cumulative[mid] < target) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
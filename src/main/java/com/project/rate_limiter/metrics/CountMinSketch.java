@@ -0,0 +1,165 @@
+package com.project.rate_limiter.metrics;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.project.rate_limiter.store.OffHeapStateTable;
+
+/**
+ * Count-Min sketch (Cormode and Muthukrishnan) of request counts per key: {@code depth} rows of
+ * {@code width} counters, so memory is fixed however many keys are counted. An estimate never
+ * falls short of the true count, and exceeds it by more than {@code e / width} of the total only
+ * with probability {@code e^-depth}. Updates are conservative, raising only the counters that
+ * hold the current minimum, which tightens estimates further at no cost.
+ * <p>
+ * Counts decay: every {@code halfLifeMs} all counters are halved, so a key sending {@code r}
+ * requests per half-life settles between {@code r} and {@code 2r} and a key that stops fades out.
+ * The halving is lazy. Counters sit in blocks of {@value #BLOCK_SIZE}, each stamped with the
+ * half-life epoch it was last brought up to date in, and the first update to touch a block in a
+ * later epoch halves that block alone. An update therefore halves at most {@code depth} blocks,
+ * rather than one request halving megabytes of counters at every half-life; an estimate reads a
+ * block that is behind as if it had been halved. Counters are updated with a CAS each; a halving
+ * runs alongside concurrent updates to its block and may skew some of them, which the sketch
+ * tolerates as the approximation it already is.
+ */
+public class CountMinSketch {
+	
+	private static final int BLOCK_SHIFT = 6;
+	
+	static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+	
+	private final int depth;
+	
+	private final int mask;
+	
+	private final AtomicIntegerArray counters;
+	
+	private final long HALF_LIFE_MS;
+	
+	private final AtomicLong nextDecay;
+	
+	/** Half-lives passed since the sketch was created. */
+	private final AtomicLong epoch = new AtomicLong();
+	
+	/** The epoch each block of counters was last halved up to. */
+	private final AtomicLongArray blockEpochs;
+	
+	/** Everything counted, decayed alongside the counters. */
+	private final AtomicLong total = new AtomicLong();
+	
+	/**
+	 * @param width counters per row, rounded down to a power of two
+	 */
+	public CountMinSketch(int depth, int width, long halfLifeMs, long currentTime) {
+		if(depth < 1 || width < 2 || halfLifeMs < 1) {
+			throw new IllegalArgumentException("A sketch needs at least one row of two counters and a positive half-life");
+		}
+		this.depth = depth;
+		this.mask = Integer.highestOneBit(width) - 1;
+		this.counters = new AtomicIntegerArray(depth * (mask + 1));
+		this.blockEpochs = new AtomicLongArray((counters.length() + BLOCK_SIZE - 1) >>> BLOCK_SHIFT);
+		this.HALF_LIFE_MS = halfLifeMs;
+		this.nextDecay = new AtomicLong(currentTime + halfLifeMs);
+	}
+	
+	/** The widest sketch of {@code depth} rows whose counters fit in {@code bytes}; block epochs take 1/32 more. */
+	public static CountMinSketch ofBytes(long bytes, int depth, long halfLifeMs, long currentTime) {
+		long width = Math.max(2, Math.min(Integer.MAX_VALUE / depth, bytes / Integer.BYTES / depth));
+		return new CountMinSketch(depth, (int) width, halfLifeMs, currentTime);
+	}
+	
+	/** Counts {@code weight} more for {@code key} and returns its new estimate. */
+	public int add(String key, int weight, long currentTime) {
+		long epoch = advance(currentTime);
+		long hash = OffHeapStateTable.hash(key);
+		int estimate = Integer.MAX_VALUE;
+		for(int row=0; row<depth; row++) {
+			int index = index(hash, row);
+			catchUp(index >>> BLOCK_SHIFT, epoch);
+			estimate = Math.min(estimate, counters.get(index));
+		}
+		int target = (int) Math.min(Integer.MAX_VALUE, (long) estimate + weight);
+		for(int row=0; row<depth; row++) {
+			int index = index(hash, row);
+			int current = counters.get(index);
+			while(current < target && !counters.compareAndSet(index, current, target)) {
+				current = counters.get(index);
+			}
+		}
+		total.addAndGet(weight);
+		return target;
+	}
+	
+	public int estimate(String key) {
+		return estimate(OffHeapStateTable.hash(key));
+	}
+	
+	/** How far an estimate exceeds the true count, except with probability {@code e^-depth}. */
+	public long errorBound() {
+		return (long) Math.ceil(Math.E / (mask + 1) * total.get());
+	}
+	
+	public long total() {
+		return total.get();
+	}
+	
+	public int depth() {
+		return depth;
+	}
+	
+	public int width() {
+		return mask + 1;
+	}
+	
+	public long memoryBytes() {
+		return (long) counters.length() * Integer.BYTES + (long) blockEpochs.length() * Long.BYTES;
+	}
+	
+	/** Reads the counters without halving them, discounting the halvings their blocks are behind on. */
+	private int estimate(long hash) {
+		long current = epoch.get();
+		int min = Integer.MAX_VALUE;
+		for(int row=0; row<depth; row++) {
+			int index = index(hash, row);
+			long behind = current - blockEpochs.get(index >>> BLOCK_SHIFT);
+			int value = counters.get(index);
+			min = Math.min(min, behind > 0 ? value >>> (int) Math.min(Integer.SIZE - 1, behind) : value);
+		}
+		return min;
+	}
+	
+	/** Row {@code row}'s counter, from the two halves of the hash (Kirsch and Mitzenmacher). */
+	private int index(long hash, int row) {
+		int column = ((int) hash + row * (int) (hash >>> 32)) & mask;
+		return row * (mask + 1) + column;
+	}
+	
+	/** Moves to the next epoch when a half-life is up, halving only the total, and returns the epoch. */
+	private long advance(long currentTime) {
+		long due = nextDecay.get();
+		if(currentTime >= due) {
+			long periods = (currentTime - due) / HALF_LIFE_MS + 1;
+			if(nextDecay.compareAndSet(due, due + periods * HALF_LIFE_MS)) {
+				int shift = (int) Math.min(Integer.SIZE - 1, periods);
+				total.updateAndGet(value -> value >>> shift);
+				epoch.addAndGet(periods);
+			}
+		}
+		return epoch.get();
+	}
+	
+	/** Halves the counters of {@code block} once for every epoch it is behind {@code current}. */
+	private void catchUp(int block, long current) {
+		long seen = blockEpochs.get(block);
+		if(seen >= current || !blockEpochs.compareAndSet(block, seen, current)) { return; }
+		int shift = (int) Math.min(Integer.SIZE - 1, current - seen);
+		int end = Math.min(counters.length(), (block + 1) << BLOCK_SHIFT);
+		for(int i=block << BLOCK_SHIFT; i<end; i++) {
+			int value = counters.get(i);
+			while(value != 0 && !counters.compareAndSet(i, value, value >>> shift)) {
+				value = counters.get(i);
+			}
+		}
+	}
+}
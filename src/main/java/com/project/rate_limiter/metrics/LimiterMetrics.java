@@ -0,0 +1,166 @@
+package com.project.rate_limiter.metrics;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.metrics.SpaceSavingTopK.HeavyHitter;
+import com.project.rate_limiter.service.AdaptiveConcurrencyLimiter;
+import com.project.rate_limiter.service.RateLimiter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Micrometer instrumentation of limiter decisions.
+ * <p>
+ * Meters are tagged by algorithm and outcome only; per-key visibility comes from a bounded
+ * Space-Saving summary of blocked keys instead, so the number of time series never depends on
+ * traffic. All meters are resolved up front, so recording a decision is a couple of field reads
+ * and no registry lookup. Latency is timed on a random sample of requests
+ * ({@code rate.metrics.latency-sample-every}), since reading the clock and updating a histogram
+ * costs more than most decisions; the counters still see every request.
+ * <p>
+ * Adaptive concurrency limits also report their current limit, requests in flight and latency
+ * estimates, tagged with the limit's name: one set per configured limit, so these series too are
+ * bounded by configuration rather than traffic.
+ */
+@Component
+public class LimiterMetrics {
+	
+	private final Map<RateLimiterAlgorithm, Meters> meters = new EnumMap<>(RateLimiterAlgorithm.class);
+	
+	private final SpaceSavingTopK offenders;
+	
+	private final int LATENCY_SAMPLE_EVERY;
+	
+	private final MeterRegistry registry;
+	
+	/** The current instance of each adaptive limit, which a policy reload may replace. */
+	private final Map<String, AdaptiveConcurrencyLimiter> concurrencyLimits = new ConcurrentHashMap<>();
+	
+	public LimiterMetrics(MeterRegistry registry, List<RateLimiter> limiters,
+			@Value("${rate.metrics.top-offenders:20}") int topOffenders,
+			@Value("${rate.metrics.latency-sample-every:16}") int latencySampleEvery) {
+		this.offenders = new SpaceSavingTopK(topOffenders);
+		this.LATENCY_SAMPLE_EVERY = Math.max(1, latencySampleEvery);
+		this.registry = registry;
+		for(RateLimiter limiter : limiters) {
+			meters.put(limiter.algorithm(), register(registry, limiter));
+			if(limiter instanceof AdaptiveConcurrencyLimiter adaptive) {
+				track(adaptive);
+			}
+		}
+		Gauge.builder("rate.limiter.top.offenders.dropped", offenders, SpaceSavingTopK::dropped)
+			.description("Blocked decisions not offered to the top offender summary because of contention")
+			.register(registry);
+	}
+	
+	/** Whether the caller should time the decision it is about to make. */
+	public boolean sampleLatency() {
+		return LATENCY_SAMPLE_EVERY == 1 || ThreadLocalRandom.current().nextInt(LATENCY_SAMPLE_EVERY) == 0;
+	}
+	
+	public void record(RateLimiterAlgorithm algorithm, String key, boolean allowed) {
+		Meters algorithmMeters = meters.get(algorithm);
+		if(algorithmMeters == null) { return; }
+		
+		if(allowed) {
+			algorithmMeters.allowed.increment();
+		} else {
+			algorithmMeters.blocked.increment();
+			offenders.offer(key);
+		}
+	}
+	
+	public void recordLatency(RateLimiterAlgorithm algorithm, long latencyNanos) {
+		Meters algorithmMeters = meters.get(algorithm);
+		if(algorithmMeters != null) {
+			algorithmMeters.latency.record(latencyNanos, TimeUnit.NANOSECONDS);
+		}
+	}
+	
+	public List<HeavyHitter> topOffenders(int limit) {
+		return offenders.top(limit);
+	}
+	
+	/**
+	 * Reports {@code limiter} under its name from now on. The gauges are registered with the first
+	 * instance of a name and read whichever instance was tracked last.
+	 */
+	public void track(AdaptiveConcurrencyLimiter limiter) {
+		String name = limiter.name();
+		if(concurrencyLimits.put(name, limiter) != null) { return; }
+		
+		Gauge.builder("rate.limiter.concurrency.limit", concurrencyLimits, limits -> limits.get(name).limit())
+			.tag("limit", name)
+			.description("Requests currently allowed in flight at once")
+			.register(registry);
+		Gauge.builder("rate.limiter.concurrency.inflight", concurrencyLimits, limits -> limits.get(name).inFlight())
+			.tag("limit", name)
+			.description("Requests admitted and not yet completed")
+			.register(registry);
+		TimeGauge.builder("rate.limiter.concurrency.rtt", concurrencyLimits, TimeUnit.NANOSECONDS,
+				limits -> limits.get(name).shortRttNanos())
+			.tag("limit", name)
+			.tag("estimate", "short")
+			.description("Recent average latency of admitted requests")
+			.register(registry);
+		TimeGauge.builder("rate.limiter.concurrency.rtt", concurrencyLimits, TimeUnit.NANOSECONDS,
+				limits -> limits.get(name).longRttNanos())
+			.tag("limit", name)
+			.tag("estimate", "long")
+			.description("Long-term average latency the recent one is compared with")
+			.register(registry);
+	}
+	
+	private static Meters register(MeterRegistry registry, RateLimiter limiter) {
+		String algorithm = limiter.algorithm().name();
+		
+		Gauge.builder("rate.limiter.state.keys", limiter, l -> l.storeStats().size())
+			.tag("algorithm", algorithm)
+			.description("Keys currently held in the limiter state map")
+			.register(registry);
+		Gauge.builder("rate.limiter.state.memory.estimate", limiter, RateLimiter::estimatedMemoryBytes)
+			.tag("algorithm", algorithm)
+			.baseUnit("bytes")
+			.description("Estimated heap held by the limiter state map")
+			.register(registry);
+		evictions(registry, limiter, "expired");
+		evictions(registry, limiter, "idle");
+		evictions(registry, limiter, "capacity");
+		
+		return new Meters(
+				Counter.builder("rate.limiter.decisions").tag("algorithm", algorithm).tag("outcome", "allowed").register(registry),
+				Counter.builder("rate.limiter.decisions").tag("algorithm", algorithm).tag("outcome", "blocked").register(registry),
+				Timer.builder("rate.limiter.decision.latency")
+					.tag("algorithm", algorithm)
+					.publishPercentileHistogram()
+					.description("Time spent deciding one request (sampled)")
+					.register(registry));
+	}
+	
+	private static void evictions(MeterRegistry registry, RateLimiter limiter, String cause) {
+		FunctionCounter.builder("rate.limiter.state.evictions", limiter, l -> switch(cause) {
+				case "expired" -> l.storeStats().expiredEvictions();
+				case "idle" -> l.storeStats().idleEvictions();
+				default -> l.storeStats().capacityEvictions();
+			})
+			.tag("algorithm", limiter.algorithm().name())
+			.tag("cause", cause)
+			.register(registry);
+	}
+	
+	private record Meters(Counter allowed, Counter blocked, Timer latency) {}
+}
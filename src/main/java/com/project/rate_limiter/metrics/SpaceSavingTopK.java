@@ -0,0 +1,129 @@
+package com.project.rate_limiter.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Space-Saving heavy-hitter summary (Metwally et al.): at most {@code capacity} keys are tracked,
+ * and a new key replaces the one with the smallest count, inheriting that count as its error bound.
+ * Any key whose true count exceeds {@code total / capacity} is guaranteed to be tracked.
+ * <p>
+ * Memory is bounded by the capacity regardless of how many distinct keys are offered, which is what
+ * lets per-key offenders be reported without tagging metrics by key. Offers from request threads use
+ * {@code tryLock} and are dropped (and counted) under contention rather than making requests wait;
+ * the summary stays approximate either way.
+ */
+public class SpaceSavingTopK {
+	
+	private final int capacity;
+	
+	private final Map<String, Slot> slots;
+	
+	private final ReentrantLock lock = new ReentrantLock();
+	
+	private final LongAdder dropped = new LongAdder();
+	
+	private long total;
+	
+	public SpaceSavingTopK(int capacity) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("capacity must be at least 1");
+		}
+		this.capacity = capacity;
+		this.slots = new HashMap<>(capacity * 2);
+	}
+	
+	public void offer(String key) {
+		offer(key, 1);
+	}
+	
+	public void offer(String key, long weight) {
+		if(!lock.tryLock()) {
+			dropped.increment();
+			return;
+		}
+		try {
+			total += weight;
+			Slot slot = slots.get(key);
+			if(slot != null) {
+				slot.count += weight;
+				return;
+			}
+			if(slots.size() < capacity) {
+				slots.put(key, new Slot(key, weight, 0));
+				return;
+			}
+			
+			Slot min = null;
+			for(Slot candidate : slots.values()) {
+				if(min == null || candidate.count < min.count) {
+					min = candidate;
+				}
+			}
+			slots.remove(min.key);
+			// reuse the evicted slot so steady churn only allocates the map node
+			min.error = min.count;
+			min.count += weight;
+			min.key = key;
+			slots.put(key, min);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/** The {@code n} heaviest keys, highest estimated count first. */
+	public List<HeavyHitter> top(int n) {
+		List<HeavyHitter> hitters = new ArrayList<>();
+		lock.lock();
+		try {
+			for(Slot slot : slots.values()) {
+				hitters.add(new HeavyHitter(slot.key, slot.count, slot.error));
+			}
+		} finally {
+			lock.unlock();
+		}
+		hitters.sort(Comparator.comparingLong(HeavyHitter::count).reversed());
+		return hitters.size() > n ? List.copyOf(hitters.subList(0, n)) : hitters;
+	}
+	
+	public long total() {
+		lock.lock();
+		try {
+			return total;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/** Offers skipped because another thread held the summary. */
+	public long dropped() {
+		return dropped.sum();
+	}
+	
+	public int capacity() {
+		return capacity;
+	}
+	
+	/**
+	 * @param count estimated count; overestimates the true count by at most {@code error}
+	 */
+	public record HeavyHitter(String key, long count, long error) {}
+	
+	private static final class Slot {
+		
+		private String key;
+		private long count;
+		private long error;
+		
+		private Slot(String key, long count, long error) {
+			this.key = key;
+			this.count = count;
+			this.error = error;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package com.project.rate_limiter.policy;
+
+import com.project.rate_limiter.policy.PolicyProperties.Cost;
+import com.project.rate_limiter.policy.PolicyProperties.KeySource;
+import com.project.rate_limiter.service.CompositeRateLimiter;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * A rule after compilation: method set as a bit mask, header conditions as parallel
+ * arrays and limiters already built, so matching a request does no parsing or allocation.
+ */
+public final class CompiledPolicy {
+	
+	private final String name;
+	private final int methodMask;
+	private final String tier;
+	private final String[] headerNames;
+	private final String[] headerValues;
+	private final KeySource key;
+	private final Cost cost;
+	private final PolicyLimit[] limits;
+	
+	private final CompositeRateLimiter composite;
+	
+	CompiledPolicy(String name, int methodMask, String tier, String[] headerNames, String[] headerValues,
+			KeySource key, Cost cost, PolicyLimit[] limits, CompositeRateLimiter composite) {
+		this.name = name;
+		this.methodMask = methodMask;
+		this.tier = tier;
+		this.headerNames = headerNames;
+		this.headerValues = headerValues;
+		this.key = key;
+		this.cost = cost;
+		this.limits = limits;
+		this.composite = composite;
+	}
+	
+	public String name() {
+		return name;
+	}
+	
+	public KeySource key() {
+		return key;
+	}
+	
+	public PolicyLimit[] limits() {
+		return limits;
+	}
+	
+	public Cost cost() {
+		return cost;
+	}
+	
+	/** Permits {@code request} takes from each limit; a missing or malformed count header counts as one. */
+	public int permits(HttpServletRequest request) {
+		return permits(request, HttpServletRequest::getHeader, request.getContentLengthLong());
+	}
+	
+	/** @param contentLength of the body, or -1 when unknown */
+	public <R> int permits(R request, HeaderLookup<R> headers, long contentLength) {
+		long permits = cost.permits();
+		if(cost.header() != null) {
+			String count = headers.header(request, cost.header());
+			if(count != null) {
+				try {
+					permits *= Math.max(1, Integer.parseInt(count.trim()));
+				} catch(NumberFormatException ex) {
+					// not a count; charge the base cost
+				}
+			}
+		}
+		if(cost.bytesPerPermit() > 0 && contentLength > 0) {
+			permits += Math.min(Integer.MAX_VALUE, (contentLength - 1) / cost.bytesPerPermit() + 1);
+		}
+		return (int) Math.min(Integer.MAX_VALUE, permits);
+	}
+	
+	/** Decides all of {@link #limits()} at once, with level {@code i} being limit {@code i}. */
+	public CompositeRateLimiter composite() {
+		return composite;
+	}
+	
+	boolean appliesTo(int method) {
+		return (methodMask & (1 << method)) != 0;
+	}
+	
+	/** Tier and header conditions; the path and method were already matched by the trie. */
+	<R> boolean matches(R request, HeaderLookup<R> headers, String tierHeader) {
+		if(tier != null && !tier.equalsIgnoreCase(headers.header(request, tierHeader))) {
+			return false;
+		}
+		for(int i=0; i<headerNames.length; i++) {
+			if(!headerValues[i].equals(headers.header(request, headerNames[i]))) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
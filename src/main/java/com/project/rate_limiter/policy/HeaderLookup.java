@@ -0,0 +1,13 @@
+package com.project.rate_limiter.policy;
+
+/**
+ * Reads a header of a request of type {@code R}, so that policies match servlet and reactive
+ * requests alike. Callers pass a method reference such as {@code HttpServletRequest::getHeader}
+ * along with the request rather than a lambda capturing it, which keeps matching allocation-free.
+ */
+@FunctionalInterface
+public interface HeaderLookup<R> {
+	
+	/** The first value of header {@code name}, or null when absent. */
+	String header(R request, String name);
+}
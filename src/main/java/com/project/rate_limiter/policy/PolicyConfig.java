@@ -0,0 +1,9 @@
+package com.project.rate_limiter.policy;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(PolicyProperties.class)
+public class PolicyConfig {
+}
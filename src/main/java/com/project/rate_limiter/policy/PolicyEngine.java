@@ -0,0 +1,197 @@
+package com.project.rate_limiter.policy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.stereotype.Component;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.policy.PolicyProperties.Cost;
+import com.project.rate_limiter.policy.PolicyProperties.KeySource;
+import com.project.rate_limiter.policy.PolicyProperties.Limit;
+import com.project.rate_limiter.policy.PolicyProperties.Rule;
+import com.project.rate_limiter.service.CompositeRateLimiter;
+import com.project.rate_limiter.service.CompositeRateLimiter.Level;
+import com.project.rate_limiter.service.RateLimiter;
+import com.project.rate_limiter.service.RateLimiterFactory;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Compiles the configured {@code rate.policy.rules} and matches requests against them. See
+ * {@link PolicyTrie} for the matching cost and precedence.
+ * <p>
+ * The compiled rules are an immutable snapshot behind an {@link AtomicReference}: a
+ * {@link #reload} compiles the new rules on the caller's thread and swaps them in with one write,
+ * so requests never wait on it and each request sees either the old or the new rules. A limit
+ * whose id ({@code rule#index}) survives the reload keeps its limiter when unchanged, or gets one
+ * that inherits the old per-key state scaled to the new limits.
+ */
+@Component
+public class PolicyEngine {
+	
+	private static final Cost ONE_PERMIT = new Cost(1, null, 0);
+	
+	private final RateLimiterFactory factory;
+	
+	private final AtomicReference<Snapshot> current;
+	
+	public PolicyEngine(PolicyProperties properties, RateLimiterFactory factory) {
+		this.factory = factory;
+		this.current = new AtomicReference<>(compile(properties, Map.of(), 1));
+	}
+	
+	/**
+	 * Replaces the rules; on an invalid configuration the current rules stay in force.
+	 *
+	 * @return the version of the rules now in force
+	 */
+	public synchronized long reload(PolicyProperties properties) {
+		Snapshot previous = current.get();
+		Snapshot next = compile(properties, previous.limits(), previous.version() + 1);
+		current.set(next);
+		return next.version();
+	}
+	
+	/** The policy governing {@code request}, or null when no rule matches. */
+	public CompiledPolicy match(HttpServletRequest request) {
+		return match(request.getMethod(), request.getRequestURI(), request, HttpServletRequest::getHeader);
+	}
+	
+	/** {@link #match(HttpServletRequest)} for any kind of request, such as a WebFlux one. */
+	public <R> CompiledPolicy match(String method, String path, R request, HeaderLookup<R> headers) {
+		Snapshot snapshot = current.get();
+		if(snapshot.policies().isEmpty()) { return null; }
+		return snapshot.trie().match(request, headers, path, PolicyTrie.methodIndex(method), 
+				snapshot.properties().tierHeader());
+	}
+	
+	public List<CompiledPolicy> policies() {
+		return current.get().policies();
+	}
+	
+	/** The policy named {@code name}, or null when there is none, for callers that name it directly. */
+	public CompiledPolicy policy(String name) {
+		return current.get().byName().get(name);
+	}
+	
+	/** Starts at 1 and increases with every successful reload. */
+	public long version() {
+		return current.get().version();
+	}
+	
+	public boolean clientAlgorithm() {
+		return current.get().properties().clientAlgorithm();
+	}
+	
+	public RateLimiterAlgorithm defaultAlgorithm() {
+		return current.get().properties().defaultAlgorithm();
+	}
+	
+	public String tenantHeader() {
+		return current.get().properties().tenantHeader();
+	}
+	
+	private Snapshot compile(PolicyProperties properties, Map<String, PolicyLimit> previous, long version) {
+		if(!factory.isAvailable(properties.defaultAlgorithm())) {
+			throw new IllegalArgumentException("rate.policy.default-algorithm " + properties.defaultAlgorithm() 
+					+ " is not available with the configured backend");
+		}
+		PolicyTrie trie = new PolicyTrie();
+		List<CompiledPolicy> compiled = new ArrayList<>();
+		Map<String, CompiledPolicy> byName = new HashMap<>();
+		Map<String, PolicyLimit> limits = new HashMap<>();
+		List<Rule> rules = properties.rules();
+		for(int i=0; i<rules.size(); i++) {
+			Rule rule = rules.get(i);
+			CompiledPolicy policy = compile(rule, rule.name() == null ? "rule-" + i : rule.name(), previous);
+			trie.add(rule.path(), policy);
+			compiled.add(policy);
+			byName.put(policy.name(), policy);
+			for(PolicyLimit limit : policy.limits()) {
+				if(limits.put(limit.id(), limit) != null) {
+					throw new IllegalArgumentException("Duplicate rate limit policy name " + policy.name());
+				}
+			}
+		}
+		trie.freeze();
+		return new Snapshot(properties, trie, Collections.unmodifiableList(compiled), byName, limits, version);
+	}
+	
+	private CompiledPolicy compile(Rule rule, String name, Map<String, PolicyLimit> previous) {
+		if(rule.limits().isEmpty()) {
+			throw new IllegalArgumentException("Rate limit policy " + name + " has no limits");
+		}
+		
+		int methodMask = 0;
+		if(rule.methods().isEmpty()) {
+			methodMask = (1 << PolicyTrie.METHODS) - 1;
+		}
+		for(String method : rule.methods()) {
+			methodMask |= 1 << PolicyTrie.methodIndex(method.trim().toUpperCase(Locale.ROOT));
+		}
+		
+		Cost cost = rule.cost() != null ? rule.cost() : ONE_PERMIT;
+		if(cost.permits() < 1 || cost.bytesPerPermit() < 0) {
+			throw new IllegalArgumentException("Rate limit policy " + name + " needs a cost of at least one permit");
+		}
+		
+		String[] headerNames = new String[rule.headers().size()];
+		String[] headerValues = new String[rule.headers().size()];
+		int h = 0;
+		for(Map.Entry<String, String> header : rule.headers().entrySet()) {
+			headerNames[h] = header.getKey();
+			headerValues[h] = header.getValue();
+			h++;
+		}
+		
+		if(rule.limits().size() > CompositeRateLimiter.MAX_LEVELS) {
+			throw new IllegalArgumentException("Rate limit policy " + name + " has more than " + CompositeRateLimiter.MAX_LEVELS + " limits");
+		}
+		PolicyLimit[] limits = new PolicyLimit[rule.limits().size()];
+		List<Level> levels = new ArrayList<>(limits.length);
+		for(int i=0; i<limits.length; i++) {
+			Limit limit = rule.limits().get(i);
+			// a concurrency limit has no period; its count is the most requests in flight at once
+			boolean timed = limit.algorithm() != RateLimiterAlgorithm.ADAPTIVE_CONCURRENCY;
+			if(limit.count() < 1 || (timed && (limit.period() == null || limit.period().toMillis() < 1))) {
+				throw new IllegalArgumentException("Rate limit policy " + name + " needs a positive count and period for limit " + i);
+			}
+			long periodMs = limit.period() != null ? Math.max(1, limit.period().toMillis()) : 1_000;
+			double refillRate = limit.refillRate() != null ? limit.refillRate() : limit.count() * 1000.0 / periodMs;
+			String id = name + "#" + i;
+			KeySource key = limit.key() != null ? limit.key() : rule.key();
+			limits[i] = new PolicyLimit(id, key, limit.algorithm(), limit.count(), periodMs, refillRate,
+					limiter(previous.get(id), id, limit.algorithm(), limit.count(), periodMs, refillRate));
+			levels.add(new Level(id, limit.algorithm(), limit.count(), periodMs, refillRate, limits[i].limiter()));
+		}
+		
+		return new CompiledPolicy(name, methodMask, rule.tier(), headerNames, headerValues, rule.key(), cost, limits,
+				factory.composite(levels));
+	}
+	
+	private RateLimiter limiter(PolicyLimit previous, String id, RateLimiterAlgorithm algorithm, int count, 
+			long periodMs, double refillRate) {
+		if(previous == null) {
+			return factory.create(id, algorithm, count, periodMs, refillRate);
+		}
+		if(previous.sameLimits(algorithm, count, periodMs, refillRate)) {
+			return previous.limiter();
+		}
+		return factory.reconfigure(previous.limiter(), id, algorithm, count, periodMs, refillRate);
+	}
+	
+	private record Snapshot(
+			PolicyProperties properties,
+			PolicyTrie trie,
+			List<CompiledPolicy> policies,
+			Map<String, CompiledPolicy> byName,
+			Map<String, PolicyLimit> limits,
+			long version
+	) {}
+}
@@ -0,0 +1,25 @@
+package com.project.rate_limiter.policy;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.policy.PolicyProperties.KeySource;
+import com.project.rate_limiter.service.RateLimiter;
+
+/**
+ * One limit of a compiled policy, with a limiter instance of its own so that the same key is
+ * counted separately per limit.
+ */
+public record PolicyLimit(
+		String id,
+		KeySource key,
+		RateLimiterAlgorithm algorithm,
+		int count,
+		long periodMs,
+		double refillRate,
+		RateLimiter limiter
+) {
+	
+	boolean sameLimits(RateLimiterAlgorithm algorithm, int count, long periodMs, double refillRate) {
+		return this.algorithm == algorithm && this.count == count && this.periodMs == periodMs 
+				&& Double.compare(this.refillRate, refillRate) == 0;
+	}
+}
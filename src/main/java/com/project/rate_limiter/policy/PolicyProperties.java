@@ -0,0 +1,78 @@
+package com.project.rate_limiter.policy;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+
+/**
+ * Server-side rate limit policies, bound from {@code rate.policy.*}.
+ *
+ * @param clientAlgorithm whether requests matching no rule may still pick an algorithm with
+ *                        {@code X-RateLimit-Alg}; when false, the default, they use
+ *                        {@code defaultAlgorithm}, so clients cannot pick the weakest limit
+ * @param tierHeader      request header carrying the tenant tier that rules can match on
+ * @param tenantHeader    request header carrying the tenant id, for rules keyed by tenant
+ */
+@ConfigurationProperties(prefix = "rate.policy")
+public record PolicyProperties(
+		@DefaultValue("false") boolean clientAlgorithm,
+		@DefaultValue("TOKEN_BUCKET") RateLimiterAlgorithm defaultAlgorithm,
+		@DefaultValue("X-Tenant-Tier") String tierHeader,
+		@DefaultValue("X-Tenant-Id") String tenantHeader,
+		@DefaultValue List<Rule> rules
+) {
+	
+	/**
+	 * @param path    Ant-style path of literal segments, {@code *} (one segment) and a trailing
+	 *                {@code **} (any remainder); more specific paths win
+	 * @param methods HTTP methods the rule applies to; empty means all
+	 * @param tier    tenant tier the rule applies to; null means all
+	 * @param headers header values that must all be present
+	 * @param key     what a request is counted against, unless a limit says otherwise
+	 * @param cost    permits a request takes from every limit; one when not set
+	 * @param limits  limits that must all admit the request; a request is charged against all of
+	 *                them or, when one blocks, none
+	 */
+	public record Rule(
+			String name,
+			@DefaultValue("/**") String path,
+			@DefaultValue List<String> methods,
+			String tier,
+			@DefaultValue Map<String, String> headers,
+			@DefaultValue("USER") KeySource key,
+			Cost cost,
+			@DefaultValue List<Limit> limits
+	) {}
+	
+	/**
+	 * A request costs {@code permits}, times the count in {@code header} when the request carries
+	 * a positive one (the item count of a batch call), plus one permit per started
+	 * {@code bytesPerPermit} of request body when that is set.
+	 */
+	public record Cost(
+			@DefaultValue("1") int permits,
+			String header,
+			@DefaultValue("0") long bytesPerPermit
+	) {}
+	
+	/**
+	 * @param refillRate tokens per second for the token bucket; defaults to {@code count / period}
+	 * @param key        what this limit counts against, so one rule can cap the user, their
+	 *                   tenant and the whole route together; defaults to the rule's key
+	 */
+	public record Limit(
+			@DefaultValue("TOKEN_BUCKET") RateLimiterAlgorithm algorithm,
+			int count,
+			Duration period,
+			Double refillRate,
+			KeySource key
+	) {}
+	
+	/** {@code GLOBAL} counts every request against one shared key. */
+	public enum KeySource { USER, IP, TENANT, GLOBAL }
+}
@@ -0,0 +1,163 @@
+package com.project.rate_limiter.policy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.PropertiesPropertySourceLoader;
+import org.springframework.boot.env.PropertySourceLoader;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Feeds {@link PolicyEngine#reload} from {@code rate.policy.file}, a properties or YAML document
+ * holding the same {@code rate.policy.*} keys as the application config. The file is read once at
+ * startup and, with {@code rate.policy.watch}, again whenever it changes; a change that fails to
+ * load leaves the current rules in force and is reported by {@link #lastError()}.
+ */
+@Component
+public class PolicyReloader {
+	
+	private static final String PREFIX = "rate.policy";
+	
+	private final PolicyEngine engine;
+	
+	private final Path file;
+	
+	private final long DEBOUNCE_MS;
+	
+	private final WatchService watchService;
+	
+	private final Thread watcher;
+	
+	private volatile String lastError;
+	
+	public PolicyReloader(PolicyEngine engine,
+			@Value("${rate.policy.file:}") String file,
+			@Value("${rate.policy.watch:true}") boolean watch,
+			@Value("${rate.policy.watch-debounce-ms:200}") long debounceMs) throws IOException {
+		this.engine = engine;
+		this.file = file.isBlank() ? null : Path.of(file).toAbsolutePath().normalize();
+		this.DEBOUNCE_MS = debounceMs;
+		
+		if(this.file == null) {
+			this.watchService = null;
+			this.watcher = null;
+			return;
+		}
+		// a broken file at startup is a configuration error, not something to run without
+		reloadFromFile();
+		
+		if(watch) {
+			this.watchService = FileSystems.getDefault().newWatchService();
+			this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+			this.watcher = new Thread(this::watchLoop, "policy-file-watcher");
+			this.watcher.setDaemon(true);
+			this.watcher.start();
+		} else {
+			this.watchService = null;
+			this.watcher = null;
+		}
+	}
+	
+	/** @return the version now in force, or -1 when no {@code rate.policy.file} is configured */
+	public long reloadFromFile() throws IOException {
+		if(file == null) { return -1; }
+		return reload(file.getFileName().toString(), new FileSystemResource(file));
+	}
+	
+	/** Loads a YAML document (as uploaded to the admin endpoint) in place of the file. */
+	public long reloadFromYaml(String yaml) throws IOException {
+		return reload("uploaded.yaml", new ByteArrayResource(yaml.getBytes(StandardCharsets.UTF_8)));
+	}
+	
+	/** Why the last reload failed, or null if it succeeded. */
+	public String lastError() {
+		return lastError;
+	}
+	
+	public PolicyStatus status() {
+		List<PolicyStatus.Policy> policies = new ArrayList<>();
+		for(CompiledPolicy policy : engine.policies()) {
+			List<PolicyStatus.Limit> limits = new ArrayList<>();
+			for(PolicyLimit limit : policy.limits()) {
+				limits.add(new PolicyStatus.Limit(limit.id(), limit.key().name(), limit.algorithm().name(), limit.count(), 
+						limit.periodMs(), limit.refillRate()));
+			}
+			policies.add(new PolicyStatus.Policy(policy.name(), limits));
+		}
+		return new PolicyStatus(engine.version(), file == null ? null : file.toString(), lastError, policies);
+	}
+	
+	@PreDestroy
+	public void shutdown() throws IOException {
+		if(watcher == null) { return; }
+		watcher.interrupt();
+		watchService.close();
+	}
+	
+	private long reload(String name, Resource resource) throws IOException {
+		try {
+			long version = engine.reload(load(name, resource));
+			lastError = null;
+			return version;
+		} catch (IOException | RuntimeException ex) {
+			lastError = ex.getMessage();
+			throw ex;
+		}
+	}
+	
+	static PolicyProperties load(String name, Resource resource) throws IOException {
+		PropertySourceLoader loader = name.endsWith(".yml") || name.endsWith(".yaml")
+				? new YamlPropertySourceLoader() : new PropertiesPropertySourceLoader();
+		List<PropertySource<?>> sources = loader.load(name, resource);
+		return new Binder(ConfigurationPropertySources.from(sources)).bindOrCreate(PREFIX, PolicyProperties.class);
+	}
+	
+	private void watchLoop() {
+		while(!Thread.currentThread().isInterrupted()) {
+			try {
+				WatchKey key = watchService.take();
+				boolean changed = false;
+				for(WatchEvent<?> event : key.pollEvents()) {
+					changed |= file.getFileName().equals(event.context());
+				}
+				key.reset();
+				if(!changed) { continue; }
+				
+				// editors often write a file in several steps; let them finish before reading it
+				TimeUnit.MILLISECONDS.sleep(DEBOUNCE_MS);
+				WatchKey more;
+				while((more = watchService.poll()) != null) {
+					more.pollEvents();
+					more.reset();
+				}
+				try {
+					reloadFromFile();
+				} catch (IOException | RuntimeException ex) {
+					// recorded in lastError; keep watching for a corrected file
+				}
+			} catch (InterruptedException | ClosedWatchServiceException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
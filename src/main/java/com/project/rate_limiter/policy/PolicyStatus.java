@@ -0,0 +1,21 @@
+package com.project.rate_limiter.policy;
+
+import java.util.List;
+
+/**
+ * The rules in force and how they got there, for the admin endpoint.
+ *
+ * @param file      the watched policy file, or null when rules only come from the application config
+ * @param lastError why the last reload failed, or null if it succeeded
+ */
+public record PolicyStatus(
+		long version,
+		String file,
+		String lastError,
+		List<Policy> policies
+) {
+	
+	public record Policy(String name, List<Limit> limits) {}
+	
+	public record Limit(String id, String key, String algorithm, int count, long periodMs, double refillRate) {}
+}
@@ -0,0 +1,183 @@
+package com.project.rate_limiter.policy;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Path-segment trie over the compiled policies.
+ * <p>
+ * Each node keeps its literal children in a small open-addressing table keyed by the segment's
+ * {@code String.hashCode}, so a segment is looked up straight from the request URI by index range
+ * without creating a substring. Policies attached to a node are pre-sorted into one array per HTTP
+ * method. A match therefore costs one probe per path segment plus the tier/header checks of the
+ * few rules sharing that path and method, independent of how many rules exist.
+ * <p>
+ * Precedence is literal segment, then {@code *}, then a trailing {@code **}; within one node the
+ * first declared rule whose conditions hold wins.
+ */
+final class PolicyTrie {
+	
+	static final int OTHER_METHOD = 8;
+	static final int METHODS = 9;
+	
+	private final Node root = new Node(null);
+	
+	void add(String pattern, CompiledPolicy policy) {
+		Node node = root;
+		String[] segments = pattern.split("/");
+		for(int i=0; i<segments.length; i++) {
+			String segment = segments[i];
+			if(segment.isEmpty()) { continue; }
+			if(segment.equals("**")) {
+				if(!isLast(segments, i)) {
+					throw new IllegalArgumentException("'**' is only supported at the end of a policy path: " + pattern);
+				}
+				if(node.rest == null) { node.rest = new Node("**"); }
+				node = node.rest;
+			} else if(segment.equals("*")) {
+				if(node.single == null) { node.single = new Node("*"); }
+				node = node.single;
+			} else {
+				node = node.children.computeIfAbsent(segment, Node::new);
+			}
+		}
+		node.pending.add(policy);
+	}
+	
+	void freeze() {
+		root.freeze();
+	}
+	
+	<R> CompiledPolicy match(R request, HeaderLookup<R> headers, String path, int method, String tierHeader) {
+		return match(root, path, 0, method, request, headers, tierHeader);
+	}
+	
+	static int methodIndex(String method) {
+		return switch(method) {
+			case "GET" -> 0;
+			case "HEAD" -> 1;
+			case "POST" -> 2;
+			case "PUT" -> 3;
+			case "PATCH" -> 4;
+			case "DELETE" -> 5;
+			case "OPTIONS" -> 6;
+			case "TRACE" -> 7;
+			default -> OTHER_METHOD;
+		};
+	}
+	
+	private static <R> CompiledPolicy match(Node node, String path, int position, int method,
+			R request, HeaderLookup<R> headers, String tierHeader) {
+		int start = position;
+		while(start < path.length() && path.charAt(start) == '/') { start++; }
+		
+		if(start == path.length()) {
+			CompiledPolicy exact = select(node, method, request, headers, tierHeader);
+			if(exact != null) { return exact; }
+			// "**" also matches zero remaining segments
+			return node.rest == null ? null : select(node.rest, method, request, headers, tierHeader);
+		}
+		
+		int end = path.indexOf('/', start);
+		if(end < 0) { end = path.length(); }
+		
+		Node literal = node.child(path, start, end);
+		if(literal != null) {
+			CompiledPolicy matched = match(literal, path, end, method, request, headers, tierHeader);
+			if(matched != null) { return matched; }
+		}
+		if(node.single != null) {
+			CompiledPolicy matched = match(node.single, path, end, method, request, headers, tierHeader);
+			if(matched != null) { return matched; }
+		}
+		return node.rest == null ? null : select(node.rest, method, request, headers, tierHeader);
+	}
+	
+	private static <R> CompiledPolicy select(Node node, int method, R request, HeaderLookup<R> headers, String tierHeader) {
+		for(CompiledPolicy policy : node.byMethod[method]) {
+			if(policy.matches(request, headers, tierHeader)) {
+				return policy;
+			}
+		}
+		return null;
+	}
+	
+	private static boolean isLast(String[] segments, int index) {
+		for(int i=index+1; i<segments.length; i++) {
+			if(!segments[i].isEmpty()) { return false; }
+		}
+		return true;
+	}
+	
+	private static int hash(String path, int start, int end) {
+		int h = 0;
+		for(int i=start; i<end; i++) {
+			h = 31 * h + path.charAt(i);
+		}
+		return h;
+	}
+	
+	private static int spread(int h) {
+		return h ^ (h >>> 16);
+	}
+	
+	private static final class Node {
+		
+		private static final CompiledPolicy[] NONE = new CompiledPolicy[0];
+		
+		private final String segment;
+		private Map<String, Node> children = new LinkedHashMap<>();
+		private List<CompiledPolicy> pending = new ArrayList<>();
+		private Node single;
+		private Node rest;
+		
+		private Node[] table = new Node[0];
+		private CompiledPolicy[][] byMethod;
+		
+		private Node(String segment) {
+			this.segment = segment;
+		}
+		
+		private Node child(String path, int start, int end) {
+			if(table.length == 0) { return null; }
+			int mask = table.length - 1;
+			int length = end - start;
+			for(int slot = spread(hash(path, start, end)) & mask; ; slot = (slot + 1) & mask) {
+				Node candidate = table[slot];
+				if(candidate == null) { return null; }
+				if(candidate.segment.length() == length && path.regionMatches(start, candidate.segment, 0, length)) {
+					return candidate;
+				}
+			}
+		}
+		
+		private void freeze() {
+			if(!children.isEmpty()) {
+				table = new Node[Integer.highestOneBit(children.size() * 4 - 1) << 1];
+				int mask = table.length - 1;
+				for(Node child : children.values()) {
+					int slot = spread(child.segment.hashCode()) & mask;
+					while(table[slot] != null) { slot = (slot + 1) & mask; }
+					table[slot] = child;
+					child.freeze();
+				}
+			}
+			if(single != null) { single.freeze(); }
+			if(rest != null) { rest.freeze(); }
+			
+			byMethod = new CompiledPolicy[METHODS][];
+			for(int method=0; method<METHODS; method++) {
+				List<CompiledPolicy> applicable = new ArrayList<>();
+				for(CompiledPolicy policy : pending) {
+					if(policy.appliesTo(method)) { applicable.add(policy); }
+				}
+				byMethod[method] = applicable.isEmpty() ? NONE : applicable.toArray(NONE);
+			}
+			children = null;
+			pending = null;
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package com.project.rate_limiter.service;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.entity.MutableDecision;
+import com.project.rate_limiter.entity.RateLimiterDecision;
+
+/**
+ * Limits the requests in flight at once rather than their rate, and finds the limit from the
+ * latency of the requests it lets through, in the manner of TCP Vegas and Netflix's gradient
+ * limiter. The key is not part of the limit, only reported: one instance is one limit, shared by
+ * every request it decides, and a policy gives a route its own limit with a limit of this
+ * algorithm.
+ * <p>
+ * Each completion updates a short-term and a long-term moving average of the latency. While the
+ * short-term one stays within {@code tolerance} of the long-term one the limit grows by about its
+ * square root per completion, the queue a healthy downstream absorbs; once requests take longer,
+ * the limit is scaled down by the ratio, to no less than half at a time. The change is smoothed,
+ * kept between the minimum and maximum, and only made while at least half the limit is in use,
+ * since an idle limit says nothing about what the downstream can take. A response telling of
+ * overload (503, 504 or a timeout) cuts the limit by a tenth straight away.
+ * <p>
+ * Admission is a compare-and-set on the in-flight count. Completions update the estimates one at
+ * a time; a completion that finds another one updating skips its sample rather than wait. The
+ * overload cut does not take part in that: it is a compare-and-set on the limit of its own, so
+ * every overload counts, and a sample that loses the limit to it leaves the cut in place.
+ */
+public class AdaptiveConcurrencyLimiter implements RateLimiter {
+	
+	private static final double OVERLOAD_BACKOFF = 0.9;
+	
+	private static final double NANOS_PER_MS = 1_000_000.0;
+	
+	private final String name;
+	
+	private final AdaptiveLimitSettings settings;
+	
+	private final double SHORT_ALPHA;
+	
+	private final double LONG_ALPHA;
+	
+	/** Shared with the instances that take over from this one, which requests admitted here release. */
+	private final AtomicInteger inFlight;
+	
+	private final AtomicBoolean updating = new AtomicBoolean();
+	
+	/** Bits of the double limit, so that samples and overload cuts can compare-and-set it. */
+	private final AtomicLong limitBits;
+	
+	private volatile double shortRttNanos;
+	
+	private volatile double longRttNanos;
+	
+	/**
+	 * @param name identifies this limit in the metrics
+	 */
+	public AdaptiveConcurrencyLimiter(String name, AdaptiveLimitSettings settings) {
+		this(name, settings, new AtomicInteger(), settings.initialLimit(), 0, 0);
+	}
+	
+	private AdaptiveConcurrencyLimiter(String name, AdaptiveLimitSettings settings, AtomicInteger inFlight,
+			double limit, double shortRttNanos, double longRttNanos) {
+		this.name = name;
+		this.settings = settings;
+		this.SHORT_ALPHA = 2.0 / (settings.shortWindow() + 1);
+		this.LONG_ALPHA = 2.0 / (settings.longWindow() + 1);
+		this.inFlight = inFlight;
+		this.limitBits = new AtomicLong(Double.doubleToRawLongBits(clamp(limit)));
+		this.shortRttNanos = shortRttNanos;
+		this.longRttNanos = longRttNanos;
+	}
+	
+	public String name() {
+		return name;
+	}
+	
+	@Override
+	public RateLimiterAlgorithm algorithm() {
+		return RateLimiterAlgorithm.ADAPTIVE_CONCURRENCY;
+	}
+	
+	@Override
+	public boolean holdsPermits() {
+		return true;
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime) {
+		return decision(user, currentTime, 1);
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime, int permits) {
+		return decision(user, currentTime, permits, new MutableDecision()).toDecision();
+	}
+	
+	@Override
+	public MutableDecision decision(String user, long currentTime, MutableDecision into) {
+		return decision(user, currentTime, 1, into);
+	}
+	
+	/** A request takes one slot whatever it costs: the downstream serves it as one. */
+	@Override
+	public MutableDecision decision(String user, long currentTime, int permits, MutableDecision into) {
+		into.forPermits(permits);
+		int allowed = limit();
+		int current;
+		do {
+			current = inFlight.get();
+			if(current >= allowed) {
+				return into.block(rttMillis());
+			}
+		} while(!inFlight.compareAndSet(current, current + 1));
+		return into.allow(allowed - current - 1, rttMillis());
+	}
+	
+	/** Frees the slot without a latency sample, for a request that was admitted but never served. */
+	@Override
+	public void refund(String user, long currentTime, int permits) {
+		inFlight.decrementAndGet();
+	}
+	
+	@Override
+	public void release(String user, long latencyNanos, boolean overloaded) {
+		int busy = inFlight.getAndDecrement();
+		if(overloaded) {
+			long bits;
+			do {
+				bits = limitBits.get();
+			} while(!limitBits.compareAndSet(bits, Double.doubleToRawLongBits(clamp(Double.longBitsToDouble(bits) * OVERLOAD_BACKOFF))));
+			return;
+		}
+		if(latencyNanos < 0) { return; }
+		if(!updating.compareAndSet(false, true)) { return; }
+		try {
+			sample(latencyNanos, busy);
+		} finally {
+			updating.set(false);
+		}
+	}
+	
+	/** The same estimates with a new maximum; requests admitted here release into either. */
+	@Override
+	public RateLimiter withLimits(int count, long periodMs, double refillRate) {
+		return new AdaptiveConcurrencyLimiter(name, settings.withMaxLimit(count), inFlight, currentLimit(), shortRttNanos, longRttNanos);
+	}
+	
+	public int limit() {
+		return (int) currentLimit();
+	}
+	
+	public int inFlight() {
+		return inFlight.get();
+	}
+	
+	public double shortRttNanos() {
+		return shortRttNanos;
+	}
+	
+	public double longRttNanos() {
+		return longRttNanos;
+	}
+	
+	private void sample(long latencyNanos, int busy) {
+		double rtt = Math.max(1, latencyNanos);
+		if(longRttNanos == 0) {
+			shortRttNanos = rtt;
+			longRttNanos = rtt;
+			return;
+		}
+		double shortRtt = shortRttNanos + (rtt - shortRttNanos) * SHORT_ALPHA;
+		double longRtt = longRttNanos + (rtt - longRttNanos) * LONG_ALPHA;
+		// after a long stretch of high latency the long-term average lags far behind a recovery;
+		// pulling it down lets the limit grow back without waiting for the average to catch up
+		if(longRtt > 2 * shortRtt) {
+			longRtt *= 0.95;
+		}
+		shortRttNanos = shortRtt;
+		longRttNanos = longRtt;
+		
+		long bits = limitBits.get();
+		double current = Double.longBitsToDouble(bits);
+		if(busy < current / 2) { return; }
+		double gradient = Math.max(0.5, Math.min(1.0, settings.tolerance() * longRtt / shortRtt));
+		double target = current * gradient + Math.sqrt(current);
+		// an overload cut made meanwhile stands
+		limitBits.compareAndSet(bits, Double.doubleToRawLongBits(clamp(current * (1 - settings.smoothing()) + target * settings.smoothing())));
+	}
+	
+	private double currentLimit() {
+		return Double.longBitsToDouble(limitBits.get());
+	}
+	
+	private double clamp(double value) {
+		return Math.max(settings.minLimit(), Math.min(settings.maxLimit(), value));
+	}
+	
+	private long rttMillis() {
+		return Math.max(1, (long) Math.ceil(shortRttNanos / NANOS_PER_MS));
+	}
+}
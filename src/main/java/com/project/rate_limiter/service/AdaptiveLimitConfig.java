@@ -0,0 +1,26 @@
+package com.project.rate_limiter.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class AdaptiveLimitConfig {
+	
+	@Bean
+	public AdaptiveLimitSettings adaptiveLimitSettings(@Value("${rate.adaptive.initial-limit:20}") int initialLimit,
+			@Value("${rate.adaptive.min-limit:1}") int minLimit,
+			@Value("${rate.adaptive.max-limit:200}") int maxLimit,
+			@Value("${rate.adaptive.smoothing:0.2}") double smoothing,
+			@Value("${rate.adaptive.tolerance:1.5}") double tolerance,
+			@Value("${rate.adaptive.short-window:10}") int shortWindow,
+			@Value("${rate.adaptive.long-window:600}") int longWindow) {
+		return new AdaptiveLimitSettings(initialLimit, minLimit, maxLimit, smoothing, tolerance, shortWindow, longWindow);
+	}
+	
+	/** The limit for requests that match no policy, shared by all of them. */
+	@Bean
+	public AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter(AdaptiveLimitSettings settings) {
+		return new AdaptiveConcurrencyLimiter("default", settings);
+	}
+}
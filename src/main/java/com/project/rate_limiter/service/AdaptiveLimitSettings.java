@@ -0,0 +1,40 @@
+package com.project.rate_limiter.service;
+
+/**
+ * Tuning shared by every {@link AdaptiveConcurrencyLimiter}.
+ *
+ * @param initialLimit concurrency allowed before any request has completed
+ * @param maxLimit     the most the limit grows to; a policy limit's count takes its place
+ * @param smoothing    weight of each new estimate in the limit, 0-1
+ * @param tolerance    how far the short-term latency may rise above the long-term one before
+ *                     the limit shrinks, as a ratio
+ * @param shortWindow  completions averaged into the short-term latency
+ * @param longWindow   completions averaged into the long-term latency
+ */
+public record AdaptiveLimitSettings(
+		int initialLimit,
+		int minLimit,
+		int maxLimit,
+		double smoothing,
+		double tolerance,
+		int shortWindow,
+		int longWindow
+) {
+	
+	public static final AdaptiveLimitSettings DEFAULTS = new AdaptiveLimitSettings(20, 1, 200, 0.2, 1.5, 10, 600);
+	
+	public AdaptiveLimitSettings {
+		if(minLimit < 1 || maxLimit < minLimit || initialLimit < 1) {
+			throw new IllegalArgumentException("Adaptive limits need 1 <= min-limit <= max-limit and a positive initial limit");
+		}
+		if(smoothing <= 0 || smoothing > 1 || tolerance < 1 || shortWindow < 1 || longWindow < shortWindow) {
+			throw new IllegalArgumentException("Adaptive smoothing must be in (0, 1], tolerance at least 1 and the long window no shorter than the short one");
+		}
+	}
+	
+	/** These settings for a limit that grows to at most {@code maxLimit}. */
+	public AdaptiveLimitSettings withMaxLimit(int maxLimit) {
+		return new AdaptiveLimitSettings(Math.min(initialLimit, maxLimit), Math.min(minLimit, maxLimit), maxLimit,
+				smoothing, tolerance, shortWindow, longWindow);
+	}
+}
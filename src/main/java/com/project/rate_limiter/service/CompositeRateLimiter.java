@@ -0,0 +1,259 @@
+package com.project.rate_limiter.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.entity.Admission;
+import com.project.rate_limiter.entity.MutableDecision;
+import com.project.rate_limiter.entity.RateLimiterDecision;
+
+/**
+ * Decides one request against a chain of limiters, say per user, per tenant and global, each
+ * with its own key: the request is charged at every level or at none, and the reported decision
+ * is the tightest one (the longest wait when blocked, the fewest remaining when admitted). An
+ * admitted request is delayed by the longest delay any shaping level asked for.
+ * <p>
+ * In-process levels are charged one after another with their usual lock-free update, and the
+ * ones that admitted are refunded when any level blocks, so a concurrent request may briefly see
+ * those charges. Levels kept in Redis are checked and charged together by one script, which
+ * costs a single round trip however many there are and is skipped when an in-process level has
+ * already blocked.
+ * <p>
+ * Levels that {@link RateLimiter#holdsPermits hold their permits}, such as a concurrency limit,
+ * are given them back through {@link #release} once the request has been served.
+ */
+public final class CompositeRateLimiter {
+	
+	/** The levels charged by one decision are tracked as bits of a long. */
+	public static final int MAX_LEVELS = Long.SIZE;
+	
+	private final RateLimiter[] local;
+	
+	private final SharedLevels shared;
+	
+	/** The in-process levels that hold their permits, as bits. */
+	private final long holding;
+	
+	/**
+	 * @param local  limiter per level, null for the levels decided by {@code shared}
+	 * @param shared decides the remaining levels in one call; null when every level is in-process
+	 */
+	public CompositeRateLimiter(RateLimiter[] local, SharedLevels shared) {
+		if(local.length > MAX_LEVELS) {
+			throw new IllegalArgumentException("A composite limit has at most " + MAX_LEVELS + " levels");
+		}
+		this.local = local.clone();
+		this.shared = shared;
+		long holds = 0;
+		for(int i=0; i<local.length; i++) {
+			if(local[i] != null && local[i].holdsPermits()) {
+				holds |= 1L << i;
+			}
+		}
+		this.holding = holds;
+	}
+	
+	public int levels() {
+		return local.length;
+	}
+	
+	/** Whether an admitted request must be {@link #release released} once served. */
+	public boolean holdsPermits() {
+		return holding != 0;
+	}
+	
+	/** {@link RateLimiter#release} on every level that holds its permits. */
+	public void release(String[] keys, long latencyNanos, boolean overloaded) {
+		long held = holding;
+		for(int i=0; held != 0; i++, held >>>= 1) {
+			if((held & 1) != 0) {
+				local[i].release(keys[i], latencyNanos, overloaded);
+			}
+		}
+	}
+	
+	/**
+	 * @param keys    the key of each level, in level order
+	 * @param permits what the request costs at every level
+	 * @param scratch overwritten with the individual decisions
+	 * @return the level that decided: the one blocking longest, or the one with the fewest remaining
+	 */
+	public int decision(String[] keys, long currentTime, int permits, MutableDecision into, MutableDecision scratch) {
+		int binding = -1;
+		long charged = 0;
+		long delay = 0;
+		for(int i=0; i<local.length; i++) {
+			if(local[i] == null) { continue; }
+			local[i].decision(keys[i], currentTime, permits, scratch);
+			if(scratch.isAllowed()) {
+				charged |= 1L << i;
+				delay = Math.max(delay, scratch.delayMs());
+			}
+			if(binding < 0 || scratch.isMoreRestrictiveThan(into)) {
+				into.set(scratch);
+				binding = i;
+			}
+		}
+		
+		if(shared != null && (binding < 0 || into.isAllowed())) {
+			int level;
+			try {
+				level = shared.decide(keys, currentTime, permits, scratch);
+			} catch(RuntimeException ex) {
+				refund(charged, keys, currentTime, permits);
+				throw ex;
+			}
+			if(binding < 0 || scratch.isMoreRestrictiveThan(into)) {
+				into.set(scratch);
+				binding = level;
+			}
+		}
+		
+		if(!into.isAllowed()) {
+			refund(charged, keys, currentTime, permits);
+		}
+		into.delayAtLeast(delay);
+		return binding;
+	}
+	
+	/**
+	 * {@link #decision} for callers that must not block: the in-process levels are decided on the
+	 * calling thread and the stage completes when the shared levels' script replies.
+	 */
+	public CompletionStage<LevelDecision> decisionAsync(String[] keys, long currentTime, int permits) {
+		MutableDecision into = new MutableDecision();
+		MutableDecision scratch = new MutableDecision();
+		int binding = -1;
+		long charged = 0;
+		long delay = 0;
+		for(int i=0; i<local.length; i++) {
+			if(local[i] == null) { continue; }
+			local[i].decision(keys[i], currentTime, permits, scratch);
+			if(scratch.isAllowed()) {
+				charged |= 1L << i;
+				delay = Math.max(delay, scratch.delayMs());
+			}
+			if(binding < 0 || scratch.isMoreRestrictiveThan(into)) {
+				into.set(scratch);
+				binding = i;
+			}
+		}
+		
+		if(shared == null || (binding >= 0 && !into.isAllowed())) {
+			if(!into.isAllowed()) {
+				refund(charged, keys, currentTime, permits);
+			}
+			into.delayAtLeast(delay);
+			return CompletableFuture.completedFuture(new LevelDecision(binding, into.toDecision()));
+		}
+		
+		long localCharged = charged;
+		int localBinding = binding;
+		long localDelay = delay;
+		CompletionStage<Integer> reply;
+		try {
+			reply = shared.decideAsync(keys, currentTime, permits, scratch);
+		} catch(RuntimeException ex) {
+			reply = CompletableFuture.failedFuture(ex);
+		}
+		return reply.handle((level, error) -> {
+			if(error != null) {
+				refund(localCharged, keys, currentTime, permits);
+				throw error instanceof CompletionException completion ? completion : new CompletionException(error);
+			}
+			int decided = localBinding;
+			if(decided < 0 || scratch.isMoreRestrictiveThan(into)) {
+				into.set(scratch);
+				decided = level;
+			}
+			if(!into.isAllowed()) {
+				refund(localCharged, keys, currentTime, permits);
+			}
+			into.delayAtLeast(localDelay);
+			return new LevelDecision(decided, into.toDecision());
+		});
+	}
+	
+	/**
+	 * Gives back the permits of an admitted request that was turned away after all, say for want
+	 * of room to delay it, at every in-process level that used them up. Levels that hold their
+	 * permits give them back through {@link #release} instead, and shared levels keep theirs.
+	 */
+	public void refund(String[] keys, long currentTime, int permits) {
+		for(int i=0; i<local.length; i++) {
+			if(local[i] != null && (holding & (1L << i)) == 0) {
+				local[i].refund(keys[i], currentTime, permits);
+			}
+		}
+	}
+	
+	private void refund(long charged, String[] keys, long currentTime, int permits) {
+		for(int i=0; charged != 0; i++, charged >>>= 1) {
+			if((charged & 1) != 0) {
+				local[i].refund(keys[i], currentTime, permits);
+			}
+		}
+	}
+	
+	/** Levels whose state lives outside the process, decided together. */
+	public interface SharedLevels {
+		
+		/**
+		 * Charges every shared level or none of them.
+		 *
+		 * @return the index of the level that decided, as for {@link CompositeRateLimiter#decision}
+		 */
+		int decide(String[] keys, long currentTime, int permits, MutableDecision into);
+		
+		/** {@link #decide} completing when the remote store replies; {@code into} is written first. */
+		default CompletionStage<Integer> decideAsync(String[] keys, long currentTime, int permits, MutableDecision into) {
+			return CompletableFuture.completedFuture(decide(keys, currentTime, permits, into));
+		}
+	}
+	
+	/** An asynchronous composite decision together with the level that decided it. */
+	public record LevelDecision(int level, RateLimiterDecision decision) implements Admission {
+		
+		@Override
+		public boolean isAllowed() {
+			return decision.isAllowed();
+		}
+		
+		@Override
+		public int remaining() {
+			return decision.remaining();
+		}
+		
+		@Override
+		public long retryAfterMs() {
+			return decision.retryAfterMs();
+		}
+		
+		@Override
+		public long timeToFullMs() {
+			return decision.timeToFullMs();
+		}
+		
+		@Override
+		public long delayMs() {
+			return decision.delayMs();
+		}
+	}
+	
+	/**
+	 * One level of a composite limit, as passed to {@link RateLimiterFactory#composite}.
+	 *
+	 * @param namespace the namespace {@code limiter} was created with
+	 * @param limiter   used when the level is decided in-process
+	 */
+	public record Level(
+			String namespace,
+			RateLimiterAlgorithm algorithm,
+			int count,
+			long periodMs,
+			double refillRate,
+			RateLimiter limiter
+	) {}
+}
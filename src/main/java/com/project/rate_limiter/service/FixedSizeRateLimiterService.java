@@ -1,61 +1,172 @@
 package com.project.rate_limiter.service;
 
-import java.time.Instant;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.entity.FixedWindowCounter;
+import com.project.rate_limiter.entity.MutableDecision;
+import com.project.rate_limiter.entity.PackedState;
 import com.project.rate_limiter.entity.RateLimiterDecision;
-import com.project.rate_limiter.entity.UserRequestInfo;
+import com.project.rate_limiter.snapshot.SnapshotInput;
+import com.project.rate_limiter.snapshot.SnapshotOutput;
+import com.project.rate_limiter.snapshot.Snapshottable;
+import com.project.rate_limiter.store.KeyedStateStore;
+import com.project.rate_limiter.store.LimiterStateStore;
+import com.project.rate_limiter.store.LimiterStateStore.StateWrite;
+import com.project.rate_limiter.store.OffHeapStateTable;
+import com.project.rate_limiter.store.StateStoreSettings;
+import com.project.rate_limiter.store.StateStoreStats;
 
 @Service
-public class FixedSizeRateLimiterService {
+@ConditionalOnProperty(name = "rate.limiter.backend", havingValue = "local", matchIfMissing = true)
+public class FixedSizeRateLimiterService implements RateLimiter, Snapshottable {
 	
-	@Value("${rate.request.limit.count}")
-	private int REQUEST_LIMIT;
+	private final int REQUEST_LIMIT;
 	
-	@Value("${rate.request.limit.timeperiod}")
-	private long TIME_WINDOW_MS;
+	private final long TIME_WINDOW_MS;
 	
-	private Map<String, UserRequestInfo> userRequestMap = new HashMap<>();
+	private final KeyedStateStore<PackedState> userRequestMap;
 	
-	public RateLimiterDecision decision(String user) {
-		long now = Instant.now().toEpochMilli();
-		return decision(user, now);
+	private final StateWrite<PackedState, MutableDecision> decider = this::decide;
+	
+	private final StateWrite<PackedState, MutableDecision> refunder = this::refund;
+	
+	public FixedSizeRateLimiterService(@Value("${rate.request.limit.count}") int requestLimit,
+			@Value("${rate.request.limit.timeperiod}") long timeWindowMs,
+			StateStoreSettings storeSettings) {
+		if(requestLimit > FixedWindowCounter.MAX_COUNT) {
+			throw new IllegalArgumentException("rate.request.limit.count must not exceed " + FixedWindowCounter.MAX_COUNT);
+		}
+		this.REQUEST_LIMIT = requestLimit;
+		this.TIME_WINDOW_MS = timeWindowMs;
+		this.userRequestMap = KeyedStateStore.packed(storeSettings, now -> FixedWindowCounter.pack(now, 0), FixedWindowCounter::of,
+				(state, now) -> now - FixedWindowCounter.limitWindowStart(state) > TIME_WINDOW_MS);
+	}
+	
+	@Override
+	public RateLimiterAlgorithm algorithm() {
+		return RateLimiterAlgorithm.FIXED_WINDOW;
 	}
 	
+	@Override
 	public RateLimiterDecision decision(String user, long currentTime) {
-		UserRequestInfo userInfo =  userRequestMap.getOrDefault(user, new UserRequestInfo(currentTime, 0, null));
-		
-		// window reset?
-		if(currentTime - userInfo.getLimitWindowStart() > TIME_WINDOW_MS) {
-			userInfo.setNumberOfRequestsMade(1);
-			userInfo.setLimitWindowStart(currentTime);
-			userRequestMap.put(user, userInfo);
-			
-			int remaining = Math.max(0, REQUEST_LIMIT-1);
-			long resetInMs = TIME_WINDOW_MS;
-			return new RateLimiterDecision(true, remaining, 0L, resetInMs);
-		}
-		
-		// within current window
-		if(userInfo.getNumberOfRequestsMade() < REQUEST_LIMIT) {
-			userInfo.setNumberOfRequestsMade(userInfo.getNumberOfRequestsMade()+1);
-			userRequestMap.put(user, userInfo);
-			
-			int remaining = Math.max(0, REQUEST_LIMIT - userInfo.getNumberOfRequestsMade());
-			long resetInMs = TIME_WINDOW_MS - (currentTime - userInfo.getLimitWindowStart());
-			return new RateLimiterDecision(true, remaining, 0L, resetInMs);
+		return decision(user, currentTime, 1);
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime, int permits) {
+		return decision(user, currentTime, permits, new MutableDecision()).toDecision();
+	}
+	
+	@Override
+	public MutableDecision decision(String user, long currentTime, MutableDecision into) {
+		return decision(user, currentTime, 1, into);
+	}
+	
+	@Override
+	public MutableDecision decision(String user, long currentTime, int permits, MutableDecision into) {
+		return userRequestMap.update(user, currentTime, into.forPermits(permits), decider);
+	}
+	
+	@Override
+	public void refund(String user, long currentTime, int permits) {
+		userRequestMap.update(user, currentTime, new MutableDecision().forPermits(permits), refunder);
+	}
+	
+	@Override
+	public boolean hasState(String user) {
+		return userRequestMap.contains(user);
+	}
+	
+	@Override
+	public StateStoreStats storeStats() {
+		return userRequestMap.stats();
+	}
+	
+	@Override
+	public long estimatedMemoryBytes() {
+		// header plus one packed long
+		return userRequestMap.estimatedBytes(24);
+	}
+	
+	@Override
+	public RateLimiter withLimits(int count, long periodMs, double refillRate) {
+		if(!(userRequestMap instanceof LimiterStateStore<PackedState> previous)) { return null; }
+		FixedSizeRateLimiterService next = new FixedSizeRateLimiterService(count, periodMs, userRequestMap.settings());
+		// same window start, with the count scaled so the used fraction of the limit carries over
+		((LimiterStateStore<PackedState>) next.userRequestMap).migrateFrom(previous, (userInfo, now) -> {
+			long state = userInfo.get();
+			int made = LimitScaling.scale(FixedWindowCounter.numberOfRequestsMade(state), REQUEST_LIMIT, count, FixedWindowCounter.MAX_COUNT);
+			return FixedWindowCounter.of(FixedWindowCounter.pack(FixedWindowCounter.limitWindowStart(state), made));
+		});
+		return next;
+	}
+	
+	@Override
+	public String snapshotSignature() {
+		return "fixed-window/1" + (userRequestMap instanceof OffHeapStateTable ? "/hashed" : "");
+	}
+	
+	@Override
+	public void writeSnapshot(SnapshotOutput out) throws IOException {
+		userRequestMap.writeSnapshot(out, (userInfo, o) -> o.putLong(userInfo.get()));
+	}
+	
+	@Override
+	public long readSnapshot(SnapshotInput in, long currentTime) {
+		return userRequestMap.readSnapshot(in, currentTime, source -> FixedWindowCounter.of(source.getLong()));
+	}
+	
+	private void refund(PackedState userInfo, long currentTime, MutableDecision refund) {
+		while(true) {
+			long state = userInfo.get();
+			int numberOfRequestsMade = FixedWindowCounter.numberOfRequestsMade(state);
+			if(numberOfRequestsMade == 0) { return; }
+			long updated = FixedWindowCounter.pack(FixedWindowCounter.limitWindowStart(state), 
+					Math.max(0, numberOfRequestsMade - refund.permits()));
+			if(userInfo.compareAndSet(state, updated)) { return; }
 		}
-		
-		// blocked
-		long resetInMs = TIME_WINDOW_MS - (currentTime - userInfo.getLimitWindowStart());
-		return new RateLimiterDecision(false, 0, resetInMs, resetInMs);
 	}
 	
-	public boolean isAllowed(String user) {
-		return decision(user).isAllowed();
+	private void decide(PackedState userInfo, long currentTime, MutableDecision into) {
+		int permits = into.permits();
+		while(true) {
+			long state = userInfo.get();
+			long limitWindowStart = FixedWindowCounter.limitWindowStart(state);
+			int numberOfRequestsMade = FixedWindowCounter.numberOfRequestsMade(state);
+			
+			// window reset?
+			if(currentTime - limitWindowStart > TIME_WINDOW_MS) {
+				if(permits > REQUEST_LIMIT) {
+					into.block(TIME_WINDOW_MS);
+					return;
+				}
+				if(!userInfo.compareAndSet(state, FixedWindowCounter.pack(currentTime, permits))) { continue; }
+				
+				int remaining = REQUEST_LIMIT - permits;
+				long resetInMs = TIME_WINDOW_MS;
+				into.allow(remaining, resetInMs);
+				return;
+			}
+			
+			// within current window
+			if(numberOfRequestsMade + permits <= REQUEST_LIMIT) {
+				if(!userInfo.compareAndSet(state, FixedWindowCounter.pack(limitWindowStart, numberOfRequestsMade+permits))) { continue; }
+				
+				int remaining = REQUEST_LIMIT - (numberOfRequestsMade+permits);
+				long resetInMs = TIME_WINDOW_MS - (currentTime - limitWindowStart);
+				into.allow(remaining, resetInMs);
+				return;
+			}
+			
+			// blocked
+			long resetInMs = TIME_WINDOW_MS - (currentTime - limitWindowStart);
+			into.block(resetInMs);
+			return;
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,189 @@
+package com.project.rate_limiter.service;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.entity.ArrivalTime;
+import com.project.rate_limiter.entity.MutableDecision;
+import com.project.rate_limiter.entity.PackedState;
+import com.project.rate_limiter.entity.RateLimiterDecision;
+import com.project.rate_limiter.entity.TokenBucketSpec;
+import com.project.rate_limiter.snapshot.SnapshotInput;
+import com.project.rate_limiter.snapshot.SnapshotOutput;
+import com.project.rate_limiter.snapshot.Snapshottable;
+import com.project.rate_limiter.store.KeyedStateStore;
+import com.project.rate_limiter.store.LimiterStateStore;
+import com.project.rate_limiter.store.LimiterStateStore.StateWrite;
+import com.project.rate_limiter.store.OffHeapStateTable;
+import com.project.rate_limiter.store.StateStoreSettings;
+import com.project.rate_limiter.store.StateStoreStats;
+
+/**
+ * Generic Cell Rate Algorithm: {@code count} requests per period, spaced one emission interval
+ * ({@code period / count}) apart, with a burst of up to {@code count} at once from an idle key.
+ * <p>
+ * The only state is the theoretical arrival time (TAT) of the next request. Each admitted permit
+ * pushes it one interval further; a request is admitted while it stays within one period of now.
+ * That is a token bucket refilling at {@code count / period}, but without a token count or refill
+ * clock to keep, and the wait and the requests left follow exactly from the one timestamp.
+ * <p>
+ * The TAT is 8 bytes, but a key costs close to that only in an {@link OffHeapStateTable}, as a
+ * 24-byte slot with the key's hash and last access. On the heap the key string, map entry and
+ * {@link ArrivalTime} object bring it to about 150 bytes, as for the other packed limiters.
+ */
+@Service
+@ConditionalOnProperty(name = "rate.limiter.backend", havingValue = "local", matchIfMissing = true)
+public class GcraRateLimiterService implements RateLimiter, Snapshottable {
+	
+	private static final long MICROS_PER_MS = 1_000L;
+	
+	private final int REQUEST_LIMIT;
+	
+	private final long TIME_WINDOW_MS;
+	
+	private final long INTERVAL_MICROS;
+	
+	private final long TOLERANCE_MICROS;
+	
+	private final KeyedStateStore<PackedState> arrivals;
+	
+	private final StateWrite<PackedState, MutableDecision> decider = this::decide;
+	
+	private final StateWrite<PackedState, MutableDecision> refunder = this::refund;
+	
+	public GcraRateLimiterService(@Value("${rate.request.limit.count}") int requestLimit,
+			@Value("${rate.request.limit.timeperiod}") long timeWindowMs,
+			StateStoreSettings storeSettings) {
+		if(requestLimit < 1 || timeWindowMs < 1) {
+			throw new IllegalArgumentException("GCRA needs a limit and a period of at least 1");
+		}
+		this.REQUEST_LIMIT = requestLimit;
+		this.TIME_WINDOW_MS = timeWindowMs;
+		// rounded up so that a period never admits more than the limit
+		this.INTERVAL_MICROS = (timeWindowMs * MICROS_PER_MS + requestLimit - 1) / requestLimit;
+		this.TOLERANCE_MICROS = INTERVAL_MICROS * requestLimit;
+		this.arrivals = KeyedStateStore.packed(storeSettings, TokenBucketSpec::toMicros, ArrivalTime::new,
+				(state, now) -> state <= TokenBucketSpec.toMicros(now));
+	}
+	
+	@Override
+	public RateLimiterAlgorithm algorithm() {
+		return RateLimiterAlgorithm.GCRA;
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime) {
+		return decision(user, currentTime, 1);
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime, int permits) {
+		return decision(user, currentTime, permits, new MutableDecision()).toDecision();
+	}
+	
+	@Override
+	public MutableDecision decision(String user, long currentTime, MutableDecision into) {
+		return decision(user, currentTime, 1, into);
+	}
+	
+	@Override
+	public MutableDecision decision(String user, long currentTime, int permits, MutableDecision into) {
+		return arrivals.update(user, currentTime, into.forPermits(permits), decider);
+	}
+	
+	@Override
+	public void refund(String user, long currentTime, int permits) {
+		arrivals.update(user, currentTime, new MutableDecision().forPermits(permits), refunder);
+	}
+	
+	@Override
+	public boolean hasState(String user) {
+		return arrivals.contains(user);
+	}
+	
+	@Override
+	public StateStoreStats storeStats() {
+		return arrivals.stats();
+	}
+	
+	@Override
+	public long estimatedMemoryBytes() {
+		// header plus one packed long
+		return arrivals.estimatedBytes(24);
+	}
+	
+	@Override
+	public RateLimiter withLimits(int count, long periodMs, double refillRate) {
+		if(!(arrivals instanceof LimiterStateStore<PackedState> previous)) { return null; }
+		GcraRateLimiterService next = new GcraRateLimiterService(count, periodMs, arrivals.settings());
+		// the TAT's lead over now is the used part of the tolerance; keep its share
+		((LimiterStateStore<PackedState>) next.arrivals).migrateFrom(previous, (tat, now) -> {
+			long nowMicros = TokenBucketSpec.toMicros(now);
+			long lead = Math.max(0, tat.get() - nowMicros);
+			long scaled = (long) Math.ceil(lead * ((double) next.TOLERANCE_MICROS / TOLERANCE_MICROS));
+			return new ArrivalTime(nowMicros + Math.min(next.TOLERANCE_MICROS, scaled));
+		});
+		return next;
+	}
+	
+	@Override
+	public String snapshotSignature() {
+		return "gcra/1" + (arrivals instanceof OffHeapStateTable ? "/hashed" : "");
+	}
+	
+	@Override
+	public void writeSnapshot(SnapshotOutput out) throws IOException {
+		arrivals.writeSnapshot(out, (tat, o) -> o.putLong(tat.get()));
+	}
+	
+	@Override
+	public long readSnapshot(SnapshotInput in, long currentTime) {
+		return arrivals.readSnapshot(in, currentTime, source -> new ArrivalTime(source.getLong()));
+	}
+	
+	private void refund(PackedState tat, long currentTime, MutableDecision refund) {
+		long nowMicros = TokenBucketSpec.toMicros(currentTime);
+		long cost = refund.permits() * INTERVAL_MICROS;
+		while(true) {
+			long state = tat.get();
+			if(state <= nowMicros) { return; }
+			if(tat.compareAndSet(state, Math.max(nowMicros, state - cost))) { return; }
+		}
+	}
+	
+	private void decide(PackedState tat, long currentTime, MutableDecision into) {
+		long nowMicros = TokenBucketSpec.toMicros(currentTime);
+		int permits = into.permits();
+		if(permits > REQUEST_LIMIT) {
+			into.block(TIME_WINDOW_MS);
+			return;
+		}
+		long cost = permits * INTERVAL_MICROS;
+		
+		while(true) {
+			long state = tat.get();
+			long updated = Math.max(state, nowMicros) + cost;
+			long lead = updated - nowMicros;
+			
+			if(lead <= TOLERANCE_MICROS) {
+				if(!tat.compareAndSet(state, updated)) { continue; }
+				
+				int remaining = (int) ((TOLERANCE_MICROS - lead) / INTERVAL_MICROS);
+				into.allow(remaining, toMillis(lead));
+				return;
+			}
+			
+			// admitted once the TAT has come within one period of now again
+			into.block(Math.max(1, toMillis(lead - TOLERANCE_MICROS)));
+			return;
+		}
+	}
+	
+	private static long toMillis(long micros) {
+		return (micros + MICROS_PER_MS - 1) / MICROS_PER_MS;
+	}
+}
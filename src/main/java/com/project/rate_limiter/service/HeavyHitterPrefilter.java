@@ -0,0 +1,142 @@
+package com.project.rate_limiter.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.project.rate_limiter.metrics.CountMinSketch;
+import com.project.rate_limiter.metrics.SpaceSavingTopK;
+import com.project.rate_limiter.metrics.SpaceSavingTopK.HeavyHitter;
+
+/**
+ * Approximate tier in front of the exact limiters, for traffic from millions of clients that each
+ * send a handful of requests: a decaying {@link CountMinSketch} of a fixed few megabytes counts
+ * every key, and only a key over {@code rate.prefilter.threshold}, or one the exact limiter
+ * already holds state for, is decided exactly. Every other request is admitted without creating
+ * per-key state, so state grows with the keys worth limiting rather than with all keys.
+ * <p>
+ * A key is only counted exactly once it crosses the threshold, so it may get up to the threshold
+ * in requests on top of its limit; the threshold should be well under the smallest limit.
+ * Flagged keys are offered to a Space-Saving summary, which lists the current heavy hitters
+ * ranked by their decayed estimate.
+ * <p>
+ * Off unless {@code rate.prefilter.enabled}; a disabled prefilter allocates no sketch and leaves
+ * limiters as they are.
+ */
+@Component
+public class HeavyHitterPrefilter {
+	
+	public static final HeavyHitterPrefilter DISABLED = new HeavyHitterPrefilter(false, 0, 1, 1, 1, 1, 1);
+	
+	private final boolean ENABLED;
+	
+	private final int THRESHOLD;
+	
+	private final int LIMIT;
+	
+	private final long HALF_LIFE_MS;
+	
+	private final CountMinSketch sketch;
+	
+	private final SpaceSavingTopK heavyHitters;
+	
+	private final LongAdder passed = new LongAdder();
+	
+	private final LongAdder checked = new LongAdder();
+	
+	private final LongAdder flagged = new LongAdder();
+	
+	/**
+	 * @param memoryKb    size of the sketch's counters
+	 * @param halfLifeMs  how often the counts are halved
+	 * @param threshold   decayed count over which a key is decided exactly
+	 * @param topK        heavy hitters tracked for {@link #heavyHitters}
+	 * @param limit       the limit of the wrapped limiters, reported to the requests admitted here
+	 */
+	public HeavyHitterPrefilter(@Value("${rate.prefilter.enabled:false}") boolean enabled,
+			@Value("${rate.prefilter.memory-kb:4096}") int memoryKb,
+			@Value("${rate.prefilter.depth:4}") int depth,
+			@Value("${rate.prefilter.half-life-ms:10000}") long halfLifeMs,
+			@Value("${rate.prefilter.threshold:3}") int threshold,
+			@Value("${rate.prefilter.top-k:100}") int topK,
+			@Value("${rate.request.limit.count}") int limit) {
+		if(enabled && (memoryKb < 1 || depth < 1 || halfLifeMs < 1 || threshold < 1 || topK < 1)) {
+			throw new IllegalArgumentException("Prefilter memory, depth, half-life, threshold and top-k must be positive");
+		}
+		this.ENABLED = enabled;
+		this.THRESHOLD = threshold;
+		this.LIMIT = limit;
+		this.HALF_LIFE_MS = halfLifeMs;
+		this.sketch = enabled ? CountMinSketch.ofBytes(memoryKb * 1024L, depth, halfLifeMs, System.currentTimeMillis()) : null;
+		this.heavyHitters = enabled ? new SpaceSavingTopK(topK) : null;
+	}
+	
+	public boolean enabled() {
+		return ENABLED;
+	}
+	
+	/**
+	 * {@code exact} behind this prefilter, or {@code exact} itself when disabled. Concurrency
+	 * limits are never wrapped, as their one slot count does not depend on the key.
+	 */
+	public RateLimiter wrap(RateLimiter exact) {
+		return ENABLED && !exact.holdsPermits() ? new PrefilteredRateLimiter(this, exact) : exact;
+	}
+	
+	/**
+	 * Counts a request of {@code key} and returns whether it is admitted without asking
+	 * {@code exact}; false when {@code exact} must decide this one.
+	 */
+	boolean admits(String key, int permits, long currentTime, RateLimiter exact) {
+		int estimate = sketch.add(key, permits, currentTime);
+		if(estimate > THRESHOLD) {
+			flagged.increment();
+			checked.increment();
+			heavyHitters.offer(key, permits);
+			return false;
+		}
+		if(exact.hasState(key)) {
+			checked.increment();
+			return false;
+		}
+		passed.increment();
+		return true;
+	}
+	
+	/** What a fresh key has left of the configured limit after a request of {@code permits}. */
+	int remaining(int permits) {
+		return Math.max(0, LIMIT - permits);
+	}
+	
+	/**
+	 * The {@code n} keys over the threshold with the highest decayed estimate. The count is the
+	 * estimate and the error the sketch's bound on it.
+	 */
+	public List<HeavyHitter> heavyHitters(int n) {
+		if(!ENABLED) {
+			return List.of();
+		}
+		long error = sketch.errorBound();
+		List<HeavyHitter> current = new ArrayList<>();
+		for(HeavyHitter candidate : heavyHitters.top(heavyHitters.capacity())) {
+			int estimate = sketch.estimate(candidate.key());
+			if(estimate > THRESHOLD) {
+				current.add(new HeavyHitter(candidate.key(), estimate, error));
+			}
+		}
+		current.sort(Comparator.comparingLong(HeavyHitter::count).reversed());
+		return current.size() > n ? List.copyOf(current.subList(0, n)) : current;
+	}
+	
+	public PrefilterStats stats() {
+		if(!ENABLED) {
+			return new PrefilterStats(false, THRESHOLD, 0, 0, 0, HALF_LIFE_MS, 0, 0, 0, 0, 0);
+		}
+		return new PrefilterStats(true, THRESHOLD, sketch.depth(), sketch.width(), sketch.memoryBytes(), HALF_LIFE_MS,
+				passed.sum(), checked.sum(), flagged.sum(), sketch.total(), sketch.errorBound());
+	}
+}
@@ -0,0 +1,197 @@
+package com.project.rate_limiter.service;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.entity.LeakyBucket;
+import com.project.rate_limiter.entity.MutableDecision;
+import com.project.rate_limiter.entity.PackedState;
+import com.project.rate_limiter.entity.RateLimiterDecision;
+import com.project.rate_limiter.entity.TokenBucketSpec;
+import com.project.rate_limiter.snapshot.SnapshotInput;
+import com.project.rate_limiter.snapshot.SnapshotOutput;
+import com.project.rate_limiter.snapshot.Snapshottable;
+import com.project.rate_limiter.store.KeyedStateStore;
+import com.project.rate_limiter.store.LimiterStateStore;
+import com.project.rate_limiter.store.LimiterStateStore.StateWrite;
+import com.project.rate_limiter.store.OffHeapStateTable;
+import com.project.rate_limiter.store.StateStoreSettings;
+import com.project.rate_limiter.store.StateStoreStats;
+
+/**
+ * Leaky bucket used as a queue: rather than rejecting a burst, it admits each request with the
+ * delay that spaces it out to the leak rate, and only rejects once the bucket is full or the
+ * delay would pass {@code rate.shaping.max-delay-ms}. The delay is returned with the decision;
+ * holding the request for it is up to the caller (the filters use {@link ShapingQueue}).
+ * <p>
+ * Always in-process: a shared queue would need a shared clock to release from. It is therefore
+ * only offered by the local backend, where it cannot multiply a quota across replicas.
+ */
+@Service
+@ConditionalOnProperty(name = "rate.limiter.backend", havingValue = "local", matchIfMissing = true)
+public class LeakyBucketRateLimiterService implements RateLimiter, Snapshottable {
+	
+	private static final long MICROS_PER_MS = 1_000L;
+	
+	private final int CAPACITY;
+	
+	private final long INTERVAL_MICROS;
+	
+	private final long CAPACITY_MICROS;
+	
+	private final long MAX_DELAY_MICROS;
+	
+	private final KeyedStateStore<PackedState> buckets;
+	
+	private final StateWrite<PackedState, MutableDecision> decider = this::decide;
+	
+	private final StateWrite<PackedState, MutableDecision> refunder = this::refund;
+	
+	/**
+	 * @param capacity          requests the bucket queues before it rejects
+	 * @param leakRatePerSecond requests released per second
+	 * @param maxDelayMs        longest a request may be delayed, whatever room the bucket has left
+	 */
+	public LeakyBucketRateLimiterService(@Value("${rate.request.limit.count}") int capacity,
+			@Value("${rate.request.limit.refill.rate}") double leakRatePerSecond,
+			@Value("${rate.shaping.max-delay-ms:2000}") long maxDelayMs,
+			StateStoreSettings storeSettings) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("Leaky bucket capacity must be at least 1");
+		}
+		if(!(leakRatePerSecond > 0)) {
+			throw new IllegalArgumentException("Leaky bucket leak rate must be positive");
+		}
+		this.CAPACITY = capacity;
+		this.INTERVAL_MICROS = Math.max(1, Math.round(1_000_000 / leakRatePerSecond));
+		this.CAPACITY_MICROS = capacity * INTERVAL_MICROS;
+		this.MAX_DELAY_MICROS = Math.max(0, maxDelayMs) * MICROS_PER_MS;
+		this.buckets = KeyedStateStore.packed(storeSettings, TokenBucketSpec::toMicros, LeakyBucket::new,
+				(state, now) -> state <= TokenBucketSpec.toMicros(now));
+	}
+	
+	@Override
+	public RateLimiterAlgorithm algorithm() {
+		return RateLimiterAlgorithm.LEAKY_BUCKET;
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime) {
+		return decision(user, currentTime, 1);
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime, int permits) {
+		return decision(user, currentTime, permits, new MutableDecision()).toDecision();
+	}
+	
+	@Override
+	public MutableDecision decision(String user, long currentTime, MutableDecision into) {
+		return decision(user, currentTime, 1, into);
+	}
+	
+	@Override
+	public MutableDecision decision(String user, long currentTime, int permits, MutableDecision into) {
+		return buckets.update(user, currentTime, into.forPermits(permits), decider);
+	}
+	
+	@Override
+	public void refund(String user, long currentTime, int permits) {
+		buckets.update(user, currentTime, new MutableDecision().forPermits(permits), refunder);
+	}
+	
+	@Override
+	public boolean hasState(String user) {
+		return buckets.contains(user);
+	}
+	
+	@Override
+	public StateStoreStats storeStats() {
+		return buckets.stats();
+	}
+	
+	@Override
+	public long estimatedMemoryBytes() {
+		// header plus one packed long
+		return buckets.estimatedBytes(24);
+	}
+	
+	@Override
+	public RateLimiter withLimits(int count, long periodMs, double refillRate) {
+		if(!(buckets instanceof LimiterStateStore<PackedState> previous)) { return null; }
+		LeakyBucketRateLimiterService next = new LeakyBucketRateLimiterService(count, refillRate,
+				MAX_DELAY_MICROS / MICROS_PER_MS, buckets.settings());
+		// the queued backlog keeps its share of the bucket
+		((LimiterStateStore<PackedState>) next.buckets).migrateFrom(previous, (bucket, now) -> {
+			long nowMicros = TokenBucketSpec.toMicros(now);
+			long backlog = Math.max(0, bucket.get() - nowMicros);
+			long scaled = (long) Math.ceil(backlog * ((double) next.CAPACITY_MICROS / CAPACITY_MICROS));
+			return new LeakyBucket(nowMicros + Math.min(next.CAPACITY_MICROS, scaled));
+		});
+		return next;
+	}
+	
+	@Override
+	public String snapshotSignature() {
+		return "leaky-bucket/1" + (buckets instanceof OffHeapStateTable ? "/hashed" : "");
+	}
+	
+	@Override
+	public void writeSnapshot(SnapshotOutput out) throws IOException {
+		buckets.writeSnapshot(out, (bucket, o) -> o.putLong(bucket.get()));
+	}
+	
+	@Override
+	public long readSnapshot(SnapshotInput in, long currentTime) {
+		return buckets.readSnapshot(in, currentTime, source -> new LeakyBucket(source.getLong()));
+	}
+	
+	private void refund(PackedState bucket, long currentTime, MutableDecision refund) {
+		long nowMicros = TokenBucketSpec.toMicros(currentTime);
+		long cost = refund.permits() * INTERVAL_MICROS;
+		while(true) {
+			long drain = bucket.get();
+			if(drain <= nowMicros) { return; }
+			if(bucket.compareAndSet(drain, Math.max(nowMicros, drain - cost))) { return; }
+		}
+	}
+	
+	private void decide(PackedState bucket, long currentTime, MutableDecision into) {
+		long nowMicros = TokenBucketSpec.toMicros(currentTime);
+		int permits = into.permits();
+		long cost = permits * INTERVAL_MICROS;
+		
+		if(permits > CAPACITY) {
+			into.block(toMillis(CAPACITY_MICROS));
+			return;
+		}
+		
+		while(true) {
+			long drain = bucket.get();
+			// what is queued ahead of this request, as time still to leak
+			long backlog = Math.max(0, drain - nowMicros);
+			
+			if(backlog + cost <= CAPACITY_MICROS && backlog <= MAX_DELAY_MICROS) {
+				long updated = nowMicros + backlog + cost;
+				if(!bucket.compareAndSet(drain, updated)) { continue; }
+				
+				int remaining = (int) ((CAPACITY_MICROS - backlog - cost) / INTERVAL_MICROS);
+				into.allowAfter(toMillis(backlog), remaining, toMillis(updated - nowMicros));
+				return;
+			}
+			
+			// blocked until enough has leaked for the request to fit both bounds
+			long wait = Math.max(backlog + cost - CAPACITY_MICROS, backlog - MAX_DELAY_MICROS);
+			into.block(Math.max(1, toMillis(wait)));
+			return;
+		}
+	}
+	
+	private static long toMillis(long micros) {
+		return (micros + MICROS_PER_MS - 1) / MICROS_PER_MS;
+	}
+}
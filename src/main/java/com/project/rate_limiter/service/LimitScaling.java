@@ -0,0 +1,16 @@
+package com.project.rate_limiter.service;
+
+/**
+ * Carries per-key usage over to new limits in proportion: a key that had used half of its old
+ * limit has used half of the new one. Rounds up, so a reload never hands out extra requests.
+ */
+final class LimitScaling {
+	
+	private LimitScaling() {}
+	
+	static int scale(int used, int oldLimit, int newLimit, int max) {
+		if(used <= 0) { return 0; }
+		long scaled = ((long) used * newLimit + oldLimit - 1) / oldLimit;
+		return (int) Math.min(max, scaled);
+	}
+}
@@ -0,0 +1,69 @@
+package com.project.rate_limiter.service;
+
+import java.util.concurrent.CompletionStage;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.entity.MutableDecision;
+import com.project.rate_limiter.entity.RateLimiterDecision;
+import com.project.rate_limiter.store.StateStoreStats;
+
+/**
+ * Prefixes every key before delegating, so several limiters of one algorithm can share the Redis
+ * key space. In-process limiters have a store each and do not need this.
+ */
+public class NamespacedRateLimiter implements RateLimiter {
+	
+	private final String prefix;
+	
+	private final RateLimiter delegate;
+	
+	public NamespacedRateLimiter(String namespace, RateLimiter delegate) {
+		this.prefix = namespace + ":";
+		this.delegate = delegate;
+	}
+	
+	@Override
+	public RateLimiterAlgorithm algorithm() {
+		return delegate.algorithm();
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime) {
+		return delegate.decision(prefix + user, currentTime);
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime, int permits) {
+		return delegate.decision(prefix + user, currentTime, permits);
+	}
+	
+	@Override
+	public MutableDecision decision(String user, long currentTime, MutableDecision into) {
+		return delegate.decision(prefix + user, currentTime, into);
+	}
+	
+	@Override
+	public MutableDecision decision(String user, long currentTime, int permits, MutableDecision into) {
+		return delegate.decision(prefix + user, currentTime, permits, into);
+	}
+	
+	@Override
+	public CompletionStage<RateLimiterDecision> decisionAsync(String user, long currentTime, int permits) {
+		return delegate.decisionAsync(prefix + user, currentTime, permits);
+	}
+	
+	@Override
+	public void refund(String user, long currentTime, int permits) {
+		delegate.refund(prefix + user, currentTime, permits);
+	}
+	
+	@Override
+	public StateStoreStats storeStats() {
+		return delegate.storeStats();
+	}
+	
+	@Override
+	public long estimatedMemoryBytes() {
+		return delegate.estimatedMemoryBytes();
+	}
+}
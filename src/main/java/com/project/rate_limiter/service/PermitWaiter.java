@@ -0,0 +1,143 @@
+package com.project.rate_limiter.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.project.rate_limiter.entity.Admission;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Holds a rejected request for a while and decides it again when the limiter says a permit is
+ * due, instead of answering 429 at once.
+ * <p>
+ * A waiting request is a task on one timer thread, not a parked thread, so a node can hold many
+ * of them. A request is only held when its wait fits within {@code rate.wait.max-ms} of its first
+ * decision and fewer than {@code rate.wait.max-waiting} others are held; otherwise it gets the
+ * rejection it would have had anyway. Each retry is a real decision, so a request that loses the
+ * freed permit to another waits again, until the budget runs out.
+ */
+@Component
+public class PermitWaiter {
+	
+	private final long MAX_WAIT_MS;
+	
+	private final int MAX_WAITING;
+	
+	private final ScheduledThreadPoolExecutor timer;
+	
+	private final AtomicInteger waiting = new AtomicInteger();
+	
+	/**
+	 * @param maxWaitMs how long a request may be held in total; 0 turns waiting off
+	 */
+	public PermitWaiter(@Value("${rate.wait.max-ms:0}") long maxWaitMs,
+			@Value("${rate.wait.max-waiting:10000}") int maxWaiting) {
+		this.MAX_WAIT_MS = Math.max(0, maxWaitMs);
+		this.MAX_WAITING = Math.max(0, maxWaiting);
+		if(MAX_WAIT_MS > 0 && MAX_WAITING > 0) {
+			this.timer = new ScheduledThreadPoolExecutor(1, task -> {
+				Thread thread = new Thread(task, "rate-limit-waiter");
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.timer.setRemoveOnCancelPolicy(true);
+		} else {
+			this.timer = null;
+		}
+	}
+	
+	public boolean isEnabled() {
+		return timer != null;
+	}
+	
+	public long maxWaitMs() {
+		return MAX_WAIT_MS;
+	}
+	
+	/** Whether a request rejected with {@code decision} would be held rather than turned away. */
+	public boolean shouldWait(Admission decision) {
+		return timer != null && !decision.isAllowed() && decision.retryAfterMs() <= MAX_WAIT_MS
+				&& waiting.get() < MAX_WAITING;
+	}
+	
+	/** Requests held right now. */
+	public int waiting() {
+		return waiting.get();
+	}
+	
+	/**
+	 * Decides with {@code attempt} and, while it rejects with a wait that fits the budget, again
+	 * once the wait is over.
+	 *
+	 * @param attempt decides the request at the given epoch millis
+	 */
+	public <T extends Admission> CompletionStage<T> acquire(LongFunction<? extends CompletionStage<T>> attempt) {
+		long now = System.currentTimeMillis();
+		return attempt.apply(now).thenCompose(first -> await(first, now, attempt));
+	}
+	
+	/**
+	 * Continues from a decision the caller already has, made at {@code since}; an admission or a
+	 * rejection that cannot be waited out completes the stage at once.
+	 */
+	public <T extends Admission> CompletionStage<T> await(T first, long since, LongFunction<? extends CompletionStage<T>> attempt) {
+		long deadline = since + MAX_WAIT_MS;
+		if(!shouldWait(first) || System.currentTimeMillis() + first.retryAfterMs() > deadline) {
+			return CompletableFuture.completedFuture(first);
+		}
+		if(waiting.incrementAndGet() > MAX_WAITING) {
+			waiting.decrementAndGet();
+			return CompletableFuture.completedFuture(first);
+		}
+		CompletableFuture<T> result = new CompletableFuture<>();
+		result.whenComplete((decision, error) -> waiting.decrementAndGet());
+		schedule(first.retryAfterMs(), deadline, attempt, result);
+		return result;
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		if(timer != null) {
+			timer.shutdownNow();
+		}
+	}
+	
+	private <T extends Admission> void schedule(long delayMs, long deadline,
+			LongFunction<? extends CompletionStage<T>> attempt, CompletableFuture<T> result) {
+		try {
+			timer.schedule(() -> retry(deadline, attempt, result), Math.max(1, delayMs), TimeUnit.MILLISECONDS);
+		} catch(RejectedExecutionException ex) {
+			result.completeExceptionally(ex);
+		}
+	}
+	
+	private <T extends Admission> void retry(long deadline,
+			LongFunction<? extends CompletionStage<T>> attempt, CompletableFuture<T> result) {
+		long now = System.currentTimeMillis();
+		CompletionStage<T> decided;
+		try {
+			decided = attempt.apply(now);
+		} catch(RuntimeException ex) {
+			result.completeExceptionally(ex);
+			return;
+		}
+		decided.whenComplete((decision, error) -> {
+			if(error != null) {
+				result.completeExceptionally(error);
+			} else if(decision.isAllowed() || now + decision.retryAfterMs() > deadline) {
+				result.complete(decision);
+			} else {
+				schedule(decision.retryAfterMs(), deadline, attempt, result);
+			}
+		});
+	}
+}
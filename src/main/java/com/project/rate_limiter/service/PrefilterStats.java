@@ -0,0 +1,23 @@
+package com.project.rate_limiter.service;
+
+/**
+ * @param passed         requests admitted without consulting the exact limiters
+ * @param checked        requests handed to the exact limiters, flagged or already known
+ * @param flagged        of those, the ones whose key was over the threshold
+ * @param decayedTotal   requests still counted by the sketch after decay
+ * @param errorBound     how far a key's estimate may exceed its true count, with probability
+ *                       {@code 1 - e^-depth}
+ */
+public record PrefilterStats(
+		boolean enabled,
+		int threshold,
+		int depth,
+		int width,
+		long memoryBytes,
+		long halfLifeMs,
+		long passed,
+		long checked,
+		long flagged,
+		long decayedTotal,
+		long errorBound
+) {}
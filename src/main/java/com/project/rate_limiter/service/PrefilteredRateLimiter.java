@@ -0,0 +1,90 @@
+package com.project.rate_limiter.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.entity.MutableDecision;
+import com.project.rate_limiter.entity.RateLimiterDecision;
+import com.project.rate_limiter.store.StateStoreStats;
+
+/**
+ * Admits the requests of keys the {@link HeavyHitterPrefilter} lets through without asking the
+ * exact limiter, and delegates the rest, so that the exact limiter only ever creates state for
+ * flagged keys. A request admitted here reports the quota a fresh key has under the configured
+ * limit, which is what the exact limiter reports once it takes the key over, rather than the
+ * prefilter's own headroom; refunds for keys the exact limiter has not seen are dropped, as
+ * nothing was charged for them.
+ */
+class PrefilteredRateLimiter implements RateLimiter {
+	
+	private final HeavyHitterPrefilter prefilter;
+	
+	private final RateLimiter delegate;
+	
+	PrefilteredRateLimiter(HeavyHitterPrefilter prefilter, RateLimiter delegate) {
+		this.prefilter = prefilter;
+		this.delegate = delegate;
+	}
+	
+	@Override
+	public RateLimiterAlgorithm algorithm() {
+		return delegate.algorithm();
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime) {
+		return decision(user, currentTime, 1);
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime, int permits) {
+		if(!prefilter.admits(user, permits, currentTime, delegate)) {
+			return delegate.decision(user, currentTime, permits);
+		}
+		return new MutableDecision().forPermits(permits).allow(prefilter.remaining(permits), 0).toDecision();
+	}
+	
+	@Override
+	public MutableDecision decision(String user, long currentTime, MutableDecision into) {
+		return decision(user, currentTime, 1, into);
+	}
+	
+	@Override
+	public MutableDecision decision(String user, long currentTime, int permits, MutableDecision into) {
+		if(!prefilter.admits(user, permits, currentTime, delegate)) {
+			return delegate.decision(user, currentTime, permits, into);
+		}
+		return into.forPermits(permits).allow(prefilter.remaining(permits), 0);
+	}
+	
+	@Override
+	public CompletionStage<RateLimiterDecision> decisionAsync(String user, long currentTime, int permits) {
+		if(!prefilter.admits(user, permits, currentTime, delegate)) {
+			return delegate.decisionAsync(user, currentTime, permits);
+		}
+		return CompletableFuture.completedFuture(new MutableDecision().forPermits(permits).allow(prefilter.remaining(permits), 0).toDecision());
+	}
+	
+	@Override
+	public void refund(String user, long currentTime, int permits) {
+		if(delegate.hasState(user)) {
+			delegate.refund(user, currentTime, permits);
+		}
+	}
+	
+	@Override
+	public boolean hasState(String user) {
+		return delegate.hasState(user);
+	}
+	
+	@Override
+	public StateStoreStats storeStats() {
+		return delegate.storeStats();
+	}
+	
+	@Override
+	public long estimatedMemoryBytes() {
+		return delegate.estimatedMemoryBytes();
+	}
+}
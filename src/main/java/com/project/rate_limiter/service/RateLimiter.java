@@ -0,0 +1,111 @@
+package com.project.rate_limiter.service;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.entity.MutableDecision;
+import com.project.rate_limiter.entity.RateLimiterDecision;
+import com.project.rate_limiter.store.StateStoreStats;
+
+public interface RateLimiter {
+	
+	RateLimiterAlgorithm algorithm();
+	
+	RateLimiterDecision decision(String user, long currentTime);
+	
+	/**
+	 * Decides a request costing {@code permits} units, taken all at once or not at all. A request
+	 * costing more than the limit is never admitted.
+	 */
+	RateLimiterDecision decision(String user, long currentTime, int permits);
+	
+	/**
+	 * Writes the decision into {@code into} rather than returning a new one; the in-process
+	 * limiters override this to decide without allocating.
+	 */
+	default MutableDecision decision(String user, long currentTime, MutableDecision into) {
+		return into.set(decision(user, currentTime));
+	}
+	
+	default MutableDecision decision(String user, long currentTime, int permits, MutableDecision into) {
+		return into.set(decision(user, currentTime, permits));
+	}
+	
+	/**
+	 * Decides without tying up the calling thread while a remote store answers. In-process limiters
+	 * never wait, so by default this is the blocking decision, already completed; the Redis
+	 * limiters override it to complete when the script replies.
+	 */
+	default CompletionStage<RateLimiterDecision> decisionAsync(String user, long currentTime, int permits) {
+		try {
+			return CompletableFuture.completedFuture(decision(user, currentTime, permits));
+		} catch(RuntimeException ex) {
+			return CompletableFuture.failedFuture(ex);
+		}
+	}
+	
+	default RateLimiterDecision decision(String user) {
+		long now = Instant.now().toEpochMilli();
+		return decision(user, now);
+	}
+	
+	/**
+	 * Gives back {@code permits} admitted for {@code user} at {@code currentTime}, for a composite
+	 * decision that another level then rejected. Limiters that cannot give permits back keep
+	 * them counted.
+	 */
+	default void refund(String user, long currentTime, int permits) {
+	}
+	
+	/**
+	 * Whether an admitted request keeps its permit until {@link #release}, as for a concurrency
+	 * limit, instead of using it up.
+	 */
+	default boolean holdsPermits() {
+		return false;
+	}
+	
+	/**
+	 * Gives back the permit of a request that {@link #holdsPermits holds one}, once it has been
+	 * served.
+	 *
+	 * @param latencyNanos how long the request took from admission; negative when it was not timed
+	 * @param overloaded   whether the downstream answered that it could not keep up
+	 */
+	default void release(String user, long latencyNanos, boolean overloaded) {
+	}
+	
+	default boolean isAllowed(String user) {
+		return decision(user).isAllowed();
+	}
+	
+	/**
+	 * Whether this process holds per-key state for {@code user}. Limiters that keep none here,
+	 * such as the Redis ones, answer true, so that nothing skips them.
+	 */
+	default boolean hasState(String user) {
+		return true;
+	}
+	
+	default StateStoreStats storeStats() {
+		return StateStoreStats.EMPTY;
+	}
+	
+	/**
+	 * A limiter of the same algorithm with new limits that takes over this one's per-key state,
+	 * scaled in proportion to the change, as keys are next seen. Null when the state cannot be
+	 * carried over; callers then start from a fresh limiter.
+	 *
+	 * @param refillRate tokens per second, token bucket only
+	 */
+	default RateLimiter withLimits(int count, long periodMs, double refillRate) {
+		return null;
+	}
+	
+	/** Rough heap footprint of the per-key state; 0 when the state lives elsewhere. */
+	default long estimatedMemoryBytes() {
+		return 0;
+	}
+}
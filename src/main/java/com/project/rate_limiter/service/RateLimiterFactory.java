@@ -0,0 +1,207 @@
+package com.project.rate_limiter.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.project.rate_limiter.cluster.ClusterRateLimiterService;
+import com.project.rate_limiter.cluster.GossipNode;
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.metrics.LimiterMetrics;
+import com.project.rate_limiter.service.CompositeRateLimiter.Level;
+import com.project.rate_limiter.service.redis.RedisCompositeLevels;
+import com.project.rate_limiter.service.redis.RedisFixedSizeRateLimiterService;
+import com.project.rate_limiter.service.redis.RedisGcraRateLimiterService;
+import com.project.rate_limiter.service.redis.RedisLeasingTokenBucketRateLimiterService;
+import com.project.rate_limiter.service.redis.RedisLimiterScripts;
+import com.project.rate_limiter.service.redis.RedisSlidingWindowRateLimiterService;
+import com.project.rate_limiter.service.redis.RedisTokenBucketRateLimiterService;
+import com.project.rate_limiter.store.StateStoreSettings;
+
+/**
+ * Builds standalone limiter instances with their own limits, for callers (such as the policy
+ * engine) that need more than the one limiter bean per algorithm. The configured backend is
+ * honoured the same way as for the beans: the sliding counter and ring and the leaky bucket are
+ * always in-process, so only the local backend offers them, and the cluster backend offers
+ * only the fixed window and token bucket it replicates.
+ * Adaptive concurrency limits are in-process too, as they count this instance's own requests, and
+ * each gets its gauges in {@link LimiterMetrics}.
+ */
+@Component
+public class RateLimiterFactory {
+	
+	private final String backend;
+	
+	private final StateStoreSettings storeSettings;
+	
+	private final AdaptiveLimitSettings adaptiveSettings;
+	
+	private final ObjectProvider<RedisLimiterScripts> scripts;
+	
+	private final ObjectProvider<GossipNode> gossip;
+	
+	private final ObjectProvider<LimiterMetrics> metrics;
+	
+	private final int SUB_WINDOWS;
+	
+	private final long LEASE_TTL_MS;
+	
+	private final int MAX_LEASE;
+	
+	private final long MAX_DELAY_MS;
+	
+	public RateLimiterFactory(@Value("${rate.limiter.backend:local}") String backend,
+			StateStoreSettings storeSettings,
+			AdaptiveLimitSettings adaptiveSettings,
+			ObjectProvider<RedisLimiterScripts> scripts,
+			ObjectProvider<GossipNode> gossip,
+			ObjectProvider<LimiterMetrics> metrics,
+			@Value("${rate.request.limit.sliding.subwindows:10}") int subWindows,
+			@Value("${rate.hybrid.lease.ttl-ms:100}") long leaseTtlMs,
+			@Value("${rate.hybrid.lease.max:50}") int maxLease,
+			@Value("${rate.shaping.max-delay-ms:2000}") long maxDelayMs) {
+		this.backend = backend;
+		this.storeSettings = storeSettings;
+		this.adaptiveSettings = adaptiveSettings;
+		this.scripts = scripts;
+		this.gossip = gossip;
+		this.metrics = metrics;
+		this.SUB_WINDOWS = subWindows;
+		this.LEASE_TTL_MS = leaseTtlMs;
+		this.MAX_LEASE = maxLease;
+		this.MAX_DELAY_MS = maxDelayMs;
+	}
+	
+	/**
+	 * @param namespace  distinguishes this instance's keys from other instances of the same
+	 *                   algorithm when the state is shared in Redis or between cluster nodes
+	 * @param count      the most requests in flight at once for an adaptive concurrency limit
+	 * @param refillRate tokens per second for the token bucket, requests per second leaked by the leaky bucket
+	 */
+	public RateLimiter create(String namespace, RateLimiterAlgorithm algorithm, int count, long periodMs, double refillRate) {
+		if(!isAvailable(algorithm)) {
+			throw new IllegalArgumentException(algorithm + " would count in each process on its own and is not available with the " 
+					+ backend + " backend");
+		}
+		if(algorithm == RateLimiterAlgorithm.ADAPTIVE_CONCURRENCY) {
+			return tracked(new AdaptiveConcurrencyLimiter(namespace, adaptiveSettings.withMaxLimit(count)));
+		}
+		if("cluster".equals(backend) && ClusterRateLimiterService.supports(algorithm)) {
+			return new ClusterRateLimiterService(namespace, algorithm, count, periodMs, refillRate, gossip.getObject(), storeSettings);
+		}
+		if(isLocal(algorithm)) {
+			return local(algorithm, count, periodMs, refillRate);
+		}
+		
+		RedisLimiterScripts redis = scripts.getObject();
+		RateLimiter shared = switch(algorithm) {
+			case TOKEN_BUCKET -> "hybrid".equals(backend)
+					? new RedisLeasingTokenBucketRateLimiterService(count, refillRate, LEASE_TTL_MS, MAX_LEASE, redis, storeSettings)
+					: new RedisTokenBucketRateLimiterService(count, refillRate, redis);
+			case FIXED_WINDOW -> new RedisFixedSizeRateLimiterService(count, periodMs, redis);
+			case SLIDING_WINDOW -> new RedisSlidingWindowRateLimiterService(count, periodMs, redis);
+			case GCRA -> new RedisGcraRateLimiterService(count, periodMs, redis);
+			default -> throw new IllegalArgumentException("Unsupported algorithm " + algorithm);
+		};
+		return new NamespacedRateLimiter(namespace, shared);
+	}
+	
+	/**
+	 * An in-process limiter whatever the backend, for simulations that must not touch shared state.
+	 * Concurrency limits are not simulated, as nothing would ever complete the requests they admit.
+	 */
+	public RateLimiter createLocal(RateLimiterAlgorithm algorithm, int count, long periodMs, double refillRate) {
+		return local(algorithm, count, periodMs, refillRate);
+	}
+	
+	/**
+	 * A limiter with new limits in place of {@code previous}. In-process state is carried over
+	 * through {@link RateLimiter#withLimits}; Redis state stays under the same namespace and is
+	 * simply read with the new limits.
+	 */
+	public RateLimiter reconfigure(RateLimiter previous, String namespace, RateLimiterAlgorithm algorithm, 
+			int count, long periodMs, double refillRate) {
+		RateLimiter migrated = previous.algorithm() == algorithm ? previous.withLimits(count, periodMs, refillRate) : null;
+		return migrated != null ? tracked(migrated) : create(namespace, algorithm, count, periodMs, refillRate);
+	}
+	
+	/**
+	 * An all-or-nothing decision over {@code levels}, whose limiters came from this factory. Levels
+	 * kept in Redis are decided by one script call; under the hybrid backend that script charges
+	 * the token bucket directly, without going through a lease.
+	 */
+	public CompositeRateLimiter composite(List<Level> levels) {
+		RateLimiter[] local = new RateLimiter[levels.size()];
+		List<Level> shared = new ArrayList<>();
+		int[] sharedIndex = new int[levels.size()];
+		for(int i=0; i<levels.size(); i++) {
+			Level level = levels.get(i);
+			if(isLocal(level.algorithm())) {
+				local[i] = level.limiter();
+			} else {
+				sharedIndex[shared.size()] = i;
+				shared.add(level);
+			}
+		}
+		if(shared.isEmpty()) {
+			return new CompositeRateLimiter(local, null);
+		}
+		return new CompositeRateLimiter(local, new RedisCompositeLevels(scripts.getObject(), 
+				Arrays.copyOf(sharedIndex, shared.size()), shared));
+	}
+	
+	/**
+	 * Whether the configured backend can enforce {@code algorithm}. A shared backend does not
+	 * offer the algorithms that only count in one process, as behind N replicas they would let a
+	 * client through N times its limit; under the cluster backend that is every algorithm it does
+	 * not replicate, except the concurrency limit, which only ever counts this node's requests.
+	 */
+	public boolean isAvailable(RateLimiterAlgorithm algorithm) {
+		return switch(backend) {
+			case "local" -> true;
+			case "cluster" -> ClusterRateLimiterService.supports(algorithm) || algorithm == RateLimiterAlgorithm.ADAPTIVE_CONCURRENCY;
+			default -> !isInProcessOnly(algorithm);
+		};
+	}
+	
+	/** Reports an adaptive limit's estimates under its namespace, in place of any earlier instance. */
+	private RateLimiter tracked(RateLimiter limiter) {
+		LimiterMetrics meters = metrics == null ? null : metrics.getIfAvailable();
+		if(meters != null && limiter instanceof AdaptiveConcurrencyLimiter adaptive) {
+			meters.track(adaptive);
+		}
+		return limiter;
+	}
+	
+	/** Decided in this process; cluster limiters too, as they only gossip in the background. */
+	private boolean isLocal(RateLimiterAlgorithm algorithm) {
+		return "local".equals(backend) 
+				|| "cluster".equals(backend)
+				|| isInProcessOnly(algorithm)
+				|| algorithm == RateLimiterAlgorithm.ADAPTIVE_CONCURRENCY;
+	}
+	
+	private static boolean isInProcessOnly(RateLimiterAlgorithm algorithm) {
+		return algorithm == RateLimiterAlgorithm.SLIDING_WINDOW_COUNTER 
+				|| algorithm == RateLimiterAlgorithm.SLIDING_WINDOW_RING
+				|| algorithm == RateLimiterAlgorithm.LEAKY_BUCKET;
+	}
+	
+	private RateLimiter local(RateLimiterAlgorithm algorithm, int count, long periodMs, double refillRate) {
+		return switch(algorithm) {
+			case TOKEN_BUCKET -> new TokenBucketRateLimiterService(count, refillRate, storeSettings);
+			case FIXED_WINDOW -> new FixedSizeRateLimiterService(count, periodMs, storeSettings);
+			case SLIDING_WINDOW -> new SlidingWindowRateLimiterService(count, periodMs, storeSettings);
+			case SLIDING_WINDOW_COUNTER -> new SlidingWindowCounterRateLimiterService(count, periodMs, SUB_WINDOWS, storeSettings);
+			case SLIDING_WINDOW_RING -> new SlidingWindowRingRateLimiterService(count, periodMs, SUB_WINDOWS, storeSettings);
+			case LEAKY_BUCKET -> new LeakyBucketRateLimiterService(count, refillRate, MAX_DELAY_MS, storeSettings);
+			case GCRA -> new GcraRateLimiterService(count, periodMs, storeSettings);
+			// built by create(); a simulation never completes the requests it would admit
+			case ADAPTIVE_CONCURRENCY -> throw new IllegalArgumentException("A concurrency limit cannot be simulated without request completions");
+		};
+	}
+}
@@ -0,0 +1,143 @@
+package com.project.rate_limiter.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Holds requests that a shaping limiter admitted with a delay until the delay is over.
+ * <p>
+ * A held request is a task on one timer thread, released in delay order, so no thread waits
+ * with it. The queue holds at most {@code rate.shaping.queue-capacity} requests, and one key
+ * at most an even share of it: the capacity divided by the keys already queued plus one, so
+ * a newcomer always finds room while a single busy key cannot fill the queue. Keys interleave
+ * on release because each is spaced out by its own bucket.
+ */
+@Component
+public class ShapingQueue {
+	
+	private final int CAPACITY;
+	
+	private final long MAX_DELAY_MS;
+	
+	private final ScheduledThreadPoolExecutor timer;
+	
+	private final AtomicInteger depth = new AtomicInteger();
+	
+	private final ConcurrentHashMap<String, Integer> queuedPerKey = new ConcurrentHashMap<>();
+	
+	private final Timer addedLatency;
+	
+	private final Counter rejected;
+	
+	/**
+	 * @param capacity   requests held at once; 0 rejects every delayed request
+	 * @param maxDelayMs the longest delay the shaping limiters hand out
+	 */
+	public ShapingQueue(@Value("${rate.shaping.queue-capacity:10000}") int capacity,
+			@Value("${rate.shaping.max-delay-ms:2000}") long maxDelayMs,
+			MeterRegistry registry) {
+		this.CAPACITY = Math.max(0, capacity);
+		this.MAX_DELAY_MS = Math.max(0, maxDelayMs);
+		if(CAPACITY > 0) {
+			this.timer = new ScheduledThreadPoolExecutor(1, task -> {
+				Thread thread = new Thread(task, "rate-limit-shaper");
+				thread.setDaemon(true);
+				return thread;
+			});
+		} else {
+			this.timer = null;
+		}
+		
+		Gauge.builder("rate.limiter.shaping.queue.depth", depth, AtomicInteger::get)
+			.description("Delayed requests currently held by the shaping queue")
+			.register(registry);
+		Gauge.builder("rate.limiter.shaping.queue.keys", queuedPerKey, ConcurrentHashMap::size)
+			.description("Keys with at least one delayed request held")
+			.register(registry);
+		this.addedLatency = Timer.builder("rate.limiter.shaping.delay")
+			.publishPercentileHistogram()
+			.description("Latency added to shaped requests by holding them")
+			.register(registry);
+		this.rejected = Counter.builder("rate.limiter.shaping.rejected")
+			.description("Delayed requests turned away because the queue, or the key's share of it, was full")
+			.register(registry);
+	}
+	
+	public long maxDelayMs() {
+		return MAX_DELAY_MS;
+	}
+	
+	/** Requests held right now. */
+	public int depth() {
+		return depth.get();
+	}
+	
+	/**
+	 * Holds a request for {@code key} until {@code delayMs} has passed.
+	 *
+	 * @return completes on the timer thread once the request may go on, or null when the queue
+	 *         has no room for it, in which case the caller rejects it
+	 */
+	public CompletableFuture<Void> hold(String key, long delayMs) {
+		if(!enter(key)) {
+			rejected.increment();
+			return null;
+		}
+		CompletableFuture<Void> released = new CompletableFuture<>();
+		long queued = System.nanoTime();
+		try {
+			timer.schedule(() -> release(key, queued, released), delayMs, TimeUnit.MILLISECONDS);
+		} catch(RejectedExecutionException ex) {
+			leave(key);
+			released.completeExceptionally(ex);
+		}
+		return released;
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		if(timer != null) {
+			timer.shutdownNow();
+		}
+	}
+	
+	private boolean enter(String key) {
+		int held;
+		do {
+			held = depth.get();
+			if(held >= CAPACITY) { return false; }
+		} while(!depth.compareAndSet(held, held + 1));
+		
+		int share = Math.max(1, CAPACITY / (queuedPerKey.size() + 1));
+		if(queuedPerKey.merge(key, 1, Integer::sum) > share) {
+			leave(key);
+			return false;
+		}
+		return true;
+	}
+	
+	private void leave(String key) {
+		queuedPerKey.computeIfPresent(key, (k, queued) -> queued <= 1 ? null : queued - 1);
+		depth.decrementAndGet();
+	}
+	
+	private void release(String key, long queued, CompletableFuture<Void> released) {
+		addedLatency.record(System.nanoTime() - queued, TimeUnit.NANOSECONDS);
+		leave(key);
+		released.complete(null);
+	}
+}
@@ -0,0 +1,255 @@
+package com.project.rate_limiter.service;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.entity.MutableDecision;
+import com.project.rate_limiter.entity.PackedState;
+import com.project.rate_limiter.entity.RateLimiterDecision;
+import com.project.rate_limiter.entity.SlidingWindowCounter;
+import com.project.rate_limiter.snapshot.SnapshotInput;
+import com.project.rate_limiter.snapshot.SnapshotOutput;
+import com.project.rate_limiter.snapshot.Snapshottable;
+import com.project.rate_limiter.store.KeyedStateStore;
+import com.project.rate_limiter.store.LimiterStateStore;
+import com.project.rate_limiter.store.LimiterStateStore.StateWrite;
+import com.project.rate_limiter.store.OffHeapStateTable;
+import com.project.rate_limiter.store.StateStoreSettings;
+import com.project.rate_limiter.store.StateStoreStats;
+
+/**
+ * Approximates the sliding log by weighting the previous fixed window's count by how much of it
+ * still overlaps the sliding window. One packed long per key, updated with a CAS.
+ * <p>
+ * {@code rate.request.limit.sliding.subwindows} sets the precision as for the ring: the overlap
+ * is measured in whole sub-windows, rounded in favour of the limit, so the previous window's
+ * capacity comes back one sub-window at a time. A sub-window per millisecond weighs it exactly.
+ * <p>
+ * In-process only, so it is offered by the local backend alone: behind several replicas each
+ * would count its own share of a client's requests.
+ */
+@Service
+@ConditionalOnProperty(name = "rate.limiter.backend", havingValue = "local", matchIfMissing = true)
+public class SlidingWindowCounterRateLimiterService implements RateLimiter, Snapshottable {
+	
+	private final int REQUEST_LIMIT;
+	
+	private final long TIME_WINDOW_MS;
+	
+	private final int SUB_WINDOWS;
+	
+	private final long SUB_WINDOW_MS;
+	
+	private final KeyedStateStore<PackedState> userRequestMap;
+	
+	private final StateWrite<PackedState, MutableDecision> decider = this::decide;
+	
+	private final StateWrite<PackedState, MutableDecision> refunder = this::refund;
+	
+	public SlidingWindowCounterRateLimiterService(@Value("${rate.request.limit.count}") int requestLimit,
+			@Value("${rate.request.limit.timeperiod}") long timeWindowMs,
+			@Value("${rate.request.limit.sliding.subwindows:10}") int subWindows,
+			StateStoreSettings storeSettings) {
+		if(requestLimit > SlidingWindowCounter.MAX_COUNT) {
+			throw new IllegalArgumentException("rate.request.limit.count must not exceed " + SlidingWindowCounter.MAX_COUNT);
+		}
+		if(subWindows < 1) {
+			throw new IllegalArgumentException("rate.request.limit.sliding.subwindows must be at least 1");
+		}
+		this.REQUEST_LIMIT = requestLimit;
+		this.TIME_WINDOW_MS = timeWindowMs;
+		this.SUB_WINDOWS = subWindows;
+		// rounded up like the ring's
+		this.SUB_WINDOW_MS = Math.max(1, (timeWindowMs + subWindows - 1) / subWindows);
+		this.userRequestMap = KeyedStateStore.packed(storeSettings, now -> SlidingWindowCounter.pack(Math.floorDiv(now, TIME_WINDOW_MS), 0, 0),
+				SlidingWindowCounter::of, this::isExpired);
+	}
+	
+	@Override
+	public RateLimiterAlgorithm algorithm() {
+		return RateLimiterAlgorithm.SLIDING_WINDOW_COUNTER;
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime) {
+		return decision(user, currentTime, 1);
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime, int permits) {
+		return decision(user, currentTime, permits, new MutableDecision()).toDecision();
+	}
+	
+	@Override
+	public MutableDecision decision(String user, long currentTime, MutableDecision into) {
+		return decision(user, currentTime, 1, into);
+	}
+	
+	@Override
+	public MutableDecision decision(String user, long currentTime, int permits, MutableDecision into) {
+		return userRequestMap.update(user, currentTime, into.forPermits(permits), decider);
+	}
+	
+	@Override
+	public void refund(String user, long currentTime, int permits) {
+		userRequestMap.update(user, currentTime, new MutableDecision().forPermits(permits), refunder);
+	}
+	
+	@Override
+	public boolean hasState(String user) {
+		return userRequestMap.contains(user);
+	}
+	
+	@Override
+	public StateStoreStats storeStats() {
+		return userRequestMap.stats();
+	}
+	
+	@Override
+	public long estimatedMemoryBytes() {
+		// header plus one packed long
+		return userRequestMap.estimatedBytes(24);
+	}
+	
+	@Override
+	public RateLimiter withLimits(int count, long periodMs, double refillRate) {
+		if(!(userRequestMap instanceof LimiterStateStore<PackedState> previous)) { return null; }
+		SlidingWindowCounterRateLimiterService next = new SlidingWindowCounterRateLimiterService(count, periodMs, SUB_WINDOWS, userRequestMap.settings());
+		((LimiterStateStore<PackedState>) next.userRequestMap).migrateFrom(previous, (userInfo, now) -> next.migrate(userInfo.get(), now, REQUEST_LIMIT, TIME_WINDOW_MS));
+		return next;
+	}
+	
+	private SlidingWindowCounter migrate(long state, long currentTime, int oldLimit, long oldWindowMs) {
+		long oldIndex = Math.floorDiv(currentTime, oldWindowMs);
+		long windowsElapsed = SlidingWindowCounter.windowsElapsed(state, oldIndex);
+		int previous = windowsElapsed == 0 ? SlidingWindowCounter.previousCount(state)
+				: windowsElapsed == 1 ? SlidingWindowCounter.currentCount(state) : 0;
+		int current = windowsElapsed == 0 ? SlidingWindowCounter.currentCount(state) : 0;
+		long windowIndex = Math.floorDiv(currentTime, TIME_WINDOW_MS);
+		
+		if(oldWindowMs == TIME_WINDOW_MS) {
+			return SlidingWindowCounter.of(SlidingWindowCounter.pack(windowIndex,
+					LimitScaling.scale(previous, oldLimit, REQUEST_LIMIT, SlidingWindowCounter.MAX_COUNT),
+					LimitScaling.scale(current, oldLimit, REQUEST_LIMIT, SlidingWindowCounter.MAX_COUNT)));
+		}
+		// window boundaries moved: fold the old weighted estimate into the new current window
+		long elapsedInWindow = currentTime - oldIndex * oldWindowMs;
+		int estimate = (int) Math.min(Integer.MAX_VALUE, current + ((long) previous * (oldWindowMs - elapsedInWindow) + oldWindowMs - 1) / oldWindowMs);
+		return SlidingWindowCounter.of(SlidingWindowCounter.pack(windowIndex, 0,
+				LimitScaling.scale(estimate, oldLimit, REQUEST_LIMIT, SlidingWindowCounter.MAX_COUNT)));
+	}
+	
+	@Override
+	public String snapshotSignature() {
+		return "sliding-window-counter/1/" + TIME_WINDOW_MS + (userRequestMap instanceof OffHeapStateTable ? "/hashed" : "");
+	}
+	
+	@Override
+	public void writeSnapshot(SnapshotOutput out) throws IOException {
+		userRequestMap.writeSnapshot(out, (userInfo, o) -> o.putLong(userInfo.get()));
+	}
+	
+	@Override
+	public long readSnapshot(SnapshotInput in, long currentTime) {
+		return userRequestMap.readSnapshot(in, currentTime, source -> SlidingWindowCounter.of(source.getLong()));
+	}
+	
+	private boolean isExpired(long state, long currentTime) {
+		long windowsElapsed = SlidingWindowCounter.windowsElapsed(state, Math.floorDiv(currentTime, TIME_WINDOW_MS));
+		return windowsElapsed >= 2 && windowsElapsed <= SlidingWindowCounter.WINDOW_MASK / 2;
+	}
+	
+	/** Only the current window's count is given back; a request counted before a roll-over stays. */
+	private void refund(PackedState userInfo, long currentTime, MutableDecision refund) {
+		long windowIndex = Math.floorDiv(currentTime, TIME_WINDOW_MS);
+		while(true) {
+			long state = userInfo.get();
+			int current = SlidingWindowCounter.currentCount(state);
+			if(current == 0 || SlidingWindowCounter.windowsElapsed(state, windowIndex) != 0) { return; }
+			long updated = SlidingWindowCounter.pack(SlidingWindowCounter.windowIndex(state), 
+					SlidingWindowCounter.previousCount(state), Math.max(0, current - refund.permits()));
+			if(userInfo.compareAndSet(state, updated)) { return; }
+		}
+	}
+	
+	private void decide(PackedState userInfo, long currentTime, MutableDecision into) {
+		long windowIndex = Math.floorDiv(currentTime, TIME_WINDOW_MS);
+		long elapsedInWindow = currentTime - windowIndex * TIME_WINDOW_MS;
+		int permits = into.permits();
+		if(permits > REQUEST_LIMIT) {
+			// never fits; report when both windows have emptied
+			into.block(2 * TIME_WINDOW_MS - elapsedInWindow);
+			return;
+		}
+		
+		while(true) {
+			long state = userInfo.get();
+			long windowsElapsed = SlidingWindowCounter.windowsElapsed(state, windowIndex);
+			long storedWindow = windowIndex;
+			int previous;
+			int current;
+			
+			if(windowsElapsed == 0) {
+				previous = SlidingWindowCounter.previousCount(state);
+				current = SlidingWindowCounter.currentCount(state);
+			} else if(windowsElapsed == 1) {
+				previous = SlidingWindowCounter.currentCount(state);
+				current = 0;
+			} else if(windowsElapsed > SlidingWindowCounter.WINDOW_MASK / 2) {
+				// another thread already rolled the window forward; count against its window
+				storedWindow = SlidingWindowCounter.windowIndex(state);
+				previous = SlidingWindowCounter.previousCount(state);
+				current = SlidingWindowCounter.currentCount(state);
+			} else {
+				previous = 0;
+				current = 0;
+			}
+			
+			long weightedPrevious = (long) previous * (TIME_WINDOW_MS - elapsedSubWindows(elapsedInWindow));
+			long capacity = (long) REQUEST_LIMIT * TIME_WINDOW_MS;
+			
+			if(weightedPrevious + (long) (current + permits) * TIME_WINDOW_MS > capacity) {
+				long retryAfterMs = retryAfter(previous, current, permits, elapsedInWindow);
+				into.block(retryAfterMs);
+				return;
+			}
+			
+			if(!userInfo.compareAndSet(state, SlidingWindowCounter.pack(storedWindow, previous, current + permits))) {
+				continue;
+			}
+			
+			int remaining = (int) ((capacity - weightedPrevious - (long) (current + permits) * TIME_WINDOW_MS) / TIME_WINDOW_MS);
+			long resetInMs = 2 * TIME_WINDOW_MS - elapsedInWindow;
+			into.allow(remaining, resetInMs);
+			return;
+		}
+	}
+	
+	private long retryAfter(int previous, int current, int permits, long elapsedInWindow) {
+		if(current + permits > REQUEST_LIMIT) {
+			// wait for the next window, then for the rolled-over count to decay enough to fit the permits
+			long decay = toSubWindow(ceilDiv(TIME_WINDOW_MS * (current - REQUEST_LIMIT + permits), current));
+			return (TIME_WINDOW_MS - elapsedInWindow) + decay;
+		}
+		long target = toSubWindow(TIME_WINDOW_MS - (TIME_WINDOW_MS * (REQUEST_LIMIT - permits - current)) / previous);
+		return Math.max(1, target - elapsedInWindow);
+	}
+	
+	/** The part of the current window that has passed, counted in whole sub-windows. */
+	private long elapsedSubWindows(long elapsedInWindow) {
+		return elapsedInWindow / SUB_WINDOW_MS * SUB_WINDOW_MS;
+	}
+	
+	/** The first sub-window boundary at or after {@code elapsedInWindow}; by the window's end the previous window is gone. */
+	private long toSubWindow(long elapsedInWindow) {
+		return Math.min(TIME_WINDOW_MS, ceilDiv(elapsedInWindow, SUB_WINDOW_MS) * SUB_WINDOW_MS);
+	}
+	
+	private static long ceilDiv(long x, long y) {
+		return -Math.floorDiv(-x, y);
+	}
+}
@@ -1,67 +1,198 @@
 package com.project.rate_limiter.service;
 
-import java.time.Instant;
-import java.util.ArrayDeque;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.entity.MutableDecision;
 import com.project.rate_limiter.entity.RateLimiterDecision;
-import com.project.rate_limiter.entity.UserRequestInfo;
+import com.project.rate_limiter.entity.RequestLog;
+import com.project.rate_limiter.snapshot.SnapshotInput;
+import com.project.rate_limiter.snapshot.SnapshotOutput;
+import com.project.rate_limiter.snapshot.Snapshottable;
+import com.project.rate_limiter.store.LimiterStateStore;
+import com.project.rate_limiter.store.LimiterStateStore.StateWrite;
+import com.project.rate_limiter.store.StateStoreSettings;
+import com.project.rate_limiter.store.StateStoreStats;
 
 @Service
-public class SlidingWindowRateLimiterService {
+@ConditionalOnProperty(name = "rate.limiter.backend", havingValue = "local", matchIfMissing = true)
+public class SlidingWindowRateLimiterService implements RateLimiter, Snapshottable {
 	
-	@Value("${rate.request.limit.count}")
-	private int REQUEST_LIMIT;
+	private final int REQUEST_LIMIT;
 	
-	@Value("${rate.request.limit.timeperiod}")
-	private long TIME_WINDOW_MS;
+	private final long TIME_WINDOW_MS;
 	
-	Map<String, UserRequestInfo> userRequestMap = new HashMap<>();
+	private final LimiterStateStore<RequestLog> userRequestMap;
 	
-	public RateLimiterDecision decision(String user) {
-		long now = Instant.now().toEpochMilli();
-		return decision(user, now);
+	private final StateWrite<RequestLog, MutableDecision> decider = this::decide;
+	
+	private final StateWrite<RequestLog, MutableDecision> refunder = this::refund;
+	
+	public SlidingWindowRateLimiterService(@Value("${rate.request.limit.count}") int requestLimit,
+			@Value("${rate.request.limit.timeperiod}") long timeWindowMs,
+			StateStoreSettings storeSettings) {
+		this.REQUEST_LIMIT = requestLimit;
+		this.TIME_WINDOW_MS = timeWindowMs;
+		this.userRequestMap = new LimiterStateStore<>(now -> new RequestLog(REQUEST_LIMIT),
+				this::isExpired, storeSettings);
+	}
+	
+	@Override
+	public RateLimiterAlgorithm algorithm() {
+		return RateLimiterAlgorithm.SLIDING_WINDOW;
 	}
 	
+	@Override
 	public RateLimiterDecision decision(String user, long currentTime) {
-		UserRequestInfo userInfo = userRequestMap.getOrDefault(user, 
-				new UserRequestInfo(currentTime, 0, new ArrayDeque<>()));
-		
-		int originalQueueSize = userInfo.getRequestList().size();
-		
-		userInfo.getRequestList().removeIf(val -> currentTime - val > TIME_WINDOW_MS);
-		
-		int requestsDataPurged = originalQueueSize - userInfo.getRequestList().size();
-		userInfo.setNumberOfRequestsMade(userInfo.getNumberOfRequestsMade() - requestsDataPurged);
-		
-		if(userInfo.getRequestList().size() >= REQUEST_LIMIT) {
-			long oldest = userInfo.getRequestList().peekFirst();
-			
-			long retryAfterMs = Math.max(0, TIME_WINDOW_MS -(currentTime - oldest));
-			return new RateLimiterDecision(false, 0, retryAfterMs, retryAfterMs);
+		return decision(user, currentTime, 1);
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime, int permits) {
+		return decision(user, currentTime, permits, new MutableDecision()).toDecision();
+	}
+	
+	@Override
+	public MutableDecision decision(String user, long currentTime, MutableDecision into) {
+		return decision(user, currentTime, 1, into);
+	}
+	
+	@Override
+	public MutableDecision decision(String user, long currentTime, int permits, MutableDecision into) {
+		return userRequestMap.update(user, currentTime, into.forPermits(permits), decider);
+	}
+	
+	@Override
+	public void refund(String user, long currentTime, int permits) {
+		userRequestMap.update(user, currentTime, new MutableDecision().forPermits(permits), refunder);
+	}
+	
+	@Override
+	public boolean hasState(String user) {
+		return userRequestMap.contains(user);
+	}
+	
+	@Override
+	public StateStoreStats storeStats() {
+		return userRequestMap.stats();
+	}
+	
+	@Override
+	public long estimatedMemoryBytes() {
+		// upper bound: one long per entry in the window, plus an int once entries carry weights
+		return userRequestMap.estimatedBytes(32 + 16 + 16 + 12L * REQUEST_LIMIT);
+	}
+	
+	@Override
+	public RateLimiter withLimits(int count, long periodMs, double refillRate) {
+		SlidingWindowRateLimiterService next = new SlidingWindowRateLimiterService(count, periodMs, userRequestMap.settings());
+		next.userRequestMap.migrateFrom(userRequestMap, (log, now) -> next.migrate(log, now, REQUEST_LIMIT));
+		return next;
+	}
+	
+	/** Keeps the newest permits still inside the new window, as many as the scaled count. */
+	private RequestLog migrate(RequestLog previous, long currentTime, int oldLimit) {
+		RequestLog log = new RequestLog(REQUEST_LIMIT);
+		synchronized(previous) {
+			previous.purgeOlderThan(currentTime - TIME_WINDOW_MS);
+			int keep = Math.min(REQUEST_LIMIT, LimitScaling.scale(previous.total(), oldLimit, REQUEST_LIMIT, Integer.MAX_VALUE));
+			int skip = previous.total() - keep;
+			if(skip < 0) {
+				// scaling up needs more permits than there are; pad with the oldest, which expires first
+				log.add(previous.oldest(), -skip);
+			}
+			for(int i=0; i<previous.size(); i++) {
+				int weight = previous.weight(i);
+				int dropped = Math.max(0, Math.min(weight, skip));
+				skip -= dropped;
+				if(weight > dropped) {
+					log.add(previous.get(i), weight - dropped);
+				}
+			}
 		}
-		
-		//allow
-		userInfo.getRequestList().addLast(currentTime);
-		userInfo.setNumberOfRequestsMade(userInfo.getNumberOfRequestsMade()+1);
-		userRequestMap.put(user, userInfo);
-		
-		int remaining = Math.max(0, REQUEST_LIMIT - userInfo.getRequestList().size());
-		long resetInMs = 0;
-		if(!userInfo.getRequestList().isEmpty()) {
-			long oldest = userInfo.getRequestList().peekLast();
-			resetInMs = Math.max(0, TIME_WINDOW_MS - (currentTime - oldest));
+		return log;
+	}
+	
+	@Override
+	public String snapshotSignature() {
+		return "sliding-window/1";
+	}
+	
+	@Override
+	public void writeSnapshot(SnapshotOutput out) throws IOException {
+		userRequestMap.writeSnapshot(out, this::writeLog);
+	}
+	
+	@Override
+	public long readSnapshot(SnapshotInput in, long currentTime) {
+		return userRequestMap.readSnapshot(in, currentTime, this::readLog);
+	}
+	
+	private void writeLog(RequestLog log, SnapshotOutput out) throws IOException {
+		out.reserve(Integer.BYTES + Long.BYTES * REQUEST_LIMIT);
+		synchronized(log) {
+			// one timestamp per permit; reading them back merges those of the same millisecond again
+			out.putInt(log.total());
+			for(int i=0; i<log.size(); i++) {
+				for(int w=log.weight(i); w>0; w--) {
+					out.putLong(log.get(i));
+				}
+			}
+		}
+	}
+	
+	/** A log written under a higher limit keeps only its newest timestamps. */
+	private RequestLog readLog(SnapshotInput in) {
+		int size = in.getInt();
+		RequestLog log = new RequestLog(REQUEST_LIMIT);
+		for(int i=0; i<size; i++) {
+			long timestamp = in.getLong();
+			if(i >= size - REQUEST_LIMIT) {
+				log.add(timestamp);
+			}
+		}
+		return log;
+	}
+	
+	private boolean isExpired(RequestLog log, long currentTime) {
+		synchronized(log) {
+			return log.isEmpty() || currentTime - log.newest() > TIME_WINDOW_MS;
 		}
-		
-
-		return new RateLimiterDecision(true, remaining, resetInMs, resetInMs);
 	}
 	
-	public boolean isAllowed(String user) {
-		return decision(user).isAllowed();
+	private void refund(RequestLog log, long currentTime, MutableDecision refund) {
+		synchronized(log) {
+			log.refund(currentTime, refund.permits());
+		}
+	}
+	
+	private void decide(RequestLog log, long currentTime, MutableDecision into) {
+		// the log is per key, so only requests for the same user contend on this monitor
+		int permits = into.permits();
+		synchronized(log) {
+			log.purgeOlderThan(currentTime - TIME_WINDOW_MS);
+			
+			if(log.total() + permits > REQUEST_LIMIT) {
+				// more permits than the limit never fit; report when the whole log has expired
+				long expiring = permits > REQUEST_LIMIT 
+						? (log.isEmpty() ? currentTime : log.newest()) 
+						: log.expiring(log.total() + permits - REQUEST_LIMIT);
+				
+				long retryAfterMs = Math.max(0, TIME_WINDOW_MS -(currentTime - expiring));
+				into.block(retryAfterMs);
+				return;
+			}
+			
+			//allow
+			log.add(currentTime, permits);
+			
+			int remaining = Math.max(0, REQUEST_LIMIT - log.total());
+			long resetInMs = Math.max(0, TIME_WINDOW_MS - (currentTime - log.newest()));
+			into.allow(remaining, resetInMs);
+		}
 	}
-}
\ No newline at end of file
+}
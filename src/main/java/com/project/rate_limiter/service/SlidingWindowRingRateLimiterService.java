@@ -0,0 +1,210 @@
+package com.project.rate_limiter.service;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.entity.MutableDecision;
+import com.project.rate_limiter.entity.RateLimiterDecision;
+import com.project.rate_limiter.entity.SlidingWindowRing;
+import com.project.rate_limiter.snapshot.SnapshotInput;
+import com.project.rate_limiter.snapshot.SnapshotOutput;
+import com.project.rate_limiter.snapshot.Snapshottable;
+import com.project.rate_limiter.store.LimiterStateStore;
+import com.project.rate_limiter.store.LimiterStateStore.StateWrite;
+import com.project.rate_limiter.store.StateStoreSettings;
+import com.project.rate_limiter.store.StateStoreStats;
+
+/**
+ * Sliding window over a ring of sub-window counters; {@code rate.request.limit.sliding.subwindows}
+ * trades memory per key for precision at the trailing edge of the window. A window that does not
+ * divide evenly gets sub-windows rounded up. The ring keeps one slot more than there are
+ * sub-windows, so a whole window lies behind the current sub-window: a request is forgotten
+ * between one window and one window plus a sub-window after it was counted, never early, and no
+ * window-long span admits more than the limit. Like the sliding counter it is in-process only and
+ * offered by the local backend alone.
+ */
+@Service
+@ConditionalOnProperty(name = "rate.limiter.backend", havingValue = "local", matchIfMissing = true)
+public class SlidingWindowRingRateLimiterService implements RateLimiter, Snapshottable {
+	
+	private final int REQUEST_LIMIT;
+	
+	private final int SUB_WINDOWS;
+	
+	private final int SLOTS;
+	
+	private final long SUB_WINDOW_MS;
+	
+	private final LimiterStateStore<SlidingWindowRing> userRequestMap;
+	
+	private final StateWrite<SlidingWindowRing, MutableDecision> decider = this::decide;
+	
+	private final StateWrite<SlidingWindowRing, MutableDecision> refunder = this::refund;
+	
+	public SlidingWindowRingRateLimiterService(@Value("${rate.request.limit.count}") int requestLimit,
+			@Value("${rate.request.limit.timeperiod}") long timeWindowMs,
+			@Value("${rate.request.limit.sliding.subwindows:10}") int subWindows,
+			StateStoreSettings storeSettings) {
+		if(subWindows < 1) {
+			throw new IllegalArgumentException("rate.request.limit.sliding.subwindows must be at least 1");
+		}
+		this.REQUEST_LIMIT = requestLimit;
+		this.SUB_WINDOWS = subWindows;
+		this.SLOTS = subWindows + 1;
+		this.SUB_WINDOW_MS = Math.max(1, (timeWindowMs + subWindows - 1) / subWindows);
+		this.userRequestMap = new LimiterStateStore<>(now -> new SlidingWindowRing(SLOTS, Math.floorDiv(now, SUB_WINDOW_MS)),
+				this::isExpired, storeSettings);
+	}
+	
+	@Override
+	public RateLimiterAlgorithm algorithm() {
+		return RateLimiterAlgorithm.SLIDING_WINDOW_RING;
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime) {
+		return decision(user, currentTime, 1);
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime, int permits) {
+		return decision(user, currentTime, permits, new MutableDecision()).toDecision();
+	}
+	
+	@Override
+	public MutableDecision decision(String user, long currentTime, MutableDecision into) {
+		return decision(user, currentTime, 1, into);
+	}
+	
+	@Override
+	public MutableDecision decision(String user, long currentTime, int permits, MutableDecision into) {
+		return userRequestMap.update(user, currentTime, into.forPermits(permits), decider);
+	}
+	
+	@Override
+	public void refund(String user, long currentTime, int permits) {
+		userRequestMap.update(user, currentTime, new MutableDecision().forPermits(permits), refunder);
+	}
+	
+	@Override
+	public boolean hasState(String user) {
+		return userRequestMap.contains(user);
+	}
+	
+	@Override
+	public StateStoreStats storeStats() {
+		return userRequestMap.stats();
+	}
+	
+	@Override
+	public long estimatedMemoryBytes() {
+		// ring object plus its int[] of sub-window counts
+		return userRequestMap.estimatedBytes(32 + 16 + 4L * SLOTS);
+	}
+	
+	@Override
+	public RateLimiter withLimits(int count, long periodMs, double refillRate) {
+		SlidingWindowRingRateLimiterService next = new SlidingWindowRingRateLimiterService(count, periodMs, SUB_WINDOWS, userRequestMap.settings());
+		next.userRequestMap.migrateFrom(userRequestMap, (ring, now) -> next.migrate(ring, now, REQUEST_LIMIT, SUB_WINDOW_MS));
+		return next;
+	}
+	
+	private SlidingWindowRing migrate(SlidingWindowRing previous, long currentTime, int oldLimit, long oldSubWindowMs) {
+		long head = Math.floorDiv(currentTime, SUB_WINDOW_MS);
+		SlidingWindowRing ring = new SlidingWindowRing(SLOTS, head);
+		synchronized(previous) {
+			previous.advance(Math.floorDiv(currentTime, oldSubWindowMs));
+			if(oldSubWindowMs == SUB_WINDOW_MS && previous.subWindows() == SLOTS) {
+				// same geometry: keep each sub-window's requests where they were
+				ring = new SlidingWindowRing(SLOTS, head - SLOTS + 1);
+				for(long i=head-SLOTS+1; i<=head; i++) {
+					ring.advance(i);
+					ring.add(LimitScaling.scale(previous.count(i), oldLimit, REQUEST_LIMIT, Integer.MAX_VALUE));
+				}
+			} else {
+				// the old slots do not line up with the new ones; count them all in the newest
+				ring.add(LimitScaling.scale(previous.total(), oldLimit, REQUEST_LIMIT, Integer.MAX_VALUE));
+			}
+		}
+		return ring;
+	}
+	
+	@Override
+	public String snapshotSignature() {
+		return "sliding-window-ring/2/" + SUB_WINDOW_MS + "/" + SUB_WINDOWS;
+	}
+	
+	@Override
+	public void writeSnapshot(SnapshotOutput out) throws IOException {
+		userRequestMap.writeSnapshot(out, this::writeRing);
+	}
+	
+	@Override
+	public long readSnapshot(SnapshotInput in, long currentTime) {
+		return userRequestMap.readSnapshot(in, currentTime, this::readRing);
+	}
+	
+	private void writeRing(SlidingWindowRing ring, SnapshotOutput out) throws IOException {
+		out.reserve(Long.BYTES + Integer.BYTES * SLOTS);
+		synchronized(ring) {
+			long head = ring.headIndex();
+			out.putLong(head);
+			for(long i=head-SLOTS+1; i<=head; i++) {
+				out.putInt(ring.count(i));
+			}
+		}
+	}
+	
+	private SlidingWindowRing readRing(SnapshotInput in) {
+		long head = in.getLong();
+		SlidingWindowRing ring = new SlidingWindowRing(SLOTS, head - SLOTS + 1);
+		for(long i=head-SLOTS+1; i<=head; i++) {
+			ring.advance(i);
+			ring.add(in.getInt());
+		}
+		return ring;
+	}
+	
+	private boolean isExpired(SlidingWindowRing ring, long currentTime) {
+		synchronized(ring) {
+			return Math.floorDiv(currentTime, SUB_WINDOW_MS) - ring.headIndex() >= SLOTS;
+		}
+	}
+	
+	private void refund(SlidingWindowRing ring, long currentTime, MutableDecision refund) {
+		long subWindowIndex = Math.floorDiv(currentTime, SUB_WINDOW_MS);
+		synchronized(ring) {
+			ring.advance(subWindowIndex);
+			ring.add(-Math.min(refund.permits(), ring.count(subWindowIndex)));
+		}
+	}
+	
+	private void decide(SlidingWindowRing ring, long currentTime, MutableDecision into) {
+		long subWindowIndex = Math.floorDiv(currentTime, SUB_WINDOW_MS);
+		int permits = into.permits();
+		
+		synchronized(ring) {
+			ring.advance(subWindowIndex);
+			
+			if(ring.total() + permits > REQUEST_LIMIT) {
+				// more permits than the limit never fit; report when the whole ring has expired
+				int excess = permits > REQUEST_LIMIT ? Integer.MAX_VALUE : ring.total() + permits - REQUEST_LIMIT;
+				long expiresAt = (ring.expiringIndex(excess) + SLOTS) * SUB_WINDOW_MS;
+				long retryAfterMs = Math.max(0, expiresAt - currentTime);
+				into.block(retryAfterMs);
+				return;
+			}
+			
+			//allow
+			ring.add(permits);
+			
+			int remaining = Math.max(0, REQUEST_LIMIT - ring.total());
+			long resetInMs = Math.max(0, (ring.headIndex() + SLOTS) * SUB_WINDOW_MS - currentTime);
+			into.allow(remaining, resetInMs);
+		}
+	}
+}
@@ -1,53 +1,158 @@
 package com.project.rate_limiter.service;
 
-import java.time.Instant;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.entity.PackedTokenBucket;
+import com.project.rate_limiter.entity.MutableDecision;
+import com.project.rate_limiter.entity.PackedState;
 import com.project.rate_limiter.entity.RateLimiterDecision;
-import com.project.rate_limiter.entity.TokenBucket;
+import com.project.rate_limiter.entity.TokenBucketSpec;
+import com.project.rate_limiter.snapshot.SnapshotInput;
+import com.project.rate_limiter.snapshot.SnapshotOutput;
+import com.project.rate_limiter.snapshot.Snapshottable;
+import com.project.rate_limiter.store.KeyedStateStore;
+import com.project.rate_limiter.store.LimiterStateStore;
+import com.project.rate_limiter.store.LimiterStateStore.StateWrite;
+import com.project.rate_limiter.store.OffHeapStateTable;
+import com.project.rate_limiter.store.StateStoreSettings;
+import com.project.rate_limiter.store.StateStoreStats;
 
 @Service
-public class TokenBucketRateLimiterService {
+@ConditionalOnProperty(name = "rate.limiter.backend", havingValue = "local", matchIfMissing = true)
+public class TokenBucketRateLimiterService implements RateLimiter, Snapshottable {
 
-    @Value("${rate.request.limit.count}")
-    private int CAPACITY;
+    private final TokenBucketSpec SPEC;
 
-    @Value("${rate.request.limit.refill.rate}")
-    private int REFILL_RATE_PER_SECOND;
-
-    private final Map<String, TokenBucket> buckets = new HashMap<>();
+    private final KeyedStateStore<PackedState> buckets;
+	
+	private final StateWrite<PackedState, MutableDecision> decider = this::decide;
+	
+	private final StateWrite<PackedState, MutableDecision> refunder = this::refund;
 
-    public RateLimiterDecision decision(String user) {
-		long now = Instant.now().toEpochMilli();
-		return decision(user, now);
+    public TokenBucketRateLimiterService(@Value("${rate.request.limit.count}") int capacity,
+    		@Value("${rate.request.limit.refill.rate}") double refillRatePerSecond,
+    		StateStoreSettings storeSettings) {
+    	this.SPEC = new TokenBucketSpec(capacity, refillRatePerSecond);
+    	this.buckets = KeyedStateStore.packed(storeSettings, now -> SPEC.full(TokenBucketSpec.toMicros(now)), PackedTokenBucket::new,
+    			(state, now) -> PackedTokenBucket.tokenUnits(SPEC.refill(state, TokenBucketSpec.toMicros(now))) >= SPEC.capacityUnits());
+    }
+	
+	@Override
+	public RateLimiterAlgorithm algorithm() {
+		return RateLimiterAlgorithm.TOKEN_BUCKET;
 	}
 	
+	@Override
 	public RateLimiterDecision decision(String user, long currentTime) {
-		TokenBucket bucket = buckets.getOrDefault(user, new TokenBucket(CAPACITY, REFILL_RATE_PER_SECOND, currentTime));
-        bucket.refill(currentTime);
-        
-        if (bucket.getTokens() > 0) {
-            bucket.setTokens(bucket.getTokens()-1);
-            buckets.put(user, bucket);
-
-            int remaining = Math.max(0, bucket.getTokens());
-            long msPerToken = (1000L / REFILL_RATE_PER_SECOND);
-            long missing = Math.max(0, CAPACITY - bucket.getTokens());
-            long resetInMs =  msPerToken * missing;
-            
-            return new RateLimiterDecision(true, remaining, 0, resetInMs);
-            
-        }
-        
-        long retryAfterMs = (1000L / REFILL_RATE_PER_SECOND);
-		return new RateLimiterDecision(false, 0, retryAfterMs, retryAfterMs);
-	}
-	
-	public boolean isAllowed(String user) {
-		return decision(user).isAllowed();
+		return decision(user, currentTime, 1);
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime, int permits) {
+		return decision(user, currentTime, permits, new MutableDecision()).toDecision();
+	}
+	
+	@Override
+	public MutableDecision decision(String user, long currentTime, MutableDecision into) {
+		return decision(user, currentTime, 1, into);
+	}
+	
+	@Override
+	public MutableDecision decision(String user, long currentTime, int permits, MutableDecision into) {
+		return buckets.update(user, currentTime, into.forPermits(permits), decider);
+	}
+	
+	@Override
+	public void refund(String user, long currentTime, int permits) {
+		buckets.update(user, currentTime, new MutableDecision().forPermits(permits), refunder);
+	}
+	
+	@Override
+	public boolean hasState(String user) {
+		return buckets.contains(user);
+	}
+	
+	@Override
+	public StateStoreStats storeStats() {
+		return buckets.stats();
+	}
+	
+	@Override
+	public long estimatedMemoryBytes() {
+		// header plus one packed long
+		return buckets.estimatedBytes(24);
+	}
+	
+	@Override
+	public RateLimiter withLimits(int count, long periodMs, double refillRate) {
+		if(!(buckets instanceof LimiterStateStore<PackedState> previous)) { return null; }
+		TokenBucketRateLimiterService next = new TokenBucketRateLimiterService(count, refillRate, buckets.settings());
+		// keep the fraction of the bucket that was left, refilled under the old rate up to now
+		((LimiterStateStore<PackedState>) next.buckets).migrateFrom(previous, (bucket, now) -> {
+			long nowMicros = TokenBucketSpec.toMicros(now);
+			long units = PackedTokenBucket.tokenUnits(SPEC.refill(bucket.get(), nowMicros));
+			long scaled = Math.min(next.SPEC.capacityUnits(), units * next.SPEC.capacityUnits() / SPEC.capacityUnits());
+			return new PackedTokenBucket(PackedTokenBucket.pack(scaled, nowMicros));
+		});
+		return next;
+	}
+	
+	@Override
+	public String snapshotSignature() {
+		return "token-bucket/1" + (buckets instanceof OffHeapStateTable ? "/hashed" : "");
+	}
+	
+	@Override
+	public void writeSnapshot(SnapshotOutput out) throws IOException {
+		buckets.writeSnapshot(out, (bucket, o) -> o.putLong(bucket.get()));
+	}
+	
+	@Override
+	public long readSnapshot(SnapshotInput in, long currentTime) {
+		return buckets.readSnapshot(in, currentTime, source -> new PackedTokenBucket(source.getLong()));
+	}
+	
+	private void refund(PackedState bucket, long currentTime, MutableDecision refund) {
+		long refunded = refund.permits() * PackedTokenBucket.ONE_TOKEN;
+		while(true) {
+			long state = bucket.get();
+			long units = Math.min(SPEC.capacityUnits(), PackedTokenBucket.tokenUnits(state) + refunded);
+			if(bucket.compareAndSet(state, PackedTokenBucket.pack(units, PackedTokenBucket.timeMicros(state)))) { return; }
+		}
+	}
+	
+	private void decide(PackedState bucket, long currentTime, MutableDecision into) {
+		long nowMicros = TokenBucketSpec.toMicros(currentTime);
+		long needed = into.permits() * PackedTokenBucket.ONE_TOKEN;
+		
+		while(true) {
+			long state = bucket.get();
+			long refilled = SPEC.refill(state, nowMicros);
+			long tokenUnits = PackedTokenBucket.tokenUnits(refilled);
+			
+			if(tokenUnits >= needed && needed <= SPEC.capacityUnits()) {
+				long left = tokenUnits - needed;
+				long updated = PackedTokenBucket.pack(left, PackedTokenBucket.timeMicros(refilled));
+				if(!bucket.compareAndSet(state, updated)) {
+					continue;
+				}
+				
+				int remaining = (int) (left >>> PackedTokenBucket.FRACTION_BITS);
+				long resetInMs = SPEC.millisUntil(updated, nowMicros, SPEC.capacityUnits());
+				into.allow(remaining, resetInMs);
+				return;
+			}
+			
+			// blocked; nothing to write back since refill is a pure function of the stored state.
+			// More permits than the capacity never fit, so the wait reported is for a full bucket
+			long retryAfterMs = SPEC.millisUntil(refilled, nowMicros, Math.min(needed, SPEC.capacityUnits()));
+			into.block(retryAfterMs);
+			return;
+		}
 	}
 }
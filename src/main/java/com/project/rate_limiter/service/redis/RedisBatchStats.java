@@ -0,0 +1,10 @@
+package com.project.rate_limiter.service.redis;
+
+public record RedisBatchStats(
+		long batches,
+		long decisions,
+		int maxBatchSize,
+		double averageFillRatio,
+		double averageQueueingMicros,
+		long maxQueueingMicros
+) {}
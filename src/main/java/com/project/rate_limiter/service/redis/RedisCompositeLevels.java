@@ -0,0 +1,102 @@
+package com.project.rate_limiter.service.redis;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.entity.MutableDecision;
+import com.project.rate_limiter.service.CompositeRateLimiter.Level;
+import com.project.rate_limiter.service.CompositeRateLimiter.SharedLevels;
+
+/**
+ * The Redis levels of a composite limit, checked and charged by {@code composite.lua} in one
+ * round trip. Keys are the ones the levels' own limiters use, so the state is the same whichever
+ * way a level is reached. In Redis Cluster the keys of different levels hash to different slots,
+ * which a single script cannot span; composite limits need a standalone or Sentinel deployment.
+ * Like the single-level scripts it reads the time from Redis, so {@code currentTime} is not sent.
+ */
+public final class RedisCompositeLevels implements SharedLevels {
+	
+	private final RedisLimiterScripts scripts;
+	
+	private final int[] levels;
+	
+	private final String[] prefixes;
+	
+	private final RateLimiterAlgorithm[] algorithms;
+	
+	/** Per level: script kind, limit, window or refill rate. */
+	private final String[] params;
+	
+	/**
+	 * @param levels positions of {@code shared} within the whole composite, for the key array
+	 */
+	public RedisCompositeLevels(RedisLimiterScripts scripts, int[] levels, List<Level> shared) {
+		this.scripts = scripts;
+		this.levels = levels.clone();
+		this.prefixes = new String[shared.size()];
+		this.algorithms = new RateLimiterAlgorithm[shared.size()];
+		this.params = new String[3 * shared.size()];
+		for(int i=0; i<shared.size(); i++) {
+			Level level = shared.get(i);
+			prefixes[i] = level.namespace() + ":";
+			algorithms[i] = level.algorithm();
+			params[3*i + 1] = String.valueOf(level.count());
+			switch(level.algorithm()) {
+				case TOKEN_BUCKET -> {
+					params[3*i] = "1";
+					params[3*i + 2] = String.valueOf(level.refillRate());
+				}
+				case FIXED_WINDOW -> {
+					params[3*i] = "2";
+					params[3*i + 2] = String.valueOf(level.periodMs());
+				}
+				case SLIDING_WINDOW -> {
+					params[3*i] = "3";
+					params[3*i + 2] = String.valueOf(level.periodMs());
+				}
+				case GCRA -> {
+					params[3*i] = "4";
+					params[3*i + 2] = String.valueOf(level.periodMs());
+				}
+				default -> throw new IllegalArgumentException("Unsupported algorithm " + level.algorithm() + " in Redis");
+			}
+		}
+	}
+	
+	@Override
+	public int decide(String[] keys, long currentTime, int permits, MutableDecision into) {
+		return read(scripts.executeComposite(redisKeys(keys), args(permits)), into);
+	}
+	
+	@Override
+	public CompletionStage<Integer> decideAsync(String[] keys, long currentTime, int permits, MutableDecision into) {
+		return scripts.executeCompositeAsync(redisKeys(keys), args(permits))
+				.thenApply(result -> read(result, into));
+	}
+	
+	private List<String> redisKeys(String[] keys) {
+		String[] redisKeys = new String[levels.length];
+		for(int i=0; i<levels.length; i++) {
+			redisKeys[i] = scripts.key(algorithms[i], prefixes[i] + keys[levels[i]]);
+		}
+		return Arrays.asList(redisKeys);
+	}
+	
+	private String[] args(int permits) {
+		String[] args = new String[1 + params.length];
+		args[0] = String.valueOf(permits);
+		System.arraycopy(params, 0, args, 1, params.length);
+		return args;
+	}
+	
+	private int read(List<Long> result, MutableDecision into) {
+		if(result.get(0) == 1L) {
+			into.allow(result.get(1).intValue(), result.get(3));
+		} else {
+			into.block(result.get(2));
+		}
+		return levels[result.get(4).intValue() - 1];
+	}
+}
@@ -0,0 +1,253 @@
+package com.project.rate_limiter.service.redis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.async.RedisScriptingAsyncCommands;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Collects limiter script calls from many request threads and sends them to Redis as one pipeline.
+ * <p>
+ * A single dispatcher thread waits for the first queued call, then keeps collecting for at most
+ * {@code rate.redis.batch.window-us} or until {@code rate.redis.batch.max-size} calls are queued,
+ * and sends them all with pipelined EVALSHA over the shared Lettuce connection. Calls that arrive
+ * while a pipeline is in flight form the next batch, so under load a node makes one round trip per
+ * batch rather than per request.
+ */
+@Component
+@ConditionalOnExpression("'${rate.limiter.backend:local}' matches 'redis|hybrid' and ${rate.redis.batch.enabled:false}")
+public class RedisDecisionBatcher {
+	
+	private static final long REPLY_TIMEOUT_SECONDS = 5;
+	
+	private final StringRedisTemplate redisTemplate;
+	
+	private final long WINDOW_NANOS;
+	
+	private final int MAX_BATCH_SIZE;
+	
+	private final BlockingQueue<PendingCall> queue;
+	
+	private final Thread dispatcher;
+	
+	private volatile boolean running = true;
+	
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder decisions = new LongAdder();
+	private final AtomicLong queueingNanos = new AtomicLong();
+	private final LongAccumulator maxQueueingNanos = new LongAccumulator(Math::max, 0);
+	
+	public RedisDecisionBatcher(StringRedisTemplate redisTemplate,
+			@Value("${rate.redis.batch.window-us:200}") long windowMicros,
+			@Value("${rate.redis.batch.max-size:64}") int maxBatchSize,
+			@Value("${rate.redis.batch.queue-capacity:65536}") int queueCapacity) {
+		this.redisTemplate = redisTemplate;
+		this.WINDOW_NANOS = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+		this.MAX_BATCH_SIZE = maxBatchSize;
+		this.queue = new LinkedBlockingQueue<>(queueCapacity);
+		this.dispatcher = new Thread(this::dispatchLoop, "redis-decision-batcher");
+		this.dispatcher.setDaemon(true);
+		this.dispatcher.start();
+	}
+	
+	public CompletableFuture<List<Long>> submit(RedisScript<List<Long>> script, String key, String... args) {
+		PendingCall call = new PendingCall(script, key, args, System.nanoTime());
+		if(!running || !queue.offer(call)) {
+			call.future.completeExceptionally(new RejectedExecutionException("Redis decision queue is full"));
+		}
+		return call.future;
+	}
+	
+	public RedisBatchStats stats() {
+		long batchCount = batches.sum();
+		long decisionCount = decisions.sum();
+		double fill = batchCount == 0 ? 0 : (double) decisionCount / (batchCount * MAX_BATCH_SIZE);
+		double queueing = decisionCount == 0 ? 0 : queueingNanos.get() / 1000.0 / decisionCount;
+		return new RedisBatchStats(batchCount, decisionCount, MAX_BATCH_SIZE, fill, queueing, 
+				TimeUnit.NANOSECONDS.toMicros(maxQueueingNanos.get()));
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		running = false;
+		dispatcher.interrupt();
+	}
+	
+	private void dispatchLoop() {
+		List<PendingCall> batch = new ArrayList<>(MAX_BATCH_SIZE);
+		while(running) {
+			try {
+				PendingCall first = queue.take();
+				batch.add(first);
+				long deadline = System.nanoTime() + WINDOW_NANOS;
+				while(batch.size() < MAX_BATCH_SIZE) {
+					long wait = deadline - System.nanoTime();
+					PendingCall next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+					if(next == null) { break; }
+					batch.add(next);
+				}
+				send(batch);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				break;
+			} finally {
+				batch.clear();
+			}
+		}
+		
+		PendingCall leftover;
+		while((leftover = queue.poll()) != null) {
+			leftover.future.completeExceptionally(new RejectedExecutionException("Redis decision batcher stopped"));
+		}
+	}
+	
+	private void send(List<PendingCall> batch) {
+		long sentAt = System.nanoTime();
+		for(PendingCall call : batch) {
+			long waited = sentAt - call.enqueuedAt;
+			queueingNanos.addAndGet(waited);
+			maxQueueingNanos.accumulate(waited);
+		}
+		batches.increment();
+		decisions.add(batch.size());
+		
+		List<Object> results;
+		try {
+			results = pipeline(batch);
+			List<Integer> missing = new ArrayList<>();
+			for(int i=0; i<results.size(); i++) {
+				if(isNoScript(results.get(i))) { missing.add(i); }
+			}
+			if(!missing.isEmpty()) {
+				// script cache was flushed (e.g. Redis restarted): load once and replay only the calls
+				// that did not run, since the others have already charged their keys
+				List<PendingCall> replay = missing.stream().map(batch::get).toList();
+				loadScripts(replay);
+				List<Object> replayed = pipeline(replay);
+				for(int i=0; i<missing.size(); i++) {
+					results.set(missing.get(i), i < replayed.size() ? replayed.get(i) : null);
+				}
+			}
+		} catch (RuntimeException ex) {
+			batch.forEach(call -> call.future.completeExceptionally(ex));
+			return;
+		}
+		
+		for(int i=0; i<batch.size(); i++) {
+			complete(batch.get(i), i < results.size() ? results.get(i) : null);
+		}
+	}
+	
+	/**
+	 * Writes every call of the batch on the shared Lettuce connection before reading any reply; the
+	 * driver flushes them together, so the whole batch costs one round trip.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Object> pipeline(List<PendingCall> batch) {
+		return redisTemplate.execute((RedisCallback<List<Object>>) connection -> {
+			RedisScriptingAsyncCommands<byte[], byte[]> commands = 
+					(RedisScriptingAsyncCommands<byte[], byte[]>) connection.getNativeConnection();
+			List<RedisFuture<List<Long>>> replies = new ArrayList<>(batch.size());
+			for(PendingCall call : batch) {
+				replies.add(commands.evalsha(call.script.getSha1(), ScriptOutputType.MULTI, 
+						new byte[][] { call.key() }, call.args()));
+			}
+			
+			List<Object> results = new ArrayList<>(batch.size());
+			for(RedisFuture<List<Long>> reply : replies) {
+				try {
+					results.add(reply.get(REPLY_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+				} catch (ExecutionException ex) {
+					results.add(ex.getCause());
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					results.add(ex);
+				} catch (TimeoutException ex) {
+					results.add(ex);
+				}
+			}
+			return results;
+		});
+	}
+	
+	private void loadScripts(List<PendingCall> batch) {
+		redisTemplate.execute((RedisCallback<Void>) connection -> {
+			batch.stream().map(call -> call.script).distinct()
+				.forEach(script -> load(connection, script));
+			return null;
+		});
+	}
+	
+	private static void load(RedisConnection connection, RedisScript<List<Long>> script) {
+		connection.scriptingCommands().scriptLoad(script.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static void complete(PendingCall call, Object result) {
+		if(result instanceof List<?> list) {
+			call.future.complete((List<Long>) list);
+		} else if(result instanceof Throwable error) {
+			call.future.completeExceptionally(error);
+		} else {
+			call.future.completeExceptionally(new IllegalStateException("Unexpected limiter script result: " + result));
+		}
+	}
+	
+	static boolean isNoScript(Object result) {
+		if(!(result instanceof Throwable error)) { return false; }
+		for(Throwable cause = error; cause != null; cause = cause.getCause()) {
+			if(cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT")) { return true; }
+		}
+		return false;
+	}
+	
+	private static final class PendingCall {
+		
+		private final RedisScript<List<Long>> script;
+		private final String key;
+		private final String[] args;
+		private final long enqueuedAt;
+		private final CompletableFuture<List<Long>> future = new CompletableFuture<>();
+		
+		private PendingCall(RedisScript<List<Long>> script, String key, String[] args, long enqueuedAt) {
+			this.script = script;
+			this.key = key;
+			this.args = args;
+			this.enqueuedAt = enqueuedAt;
+		}
+		
+		private byte[] key() {
+			return key.getBytes(StandardCharsets.UTF_8);
+		}
+		
+		private byte[][] args() {
+			byte[][] values = new byte[args.length][];
+			for(int i=0; i<args.length; i++) {
+				values[i] = args[i].getBytes(StandardCharsets.UTF_8);
+			}
+			return values;
+		}
+	}
+}
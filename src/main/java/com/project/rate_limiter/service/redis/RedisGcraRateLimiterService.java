@@ -0,0 +1,50 @@
+package com.project.rate_limiter.service.redis;
+
+import java.util.concurrent.CompletionStage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Service;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.entity.RateLimiterDecision;
+import com.project.rate_limiter.service.RateLimiter;
+
+@Service
+@ConditionalOnExpression("'${rate.limiter.backend:local}' matches 'redis|hybrid'")
+public class RedisGcraRateLimiterService implements RateLimiter {
+	
+	private final int REQUEST_LIMIT;
+	
+	private final long TIME_WINDOW_MS;
+	
+	private final RedisLimiterScripts scripts;
+	
+	public RedisGcraRateLimiterService(@Value("${rate.request.limit.count}") int requestLimit,
+			@Value("${rate.request.limit.timeperiod}") long timeWindowMs,
+			RedisLimiterScripts scripts) {
+		this.REQUEST_LIMIT = requestLimit;
+		this.TIME_WINDOW_MS = timeWindowMs;
+		this.scripts = scripts;
+	}
+	
+	@Override
+	public RateLimiterAlgorithm algorithm() {
+		return RateLimiterAlgorithm.GCRA;
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime) {
+		return decision(user, currentTime, 1);
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime, int permits) {
+		return scripts.decide(RedisLimiterScripts.GCRA, algorithm(), user, REQUEST_LIMIT, TIME_WINDOW_MS, permits);
+	}
+	
+	@Override
+	public CompletionStage<RateLimiterDecision> decisionAsync(String user, long currentTime, int permits) {
+		return scripts.decideAsync(RedisLimiterScripts.GCRA, algorithm(), user, REQUEST_LIMIT, TIME_WINDOW_MS, permits);
+	}
+}
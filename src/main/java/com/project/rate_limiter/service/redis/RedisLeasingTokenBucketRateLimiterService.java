@@ -0,0 +1,161 @@
+package com.project.rate_limiter.service.redis;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.entity.RateLimiterDecision;
+import com.project.rate_limiter.entity.TokenLease;
+import com.project.rate_limiter.service.RateLimiter;
+import com.project.rate_limiter.store.LimiterStateStore;
+import com.project.rate_limiter.store.StateStoreSettings;
+import com.project.rate_limiter.store.StateStoreStats;
+
+/**
+ * Token bucket that keeps the bucket in Redis but serves most decisions from local leases.
+ * <p>
+ * A node takes a batch of tokens out of the shared bucket in one script call and hands them out
+ * locally until they run out or the lease expires; leftovers go back to the bucket with the next
+ * lease call. Tokens are debited remotely before they are admitted, so the cluster never admits
+ * more than the shared bucket allows; the cost is that up to one lease per node can sit unused
+ * for {@code rate.hybrid.lease.ttl-ms}. Lease size follows each key's observed rate, so cold keys
+ * behave like the pure Redis backend and hot keys make about one remote call per lease period.
+ */
+@Service
+@ConditionalOnProperty(name = "rate.limiter.backend", havingValue = "hybrid")
+public class RedisLeasingTokenBucketRateLimiterService implements RateLimiter {
+	
+	private final int CAPACITY;
+	
+	private final double REFILL_RATE_PER_SECOND;
+	
+	private final long LEASE_TTL_MS;
+	
+	private final int MAX_LEASE;
+	
+	private final RedisLimiterScripts scripts;
+	
+	private final LimiterStateStore<TokenLease> leases;
+	
+	private final LongAdder remoteCalls = new LongAdder();
+	
+	public RedisLeasingTokenBucketRateLimiterService(@Value("${rate.request.limit.count}") int capacity,
+			@Value("${rate.request.limit.refill.rate}") double refillRatePerSecond,
+			@Value("${rate.hybrid.lease.ttl-ms:100}") long leaseTtlMs,
+			@Value("${rate.hybrid.lease.max:50}") int maxLease,
+			RedisLimiterScripts scripts,
+			StateStoreSettings storeSettings) {
+		this.CAPACITY = capacity;
+		this.REFILL_RATE_PER_SECOND = refillRatePerSecond;
+		this.LEASE_TTL_MS = leaseTtlMs;
+		this.MAX_LEASE = Math.max(1, Math.min(maxLease, capacity));
+		this.scripts = scripts;
+		this.leases = new LimiterStateStore<>(now -> new TokenLease(),
+				(lease, now) -> now >= lease.expiresAt() && now >= lease.blockedUntil(), storeSettings);
+	}
+	
+	@Override
+	public RateLimiterAlgorithm algorithm() {
+		return RateLimiterAlgorithm.TOKEN_BUCKET;
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime) {
+		return leases.update(user, currentTime, (lease, now) -> decide(user, lease, now));
+	}
+	
+	/**
+	 * Several permits are taken from the shared bucket directly rather than from the lease, so
+	 * that they are granted all at once or not at all.
+	 */
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime, int permits) {
+		if(permits == 1) {
+			return decision(user, currentTime);
+		}
+		remoteCalls.increment();
+		return scripts.decide(RedisLimiterScripts.TOKEN_BUCKET, algorithm(), user, CAPACITY, REFILL_RATE_PER_SECOND, permits);
+	}
+	
+	/**
+	 * A single permit is served from the lease as in {@link #decision(String, long)}, which calls
+	 * Redis on the calling thread at most once per lease; several permits wait for the script
+	 * without blocking.
+	 */
+	@Override
+	public CompletionStage<RateLimiterDecision> decisionAsync(String user, long currentTime, int permits) {
+		if(permits == 1) {
+			return RateLimiter.super.decisionAsync(user, currentTime, permits);
+		}
+		remoteCalls.increment();
+		return scripts.decideAsync(RedisLimiterScripts.TOKEN_BUCKET, algorithm(), user, CAPACITY, REFILL_RATE_PER_SECOND, permits);
+	}
+	
+	@Override
+	public StateStoreStats storeStats() {
+		return leases.stats();
+	}
+	
+	@Override
+	public long estimatedMemoryBytes() {
+		// header plus six long/double fields
+		return leases.estimatedBytes(64);
+	}
+	
+	/** Script calls made so far; without leasing this would equal the number of decisions. */
+	public long remoteCalls() {
+		return remoteCalls.sum();
+	}
+	
+	private RateLimiterDecision decide(String user, TokenLease lease, long currentTime) {
+		long left = lease.tryTake(currentTime);
+		if(left >= 0) {
+			return new RateLimiterDecision(true, (int) left, 0L, timeToFull(left));
+		}
+		if(currentTime < lease.blockedUntil()) {
+			return blocked(lease.blockedUntil() - currentTime);
+		}
+		
+		// one thread per key refreshes the lease; the others wait for it instead of calling Redis too
+		synchronized(lease) {
+			left = lease.tryTake(currentTime);
+			if(left >= 0) {
+				return new RateLimiterDecision(true, (int) left, 0L, timeToFull(left));
+			}
+			if(currentTime < lease.blockedUntil()) {
+				return blocked(lease.blockedUntil() - currentTime);
+			}
+			
+			long leftover = lease.drain();
+			int size = lease.nextLeaseSize(currentTime, LEASE_TTL_MS, MAX_LEASE, leftover);
+			List<Long> result = scripts.execute(RedisLimiterScripts.TOKEN_BUCKET_LEASE, algorithm(), user,
+					CAPACITY, REFILL_RATE_PER_SECOND, size, leftover);
+			remoteCalls.increment();
+			
+			long granted = result.get(0);
+			if(granted == 0) {
+				// back off until a whole lease has refilled, so a saturated key costs one call per lease, not per token
+				long leaseRefillMs = (long) Math.ceil(size * 1000.0 / REFILL_RATE_PER_SECOND);
+				long retryAfterMs = Math.max(result.get(2), Math.min(LEASE_TTL_MS, leaseRefillMs));
+				lease.block(currentTime + retryAfterMs);
+				return blocked(retryAfterMs);
+			}
+			
+			left = lease.grant(granted, currentTime, LEASE_TTL_MS);
+			return new RateLimiterDecision(true, (int) (left + result.get(1)), 0L, result.get(3));
+		}
+	}
+	
+	private long timeToFull(long left) {
+		return (long) Math.ceil((CAPACITY - left) * 1000.0 / REFILL_RATE_PER_SECOND);
+	}
+	
+	private static RateLimiterDecision blocked(long retryAfterMs) {
+		return new RateLimiterDecision(false, 0, retryAfterMs, retryAfterMs);
+	}
+}
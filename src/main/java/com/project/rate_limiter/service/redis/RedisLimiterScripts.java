@@ -0,0 +1,166 @@
+package com.project.rate_limiter.service.redis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.entity.RateLimiterDecision;
+
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.async.RedisScriptingAsyncCommands;
+
+/**
+ * Runs the limiter Lua scripts. Each decision is a single EVALSHA round trip; Spring falls back to
+ * EVAL (which also loads the script) when the server answers NOSCRIPT.
+ * <p>
+ * The scripts take the time from Redis' {@code TIME} rather than from the caller, so replicas
+ * whose clocks disagree still share one window or bucket; the {@code currentTime} the limiters
+ * are given only drives state kept in the process, such as leases.
+ */
+@Component
+@ConditionalOnExpression("'${rate.limiter.backend:local}' matches 'redis|hybrid'")
+public class RedisLimiterScripts {
+	
+	public static final RedisScript<List<Long>> TOKEN_BUCKET = load("scripts/token_bucket.lua");
+	public static final RedisScript<List<Long>> FIXED_WINDOW = load("scripts/fixed_window.lua");
+	public static final RedisScript<List<Long>> SLIDING_WINDOW = load("scripts/sliding_window.lua");
+	public static final RedisScript<List<Long>> GCRA = load("scripts/gcra.lua");
+	public static final RedisScript<List<Long>> TOKEN_BUCKET_LEASE = load("scripts/token_bucket_lease.lua");
+	public static final RedisScript<List<Long>> COMPOSITE = load("scripts/composite.lua");
+	
+	private final StringRedisTemplate redisTemplate;
+	
+	private final String keyPrefix;
+	
+	private final RedisDecisionBatcher batcher;
+	
+	/**
+	 * @param batcher pipelines calls from concurrent requests when {@code rate.redis.batch.enabled}
+	 *                is set; null sends every call on its own
+	 */
+	public RedisLimiterScripts(StringRedisTemplate redisTemplate,
+			@Value("${rate.redis.key-prefix:rate}") String keyPrefix,
+			@Nullable RedisDecisionBatcher batcher) {
+		this.redisTemplate = redisTemplate;
+		this.keyPrefix = keyPrefix;
+		this.batcher = batcher;
+	}
+	
+	public RateLimiterDecision decide(RedisScript<List<Long>> script, RateLimiterAlgorithm algorithm, 
+			String user, Object... args) {
+		return toDecision(execute(script, algorithm, user, args));
+	}
+	
+	public CompletableFuture<RateLimiterDecision> decideAsync(RedisScript<List<Long>> script, RateLimiterAlgorithm algorithm, 
+			String user, Object... args) {
+		return executeAsync(script, algorithm, user, args).thenApply(RedisLimiterScripts::toDecision);
+	}
+	
+	/** Runs {@code script} and returns its raw {allowed/granted, remaining, retryAfterMs, resetInMs} reply. */
+	public List<Long> execute(RedisScript<List<Long>> script, RateLimiterAlgorithm algorithm, 
+			String user, Object... args) {
+		String[] values = values(args);
+		String key = key(algorithm, user);
+		List<Long> result = batcher != null 
+				? batcher.submit(script, key, values).join()
+				: redisTemplate.execute(script, List.of(key), (Object[]) values);
+		return checked(result, 4);
+	}
+	
+	/**
+	 * {@link #execute} without waiting for the reply: through the batcher when there is one,
+	 * otherwise as a single EVALSHA on the shared Lettuce connection.
+	 */
+	public CompletableFuture<List<Long>> executeAsync(RedisScript<List<Long>> script, RateLimiterAlgorithm algorithm, 
+			String user, Object... args) {
+		String[] values = values(args);
+		String key = key(algorithm, user);
+		CompletableFuture<List<Long>> reply = batcher != null 
+				? batcher.submit(script, key, values)
+				: evalAsync(script, List.of(key), values);
+		return reply.thenApply(result -> checked(result, 4));
+	}
+	
+	/**
+	 * Runs the composite script over the keys of several levels and returns its raw {allowed,
+	 * remaining, retryAfterMs, resetInMs, binding level} reply. The batcher pipelines single-key
+	 * calls only, so this always goes out on its own.
+	 */
+	public List<Long> executeComposite(List<String> keys, String... args) {
+		return checked(redisTemplate.execute(COMPOSITE, keys, (Object[]) args), 5);
+	}
+	
+	public CompletableFuture<List<Long>> executeCompositeAsync(List<String> keys, String... args) {
+		return evalAsync(COMPOSITE, keys, args).thenApply(result -> checked(result, 5));
+	}
+	
+	public String key(RateLimiterAlgorithm algorithm, String user) {
+		return keyPrefix + ":" + algorithm.name().toLowerCase() + ":{" + user + "}";
+	}
+	
+	static RateLimiterDecision toDecision(List<Long> result) {
+		return new RateLimiterDecision(result.get(0) == 1L, result.get(1).intValue(), result.get(2), result.get(3));
+	}
+	
+	/**
+	 * EVALSHA on the shared native connection, whose reply completes on the Lettuce event loop;
+	 * like the blocking path it falls back to EVAL when the server answers NOSCRIPT.
+	 */
+	@SuppressWarnings("unchecked")
+	private CompletableFuture<List<Long>> evalAsync(RedisScript<List<Long>> script, List<String> keys, String[] args) {
+		return redisTemplate.execute((RedisCallback<CompletableFuture<List<Long>>>) connection -> {
+			RedisScriptingAsyncCommands<byte[], byte[]> commands = 
+					(RedisScriptingAsyncCommands<byte[], byte[]>) connection.getNativeConnection();
+			byte[][] keyBytes = bytes(keys.toArray(String[]::new));
+			byte[][] argBytes = bytes(args);
+			RedisFuture<List<Long>> reply = commands.evalsha(script.getSha1(), ScriptOutputType.MULTI, keyBytes, argBytes);
+			return reply.toCompletableFuture().exceptionallyCompose(error -> RedisDecisionBatcher.isNoScript(error)
+					? commands.<List<Long>>eval(script.getScriptAsString().getBytes(StandardCharsets.UTF_8), 
+							ScriptOutputType.MULTI, keyBytes, argBytes).toCompletableFuture()
+					: CompletableFuture.failedFuture(error));
+		});
+	}
+	
+	private static List<Long> checked(List<Long> result, int size) {
+		if(result == null || result.size() < size) {
+			throw new IllegalStateException("Unexpected limiter script result: " + result);
+		}
+		return result;
+	}
+	
+	private static String[] values(Object[] args) {
+		String[] values = new String[args.length];
+		for(int i=0; i<args.length; i++) {
+			values[i] = String.valueOf(args[i]);
+		}
+		return values;
+	}
+	
+	private static byte[][] bytes(String[] values) {
+		byte[][] bytes = new byte[values.length][];
+		for(int i=0; i<values.length; i++) {
+			bytes[i] = values[i].getBytes(StandardCharsets.UTF_8);
+		}
+		return bytes;
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static RedisScript<List<Long>> load(String path) {
+		DefaultRedisScript<List<Long>> script = new DefaultRedisScript<>();
+		script.setLocation(new ClassPathResource(path));
+		script.setResultType((Class) List.class);
+		return script;
+	}
+}
@@ -0,0 +1,50 @@
+package com.project.rate_limiter.service.redis;
+
+import java.util.concurrent.CompletionStage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.entity.RateLimiterDecision;
+import com.project.rate_limiter.service.RateLimiter;
+
+@Service
+@ConditionalOnProperty(name = "rate.limiter.backend", havingValue = "redis")
+public class RedisTokenBucketRateLimiterService implements RateLimiter {
+	
+	private final int CAPACITY;
+	
+	private final double REFILL_RATE_PER_SECOND;
+	
+	private final RedisLimiterScripts scripts;
+	
+	public RedisTokenBucketRateLimiterService(@Value("${rate.request.limit.count}") int capacity,
+			@Value("${rate.request.limit.refill.rate}") double refillRatePerSecond,
+			RedisLimiterScripts scripts) {
+		this.CAPACITY = capacity;
+		this.REFILL_RATE_PER_SECOND = refillRatePerSecond;
+		this.scripts = scripts;
+	}
+	
+	@Override
+	public RateLimiterAlgorithm algorithm() {
+		return RateLimiterAlgorithm.TOKEN_BUCKET;
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime) {
+		return decision(user, currentTime, 1);
+	}
+	
+	@Override
+	public RateLimiterDecision decision(String user, long currentTime, int permits) {
+		return scripts.decide(RedisLimiterScripts.TOKEN_BUCKET, algorithm(), user, CAPACITY, REFILL_RATE_PER_SECOND, permits);
+	}
+	
+	@Override
+	public CompletionStage<RateLimiterDecision> decisionAsync(String user, long currentTime, int permits) {
+		return scripts.decideAsync(RedisLimiterScripts.TOKEN_BUCKET, algorithm(), user, CAPACITY, REFILL_RATE_PER_SECOND, permits);
+	}
+}
@@ -0,0 +1,130 @@
+package com.project.rate_limiter.snapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.project.rate_limiter.policy.CompiledPolicy;
+import com.project.rate_limiter.policy.PolicyEngine;
+import com.project.rate_limiter.policy.PolicyLimit;
+import com.project.rate_limiter.service.RateLimiter;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Keeps the in-process limiter state across restarts: the snapshot at {@code rate.snapshot.path}
+ * is loaded before the first request, rewritten every {@code rate.snapshot.interval-ms} on a
+ * background thread and once more on shutdown. Limiters are identified by algorithm for the
+ * per-algorithm beans and by limit id for policy limits; state kept in Redis is not snapshotted.
+ */
+@Component
+@ConditionalOnProperty(name = "rate.snapshot.enabled", havingValue = "true")
+public class LimiterSnapshots {
+	
+	private final List<RateLimiter> limiters;
+	
+	private final PolicyEngine policies;
+	
+	private final Path path;
+	
+	private final ScheduledExecutorService scheduler;
+	
+	private volatile SnapshotSummary lastLoad;
+	
+	private volatile SnapshotSummary lastWrite;
+	
+	private volatile String lastError;
+	
+	public LimiterSnapshots(List<RateLimiter> limiters, PolicyEngine policies,
+			@Value("${rate.snapshot.path:data/limiter-state.snapshot}") String path,
+			@Value("${rate.snapshot.interval-ms:30000}") long intervalMs) {
+		this.limiters = limiters;
+		this.policies = policies;
+		this.path = Path.of(path);
+		
+		// an unreadable snapshot only costs the warm start; never refuse to boot over it
+		try {
+			load();
+		} catch (IOException | RuntimeException ex) {
+			// recorded in lastError
+		}
+		
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "limiter-snapshot");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.scheduler.scheduleWithFixedDelay(this::writeQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+	}
+	
+	/** Writes a snapshot now; decisions are not paused while it is written. */
+	public synchronized SnapshotSummary write() throws IOException {
+		try {
+			SnapshotSummary summary = SnapshotFile.write(path, sections(), System.currentTimeMillis());
+			lastWrite = summary;
+			lastError = null;
+			return summary;
+		} catch (IOException | RuntimeException ex) {
+			lastError = "write: " + ex.getMessage();
+			throw ex;
+		}
+	}
+	
+	/** Restores the keys of the snapshot that are not present yet; null when there is no snapshot. */
+	public synchronized SnapshotSummary load() throws IOException {
+		if(!Files.exists(path)) { return null; }
+		try {
+			SnapshotSummary summary = SnapshotFile.read(path, sections(), System.currentTimeMillis());
+			lastLoad = summary;
+			return summary;
+		} catch (IOException | RuntimeException ex) {
+			lastError = "load: " + ex.getMessage();
+			throw ex;
+		}
+	}
+	
+	public SnapshotStatus status() {
+		return new SnapshotStatus(path.toAbsolutePath().toString(), lastLoad, lastWrite, lastError);
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		scheduler.shutdownNow();
+		writeQuietly();
+	}
+	
+	private void writeQuietly() {
+		try {
+			write();
+		} catch (IOException | RuntimeException ex) {
+			// recorded in lastError; the next run tries again
+		}
+	}
+	
+	private Map<String, Snapshottable> sections() {
+		Map<String, Snapshottable> sections = new LinkedHashMap<>();
+		for(RateLimiter limiter : limiters) {
+			if(limiter instanceof Snapshottable snapshottable) {
+				sections.put("algorithm:" + limiter.algorithm().name(), snapshottable);
+			}
+		}
+		for(CompiledPolicy policy : policies.policies()) {
+			for(PolicyLimit limit : policy.limits()) {
+				if(limit.limiter() instanceof Snapshottable snapshottable) {
+					sections.put("policy:" + limit.id(), snapshottable);
+				}
+			}
+		}
+		return sections;
+	}
+}
@@ -0,0 +1,123 @@
+package com.project.rate_limiter.snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary snapshot format, big-endian:
+ * <pre>
+ * int    magic "RLSN"
+ * int    format version
+ * long   created at (epoch ms)
+ * int    section count
+ * per section:
+ *   string name, string signature        (int length + UTF-8)
+ *   long   payload length, int CRC32C of the payload
+ *   payload: per entry a string key followed by the limiter's own state encoding
+ * </pre>
+ * A snapshot is written to a temporary file and moved over the previous one, so a crash while
+ * writing leaves the last complete snapshot in place. Sections are memory-mapped one at a time on
+ * load; a section whose checksum or signature does not match is skipped.
+ */
+public final class SnapshotFile {
+	
+	static final int MAGIC = 0x524C534E;
+	static final int VERSION = 1;
+	
+	private static final int SECTION_HEADER_WINDOW = 64 * 1024;
+	
+	private SnapshotFile() {}
+	
+	public static SnapshotSummary write(Path path, Map<String, Snapshottable> sections, long createdAt) throws IOException {
+		long started = System.nanoTime();
+		Path parent = path.toAbsolutePath().getParent();
+		if(parent != null) {
+			Files.createDirectories(parent);
+		}
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		long entries = 0;
+		long bytes;
+		try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, 
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			SnapshotOutput out = new SnapshotOutput(channel);
+			out.putInt(MAGIC);
+			out.putInt(VERSION);
+			out.putLong(createdAt);
+			out.putInt(sections.size());
+			for(Map.Entry<String, Snapshottable> section : sections.entrySet()) {
+				out.beginSection(section.getKey(), section.getValue().snapshotSignature());
+				section.getValue().writeSnapshot(out);
+				entries += out.entries();
+				out.endSection();
+			}
+			out.close();
+			bytes = out.position();
+			channel.force(false);
+		}
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return new SnapshotSummary(createdAt, sections.size(), 0, entries, bytes, elapsedMs(started));
+	}
+	
+	public static SnapshotSummary read(Path path, Map<String, Snapshottable> sections, long currentTime) throws IOException {
+		long started = System.nanoTime();
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, 2 * Integer.BYTES + Long.BYTES + Integer.BYTES));
+			if(header.remaining() < 2 * Integer.BYTES + Long.BYTES + Integer.BYTES || header.getInt() != MAGIC) {
+				throw new IOException("Not a limiter snapshot: " + path);
+			}
+			int version = header.getInt();
+			if(version != VERSION) {
+				throw new IOException("Unsupported limiter snapshot version " + version);
+			}
+			long createdAt = header.getLong();
+			int count = header.getInt();
+			
+			long position = header.position();
+			int loaded = 0;
+			int skipped = 0;
+			long entries = 0;
+			for(int i=0; i<count; i++) {
+				SnapshotInput sectionHeader = new SnapshotInput(channel.map(FileChannel.MapMode.READ_ONLY, position, 
+						Math.min(size - position, SECTION_HEADER_WINDOW)));
+				String name = sectionHeader.getString();
+				String signature = sectionHeader.getString();
+				long length = sectionHeader.getLong();
+				int checksum = sectionHeader.getInt();
+				long payload = position + sectionHeader.position();
+				if(length < 0 || payload + length > size) {
+					throw new IOException("Truncated limiter snapshot: " + path);
+				}
+				position = payload + length;
+				
+				Snapshottable target = sections.get(name);
+				if(target == null || !target.snapshotSignature().equals(signature)) {
+					skipped++;
+					continue;
+				}
+				MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, payload, length);
+				CRC32C crc = new CRC32C();
+				crc.update(mapped.duplicate());
+				if((int) crc.getValue() != checksum) {
+					skipped++;
+					continue;
+				}
+				entries += target.readSnapshot(new SnapshotInput(mapped), currentTime);
+				loaded++;
+			}
+			return new SnapshotSummary(createdAt, loaded, skipped, entries, size, elapsedMs(started));
+		}
+	}
+	
+	private static long elapsedMs(long startedNanos) {
+		return (System.nanoTime() - startedNanos) / 1_000_000;
+	}
+}
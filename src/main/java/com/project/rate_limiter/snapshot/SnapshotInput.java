@@ -0,0 +1,48 @@
+package com.project.rate_limiter.snapshot;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/** Reader of one section of a snapshot, over a slice of the memory-mapped file. */
+public final class SnapshotInput {
+	
+	private final ByteBuffer buffer;
+	
+	private byte[] scratch = new byte[64];
+	
+	SnapshotInput(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+	
+	public boolean hasRemaining() {
+		return buffer.hasRemaining();
+	}
+	
+	int position() {
+		return buffer.position();
+	}
+	
+	public int getInt() {
+		return buffer.getInt();
+	}
+	
+	public long getLong() {
+		return buffer.getLong();
+	}
+	
+	public double getDouble() {
+		return buffer.getDouble();
+	}
+	
+	public String getString() {
+		int length = buffer.getInt();
+		if(length < 0 || length > buffer.remaining()) {
+			throw new IllegalStateException("Corrupt snapshot: string of " + length + " bytes");
+		}
+		if(scratch.length < length) {
+			scratch = new byte[Math.max(length, scratch.length * 2)];
+		}
+		buffer.get(scratch, 0, length);
+		return new String(scratch, 0, length, StandardCharsets.UTF_8);
+	}
+}
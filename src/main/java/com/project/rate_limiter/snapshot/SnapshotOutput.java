@@ -0,0 +1,127 @@
+package com.project.rate_limiter.snapshot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/**
+ * Buffered writer of the snapshot format over a {@link FileChannel}. Sections are length-prefixed
+ * and checksummed; both are patched in with a positional write once the section is complete, so
+ * the entries can be streamed without counting them first.
+ */
+public final class SnapshotOutput implements Closeable {
+	
+	private static final int BUFFER_BYTES = 1 << 20;
+	
+	private final FileChannel channel;
+	
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+	
+	private final CRC32C crc = new CRC32C();
+	
+	private long flushed;
+	
+	private long sectionHeader = -1;
+	
+	private long entries;
+	
+	SnapshotOutput(FileChannel channel) {
+		this.channel = channel;
+	}
+	
+	/**
+	 * Makes room for {@code bytes} without touching the file while the caller writes them, so a
+	 * state can be copied under its lock without holding the lock across I/O.
+	 */
+	public void reserve(int bytes) throws IOException {
+		if(buffer.remaining() >= bytes) { return; }
+		flush();
+		if(buffer.capacity() < bytes) {
+			buffer = ByteBuffer.allocateDirect(bytes);
+		}
+	}
+	
+	public void putInt(int value) throws IOException {
+		reserve(Integer.BYTES);
+		buffer.putInt(value);
+	}
+	
+	public void putLong(long value) throws IOException {
+		reserve(Long.BYTES);
+		buffer.putLong(value);
+	}
+	
+	public void putDouble(double value) throws IOException {
+		reserve(Double.BYTES);
+		buffer.putDouble(value);
+	}
+	
+	public void putString(String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		reserve(Integer.BYTES + bytes.length);
+		buffer.putInt(bytes.length);
+		buffer.put(bytes);
+	}
+	
+	/** Starts an entry; the state written next belongs to {@code key}. */
+	public void putKey(String key) throws IOException {
+		putString(key);
+		entries++;
+	}
+	
+	/** Starts an entry of a store that keeps only key hashes. */
+	public void putKeyHash(long hash) throws IOException {
+		putLong(hash);
+		entries++;
+	}
+	
+	long position() {
+		return flushed + buffer.position();
+	}
+	
+	long entries() {
+		return entries;
+	}
+	
+	void beginSection(String name, String signature) throws IOException {
+		putString(name);
+		putString(signature);
+		// payload length and checksum, filled in by endSection
+		putLong(0);
+		putInt(0);
+		flush();
+		sectionHeader = flushed - Long.BYTES - Integer.BYTES;
+		entries = 0;
+		crc.reset();
+	}
+	
+	void endSection() throws IOException {
+		flush();
+		long length = flushed - sectionHeader - Long.BYTES - Integer.BYTES;
+		ByteBuffer header = ByteBuffer.allocate(Long.BYTES + Integer.BYTES);
+		header.putLong(length).putInt((int) crc.getValue()).flip();
+		while(header.hasRemaining()) {
+			channel.write(header, sectionHeader + header.position());
+		}
+		sectionHeader = -1;
+	}
+	
+	void flush() throws IOException {
+		buffer.flip();
+		if(sectionHeader >= 0) {
+			crc.update(buffer.duplicate());
+		}
+		while(buffer.hasRemaining()) {
+			flushed += channel.write(buffer);
+		}
+		buffer.clear();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		flush();
+	}
+}
@@ -0,0 +1,12 @@
+package com.project.rate_limiter.snapshot;
+
+/**
+ * @param lastLoad  the snapshot restored at startup, or null if there was none
+ * @param lastError why the last load or write failed, or null
+ */
+public record SnapshotStatus(
+		String path,
+		SnapshotSummary lastLoad,
+		SnapshotSummary lastWrite,
+		String lastError
+) {}
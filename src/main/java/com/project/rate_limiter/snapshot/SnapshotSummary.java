@@ -0,0 +1,17 @@
+package com.project.rate_limiter.snapshot;
+
+/**
+ * Outcome of writing or loading a snapshot.
+ *
+ * @param createdAt       when the snapshot was taken (epoch ms)
+ * @param skippedSections sections not loaded: no such limiter any more, other limits, or a bad checksum
+ * @param entries         keys written, or keys restored on load
+ */
+public record SnapshotSummary(
+		long createdAt,
+		int sections,
+		int skippedSections,
+		long entries,
+		long bytes,
+		long durationMs
+) {}
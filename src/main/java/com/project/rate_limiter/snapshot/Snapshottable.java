@@ -0,0 +1,22 @@
+package com.project.rate_limiter.snapshot;
+
+import java.io.IOException;
+
+/** A limiter whose in-process per-key state can be written to and restored from a snapshot. */
+public interface Snapshottable {
+	
+	/**
+	 * Encoding and the limits the state was built under; a section written under another
+	 * signature is skipped on load rather than misread.
+	 */
+	String snapshotSignature();
+	
+	void writeSnapshot(SnapshotOutput out) throws IOException;
+	
+	/**
+	 * Adds the section's keys that are not already present.
+	 *
+	 * @return the number of keys restored
+	 */
+	long readSnapshot(SnapshotInput in, long currentTime);
+}
@@ -0,0 +1,53 @@
+package com.project.rate_limiter.store;
+
+import java.io.IOException;
+import java.util.function.LongFunction;
+import java.util.function.LongUnaryOperator;
+
+import com.project.rate_limiter.entity.PackedState;
+import com.project.rate_limiter.snapshot.SnapshotInput;
+import com.project.rate_limiter.snapshot.SnapshotOutput;
+import com.project.rate_limiter.store.LimiterStateStore.StateReader;
+import com.project.rate_limiter.store.LimiterStateStore.StateWrite;
+import com.project.rate_limiter.store.LimiterStateStore.StateWriter;
+
+/**
+ * What a limiter service needs from its per-key state: the on-heap {@link LimiterStateStore}, or
+ * the {@link OffHeapStateTable} for state that fits in one long.
+ */
+public interface KeyedStateStore<S> {
+	
+	/** Applies {@code write} to the state of {@code key}, retrying if the state was evicted concurrently. */
+	<T> T update(String key, long currentTime, T target, StateWrite<S, T> write);
+	
+	/** Whether {@code key} holds state, possibly expired but not yet evicted. */
+	boolean contains(String key);
+	
+	int size();
+	
+	/** Memory held for the current keys, given the heap size of one state object. */
+	long estimatedBytes(long stateBytes);
+	
+	StateStoreStats stats();
+	
+	StateStoreSettings settings();
+	
+	void writeSnapshot(SnapshotOutput out, StateWriter<S> writer) throws IOException;
+	
+	long readSnapshot(SnapshotInput in, long currentTime, StateReader<S> reader);
+	
+	/**
+	 * Store for a state packed into one long: an {@link OffHeapStateTable} with
+	 * {@code rate.store.off-heap}, else a {@link LimiterStateStore} of objects made by {@code wrap}.
+	 *
+	 * @param initialState state of a new key, from the current time
+	 */
+	static KeyedStateStore<PackedState> packed(StateStoreSettings settings, LongUnaryOperator initialState,
+			LongFunction<PackedState> wrap, PackedStateExpiry expiry) {
+		if(settings.offHeap()) {
+			return new OffHeapStateTable(initialState, expiry, settings);
+		}
+		return new LimiterStateStore<>(now -> wrap.apply(initialState.applyAsLong(now)), 
+				(state, now) -> expiry.isExpired(state.get(), now), settings);
+	}
+}
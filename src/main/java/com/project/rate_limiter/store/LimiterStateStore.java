@@ -0,0 +1,332 @@
+package com.project.rate_limiter.store;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+import com.project.rate_limiter.snapshot.SnapshotInput;
+import com.project.rate_limiter.snapshot.SnapshotOutput;
+
+/**
+ * Concurrent per-key state map shared by the limiter services.
+ * <p>
+ * Lookups of existing keys are a plain lock-free {@code get}; state objects are only created
+ * (once per key) through {@code computeIfAbsent}. The state objects themselves are responsible
+ * for making their own updates atomic.
+ * <p>
+ * Memory is bounded by an amortized sweep: every insert examines a few entries from a cursor
+ * that walks the map, and drops those whose state has expired or that have been idle longer
+ * than the TTL. Above {@code maxEntries} the least recently used of a small sample is dropped
+ * as well. No sweep ever walks the whole map at once.
+ * <p>
+ * A dropped entry is first marked retired. {@link #update} applies the caller's update and then
+ * checks the mark; the sweeper marks and then re-checks expiry, so an update racing with eviction
+ * is either seen by the sweeper (and the entry kept) or retried by the caller. At worst a racing
+ * request is counted twice, never lost.
+ * <p>
+ * When limits are reconfigured, a new store can {@link #migrateFrom take over} an old one: a key
+ * missing here is moved out of the predecessor and converted on first access, so the reload itself
+ * touches no per-key state. The predecessor is swept along with this store and dropped once empty.
+ */
+public class LimiterStateStore<S> implements KeyedStateStore<S> {
+	
+	private static final long TOUCH_GRANULARITY_MS = 1_000L;
+	private static final int LRU_SAMPLE = 8;
+	
+	/** Map node, {@link Entry} and a typical short key string, on a 64-bit JVM with compressed oops. */
+	private static final int ENTRY_OVERHEAD_BYTES = 128;
+	
+	private final ConcurrentHashMap<String, Entry<S>> states = new ConcurrentHashMap<>();
+	private final LongFunction<S> factory;
+	private final StateExpiry<S> expiry;
+	private final StateStoreSettings settings;
+	
+	private volatile Predecessor<?, S> predecessor;
+	
+	private final AtomicBoolean sweeping = new AtomicBoolean();
+	private Iterator<Map.Entry<String, Entry<S>>> cursor;
+	
+	private final LongAdder expiredEvictions = new LongAdder();
+	private final LongAdder idleEvictions = new LongAdder();
+	private final LongAdder capacityEvictions = new LongAdder();
+	
+	public LimiterStateStore(LongFunction<S> factory, StateExpiry<S> expiry, StateStoreSettings settings) {
+		this.factory = factory;
+		this.expiry = expiry;
+		this.settings = settings;
+	}
+	
+	/**
+	 * Takes over the state of {@code previous}, converting each key with {@code migration} when it
+	 * is first accessed here. Call before the store is shared.
+	 */
+	public <P> void migrateFrom(LimiterStateStore<P> previous, StateMigration<P, S> migration) {
+		this.predecessor = new Predecessor<>(previous, migration);
+	}
+	
+	@Override
+	public StateStoreSettings settings() {
+		return settings;
+	}
+	
+	/**
+	 * Applies {@code update} to the state of {@code key}, retrying if the entry was evicted
+	 * concurrently.
+	 */
+	public <R> R update(String key, long currentTime, StateUpdate<S, R> update) {
+		while(true) {
+			Entry<S> entry = getOrCreate(key, currentTime);
+			R result = update.apply(entry.state, currentTime);
+			if(!entry.retired) { return result; }
+		}
+	}
+	
+	/**
+	 * Same as {@link #update(String, long, StateUpdate)}, but the result is written into
+	 * {@code target}; with a non-capturing {@code write} nothing is allocated for an existing key.
+	 */
+	@Override
+	public <T> T update(String key, long currentTime, T target, StateWrite<S, T> write) {
+		while(true) {
+			Entry<S> entry = getOrCreate(key, currentTime);
+			write.apply(entry.state, currentTime, target);
+			if(!entry.retired) { return target; }
+		}
+	}
+	
+	public Entry<S> getOrCreate(String key, long currentTime) {
+		Entry<S> entry = states.get(key);
+		if(entry == null) {
+			entry = states.computeIfAbsent(key, k -> new Entry<>(initialState(k, currentTime), currentTime));
+			sweep(currentTime);
+		}
+		entry.touch(currentTime);
+		return entry;
+	}
+	
+	private S initialState(String key, long currentTime) {
+		S migrated = inherited(key, currentTime);
+		return migrated != null ? migrated : factory.apply(currentTime);
+	}
+	
+	/** The predecessors' state of {@code key}, converted to this store's limits; null if none. */
+	private S inherited(String key, long currentTime) {
+		Predecessor<?, S> previous = predecessor;
+		return previous == null ? null : previous.take(key, currentTime);
+	}
+	
+	/**
+	 * Writes every current entry. The map is walked with its weakly consistent iterator and each
+	 * state is copied on its own, so decisions carry on while a snapshot is written.
+	 */
+	@Override
+	public void writeSnapshot(SnapshotOutput out, StateWriter<S> writer) throws IOException {
+		for(Map.Entry<String, Entry<S>> entry : states.entrySet()) {
+			if(entry.getValue().retired) { continue; }
+			out.putKey(entry.getKey());
+			writer.write(entry.getValue().state, out);
+		}
+	}
+	
+	/** Restores the keys of a snapshot that are not present yet, up to {@code maxEntries}. */
+	@Override
+	public long readSnapshot(SnapshotInput in, long currentTime, StateReader<S> reader) {
+		long restored = 0;
+		while(in.hasRemaining()) {
+			String key = in.getString();
+			S state = reader.read(in);
+			if(states.size() < settings.maxEntries() && states.putIfAbsent(key, new Entry<>(state, currentTime)) == null) {
+				restored++;
+			}
+		}
+		return restored;
+	}
+	
+	public Entry<S> get(String key) {
+		return states.get(key);
+	}
+	
+	/** Walks the current keys with the map's weakly consistent iterator. */
+	public void forEachKey(Consumer<String> action) {
+		for(Map.Entry<String, Entry<S>> entry : states.entrySet()) {
+			if(!entry.getValue().retired) {
+				action.accept(entry.getKey());
+			}
+		}
+	}
+	
+	@Override
+	public boolean contains(String key) {
+		return states.containsKey(key);
+	}
+	
+	@Override
+	public int size() {
+		return states.size();
+	}
+	
+	/** Heap estimate for the current size, given the shallow-plus-arrays size of one state object. */
+	@Override
+	public long estimatedBytes(long stateBytes) {
+		return (long) states.size() * (ENTRY_OVERHEAD_BYTES + stateBytes);
+	}
+	
+	@Override
+	public StateStoreStats stats() {
+		return new StateStoreStats(states.size(), settings.maxEntries(), 
+				expiredEvictions.sum(), idleEvictions.sum(), capacityEvictions.sum());
+	}
+	
+	private void sweep(long currentTime) {
+		if(!sweeping.compareAndSet(false, true)) { return; }
+		try {
+			for(int i=0; i<settings.sweepBatch(); i++) {
+				Map.Entry<String, Entry<S>> next = next();
+				if(next == null) { break; }
+				tryEvict(next.getKey(), next.getValue(), currentTime);
+			}
+			
+			Predecessor<?, S> previous = predecessor;
+			if(previous != null) {
+				previous.store.sweep(currentTime);
+				if(previous.store.size() == 0 && previous.store.predecessor == null) {
+					predecessor = null;
+				}
+			}
+			
+			while(states.size() > settings.maxEntries()) {
+				Map.Entry<String, Entry<S>> victim = null;
+				for(int i=0; i<LRU_SAMPLE; i++) {
+					Map.Entry<String, Entry<S>> next = next();
+					if(next == null) { break; }
+					if(victim == null || next.getValue().lastAccess < victim.getValue().lastAccess) {
+						victim = next;
+					}
+				}
+				if(victim == null) { break; }
+				victim.getValue().retired = true;
+				if(states.remove(victim.getKey(), victim.getValue())) {
+					capacityEvictions.increment();
+				}
+			}
+		} finally {
+			sweeping.set(false);
+		}
+	}
+	
+	private Map.Entry<String, Entry<S>> next() {
+		if(cursor == null || !cursor.hasNext()) {
+			cursor = states.entrySet().iterator();
+			if(!cursor.hasNext()) { return null; }
+		}
+		return cursor.next();
+	}
+	
+	private void tryEvict(String key, Entry<S> entry, long currentTime) {
+		if(!isEvictable(entry, currentTime)) { return; }
+		
+		entry.retired = true;
+		// re-check after publishing the mark so a racing update is either visible here or retried
+		boolean expired = expiry.isExpired(entry.state, currentTime);
+		if(!expired && !isIdle(entry, currentTime)) {
+			entry.retired = false;
+			return;
+		}
+		if(states.remove(key, entry)) {
+			(expired ? expiredEvictions : idleEvictions).increment();
+		}
+	}
+	
+	private boolean isEvictable(Entry<S> entry, long currentTime) {
+		if(isIdle(entry, currentTime)) { return true; }
+		// fresh state is usually "expired" too; leave just-created entries alone so inserts cannot evict each other in a loop
+		return currentTime - entry.lastAccess >= TOUCH_GRANULARITY_MS && expiry.isExpired(entry.state, currentTime);
+	}
+	
+	private boolean isIdle(Entry<S> entry, long currentTime) {
+		return currentTime - entry.lastAccess > settings.idleTtlMs();
+	}
+	
+	@FunctionalInterface
+	public interface StateUpdate<S, R> {
+		
+		R apply(S state, long currentTime);
+	}
+	
+	@FunctionalInterface
+	public interface StateWrite<S, T> {
+		
+		void apply(S state, long currentTime, T target);
+	}
+	
+	@FunctionalInterface
+	public interface StateWriter<S> {
+		
+		void write(S state, SnapshotOutput out) throws IOException;
+	}
+	
+	@FunctionalInterface
+	public interface StateReader<S> {
+		
+		S read(SnapshotInput in);
+	}
+	
+	/** Converts a predecessor's state of a key; returning null starts the key afresh. */
+	@FunctionalInterface
+	public interface StateMigration<P, S> {
+		
+		S migrate(P previous, long currentTime);
+	}
+	
+	private record Predecessor<P, S>(LimiterStateStore<P> store, StateMigration<P, S> migration) {
+		
+		/**
+		 * Moves the key out of the old store, or out of an older generation through it; a request
+		 * still deciding against the old entry is retried there.
+		 */
+		S take(String key, long currentTime) {
+			Entry<P> entry = store.states.remove(key);
+			P state;
+			if(entry != null) {
+				entry.retired = true;
+				state = entry.state;
+			} else {
+				state = store.inherited(key, currentTime);
+				if(state == null) { return null; }
+			}
+			return migration.migrate(state, currentTime);
+		}
+	}
+	
+	public static final class Entry<S> {
+		
+		private final S state;
+		private volatile long lastAccess;
+		private volatile boolean retired;
+		
+		Entry(S state, long currentTime) {
+			this.state = state;
+			this.lastAccess = currentTime;
+		}
+		
+		public S state() {
+			return state;
+		}
+		
+		/** True once the store dropped this entry; an update made against it must be retried. */
+		public boolean isRetired() {
+			return retired;
+		}
+		
+		private void touch(long currentTime) {
+			if(currentTime - lastAccess >= TOUCH_GRANULARITY_MS) {
+				lastAccess = currentTime;
+			}
+		}
+	}
+}
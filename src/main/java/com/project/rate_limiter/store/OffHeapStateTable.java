@@ -0,0 +1,310 @@
+package com.project.rate_limiter.store;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongUnaryOperator;
+
+import com.project.rate_limiter.entity.PackedState;
+import com.project.rate_limiter.snapshot.SnapshotInput;
+import com.project.rate_limiter.snapshot.SnapshotOutput;
+import com.project.rate_limiter.store.LimiterStateStore.StateReader;
+import com.project.rate_limiter.store.LimiterStateStore.StateWrite;
+import com.project.rate_limiter.store.LimiterStateStore.StateWriter;
+
+/**
+ * Open-addressing hash table of single-long states in direct {@link ByteBuffer}s, for key counts
+ * that would not fit on the heap. A slot is 24 bytes: the key's 64-bit hash, the packed state and
+ * the last access time, all read and CAS'd through a {@code byteBufferViewVarHandle}. Nothing
+ * per key is allocated on the heap and the garbage collector never sees the table.
+ * <p>
+ * Keys are stored only as their hash, so two keys with the same 64-bit hash share one state; with
+ * 10M keys the odds of any such collision are about 1 in 400,000.
+ * <p>
+ * The table has room for {@code maxEntries} keys at a load factor of 0.75, rounded up to a power
+ * of two. Linear probing is bounded to {@value #MAX_PROBE} slots. A slot is claimed by CAS'ing its
+ * hash to a lock value, writing the initial state and then publishing the key hash. Slots are
+ * never emptied: when a probe window has no free slot, an expired or idle slot in the window is
+ * taken over, else the least recently used one. An update
+ * re-checks the slot's hash after its CAS and is retried if the slot changed owner, so at worst a
+ * racing request is counted twice, as in {@link LimiterStateStore}.
+ */
+public final class OffHeapStateTable implements KeyedStateStore<PackedState> {
+	
+	public static final int SLOT_BYTES = 24;
+	
+	private static final int HASH = 0;
+	private static final int STATE = 8;
+	private static final int ACCESS = 16;
+	
+	private static final long EMPTY = 0L;
+	private static final long LOCKED = Long.MIN_VALUE;
+	
+	private static final int MAX_PROBE = 32;
+	private static final int SEGMENT_SHIFT = 24;
+	private static final double MAX_LOAD = 0.75;
+	private static final long TOUCH_GRANULARITY_MS = 1_000L;
+	
+	private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+	
+	private final ByteBuffer[] segments;
+	private final long mask;
+	private final int segmentMask;
+	
+	private final LongUnaryOperator initialState;
+	private final PackedStateExpiry expiry;
+	private final StateStoreSettings settings;
+	
+	private final ThreadLocal<Slot> cursors = ThreadLocal.withInitial(Slot::new);
+	
+	private final LongAdder size = new LongAdder();
+	private final LongAdder expiredEvictions = new LongAdder();
+	private final LongAdder idleEvictions = new LongAdder();
+	private final LongAdder capacityEvictions = new LongAdder();
+	
+	/**
+	 * @param initialState state of a new key, from the current time
+	 */
+	public OffHeapStateTable(LongUnaryOperator initialState, PackedStateExpiry expiry, StateStoreSettings settings) {
+		this.initialState = initialState;
+		this.expiry = expiry;
+		this.settings = settings;
+		
+		long slots = Long.highestOneBit(Math.max(MAX_PROBE, (long) Math.ceil(settings.maxEntries() / MAX_LOAD)) * 2 - 1);
+		int segmentSlots = (int) Math.min(slots, 1L << SEGMENT_SHIFT);
+		this.mask = slots - 1;
+		this.segmentMask = segmentSlots - 1;
+		this.segments = new ByteBuffer[(int) (slots / segmentSlots)];
+		for(int i=0; i<segments.length; i++) {
+			// VarHandle CAS needs 8-byte aligned addresses
+			segments[i] = ByteBuffer.allocateDirect(segmentSlots * SLOT_BYTES + Long.BYTES).alignedSlice(Long.BYTES);
+		}
+	}
+	
+	@Override
+	public <T> T update(String key, long currentTime, T target, StateWrite<PackedState, T> write) {
+		long hash = hash(key);
+		Slot slot = cursors.get();
+		while(true) {
+			long index = locate(hash, currentTime, false, 0L);
+			slot.at(index);
+			write.apply(slot, currentTime, target);
+			if(hashAt(index) == hash) {
+				touch(index, currentTime);
+				return target;
+			}
+		}
+	}
+	
+	@Override
+	public boolean contains(String key) {
+		return find(hash(key)) >= 0;
+	}
+	
+	@Override
+	public int size() {
+		return (int) Math.min(Integer.MAX_VALUE, size.sum());
+	}
+	
+	public long slots() {
+		return mask + 1;
+	}
+	
+	/** The whole table is allocated up front, so this is its size regardless of the key count. */
+	@Override
+	public long estimatedBytes(long stateBytes) {
+		return slots() * SLOT_BYTES;
+	}
+	
+	@Override
+	public StateStoreStats stats() {
+		return new StateStoreStats(size(), settings.maxEntries(), 
+				expiredEvictions.sum(), idleEvictions.sum(), capacityEvictions.sum());
+	}
+	
+	@Override
+	public StateStoreSettings settings() {
+		return settings;
+	}
+	
+	/** Writes each occupied slot with its key hash in place of the key. */
+	@Override
+	public void writeSnapshot(SnapshotOutput out, StateWriter<PackedState> writer) throws IOException {
+		Slot slot = new Slot();
+		for(long index=0; index<=mask; index++) {
+			long hash = hashAt(index);
+			if(hash == EMPTY || hash == LOCKED) { continue; }
+			out.putKeyHash(hash);
+			writer.write(slot.at(index), out);
+		}
+	}
+	
+	@Override
+	public long readSnapshot(SnapshotInput in, long currentTime, StateReader<PackedState> reader) {
+		long restored = 0;
+		while(in.hasRemaining()) {
+			long hash = in.getLong();
+			long state = reader.read(in).get();
+			if(find(hash) < 0) {
+				locate(hash, currentTime, true, state);
+				restored++;
+			}
+		}
+		return restored;
+	}
+	
+	/** 64-bit FNV-1a over the key's chars, finished with the MurmurHash3 mixer. */
+	public static long hash(CharSequence key) {
+		return hash(key, 0xcbf29ce484222325L);
+	}
+	
+	/** As {@link #hash(CharSequence)} from another offset basis, for a second, independent hash. */
+	public static long hash(CharSequence key, long seed) {
+		long h = seed;
+		for(int i=0; i<key.length(); i++) {
+			h = (h ^ key.charAt(i)) * 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h == EMPTY || h == LOCKED ? 1L : h;
+	}
+	
+	private long find(long hash) {
+		for(int probe=0; probe<MAX_PROBE; probe++) {
+			long index = (hash + probe) & mask;
+			long current = hashAt(index);
+			if(current == hash) { return index; }
+			if(current == EMPTY) { return -1; }
+		}
+		return -1;
+	}
+	
+	/**
+	 * Index of the slot holding {@code hash}, claiming one if there is none. A claimed slot starts
+	 * from {@code restored} when restoring, else from the initial state.
+	 */
+	private long locate(long hash, long currentTime, boolean restoring, long restored) {
+		while(true) {
+			long reusable = -1;
+			long reusableHash = EMPTY;
+			boolean reusableExpired = false;
+			long oldest = -1;
+			long oldestHash = EMPTY;
+			long oldestAccess = Long.MAX_VALUE;
+			
+			for(int probe=0; probe<MAX_PROBE; probe++) {
+				long index = (hash + probe) & mask;
+				long current = hashAt(index);
+				while(current == LOCKED) {
+					Thread.onSpinWait();
+					current = hashAt(index);
+				}
+				if(current == hash) { return index; }
+				if(current == EMPTY) {
+					if(claim(index, EMPTY, hash, currentTime, restoring, restored)) {
+						size.increment();
+						return index;
+					}
+					// lost the race for this slot; it may now hold this very key
+					probe--;
+					continue;
+				}
+				
+				long access = accessAt(index);
+				if(reusable < 0) {
+					boolean idle = currentTime - access > settings.idleTtlMs();
+					boolean expired = !idle && currentTime - access >= TOUCH_GRANULARITY_MS
+							&& expiry.isExpired(stateAt(index), currentTime);
+					if(idle || expired) {
+						reusable = index;
+						reusableHash = current;
+						reusableExpired = expired;
+					}
+				}
+				if(access < oldestAccess) {
+					oldest = index;
+					oldestHash = current;
+					oldestAccess = access;
+				}
+			}
+			
+			if(reusable >= 0) {
+				if(claim(reusable, reusableHash, hash, currentTime, restoring, restored)) {
+					(reusableExpired ? expiredEvictions : idleEvictions).increment();
+					return reusable;
+				}
+			} else if(oldest >= 0 && claim(oldest, oldestHash, hash, currentTime, restoring, restored)) {
+				capacityEvictions.increment();
+				return oldest;
+			}
+			// another thread changed the window under us; look again
+		}
+	}
+	
+	private boolean claim(long index, long expectedHash, long hash, long currentTime, boolean restoring, long restored) {
+		ByteBuffer segment = segment(index);
+		int offset = offset(index);
+		if(!LONGS.compareAndSet(segment, offset + HASH, expectedHash, LOCKED)) { return false; }
+		LONGS.setVolatile(segment, offset + STATE, restoring ? restored : initialState.applyAsLong(currentTime));
+		LONGS.setOpaque(segment, offset + ACCESS, currentTime);
+		LONGS.setVolatile(segment, offset + HASH, hash);
+		return true;
+	}
+	
+	private void touch(long index, long currentTime) {
+		ByteBuffer segment = segment(index);
+		int offset = offset(index) + ACCESS;
+		if(currentTime - (long) LONGS.getOpaque(segment, offset) >= TOUCH_GRANULARITY_MS) {
+			LONGS.setOpaque(segment, offset, currentTime);
+		}
+	}
+	
+	private long hashAt(long index) {
+		return (long) LONGS.getVolatile(segment(index), offset(index) + HASH);
+	}
+	
+	private long stateAt(long index) {
+		return (long) LONGS.getVolatile(segment(index), offset(index) + STATE);
+	}
+	
+	private long accessAt(long index) {
+		return (long) LONGS.getOpaque(segment(index), offset(index) + ACCESS);
+	}
+	
+	private ByteBuffer segment(long index) {
+		return segments[(int) (index >>> SEGMENT_SHIFT)];
+	}
+	
+	private int offset(long index) {
+		return (int) (index & segmentMask) * SLOT_BYTES;
+	}
+	
+	/** Per-thread view of one slot's state, handed to the limiter's decision code. */
+	private final class Slot implements PackedState {
+		
+		private ByteBuffer segment;
+		private int offset;
+		
+		Slot at(long index) {
+			this.segment = segment(index);
+			this.offset = offset(index) + STATE;
+			return this;
+		}
+		
+		@Override
+		public long get() {
+			return (long) LONGS.getVolatile(segment, offset);
+		}
+		
+		@Override
+		public boolean compareAndSet(long expected, long updated) {
+			return LONGS.compareAndSet(segment, offset, expected, updated);
+		}
+	}
+}
@@ -0,0 +1,8 @@
+package com.project.rate_limiter.store;
+
+/** {@link StateExpiry} for a state packed into one long. */
+@FunctionalInterface
+public interface PackedStateExpiry {
+	
+	boolean isExpired(long state, long currentTime);
+}
@@ -0,0 +1,11 @@
+package com.project.rate_limiter.store;
+
+/**
+ * Tells a {@link LimiterStateStore} when a key's state is indistinguishable from a freshly
+ * created one (bucket full again, window over), so dropping it cannot change any decision.
+ */
+@FunctionalInterface
+public interface StateExpiry<S> {
+	
+	boolean isExpired(S state, long currentTime);
+}
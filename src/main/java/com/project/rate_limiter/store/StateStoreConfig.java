@@ -0,0 +1,17 @@
+package com.project.rate_limiter.store;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class StateStoreConfig {
+	
+	@Bean
+	public StateStoreSettings stateStoreSettings(@Value("${rate.store.max-entries:1000000}") int maxEntries,
+			@Value("${rate.store.idle-ttl-ms:3600000}") long idleTtlMs,
+			@Value("${rate.store.sweep-batch:8}") int sweepBatch,
+			@Value("${rate.store.off-heap:false}") boolean offHeap) {
+		return new StateStoreSettings(maxEntries, idleTtlMs, sweepBatch, offHeap);
+	}
+}
@@ -0,0 +1,25 @@
+package com.project.rate_limiter.store;
+
+/**
+ * @param offHeap keep single-long states in an {@link OffHeapStateTable} of {@code maxEntries}
+ *                slots instead of on-heap objects
+ */
+public record StateStoreSettings(
+		int maxEntries,
+		long idleTtlMs,
+		int sweepBatch,
+		boolean offHeap
+) {
+	
+	public static final StateStoreSettings DEFAULTS = new StateStoreSettings(1_000_000, 3_600_000L, 8);
+	
+	public StateStoreSettings {
+		if(maxEntries < 1 || idleTtlMs < 1 || sweepBatch < 1) {
+			throw new IllegalArgumentException("State store settings must be positive");
+		}
+	}
+	
+	public StateStoreSettings(int maxEntries, long idleTtlMs, int sweepBatch) {
+		this(maxEntries, idleTtlMs, sweepBatch, false);
+	}
+}
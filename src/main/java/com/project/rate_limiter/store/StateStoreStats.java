@@ -0,0 +1,12 @@
+package com.project.rate_limiter.store;
+
+public record StateStoreStats(
+		int size,
+		int maxEntries,
+		long expiredEvictions,
+		long idleEvictions,
+		long capacityEvictions
+) {
+	
+	public static final StateStoreStats EMPTY = new StateStoreStats(0, 0, 0, 0, 0);
+}
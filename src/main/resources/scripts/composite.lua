@@ -0,0 +1,182 @@
+-- KEYS[i] state of level i, in the layout of that level's own script
+-- ARGV: permits, then per level: kind (1 token bucket, 2 fixed window,
+--       3 sliding window, 4 GCRA), limit or capacity, window ms or refill rate per second
+-- returns {allowed, remaining, retryAfterMs, resetInMs, binding level (1-based)}
+-- Every level is checked before any is charged, so a blocked request leaves all of them as they were.
+local permits = math.max(1, tonumber(ARGV[1]) or 1)
+-- the server's clock, as in token_bucket.lua
+redis.replicate_commands()
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local function parse(entry)
+	local ts, weight, cumulative = string.match(entry, '^(-?%d+):(%d+):(%d+)$')
+	if ts then
+		return tonumber(ts), tonumber(weight), tonumber(cumulative)
+	end
+	return tonumber(entry), 1, nil
+end
+
+local kinds = {}
+local limits = {}
+local params = {}
+local states = {}
+
+local blocked = false
+local retry = 0
+local remaining = nil
+local reset = 0
+local binding = 1
+
+for i = 1, #KEYS do
+	local kind = tonumber(ARGV[i * 3 - 1])
+	local limit = tonumber(ARGV[i * 3])
+	local param = tonumber(ARGV[i * 3 + 1])
+	local left = nil
+	local wait = nil
+	local full = 0
+
+	if kind == 1 then
+		local state = redis.call('HMGET', KEYS[i], 'tokens', 'ts')
+		local tokens = tonumber(state[1])
+		local ts = tonumber(state[2])
+		if tokens == nil then
+			tokens = limit
+			ts = now
+		end
+		if now > ts then
+			tokens = math.min(limit, tokens + (now - ts) * param / 1000)
+			ts = now
+		end
+		states[i] = {tokens, ts}
+		if tokens >= permits and permits <= limit then
+			left = math.floor(tokens - permits)
+			full = math.ceil((limit - tokens + permits) * 1000 / param)
+		else
+			wait = math.ceil((math.min(permits, limit) - tokens) * 1000 / param)
+		end
+	elseif kind == 2 then
+		local state = redis.call('HMGET', KEYS[i], 'start', 'count')
+		local start = tonumber(state[1])
+		local count = tonumber(state[2])
+		if start == nil or now - start > param then
+			start = now
+			count = 0
+		end
+		states[i] = {start, count}
+		full = param - (now - start)
+		if count + permits <= limit then
+			left = limit - count - permits
+		else
+			wait = full
+		end
+	elseif kind == 4 then
+		-- laid out as in gcra.lua
+		local interval = math.ceil(param * 1000 / limit)
+		local tolerance = interval * limit
+		local tat = tonumber(redis.call('GET', KEYS[i])) or now * 1000
+		local updated = math.max(tat, now * 1000) + permits * interval
+		local lead = updated - now * 1000
+		states[i] = updated
+		full = math.ceil(lead / 1000)
+		if permits <= limit and lead <= tolerance then
+			left = math.floor((tolerance - lead) / interval)
+		elseif permits <= limit then
+			wait = math.max(1, math.ceil((lead - tolerance) / 1000))
+		else
+			wait = param
+		end
+	else
+		-- dropping expired entries does not change any decision, so it may happen before the commit;
+		-- entries are laid out as in sliding_window.lua
+		while true do
+			local oldest = redis.call('LINDEX', KEYS[i], 0)
+			if not oldest or now - parse(oldest) <= param then
+				break
+			end
+			redis.call('LPOP', KEYS[i])
+		end
+		local used = 0
+		local last = 0
+		local newest = redis.call('LINDEX', KEYS[i], -1)
+		if newest then
+			local _, newestWeight, newestCumulative = parse(newest)
+			local _, oldestWeight, oldestCumulative = parse(redis.call('LINDEX', KEYS[i], 0))
+			if newestCumulative and oldestCumulative then
+				used = newestCumulative - oldestCumulative + oldestWeight
+				last = newestCumulative
+			else
+				for _, entry in ipairs(redis.call('LRANGE', KEYS[i], 0, -1)) do
+					local _, weight = parse(entry)
+					used = used + weight
+				end
+				last = newestCumulative or used
+			end
+		end
+		states[i] = last
+		if used + permits <= limit then
+			left = limit - used - permits
+			full = param
+		else
+			local excess = used + permits - limit
+			local freed = 0
+			local expiring = now
+			local j = 0
+			while true do
+				local entry = redis.call('LINDEX', KEYS[i], j)
+				if not entry then
+					break
+				end
+				local ts, weight = parse(entry)
+				expiring = ts
+				freed = freed + weight
+				if permits <= limit and freed >= excess then
+					break
+				end
+				j = j + 1
+			end
+			wait = math.max(0, param - (now - expiring))
+		end
+	end
+
+	if wait then
+		if not blocked or wait > retry then
+			retry = wait
+			binding = i
+		end
+		blocked = true
+	elseif not blocked and (remaining == nil or left < remaining) then
+		remaining = left
+		binding = i
+	end
+	if full > reset then
+		reset = full
+	end
+	kinds[i] = kind
+	limits[i] = limit
+	params[i] = param
+end
+
+if blocked then
+	return {0, 0, retry, retry, binding}
+end
+
+for i = 1, #KEYS do
+	local kind = kinds[i]
+	if kind == 1 then
+		local tokens = states[i][1] - permits
+		redis.call('HSET', KEYS[i], 'tokens', tostring(tokens), 'ts', states[i][2])
+		redis.call('PEXPIRE', KEYS[i], math.max(1, math.ceil((limits[i] - tokens) * 1000 / params[i])))
+	elseif kind == 2 then
+		local start = states[i][1]
+		redis.call('HSET', KEYS[i], 'start', start, 'count', states[i][2] + permits)
+		redis.call('PEXPIRE', KEYS[i], params[i] - (now - start) + 1)
+	elseif kind == 4 then
+		redis.call('SET', KEYS[i], string.format('%.0f', states[i]), 'PX', math.max(1, math.ceil((states[i] - now * 1000) / 1000)))
+	else
+		redis.call('RPUSH', KEYS[i], now .. ':' .. permits .. ':' .. (states[i] + permits))
+		redis.call('PEXPIRE', KEYS[i], params[i] + 1)
+	end
+end
+
+return {1, remaining, 0, reset, binding}
@@ -0,0 +1,30 @@
+-- KEYS[1] window key
+-- ARGV: limit, window ms, permits (default 1)
+-- returns {allowed, remaining, retryAfterMs, resetInMs}
+local limit = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+local permits = math.max(1, tonumber(ARGV[3]) or 1)
+-- the server's clock, as in token_bucket.lua
+redis.replicate_commands()
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local state = redis.call('HMGET', KEYS[1], 'start', 'count')
+local start = tonumber(state[1])
+local count = tonumber(state[2])
+
+-- window reset?
+if start == nil or now - start > window then
+	start = now
+	count = 0
+end
+
+local reset = window - (now - start)
+if count + permits <= limit then
+	count = count + permits
+	redis.call('HSET', KEYS[1], 'start', start, 'count', count)
+	redis.call('PEXPIRE', KEYS[1], reset + 1)
+	return {1, limit - count, 0, reset}
+end
+
+return {0, 0, reset, reset}
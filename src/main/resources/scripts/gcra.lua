@@ -0,0 +1,33 @@
+-- KEYS[1] theoretical arrival time (epoch microseconds)
+-- ARGV: limit, window ms, permits (default 1)
+-- returns {allowed, remaining, retryAfterMs, resetInMs}
+local limit = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+local permits = math.max(1, tonumber(ARGV[3]) or 1)
+-- the server's clock, as in token_bucket.lua
+redis.replicate_commands()
+local time = redis.call('TIME')
+-- whole milliseconds, as the in-process limiters see them
+local now = (tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)) * 1000
+
+-- rounded up as in GcraRateLimiterService, so a period never admits more than the limit
+local interval = math.ceil(window * 1000 / limit)
+local tolerance = interval * limit
+
+if permits > limit then
+	return {0, 0, window, window}
+end
+
+local tat = tonumber(redis.call('GET', KEYS[1])) or now
+local updated = math.max(tat, now) + permits * interval
+local lead = updated - now
+
+if lead <= tolerance then
+	local reset = math.ceil(lead / 1000)
+	-- formatted explicitly: the default number format would round a 16-digit timestamp
+	redis.call('SET', KEYS[1], string.format('%.0f', updated), 'PX', math.max(1, reset))
+	return {1, math.floor((tolerance - lead) / interval), 0, reset}
+end
+
+local wait = math.max(1, math.ceil((lead - tolerance) / 1000))
+return {0, 0, wait, wait}
@@ -0,0 +1,75 @@
+-- KEYS[1] list of admitted entries, oldest first
+-- ARGV: limit, window ms, permits (default 1)
+-- returns {allowed, remaining, retryAfterMs, resetInMs}
+-- An entry is "timestamp:permits:cumulative", where cumulative is the running total of permits
+-- pushed on the key, so the permits inside the window are known from the two ends of the list.
+-- Plain "timestamp" entries, written before permits, count one each.
+local limit = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+local permits = math.max(1, tonumber(ARGV[3]) or 1)
+-- the server's clock, as in token_bucket.lua
+redis.replicate_commands()
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local function parse(entry)
+	local ts, weight, cumulative = string.match(entry, '^(-?%d+):(%d+):(%d+)$')
+	if ts then
+		return tonumber(ts), tonumber(weight), tonumber(cumulative)
+	end
+	return tonumber(entry), 1, nil
+end
+
+while true do
+	local oldest = redis.call('LINDEX', KEYS[1], 0)
+	if not oldest or now - parse(oldest) <= window then
+		break
+	end
+	redis.call('LPOP', KEYS[1])
+end
+
+local used = 0
+local last = 0
+local newest = redis.call('LINDEX', KEYS[1], -1)
+if newest then
+	local _, newestWeight, newestCumulative = parse(newest)
+	local _, oldestWeight, oldestCumulative = parse(redis.call('LINDEX', KEYS[1], 0))
+	if newestCumulative and oldestCumulative then
+		used = newestCumulative - oldestCumulative + oldestWeight
+		last = newestCumulative
+	else
+		-- older entries without totals are still in the window; add them up
+		for _, entry in ipairs(redis.call('LRANGE', KEYS[1], 0, -1)) do
+			local _, weight = parse(entry)
+			used = used + weight
+		end
+		last = newestCumulative or used
+	end
+end
+
+if used + permits > limit then
+	-- walk from the oldest entry until enough permits would have expired; more than the limit never fit
+	local excess = used + permits - limit
+	local freed = 0
+	local expiring = now
+	local i = 0
+	while true do
+		local entry = redis.call('LINDEX', KEYS[1], i)
+		if not entry then
+			break
+		end
+		local ts, weight = parse(entry)
+		expiring = ts
+		freed = freed + weight
+		if permits <= limit and freed >= excess then
+			break
+		end
+		i = i + 1
+	end
+	local retry = math.max(0, window - (now - expiring))
+	return {0, 0, retry, retry}
+end
+
+redis.call('RPUSH', KEYS[1], now .. ':' .. permits .. ':' .. (last + permits))
+redis.call('PEXPIRE', KEYS[1], window + 1)
+return {1, limit - used - permits, window, window}
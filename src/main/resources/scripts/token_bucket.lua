@@ -0,0 +1,43 @@
+-- KEYS[1] bucket key
+-- ARGV: capacity, refill rate per second, permits (default 1)
+-- returns {allowed, remaining, retryAfterMs, resetInMs}
+local capacity = tonumber(ARGV[1])
+local rate = tonumber(ARGV[2])
+local permits = math.max(1, tonumber(ARGV[3]) or 1)
+-- the server's clock, so replicas with skewed clocks still move the shared state alike; writing
+-- after TIME needs effects replication, the default from Redis 5
+redis.replicate_commands()
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(state[1])
+local ts = tonumber(state[2])
+if tokens == nil then
+	tokens = capacity
+	ts = now
+end
+if now > ts then
+	tokens = math.min(capacity, tokens + (now - ts) * rate / 1000)
+	ts = now
+end
+
+local allowed = 0
+local retry = 0
+if tokens >= permits and permits <= capacity then
+	tokens = tokens - permits
+	allowed = 1
+else
+	-- more permits than the capacity never fit; report the wait for a full bucket
+	retry = math.ceil((math.min(permits, capacity) - tokens) * 1000 / rate)
+end
+
+local reset = math.ceil((capacity - tokens) * 1000 / rate)
+redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', ts)
+-- a full bucket is the same as a missing one, so let Redis drop it then
+redis.call('PEXPIRE', KEYS[1], math.max(1, reset))
+
+if allowed == 1 then
+	return {1, math.floor(tokens), 0, reset}
+end
+return {0, 0, retry, retry}
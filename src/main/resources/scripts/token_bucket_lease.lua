@@ -0,0 +1,38 @@
+-- KEYS[1] bucket key (same layout as token_bucket.lua)
+-- ARGV: capacity, refill rate per second, tokens requested, unused tokens returned
+-- returns {granted, remaining, retryAfterMs, resetInMs}
+local capacity = tonumber(ARGV[1])
+local rate = tonumber(ARGV[2])
+local requested = tonumber(ARGV[3])
+local returned = tonumber(ARGV[4])
+-- the server's clock, as in token_bucket.lua
+redis.replicate_commands()
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(state[1])
+local ts = tonumber(state[2])
+if tokens == nil then
+	tokens = capacity
+	ts = now
+end
+if now > ts then
+	tokens = tokens + (now - ts) * rate / 1000
+	ts = now
+end
+tokens = math.min(capacity, tokens + returned)
+
+local granted = math.min(requested, math.floor(tokens))
+tokens = tokens - granted
+
+local retry = 0
+if granted == 0 then
+	retry = math.ceil((1 - tokens) * 1000 / rate)
+end
+
+local reset = math.ceil((capacity - tokens) * 1000 / rate)
+redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', ts)
+redis.call('PEXPIRE', KEYS[1], math.max(1, reset))
+
+return {granted, math.floor(tokens), retry, reset}
@@ -0,0 +1,183 @@
+package com.project.rate_limiter.cluster;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.service.AdaptiveLimitSettings;
+import com.project.rate_limiter.service.RateLimiterFactory;
+import com.project.rate_limiter.store.StateStoreSettings;
+
+class ClusterRateLimiterTest {
+	
+	/** Long enough that no test run crosses a window boundary. */
+	private static final long YEAR_MS = 365L * 24 * 3600 * 1000;
+	
+	private final List<GossipNode> nodes = new ArrayList<>();
+	
+	@AfterEach
+	void stopNodes() {
+		nodes.forEach(GossipNode::shutdown);
+	}
+	
+	@Test
+	void nodesConvergeAndTogetherStayCloseToTheLimit() throws Exception {
+		List<ClusterRateLimiterService> limiters = cluster(3, RateLimiterAlgorithm.FIXED_WINDOW, 300, YEAR_MS, 0);
+		awaitLive(3);
+		
+		long admitted = hammer(limiters, "k", 400);
+		// at most one permit per node and interval beyond the limit, from rounding shares up
+		assertTrue(admitted >= 290 && admitted <= 300 + 3, "admitted " + admitted);
+		
+		await(() -> limiters.stream().allMatch(limiter -> limiter.used("k") == admitted));
+		for(ClusterRateLimiterService limiter : limiters) {
+			assertFalse(limiter.decision("k", System.currentTimeMillis()).isAllowed());
+		}
+	}
+	
+	@Test
+	void partitionedSidesEachUseTheLimitAndReconcileWhenHealed() throws Exception {
+		List<ClusterRateLimiterService> limiters = cluster(3, RateLimiterAlgorithm.FIXED_WINDOW, 100, YEAR_MS, 0);
+		awaitLive(3);
+		partition(true);
+		awaitLive(1, 0);
+		awaitLive(2, 1, 2);
+		
+		long alone = hammer(limiters.subList(0, 1), "k", 200);
+		long together = hammer(limiters.subList(1, 3), "k", 200);
+		assertEquals(100, alone);
+		assertTrue(together >= 95 && together <= 102, "admitted " + together);
+		
+		partition(false);
+		awaitLive(3);
+		await(() -> limiters.stream().allMatch(limiter -> limiter.used("k") == alone + together));
+	}
+	
+	@Test
+	void tokenBucketSharesItsRefillAcrossNodes() throws Exception {
+		List<ClusterRateLimiterService> limiters = cluster(2, RateLimiterAlgorithm.TOKEN_BUCKET, 20, 1_000, 10);
+		awaitLive(2);
+		
+		long burst = hammer(limiters, "k", 40);
+		assertTrue(burst >= 18 && burst <= 22, "admitted " + burst);
+		await(() -> limiters.stream().allMatch(limiter -> limiter.used("k") == burst));
+		
+		Thread.sleep(1_000);
+		// about ten tokens refilled for the cluster, not ten per node
+		long refilled = hammer(limiters, "k", 40);
+		assertTrue(refilled >= 8 && refilled <= 14, "admitted " + refilled);
+	}
+	
+	@Test
+	void algorithmsTheClusterDoesNotReplicateAreNotOffered() {
+		RateLimiterFactory factory = new RateLimiterFactory("cluster", StateStoreSettings.DEFAULTS, AdaptiveLimitSettings.DEFAULTS, 
+				null, null, null, 10, 100, 50, 2_000);
+		
+		for(RateLimiterAlgorithm algorithm : RateLimiterAlgorithm.values()) {
+			boolean offered = ClusterRateLimiterService.supports(algorithm) || algorithm == RateLimiterAlgorithm.ADAPTIVE_CONCURRENCY;
+			assertEquals(offered, factory.isAvailable(algorithm), algorithm.name());
+		}
+		assertThrows(IllegalArgumentException.class, () -> factory.create("policy#0", RateLimiterAlgorithm.GCRA, 10, 1_000, 10));
+		assertThrows(IllegalArgumentException.class, () -> factory.create("policy#0", RateLimiterAlgorithm.SLIDING_WINDOW, 10, 1_000, 10));
+	}
+	
+	@Test
+	void datagramsCarryTheTimeTheyWereSent() throws Exception {
+		try (DatagramSocket peer = new DatagramSocket(0)) {
+			peer.setSoTimeout(2_000);
+			int port;
+			try (DatagramSocket probe = new DatagramSocket(0)) {
+				port = probe.getLocalPort();
+			}
+			nodes.add(new GossipNode("127.0.0.1:" + port + ",127.0.0.1:" + peer.getLocalPort(), 0, 300, 1_000));
+			for(int i=0; i<3; i++) {
+				DatagramPacket packet = new DatagramPacket(new byte[1400], 1400);
+				peer.receive(packet);
+				long sentAt = ByteBuffer.wrap(packet.getData()).getLong(5);
+				// stamping when the previous round finished would make every heartbeat one interval old
+				assertTrue(System.currentTimeMillis() - sentAt < 150, "sent " + (System.currentTimeMillis() - sentAt) + " ms ago");
+			}
+		}
+	}
+	
+	private List<ClusterRateLimiterService> cluster(int size, RateLimiterAlgorithm algorithm, int count, long periodMs,
+			double refillRate) throws IOException {
+		StringBuilder members = new StringBuilder();
+		for(int i=0; i<size; i++) {
+			try (DatagramSocket probe = new DatagramSocket(0)) {
+				members.append(i == 0 ? "" : ",").append("127.0.0.1:").append(probe.getLocalPort());
+			}
+		}
+		List<ClusterRateLimiterService> limiters = new ArrayList<>();
+		for(int i=0; i<size; i++) {
+			GossipNode node = new GossipNode(members.toString(), i, 2, 100);
+			nodes.add(node);
+			limiters.add(new ClusterRateLimiterService("test", algorithm, count, periodMs, refillRate, node, StateStoreSettings.DEFAULTS));
+		}
+		return limiters;
+	}
+	
+	/** Node 0 on one side, the others on the other. */
+	private void partition(boolean cut) {
+		for(int i=1; i<nodes.size(); i++) {
+			nodes.get(0).cutOff(i, cut);
+			nodes.get(i).cutOff(0, cut);
+		}
+	}
+	
+	/** Every limiter asks for {@code attempts} permits from its own thread, a few per millisecond. */
+	private static long hammer(List<ClusterRateLimiterService> limiters, String key, int attempts) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(limiters.size());
+		try {
+			List<Callable<Long>> clients = new ArrayList<>();
+			for(ClusterRateLimiterService limiter : limiters) {
+				clients.add(() -> {
+					long admitted = 0;
+					for(int i=0; i<attempts; i++) {
+						admitted += limiter.decision(key, System.currentTimeMillis()).isAllowed() ? 1 : 0;
+						if(i % 4 == 3) { Thread.sleep(1); }
+					}
+					return admitted;
+				});
+			}
+			long admitted = 0;
+			for(Future<Long> client : pool.invokeAll(clients)) {
+				admitted += client.get();
+			}
+			return admitted;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+	
+	private void awaitLive(int live, int... members) throws InterruptedException {
+		int[] which = members.length == 0 ? nodes.stream().mapToInt(GossipNode::nodeIndex).toArray() : members;
+		await(() -> Arrays.stream(which).allMatch(i -> nodes.get(i).liveMembers() == live));
+	}
+	
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5_000;
+		while(!condition.getAsBoolean()) {
+			assertTrue(System.currentTimeMillis() < deadline, "not converged within 5 s");
+			Thread.sleep(5);
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package com.project.rate_limiter.decision;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.decision.RemoteDecision.Status;
+import com.project.rate_limiter.filter.KeyResolver;
+import com.project.rate_limiter.metrics.LimiterMetrics;
+import com.project.rate_limiter.policy.PolicyEngine;
+import com.project.rate_limiter.policy.PolicyProperties;
+import com.project.rate_limiter.policy.PolicyProperties.KeySource;
+import com.project.rate_limiter.policy.PolicyProperties.Limit;
+import com.project.rate_limiter.policy.PolicyProperties.Rule;
+import com.project.rate_limiter.service.AdaptiveLimitSettings;
+import com.project.rate_limiter.service.FixedSizeRateLimiterService;
+import com.project.rate_limiter.service.HeavyHitterPrefilter;
+import com.project.rate_limiter.service.RateLimiter;
+import com.project.rate_limiter.service.RateLimiterFactory;
+import com.project.rate_limiter.service.TokenBucketRateLimiterService;
+import com.project.rate_limiter.store.StateStoreSettings;
+
+class DecisionServerTest {
+	
+	/** Long enough that no test run crosses a window boundary. */
+	private static final long YEAR_MS = 365L * 24 * 3600 * 1000;
+	
+	private final List<RateLimiter> limiters = List.of(
+			new TokenBucketRateLimiterService(2, 0.01, StateStoreSettings.DEFAULTS),
+			new FixedSizeRateLimiterService(1_000, YEAR_MS, StateStoreSettings.DEFAULTS));
+	
+	private final LimiterMetrics metrics = new LimiterMetrics(new SimpleMeterRegistry(), limiters, 5, 1);
+	
+	private final DecisionServer server = server(new Rule("orders", "/orders/**", List.of(), null, Map.of(), KeySource.USER, null,
+			List.of(new Limit(RateLimiterAlgorithm.FIXED_WINDOW, 3, Duration.ofMillis(YEAR_MS), null, null))));
+	
+	private final DecisionClient client = new DecisionClient(new InetSocketAddress("127.0.0.1", server.port()), 2, 5_000);
+	
+	@AfterEach
+	void stop() {
+		client.close();
+		server.shutdown();
+	}
+	
+	@Test
+	void batchIsDecidedInOrderInOneRoundTrip() {
+		List<RemoteDecision> decisions = client.decide(List.of(
+				Descriptor.of("a"),
+				Descriptor.of("a"),
+				Descriptor.of("a"),
+				new Descriptor("a", "no-such-policy", 1),
+				new Descriptor("a", "", 0),
+				new Descriptor("b", "fixed_window", 1))).join();
+		
+		assertEquals(List.of(Status.ALLOWED, Status.ALLOWED, Status.BLOCKED, Status.UNKNOWN_POLICY, Status.INVALID, Status.ALLOWED),
+				decisions.stream().map(RemoteDecision::status).toList());
+		assertEquals(1, decisions.get(0).remaining());
+		assertTrue(decisions.get(2).retryAfterMs() > 0);
+		assertEquals(999, decisions.get(5).remaining());
+		assertEquals(1, server.stats().framesReceived());
+		assertEquals(6, server.stats().descriptorsDecided());
+	}
+	
+	@Test
+	void policyIsDecidedByNameWithTheDescriptorsCost() {
+		assertTrue(client.decide("u", "orders", 2).isAllowed());
+		RemoteDecision blocked = client.decide("u", "orders", 2);
+		assertFalse(blocked.isAllowed());
+		assertTrue(client.decide("u", "orders", 1).isAllowed());
+		assertEquals(Status.BLOCKED, client.decide("u", "orders", 1).status());
+	}
+	
+	@Test
+	void pipelinedCallsFromManyThreadsAreEachAnsweredOnce() throws Exception {
+		ExecutorService threads = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Integer>> admitted = new ArrayList<>();
+			for(int t=0; t<8; t++) {
+				admitted.add(threads.submit(() -> {
+					List<CompletableFuture<List<RemoteDecision>>> calls = new ArrayList<>();
+					for(int i=0; i<200; i++) {
+						calls.add(client.decide(List.of(new Descriptor("shared", "FIXED_WINDOW", 1))));
+					}
+					int allowed = 0;
+					for(CompletableFuture<List<RemoteDecision>> call : calls) {
+						allowed += call.join().get(0).isAllowed() ? 1 : 0;
+					}
+					return allowed;
+				}));
+			}
+			int total = 0;
+			for(Future<Integer> result : admitted) {
+				total += result.get();
+			}
+			assertEquals(1_000, total);
+			assertEquals(1_600, server.stats().framesReceived());
+		} finally {
+			threads.shutdownNow();
+		}
+	}
+	
+	@Test
+	void malformedFrameClosesOnlyItsConnection() throws IOException {
+		try(SocketChannel raw = SocketChannel.open(new InetSocketAddress("127.0.0.1", server.port()))) {
+			// version 9 is not spoken here
+			raw.write(ByteBuffer.allocate(11).putInt(7).put((byte) 9).putInt(1).putShort((short) 0).flip());
+			assertEquals(-1, raw.read(ByteBuffer.allocate(64)));
+		}
+		assertEquals(1, server.stats().framesRejected());
+		assertTrue(client.decide("c", "", 1).isAllowed());
+	}
+	
+	private DecisionServer server(Rule... rules) {
+		RateLimiterFactory factory = new RateLimiterFactory("local", StateStoreSettings.DEFAULTS, AdaptiveLimitSettings.DEFAULTS, null, null, null, 10, 100, 50, 2_000);
+		PolicyEngine policies = new PolicyEngine(new PolicyProperties(true, RateLimiterAlgorithm.TOKEN_BUCKET, "X-Tenant-Tier", "X-Tenant-Id",
+				List.of(rules)), factory);
+		try {
+			return new DecisionServer(limiters, metrics, policies, KeyResolver.DEFAULTS, HeavyHitterPrefilter.DISABLED, "127.0.0.1", 0, 2, 64);
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package com.project.rate_limiter.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class KeyResolverTest {
+	
+	@Test
+	void addressesAreCutToTheirPrefixInOneCanonicalForm() {
+		KeyResolver keys = new KeyResolver("", 24, 56, false, false);
+		
+		assertEquals("203.0.113.0/24", keys.clientKey("203.0.113.250", null));
+		assertEquals("2001:db8:0:ab00::/56", keys.clientKey("2001:0db8:0000:abcd:0000:0000:0000:0001", null));
+		assertEquals("2001:db8:0:ab00::/56", keys.clientKey("2001:db8::abff:1:2:3:4", null));
+		assertEquals("203.0.113.0/24", keys.clientKey("::ffff:203.0.113.9", null));
+		assertEquals("::1", new KeyResolver("", 32, 128, false, false).clientKey("0:0:0:0:0:0:0:1", null));
+		// the default keeps IPv4 addresses as they are and IPv6 clients to their /64
+		assertEquals("198.51.100.7", KeyResolver.DEFAULTS.clientKey("198.51.100.7", null));
+		assertEquals("2001:db8:1:2::/64", KeyResolver.DEFAULTS.clientKey("2001:db8:1:2:aaaa:bbbb:cccc:dddd", null));
+	}
+	
+	@Test
+	void forwardedForIsWalkedFromTheRightPastTrustedProxiesOnly() {
+		KeyResolver keys = new KeyResolver("10.0.0.0/8, 2001:db8:ffff::/48", 32, 128, false, false);
+		
+		assertEquals("198.51.100.4", keys.clientKey("10.1.1.1", "1.2.3.4, 198.51.100.4, 10.2.2.2"));
+		assertEquals("198.51.100.4", keys.clientKey("2001:db8:ffff::1", "[198.51.100.4]:5000, 10.0.0.9:80"));
+		// an untrusted connection cannot pick its own key
+		assertEquals("192.0.2.1", keys.clientKey("192.0.2.1", "198.51.100.4"));
+		// a hop that is not an address stops the walk at the proxy that reported it
+		assertEquals("10.2.2.2", keys.clientKey("10.1.1.1", "198.51.100.4, evil.example, 10.2.2.2"));
+		assertEquals("10.1.1.1", keys.clientKey("10.1.1.1", ""));
+	}
+	
+	@Test
+	void hashedKeysAreShortAndStable() {
+		KeyResolver hashed = new KeyResolver("", 32, 64, true, false);
+		KeyResolver verified = new KeyResolver("", 32, 64, true, true);
+		String longId = "user-" + "x".repeat(2_000);
+		
+		String key = hashed.identityKey(longId);
+		assertTrue(key.startsWith(KeyResolver.HASH_PREFIX) && key.length() <= 17, key);
+		assertEquals(key, hashed.identityKey(new String(longId)));
+		assertNotEquals(key, hashed.identityKey(longId + "y"));
+		assertTrue(verified.identityKey(longId).startsWith(key));
+		assertTrue(verified.identityKey(longId).length() > key.length());
+		assertEquals(hashed.identityKey("2001:db8:1:2::/64"), hashed.clientKey("2001:db8:1:2::99", null));
+	}
+	
+	@Test
+	void parsingNeverAcceptsHostNames() {
+		assertNull(IpAddresses.parse("localhost"));
+		assertNull(IpAddresses.parse("example.com:80"));
+		assertNull(IpAddresses.parse("256.1.1.1"));
+		assertNull(IpAddresses.parse("1.2.3"));
+		assertNull(IpAddresses.parse("fe80::zz"));
+		assertEquals(16, IpAddresses.parse("fe80::1%eth0").length);
+		assertThrows(IllegalArgumentException.class, () -> new KeyResolver("10.0.0.0/33", 32, 64, false, false));
+		assertThrows(IllegalArgumentException.class, () -> new KeyResolver("", 33, 64, false, false));
+	}
+}
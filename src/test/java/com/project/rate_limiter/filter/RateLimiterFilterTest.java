@@ -0,0 +1,364 @@
+package com.project.rate_limiter.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.metrics.LimiterMetrics;
+import com.project.rate_limiter.policy.PolicyEngine;
+import com.project.rate_limiter.policy.PolicyProperties;
+import com.project.rate_limiter.policy.PolicyProperties.Cost;
+import com.project.rate_limiter.policy.PolicyProperties.KeySource;
+import com.project.rate_limiter.policy.PolicyProperties.Limit;
+import com.project.rate_limiter.policy.PolicyProperties.Rule;
+import com.project.rate_limiter.service.AdaptiveConcurrencyLimiter;
+import com.project.rate_limiter.service.AdaptiveLimitSettings;
+import com.project.rate_limiter.service.FixedSizeRateLimiterService;
+import com.project.rate_limiter.service.HeavyHitterPrefilter;
+import com.project.rate_limiter.service.LeakyBucketRateLimiterService;
+import com.project.rate_limiter.service.PermitWaiter;
+import com.project.rate_limiter.service.RateLimiter;
+import com.project.rate_limiter.service.RateLimiterFactory;
+import com.project.rate_limiter.service.ShapingQueue;
+import com.project.rate_limiter.service.TokenBucketRateLimiterService;
+import com.project.rate_limiter.store.StateStoreSettings;
+
+class RateLimiterFilterTest {
+	
+	private final List<RateLimiter> limiters = List.of(
+			new TokenBucketRateLimiterService(2, 1, StateStoreSettings.DEFAULTS),
+			new FixedSizeRateLimiterService(1, 1_500, StateStoreSettings.DEFAULTS));
+	
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	
+	private final LimiterMetrics metrics = new LimiterMetrics(registry, limiters, 5, 1);
+	
+	private final ShapingQueue shaping = new ShapingQueue(10, 2_000, new SimpleMeterRegistry());
+	
+	private final RateLimiterFilter filter = new RateLimiterFilter(limiters, metrics, policies(), new PermitWaiter(0, 0), shaping, KeyResolver.DEFAULTS, HeavyHitterPrefilter.DISABLED);
+	
+	@Test
+	void algorithmHeaderIsCaseInsensitiveAndTrimmed() throws Exception {
+		MockHttpServletResponse response = call(" fixed_Window ", "a");
+		
+		assertEquals(200, response.getStatus());
+		assertEquals("FIXED_WINDOW", response.getHeader("X-RateLimit-Algorithm"));
+		assertEquals("0", response.getHeader("X-RateLimit-Remaining"));
+	}
+	
+	@Test
+	void blockedResponseRoundsRetryAfterUpToWholeSeconds() throws Exception {
+		call("FIXED_WINDOW", "b");
+		MockHttpServletResponse response = call("FIXED_WINDOW", "b");
+		
+		assertEquals(429, response.getStatus());
+		long retryAfterMs = Long.parseLong(response.getHeader("X-RateLimit-RetryAfter-Ms"));
+		assertEquals((retryAfterMs + 999) / 1000, Long.parseLong(response.getHeader("Retry-After")));
+	}
+	
+	@Test
+	void decisionsAreCountedPerAlgorithmAndBlockedKeysTracked() throws Exception {
+		call("FIXED_WINDOW", "d");
+		call("FIXED_WINDOW", "d");
+		call("FIXED_WINDOW", "d");
+		
+		assertEquals(1, registry.get("rate.limiter.decisions").tags("algorithm", "FIXED_WINDOW", "outcome", "allowed").counter().count());
+		assertEquals(2, registry.get("rate.limiter.decisions").tags("algorithm", "FIXED_WINDOW", "outcome", "blocked").counter().count());
+		assertEquals(3, registry.get("rate.limiter.decision.latency").tags("algorithm", "FIXED_WINDOW").timer().count());
+		assertEquals(1, registry.get("rate.limiter.state.keys").tags("algorithm", "FIXED_WINDOW").gauge().value());
+		assertEquals("d", metrics.topOffenders(1).get(0).key());
+	}
+	
+	@Test
+	void policyChargesEveryLimitAndReportsTheBindingOne() throws Exception {
+		Rule rule = new Rule("orders", "/limiter/api/orders/**", List.of(), null, Map.of(), KeySource.USER, null, List.of(
+				new Limit(RateLimiterAlgorithm.TOKEN_BUCKET, 10, Duration.ofSeconds(1), null, null),
+				new Limit(RateLimiterAlgorithm.FIXED_WINDOW, 3, Duration.ofMinutes(1), null, null)));
+		RateLimiterFilter policyFilter = new RateLimiterFilter(limiters, metrics, policies(rule), new PermitWaiter(0, 0), shaping, KeyResolver.DEFAULTS, HeavyHitterPrefilter.DISABLED);
+		
+		for(int i=0; i<3; i++) {
+			// the client header cannot pick a weaker limiter for a governed route
+			MockHttpServletResponse response = call(policyFilter, "/limiter/api/orders/1", "SLIDING_WINDOW", "e");
+			assertEquals(200, response.getStatus());
+			assertEquals("orders", response.getHeader("X-RateLimit-Policy"));
+		}
+		MockHttpServletResponse blocked = call(policyFilter, "/limiter/api/orders/1", "TOKEN_BUCKET", "e");
+		assertEquals(429, blocked.getStatus());
+		assertEquals("FIXED_WINDOW", blocked.getHeader("X-RateLimit-Algorithm"));
+		assertEquals("3", blocked.getHeader("X-RateLimit-Limit"));
+		
+		// routes without a rule keep the client-selected algorithm
+		assertEquals(200, call(policyFilter, "/limiter/api/data", "TOKEN_BUCKET", "e").getStatus());
+	}
+	
+	@Test
+	void policyLimitsCanCountAgainstDifferentKeys() throws Exception {
+		Rule rule = new Rule("search", "/limiter/api/search", List.of(), null, Map.of(), KeySource.USER, null, List.of(
+				new Limit(RateLimiterAlgorithm.FIXED_WINDOW, 2, Duration.ofMinutes(1), null, null),
+				new Limit(RateLimiterAlgorithm.FIXED_WINDOW, 3, Duration.ofMinutes(1), null, KeySource.GLOBAL)));
+		RateLimiterFilter policyFilter = new RateLimiterFilter(limiters, metrics, policies(rule), new PermitWaiter(0, 0), shaping, KeyResolver.DEFAULTS, HeavyHitterPrefilter.DISABLED);
+		
+		assertEquals(200, call(policyFilter, "/limiter/api/search", "TOKEN_BUCKET", "g").getStatus());
+		assertEquals(200, call(policyFilter, "/limiter/api/search", "TOKEN_BUCKET", "g").getStatus());
+		MockHttpServletResponse perUser = call(policyFilter, "/limiter/api/search", "TOKEN_BUCKET", "g");
+		assertEquals(429, perUser.getStatus());
+		assertEquals("g", perUser.getHeader("X-RateLimit-Key"));
+		
+		// the request blocked for g was not counted globally, so one more user fits
+		assertEquals(200, call(policyFilter, "/limiter/api/search", "TOKEN_BUCKET", "h").getStatus());
+		MockHttpServletResponse global = call(policyFilter, "/limiter/api/search", "TOKEN_BUCKET", "i");
+		assertEquals(429, global.getStatus());
+		assertEquals("*", global.getHeader("X-RateLimit-Key"));
+		assertEquals("3", global.getHeader("X-RateLimit-Limit"));
+	}
+	
+	@Test
+	void policyCostComesFromTheBatchSizeHeader() throws Exception {
+		Rule rule = new Rule("batch", "/limiter/api/batch", List.of(), null, Map.of(), KeySource.USER, 
+				new Cost(1, "X-Batch-Size", 0), 
+				List.of(new Limit(RateLimiterAlgorithm.FIXED_WINDOW, 10, Duration.ofMinutes(1), null, null)));
+		RateLimiterFilter policyFilter = new RateLimiterFilter(limiters, metrics, policies(rule), new PermitWaiter(0, 0), shaping, KeyResolver.DEFAULTS, HeavyHitterPrefilter.DISABLED);
+		
+		MockHttpServletResponse batch = call(policyFilter, "/limiter/api/batch", "j", Map.of("X-Batch-Size", "6"));
+		assertEquals(200, batch.getStatus());
+		assertEquals("6", batch.getHeader("X-RateLimit-Cost"));
+		assertEquals("4", batch.getHeader("X-RateLimit-Remaining"));
+		
+		assertEquals(429, call(policyFilter, "/limiter/api/batch", "j", Map.of("X-Batch-Size", "5")).getStatus());
+		MockHttpServletResponse single = call(policyFilter, "/limiter/api/batch", "j", Map.of());
+		assertEquals(200, single.getStatus());
+		assertEquals("1", single.getHeader("X-RateLimit-Cost"));
+	}
+	
+	@Test
+	void heldRequestContinuesWithAnAsyncDispatchOnceAPermitIsDue() throws Exception {
+		List<RateLimiter> fast = List.of(new FixedSizeRateLimiterService(1, 100, StateStoreSettings.DEFAULTS));
+		RateLimiterFilter waiting = new RateLimiterFilter(fast, new LimiterMetrics(new SimpleMeterRegistry(), fast, 5, 1), 
+				policies(), new PermitWaiter(1_000, 10), shaping, KeyResolver.DEFAULTS, HeavyHitterPrefilter.DISABLED);
+		assertEquals(200, call(waiting, "/limiter/api/data", "FIXED_WINDOW", "w").getStatus());
+		
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/limiter/api/data");
+		request.setAsyncSupported(true);
+		request.addHeader("X-RateLimit-Alg", "FIXED_WINDOW");
+		request.addHeader("X-User-Id", "w");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		MockFilterChain chain = new MockFilterChain();
+		waiting.doFilter(request, response, chain);
+		
+		// the request thread is released without passing the request on
+		assertTrue(request.isAsyncStarted());
+		assertNull(chain.getRequest());
+		MockAsyncContext async = (MockAsyncContext) request.getAsyncContext();
+		long deadline = System.currentTimeMillis() + 2_000;
+		while(async.getDispatchedPath() == null && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals("/limiter/api/data", async.getDispatchedPath());
+		assertEquals(200, response.getStatus());
+		assertNotNull(response.getHeader("X-RateLimit-Waited-Ms"));
+	}
+	
+	@Test
+	void shapedRequestIsHeldForItsDelayAndRejectedOnlyWhenTheBucketIsFull() throws Exception {
+		List<RateLimiter> shaper = List.of(new LeakyBucketRateLimiterService(2, 5, 1_000, StateStoreSettings.DEFAULTS));
+		RateLimiterFilter shaping = new RateLimiterFilter(shaper, new LimiterMetrics(new SimpleMeterRegistry(), shaper, 5, 1),
+				policies(), new PermitWaiter(0, 0), this.shaping, KeyResolver.DEFAULTS, HeavyHitterPrefilter.DISABLED);
+		assertEquals(200, call(shaping, "/limiter/api/data", "LEAKY_BUCKET", "s").getStatus());
+		
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/limiter/api/data");
+		request.setAsyncSupported(true);
+		request.addHeader("X-RateLimit-Alg", "LEAKY_BUCKET");
+		request.addHeader("X-User-Id", "s");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		MockFilterChain chain = new MockFilterChain();
+		shaping.doFilter(request, response, chain);
+		
+		assertTrue(request.isAsyncStarted());
+		assertNull(chain.getRequest());
+		// one request ahead of it at five per second
+		long delay = Long.parseLong(response.getHeader("X-RateLimit-Delay-Ms"));
+		assertTrue(delay > 150 && delay <= 200);
+		MockAsyncContext async = (MockAsyncContext) request.getAsyncContext();
+		long deadline = System.currentTimeMillis() + 2_000;
+		while(async.getDispatchedPath() == null && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals("/limiter/api/data", async.getDispatchedPath());
+		
+		assertEquals(200, call(shaping, "/limiter/api/data", "LEAKY_BUCKET", "s").getStatus());
+		assertEquals(429, call(shaping, "/limiter/api/data", "LEAKY_BUCKET", "s").getStatus());
+	}
+	
+	@Test
+	void requestTheShapingQueueHasNoRoomForIsRefunded() throws Exception {
+		List<RateLimiter> shaper = List.of(new LeakyBucketRateLimiterService(3, 5, 1_000, StateStoreSettings.DEFAULTS));
+		RateLimiterFilter shaping = new RateLimiterFilter(shaper, new LimiterMetrics(new SimpleMeterRegistry(), shaper, 5, 1),
+				policies(), new PermitWaiter(0, 0), new ShapingQueue(1, 2_000, new SimpleMeterRegistry()), 
+				KeyResolver.DEFAULTS, HeavyHitterPrefilter.DISABLED);
+		assertEquals(200, call(shaping, "/limiter/api/data", "LEAKY_BUCKET", "s").getStatus());
+		// the one place in the queue goes to the second request
+		assertTrue(shaped(shaping).isAsyncStarted());
+		
+		MockHttpServletResponse full = new MockHttpServletResponse();
+		shaping.doFilter(async("s"), full, new MockFilterChain());
+		assertEquals(429, full.getStatus());
+		long delay = Long.parseLong(full.getHeader("X-RateLimit-RetryAfter-Ms"));
+		assertTrue(delay > 350 && delay <= 400);
+		
+		// a retry waits behind the same two requests as before, not behind the one turned away
+		MockHttpServletResponse retry = new MockHttpServletResponse();
+		shaping.doFilter(async("s"), retry, new MockFilterChain());
+		assertEquals(429, retry.getStatus());
+		long retryDelay = Long.parseLong(retry.getHeader("X-RateLimit-RetryAfter-Ms"));
+		assertTrue(retryDelay > 350 && retryDelay <= delay);
+	}
+	
+	private static MockHttpServletRequest shaped(RateLimiterFilter filter) throws Exception {
+		MockHttpServletRequest request = async("s");
+		filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+		return request;
+	}
+	
+	private static MockHttpServletRequest async(String user) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/limiter/api/data");
+		request.setAsyncSupported(true);
+		request.addHeader("X-RateLimit-Alg", "LEAKY_BUCKET");
+		request.addHeader("X-User-Id", user);
+		return request;
+	}
+	
+	@Test
+	void concurrencyLimitHoldsItsSlotUntilTheChainReturns() throws Exception {
+		AdaptiveConcurrencyLimiter adaptive = new AdaptiveConcurrencyLimiter("test", AdaptiveLimitSettings.DEFAULTS.withMaxLimit(1));
+		List<RateLimiter> concurrency = List.of(adaptive);
+		RateLimiterFilter limited = new RateLimiterFilter(concurrency, new LimiterMetrics(new SimpleMeterRegistry(), concurrency, 5, 1),
+				policies(), new PermitWaiter(1_000, 10), shaping, KeyResolver.DEFAULTS, HeavyHitterPrefilter.DISABLED);
+		
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/limiter/api/data");
+		request.setAsyncSupported(true);
+		request.addHeader("X-RateLimit-Alg", "ADAPTIVE_CONCURRENCY");
+		List<Integer> nested = new ArrayList<>();
+		limited.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+			assertEquals(1, adaptive.inFlight());
+			// another client is turned away while this request is being served, and not held
+			try {
+				nested.add(call(limited, "/limiter/api/data", "ADAPTIVE_CONCURRENCY", "other").getStatus());
+			} catch(Exception ex) {
+				throw new IllegalStateException(ex);
+			}
+		});
+		
+		assertEquals(List.of(429), nested);
+		assertEquals(0, adaptive.inFlight());
+		assertTrue(adaptive.shortRttNanos() > 0);
+		assertEquals(200, call(limited, "/limiter/api/data", "ADAPTIVE_CONCURRENCY", "other").getStatus());
+	}
+	
+	@Test
+	void unknownAlgorithmIsRejected() throws Exception {
+		MockHttpServletResponse response = call("LEAKY", "c");
+		
+		assertEquals(400, response.getStatus());
+		assertNull(response.getHeader("X-RateLimit-Remaining"));
+	}
+	
+	@Test
+	void clientCannotPickTheAlgorithmUnlessAllowed() throws Exception {
+		RateLimiterFactory factory = new RateLimiterFactory("local", StateStoreSettings.DEFAULTS, AdaptiveLimitSettings.DEFAULTS, null, null, null, 10, 100, 50, 2_000);
+		PolicyEngine serverSide = new PolicyEngine(new PolicyProperties(false, RateLimiterAlgorithm.FIXED_WINDOW, "X-Tenant-Tier", "X-Tenant-Id",
+				List.of()), factory);
+		RateLimiterFilter fixed = new RateLimiterFilter(limiters, metrics, serverSide, new PermitWaiter(0, 0), shaping, KeyResolver.DEFAULTS, HeavyHitterPrefilter.DISABLED);
+		
+		MockHttpServletResponse response = call(fixed, "/limiter/api/data", "TOKEN_BUCKET", "k");
+		assertEquals("FIXED_WINDOW", response.getHeader("X-RateLimit-Algorithm"));
+		assertEquals(429, call(fixed, "/limiter/api/data", "TOKEN_BUCKET", "k").getStatus());
+	}
+	
+	@Test
+	void algorithmOfControlCharactersOnlyIsRejected() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/limiter/api/data");
+		// ?alg=%00
+		request.setParameter("alg", "\u0000");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, new MockFilterChain());
+		
+		assertEquals(400, response.getStatus());
+	}
+	
+	@Test
+	void algorithmTheBackendDoesNotOfferIsRejected() throws Exception {
+		// the beans of a shared backend: no in-process-only sliding counter, ring or leaky bucket
+		MockHttpServletResponse response = call("SLIDING_WINDOW_COUNTER", "c");
+		
+		assertEquals(400, response.getStatus());
+		assertEquals("Algorithm not available with this backend. Use TOKEN_BUCKET, FIXED_WINDOW", response.getContentAsString());
+		assertNull(response.getHeader("X-RateLimit-Remaining"));
+	}
+	
+	private static PolicyEngine policies(Rule... rules) {
+		RateLimiterFactory factory = new RateLimiterFactory("local", StateStoreSettings.DEFAULTS, AdaptiveLimitSettings.DEFAULTS, null, null, null, 10, 100, 50, 2_000);
+		return new PolicyEngine(new PolicyProperties(true, RateLimiterAlgorithm.TOKEN_BUCKET, "X-Tenant-Tier", "X-Tenant-Id",
+				List.of(rules)), factory);
+	}
+	
+	@Test
+	void clientsBehindATrustedProxyShareTheQuotaOfTheirPrefix() throws Exception {
+		RateLimiterFilter proxied = new RateLimiterFilter(limiters, metrics, policies(), new PermitWaiter(0, 0), shaping,
+				new KeyResolver("10.0.0.0/8", 24, 64, false, false), HeavyHitterPrefilter.DISABLED);
+		
+		MockHttpServletResponse first = callFrom(proxied, "10.0.0.1", "198.51.100.9, 203.0.113.5");
+		assertEquals(200, first.getStatus());
+		assertEquals("203.0.113.0/24", first.getHeader("X-RateLimit-Key"));
+		// another address of the same /24 finds the window used up
+		assertEquals(429, callFrom(proxied, "10.0.0.2", "203.0.113.77").getStatus());
+		// the header is ignored from a connection that is not a trusted proxy
+		assertEquals("192.0.2.0/24", callFrom(proxied, "192.0.2.1", "203.0.113.200").getHeader("X-RateLimit-Key"));
+	}
+	
+	private static MockHttpServletResponse callFrom(RateLimiterFilter filter, String remoteAddr, String forwardedFor) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/limiter/api/data");
+		request.addHeader("X-RateLimit-Alg", "FIXED_WINDOW");
+		request.addHeader("X-Forwarded-For", forwardedFor);
+		request.setRemoteAddr(remoteAddr);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, new MockFilterChain());
+		return response;
+	}
+	
+	private MockHttpServletResponse call(String algorithm, String user) throws Exception {
+		return call(filter, "/limiter/api/data", algorithm, user);
+	}
+	
+	private static MockHttpServletResponse call(RateLimiterFilter filter, String path, String user, Map<String, String> headers) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+		request.addHeader("X-User-Id", user);
+		headers.forEach(request::addHeader);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, new MockFilterChain());
+		return response;
+	}
+	
+	private static MockHttpServletResponse call(RateLimiterFilter filter, String path, String algorithm, String user) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+		request.addHeader("X-RateLimit-Alg", algorithm);
+		request.addHeader("X-User-Id", user);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, new MockFilterChain());
+		return response;
+	}
+}
@@ -0,0 +1,165 @@
+package com.project.rate_limiter.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.metrics.LimiterMetrics;
+import com.project.rate_limiter.policy.PolicyEngine;
+import com.project.rate_limiter.policy.PolicyProperties;
+import com.project.rate_limiter.policy.PolicyProperties.KeySource;
+import com.project.rate_limiter.policy.PolicyProperties.Limit;
+import com.project.rate_limiter.policy.PolicyProperties.Rule;
+import com.project.rate_limiter.service.AdaptiveLimitSettings;
+import com.project.rate_limiter.service.FixedSizeRateLimiterService;
+import com.project.rate_limiter.service.HeavyHitterPrefilter;
+import com.project.rate_limiter.service.LeakyBucketRateLimiterService;
+import com.project.rate_limiter.service.PermitWaiter;
+import com.project.rate_limiter.service.RateLimiter;
+import com.project.rate_limiter.service.RateLimiterFactory;
+import com.project.rate_limiter.service.ShapingQueue;
+import com.project.rate_limiter.store.StateStoreSettings;
+
+class RateLimiterWebFilterTest {
+	
+	private final List<RateLimiter> limiters = List.of(
+			new FixedSizeRateLimiterService(1, 100, StateStoreSettings.DEFAULTS));
+	
+	private final LimiterMetrics metrics = new LimiterMetrics(new SimpleMeterRegistry(), limiters, 5, 1);
+	
+	private final ShapingQueue shaping = new ShapingQueue(10, 2_000, new SimpleMeterRegistry());
+	
+	private final AtomicInteger passed = new AtomicInteger();
+	
+	private final WebFilterChain chain = exchange -> {
+		passed.incrementAndGet();
+		return Mono.empty();
+	};
+	
+	@Test
+	void blockedRequestGetsTheSameHeadersAsFromTheServletFilter() {
+		RateLimiterWebFilter filter = new RateLimiterWebFilter(limiters, metrics, policies(), new PermitWaiter(0, 0), shaping, KeyResolver.DEFAULTS, HeavyHitterPrefilter.DISABLED);
+		
+		MockServerWebExchange admitted = call(filter, "/limiter/api/data", "a");
+		assertNull(admitted.getResponse().getStatusCode());
+		assertEquals("FIXED_WINDOW", admitted.getResponse().getHeaders().getFirst("X-RateLimit-Algorithm"));
+		
+		MockServerWebExchange blocked = call(filter, "/limiter/api/data", "a");
+		assertEquals(HttpStatus.TOO_MANY_REQUESTS, blocked.getResponse().getStatusCode());
+		assertEquals("a", blocked.getResponse().getHeaders().getFirst("X-RateLimit-Key"));
+		assertEquals("1", blocked.getResponse().getHeaders().getFirst("Retry-After"));
+		assertEquals(1, passed.get());
+		
+		// admin endpoints are never limited
+		call(filter, "/limiter/admin/policies", "a");
+		assertEquals(2, passed.get());
+	}
+	
+	@Test
+	void policyLimitsAreChargedTogether() {
+		Rule rule = new Rule("search", "/limiter/api/search", List.of(), null, Map.of(), KeySource.USER, null, List.of(
+				new Limit(RateLimiterAlgorithm.FIXED_WINDOW, 1, Duration.ofMinutes(1), null, null),
+				new Limit(RateLimiterAlgorithm.FIXED_WINDOW, 2, Duration.ofMinutes(1), null, KeySource.GLOBAL)));
+		RateLimiterWebFilter filter = new RateLimiterWebFilter(limiters, metrics, policies(rule), new PermitWaiter(0, 0), shaping, KeyResolver.DEFAULTS, HeavyHitterPrefilter.DISABLED);
+		
+		assertNull(call(filter, "/limiter/api/search", "b").getResponse().getStatusCode());
+		assertEquals(HttpStatus.TOO_MANY_REQUESTS, call(filter, "/limiter/api/search", "b").getResponse().getStatusCode());
+		assertNull(call(filter, "/limiter/api/search", "c").getResponse().getStatusCode());
+		MockServerWebExchange global = call(filter, "/limiter/api/search", "d");
+		assertEquals(HttpStatus.TOO_MANY_REQUESTS, global.getResponse().getStatusCode());
+		assertEquals("*", global.getResponse().getHeaders().getFirst("X-RateLimit-Key"));
+		assertEquals("search", global.getResponse().getHeaders().getFirst("X-RateLimit-Policy"));
+	}
+	
+	@Test
+	void heldRequestIsAdmittedOnceAPermitIsDue() {
+		RateLimiterWebFilter filter = new RateLimiterWebFilter(limiters, metrics, policies(), new PermitWaiter(1_000, 10), shaping, KeyResolver.DEFAULTS, HeavyHitterPrefilter.DISABLED);
+		
+		call(filter, "/limiter/api/data", "e");
+		MockServerWebExchange held = call(filter, "/limiter/api/data", "e");
+		assertNull(held.getResponse().getStatusCode());
+		assertNotNull(held.getResponse().getHeaders().getFirst("X-RateLimit-Waited-Ms"));
+		assertEquals(2, passed.get());
+	}
+	
+	@Test
+	void waitLongerThanTheBudgetIsRejectedAtOnce() {
+		List<RateLimiter> slow = List.of(new FixedSizeRateLimiterService(1, 60_000, StateStoreSettings.DEFAULTS));
+		RateLimiterWebFilter filter = new RateLimiterWebFilter(slow, new LimiterMetrics(new SimpleMeterRegistry(), slow, 5, 1),
+				policies(), new PermitWaiter(1_000, 10), shaping, KeyResolver.DEFAULTS, HeavyHitterPrefilter.DISABLED);
+		
+		call(filter, "/limiter/api/data", "f");
+		MockServerWebExchange blocked = call(filter, "/limiter/api/data", "f");
+		assertEquals(HttpStatus.TOO_MANY_REQUESTS, blocked.getResponse().getStatusCode());
+		assertNull(blocked.getResponse().getHeaders().getFirst("X-RateLimit-Waited-Ms"));
+	}
+	
+	@Test
+	void shapedRequestGoesOnAfterItsDelay() {
+		List<RateLimiter> shaper = List.of(new LeakyBucketRateLimiterService(2, 20, 1_000, StateStoreSettings.DEFAULTS));
+		RateLimiterWebFilter filter = new RateLimiterWebFilter(shaper, new LimiterMetrics(new SimpleMeterRegistry(), shaper, 5, 1),
+				policies(), new PermitWaiter(0, 0), shaping, KeyResolver.DEFAULTS, HeavyHitterPrefilter.DISABLED);
+		
+		call(filter, "/limiter/api/data", "LEAKY_BUCKET", "g");
+		long started = System.nanoTime();
+		MockServerWebExchange delayed = call(filter, "/limiter/api/data", "LEAKY_BUCKET", "g");
+		assertNull(delayed.getResponse().getStatusCode());
+		long delay = Long.parseLong(delayed.getResponse().getHeaders().getFirst("X-RateLimit-Delay-Ms"));
+		assertTrue(delay > 0 && delay <= 50);
+		assertTrue(System.nanoTime() - started >= delay * 1_000_000L);
+		assertEquals(2, passed.get());
+	}
+	
+	@Test
+	void delayedRequestWithoutRoomToWaitIsRefunded() {
+		List<RateLimiter> shaper = List.of(new LeakyBucketRateLimiterService(3, 5, 1_000, StateStoreSettings.DEFAULTS));
+		RateLimiterWebFilter filter = new RateLimiterWebFilter(shaper, new LimiterMetrics(new SimpleMeterRegistry(), shaper, 5, 1),
+				policies(), new PermitWaiter(0, 0), new ShapingQueue(0, 2_000, new SimpleMeterRegistry()), 
+				KeyResolver.DEFAULTS, HeavyHitterPrefilter.DISABLED);
+		
+		call(filter, "/limiter/api/data", "LEAKY_BUCKET", "h");
+		MockServerWebExchange full = call(filter, "/limiter/api/data", "LEAKY_BUCKET", "h");
+		assertEquals(HttpStatus.TOO_MANY_REQUESTS, full.getResponse().getStatusCode());
+		long delay = Long.parseLong(full.getResponse().getHeaders().getFirst("X-RateLimit-RetryAfter-Ms"));
+		assertTrue(delay > 150 && delay <= 200);
+		// the retry waits behind the one admitted request only
+		MockServerWebExchange retry = call(filter, "/limiter/api/data", "LEAKY_BUCKET", "h");
+		long retryDelay = Long.parseLong(retry.getResponse().getHeaders().getFirst("X-RateLimit-RetryAfter-Ms"));
+		assertTrue(retryDelay > 150 && retryDelay <= delay);
+		assertEquals(1, passed.get());
+	}
+	
+	private MockServerWebExchange call(RateLimiterWebFilter filter, String path, String user) {
+		return call(filter, path, "FIXED_WINDOW", user);
+	}
+	
+	private MockServerWebExchange call(RateLimiterWebFilter filter, String path, String algorithm, String user) {
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get(path)
+				.header("X-RateLimit-Alg", algorithm)
+				.header("X-User-Id", user));
+		filter.filter(exchange, chain).block(Duration.ofSeconds(2));
+		return exchange;
+	}
+	
+	private static PolicyEngine policies(Rule... rules) {
+		RateLimiterFactory factory = new RateLimiterFactory("local", StateStoreSettings.DEFAULTS, AdaptiveLimitSettings.DEFAULTS, null, null, null, 10, 100, 50, 2_000);
+		return new PolicyEngine(new PolicyProperties(true, RateLimiterAlgorithm.TOKEN_BUCKET, "X-Tenant-Tier", "X-Tenant-Id",
+				List.of(rules)), factory);
+	}
+}
@@ -0,0 +1,110 @@
+package com.project.rate_limiter.load;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.load.TrafficModel.Arrivals;
+import com.project.rate_limiter.load.TrafficModel.Keys;
+import com.project.rate_limiter.service.FixedSizeRateLimiterService;
+import com.project.rate_limiter.service.TokenBucketRateLimiterService;
+import com.project.rate_limiter.store.StateStoreSettings;
+
+class LoadHarnessTest {
+	
+	private static final long START = 1_700_000_000_000L;
+	
+	@Test
+	void modelsGenerateTheSameTrafficForTheSameSeedAtTheirMeanRate() {
+		for(Arrivals arrivals : Arrivals.values()) {
+			TrafficModel model = new TrafficModel(arrivals, 1_000, 20, Keys.ZIPFIAN, 1_000, 0, 60_000, 7);
+			List<TrafficEvent> events = model.generate(START);
+			
+			assertEquals(events, model.generate(START));
+			assertEquals(60_000, events.size(), 60_000 * 0.05, arrivals.name());
+			assertTrue(events.get(events.size() - 1).timeMs() < START + 60_000);
+		}
+	}
+	
+	@Test
+	void tokenBucketAdmitsExactlyTheConfiguredRateUnderOverload() {
+		// 100 keys, each offered about 50 requests/s against a limit of 10 + 5/s
+		TrafficModel model = new TrafficModel(Arrivals.POISSON, 5_000, 1, Keys.UNIFORM, 100, 0, 20_000, 1);
+		LoadReport report = LoadHarness.run(new TokenBucketRateLimiterService(10, 5, StateStoreSettings.DEFAULTS),
+				model.generate(START), 1, ExpectedLimit.of(RateLimiterAlgorithm.TOKEN_BUCKET, 10, 2_000, 5));
+		
+		assertEquals(report.requests(), report.admitted() + report.blocked());
+		assertEquals(100, report.keys());
+		assertEquals(0, report.overAdmittedKeys());
+		assertEquals(1.0, report.admitAccuracy(), 0.01);
+		assertEquals(report.requests(), report.latency().count());
+	}
+	
+	@Test
+	void replayShowsTheFixedWindowDoubleDip() throws IOException {
+		StringBuilder log = new StringBuilder("# one request opens the window, then bursts either side of its end\n");
+		log.append(START).append(",u\n");
+		for(int i=0; i<5; i++) {
+			log.append(START + 1_001).append(",u\n");
+			log.append(START + 999).append(",u\n");
+		}
+		List<TrafficEvent> events = TrafficLogs.parse(log.toString());
+		assertEquals(11, events.size());
+		assertEquals(START + 999, events.get(1).timeMs());
+		ExpectedLimit expected = ExpectedLimit.of(RateLimiterAlgorithm.FIXED_WINDOW, 5, 1_000, 0);
+		
+		LoadReport fixed = LoadHarness.run(new FixedSizeRateLimiterService(5, 1_000, StateStoreSettings.DEFAULTS),
+				events, 1, expected);
+		// 1 + 4 before the reset and 5 after: 9 within 2 ms, where the limit allows about 5
+		assertEquals(10, fixed.admitted());
+		assertEquals(1, fixed.overAdmittedKeys());
+		assertEquals(4, fixed.overAdmittedPermits());
+		
+		LoadReport bucket = LoadHarness.run(new TokenBucketRateLimiterService(5, 5, StateStoreSettings.DEFAULTS),
+				events, 1, expected);
+		assertEquals(6, bucket.admitted());
+		assertEquals(0, bucket.overAdmittedPermits());
+		
+		StringBuilder written = new StringBuilder();
+		TrafficLogs.write(events, written);
+		assertEquals(events, TrafficLogs.parse(written.toString()));
+		assertThrows(IllegalArgumentException.class, () -> TrafficLogs.parse("123\n"));
+	}
+	
+	@Test
+	void threadsShareTheLogAndStayCloseToTheLimit() {
+		TrafficModel model = new TrafficModel(Arrivals.BURSTY, 20_000, 50, Keys.ZIPFIAN, 500, 1.1, 5_000, 3);
+		List<TrafficEvent> events = model.generate(START);
+		ExpectedLimit expected = ExpectedLimit.of(RateLimiterAlgorithm.TOKEN_BUCKET, 20, 1_000, 10);
+		
+		LoadReport single = LoadHarness.run(new TokenBucketRateLimiterService(20, 10, StateStoreSettings.DEFAULTS),
+				events, 1, expected);
+		LoadReport parallel = LoadHarness.run(new TokenBucketRateLimiterService(20, 10, StateStoreSettings.DEFAULTS),
+				events, 4, expected);
+		
+		assertEquals(4, parallel.threads());
+		assertEquals(single.requests(), parallel.requests());
+		assertEquals(single.admitted(), parallel.admitted(), single.admitted() * 0.01);
+		assertEquals(0, single.overAdmittedPermits());
+		// requests decided a few ms out of order may take a token slightly early, never many
+		assertTrue(parallel.overAdmittedPermits() <= parallel.admitted() / 100, parallel.toString());
+	}
+	
+	@Test
+	void histogramPercentilesAreWithinOneBucket() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for(long nanos=1; nanos<=100_000; nanos++) {
+			histogram.record(nanos);
+		}
+		assertEquals(50_000, histogram.percentile(0.5), 50_000 * 0.07);
+		assertEquals(99_000, histogram.percentile(0.99), 99_000 * 0.07);
+		assertEquals(100_000, histogram.summary().maxNs());
+		assertEquals(100_000, new LatencyHistogram().merge(histogram).count());
+	}
+}
@@ -0,0 +1,55 @@
+package com.project.rate_limiter.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class CountMinSketchTest {
+	
+	@Test
+	void estimatesNeverUndercountAndRarelyOvercountOneOffKeys() {
+		// 1 MiB for 200,000 keys: about three keys per counter
+		CountMinSketch sketch = CountMinSketch.ofBytes(1024 * 1024, 4, Long.MAX_VALUE / 2, 0);
+		for(int i=0; i<1_000; i++) {
+			sketch.add("hot", 1, 0);
+		}
+		for(int k=0; k<200_000; k++) {
+			sketch.add("tail-" + k, 1, 0);
+		}
+		
+		assertTrue(sketch.estimate("hot") >= 1_000);
+		assertTrue(sketch.estimate("hot") <= 1_000 + sketch.errorBound());
+		int overThree = 0;
+		for(int k=0; k<200_000; k++) {
+			int estimate = sketch.estimate("tail-" + k);
+			assertTrue(estimate >= 1);
+			overThree += estimate > 3 ? 1 : 0;
+		}
+		assertTrue(overThree < 2_000, overThree + " one-off keys estimated over 3");
+		assertEquals(201_000, sketch.total());
+	}
+	
+	@Test
+	void countsHalveEveryHalfLife() {
+		CountMinSketch sketch = new CountMinSketch(4, 1 << 10, 1_000, 0);
+		assertEquals(100, sketch.add("k", 100, 0));
+		
+		assertEquals(51, sketch.add("k", 1, 1_000));
+		// three half-lives later, from 51: 51 >> 3 = 6
+		assertEquals(7, sketch.add("k", 1, 4_500));
+		assertEquals(7, sketch.total());
+	}
+	
+	@Test
+	void blocksAreHalvedWhenNextTouchedAndReadAsHalvedMeanwhile() {
+		CountMinSketch sketch = new CountMinSketch(4, 1 << 16, 1_000, 0);
+		sketch.add("idle", 100, 0);
+		
+		// another key starts the next half-life without touching the idle key's blocks
+		sketch.add("busy", 1, 1_000);
+		assertEquals(50, sketch.estimate("idle"));
+		assertEquals(51, sketch.add("idle", 1, 1_500));
+		assertEquals(25, sketch.add("busy", 24, 1_500));
+	}
+}
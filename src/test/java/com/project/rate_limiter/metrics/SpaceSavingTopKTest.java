@@ -0,0 +1,50 @@
+package com.project.rate_limiter.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import com.project.rate_limiter.metrics.SpaceSavingTopK.HeavyHitter;
+
+class SpaceSavingTopKTest {
+	
+	@Test
+	void heavyKeysSurviveALongTailOfDistinctKeys() {
+		SpaceSavingTopK topK = new SpaceSavingTopK(16);
+		SplittableRandom random = new SplittableRandom(7);
+		
+		for(int i=0; i<100_000; i++) {
+			if(i % 10 == 0) {
+				topK.offer("hot-a");
+			} else if(i % 10 == 1) {
+				topK.offer("hot-b");
+			} else {
+				topK.offer("tail-" + random.nextInt(50_000));
+			}
+		}
+		
+		List<HeavyHitter> top = topK.top(2);
+		assertEquals(List.of("hot-a", "hot-b"), top.stream().map(HeavyHitter::key).sorted().toList());
+		for(HeavyHitter hitter : top) {
+			// estimates never undercount and overcount by at most the recorded error
+			assertTrue(hitter.count() >= 10_000);
+			assertTrue(hitter.count() - hitter.error() <= 10_000);
+		}
+		assertEquals(100_000, topK.total());
+	}
+	
+	@Test
+	void tracksAtMostCapacityKeys() {
+		SpaceSavingTopK topK = new SpaceSavingTopK(4);
+		for(int i=0; i<100; i++) {
+			topK.offer("k" + i, i);
+		}
+		
+		assertEquals(4, topK.top(10).size());
+		assertEquals("k99", topK.top(1).get(0).key());
+	}
+}
@@ -0,0 +1,120 @@
+package com.project.rate_limiter.policy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.policy.PolicyProperties.KeySource;
+import com.project.rate_limiter.policy.PolicyProperties.Limit;
+import com.project.rate_limiter.policy.PolicyProperties.Rule;
+import com.project.rate_limiter.service.AdaptiveLimitSettings;
+import com.project.rate_limiter.service.RateLimiterFactory;
+import com.project.rate_limiter.store.StateStoreSettings;
+
+class PolicyEngineTest {
+	
+	private static final List<Limit> LIMITS = List.of(new Limit(RateLimiterAlgorithm.FIXED_WINDOW, 10, Duration.ofSeconds(1), null, null));
+	
+	static PolicyEngine engine(Rule... rules) {
+		RateLimiterFactory factory = new RateLimiterFactory("local", StateStoreSettings.DEFAULTS, AdaptiveLimitSettings.DEFAULTS, null, null, null, 10, 100, 50, 2_000);
+		return new PolicyEngine(new PolicyProperties(true, RateLimiterAlgorithm.TOKEN_BUCKET, "X-Tenant-Tier", "X-Tenant-Id", 
+				List.of(rules)), factory);
+	}
+	
+	static Rule rule(String name, String path, List<String> methods, String tier, Map<String, String> headers) {
+		return new Rule(name, path, methods, tier, headers, KeySource.USER, null, LIMITS);
+	}
+	
+	@Test
+	void literalSegmentsBeatWildcardsRegardlessOfDeclarationOrder() {
+		PolicyEngine engine = engine(
+				rule("catch-all", "/**", List.of(), null, Map.of()),
+				rule("any-order", "/api/orders/*", List.of(), null, Map.of()),
+				rule("export", "/api/orders/export", List.of(), null, Map.of()));
+		
+		assertEquals("export", match(engine, "GET", "/api/orders/export").name());
+		assertEquals("any-order", match(engine, "GET", "/api/orders/42").name());
+		assertEquals("catch-all", match(engine, "GET", "/api/orders/42/items").name());
+		assertEquals("catch-all", match(engine, "GET", "/").name());
+	}
+	
+	@Test
+	void backtracksToWildcardWhenLiteralBranchHasNoMatch() {
+		PolicyEngine engine = engine(
+				rule("reports", "/api/reports/daily", List.of(), null, Map.of()),
+				rule("api-items", "/api/*/items", List.of(), null, Map.of()));
+		
+		assertEquals("api-items", match(engine, "GET", "/api/reports/items").name());
+		assertNull(match(engine, "GET", "/api/reports/weekly"));
+	}
+	
+	@Test
+	void methodTierAndHeadersNarrowARule() {
+		PolicyEngine engine = engine(
+				rule("free-writes", "/api/**", List.of("post", "PUT"), "free", Map.of()),
+				rule("v2", "/api/**", List.of(), null, Map.of("X-Api-Version", "2")),
+				rule("api", "/api/**", List.of(), null, Map.of()));
+		
+		MockHttpServletRequest freePost = request("POST", "/api/orders");
+		freePost.addHeader("X-Tenant-Tier", "FREE");
+		assertEquals("free-writes", engine.match(freePost).name());
+		
+		MockHttpServletRequest paidPost = request("POST", "/api/orders");
+		paidPost.addHeader("X-Tenant-Tier", "pro");
+		assertEquals("api", engine.match(paidPost).name());
+		
+		MockHttpServletRequest v2 = request("GET", "/api/orders");
+		v2.addHeader("X-Api-Version", "2");
+		assertEquals("v2", engine.match(v2).name());
+	}
+	
+	@Test
+	void doubleWildcardOnlyAllowedAtTheEnd() {
+		assertThrows(IllegalArgumentException.class, () -> engine(rule("bad", "/api/**/items", List.of(), null, Map.of())));
+	}
+	
+	@Test
+	void bindsRulesFromProperties() {
+		Map<String, String> source = Map.of(
+				"rate.policy.rules[0].name", "search",
+				"rate.policy.rules[0].path", "/limiter/api/search/**",
+				"rate.policy.rules[0].methods", "GET,HEAD",
+				"rate.policy.rules[0].headers[X-Api-Version]", "2",
+				"rate.policy.rules[0].limits[0].count", "10",
+				"rate.policy.rules[0].limits[0].period", "1s",
+				"rate.policy.rules[0].limits[1].algorithm", "sliding_window_counter",
+				"rate.policy.rules[0].limits[1].count", "1000",
+				"rate.policy.rules[0].limits[1].period", "1h");
+		PolicyProperties properties = new Binder(new MapConfigurationPropertySource(source))
+				.bind("rate.policy", PolicyProperties.class).get();
+		
+		// clients only pick the algorithm where that is switched on
+		assertFalse(properties.clientAlgorithm());
+		assertEquals("X-Tenant-Tier", properties.tierHeader());
+		Rule rule = properties.rules().get(0);
+		assertEquals(KeySource.USER, rule.key());
+		assertEquals(Map.of("X-Api-Version", "2"), rule.headers());
+		assertEquals(RateLimiterAlgorithm.TOKEN_BUCKET, rule.limits().get(0).algorithm());
+		assertEquals(RateLimiterAlgorithm.SLIDING_WINDOW_COUNTER, rule.limits().get(1).algorithm());
+		assertEquals(Duration.ofHours(1), rule.limits().get(1).period());
+	}
+	
+	private static CompiledPolicy match(PolicyEngine engine, String method, String path) {
+		return engine.match(request(method, path));
+	}
+	
+	private static MockHttpServletRequest request(String method, String path) {
+		return new MockHttpServletRequest(method, path);
+	}
+}
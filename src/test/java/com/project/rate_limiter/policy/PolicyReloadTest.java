@@ -0,0 +1,125 @@
+package com.project.rate_limiter.policy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.policy.PolicyProperties.KeySource;
+import com.project.rate_limiter.policy.PolicyProperties.Limit;
+import com.project.rate_limiter.policy.PolicyProperties.Rule;
+import com.project.rate_limiter.service.RateLimiter;
+
+class PolicyReloadTest {
+	
+	private static final long NOW = 1_700_000_000_000L;
+	
+	@Test
+	void changedLimitInheritsUsageScaledToTheNewLimit() {
+		PolicyEngine engine = PolicyEngineTest.engine(rule(RateLimiterAlgorithm.FIXED_WINDOW, 4));
+		RateLimiter before = limiter(engine);
+		before.decision("u", NOW);
+		before.decision("u", NOW);
+		
+		engine.reload(properties(rule(RateLimiterAlgorithm.FIXED_WINDOW, 8)));
+		
+		RateLimiter after = limiter(engine);
+		assertNotSame(before, after);
+		// half of 4 used before the reload is half of 8 after it
+		assertEquals(3, after.decision("u", NOW + 1).remaining());
+		assertEquals(7, after.decision("fresh", NOW + 1).remaining());
+		assertEquals(2, engine.version());
+	}
+	
+	@Test
+	void unchangedLimitKeepsItsLimiter() {
+		PolicyEngine engine = PolicyEngineTest.engine(rule(RateLimiterAlgorithm.SLIDING_WINDOW, 4));
+		RateLimiter before = limiter(engine);
+		
+		engine.reload(properties(rule(RateLimiterAlgorithm.SLIDING_WINDOW, 4)));
+		
+		assertSame(before, limiter(engine));
+	}
+	
+	@Test
+	void invalidReloadLeavesCurrentRulesInForce() {
+		PolicyEngine engine = PolicyEngineTest.engine(rule(RateLimiterAlgorithm.FIXED_WINDOW, 4));
+		RateLimiter before = limiter(engine);
+		
+		Rule broken = new Rule("api", "/api/**", List.of(), null, Map.of(), KeySource.USER, null, List.of());
+		assertThrows(IllegalArgumentException.class, () -> engine.reload(properties(broken)));
+		
+		assertEquals(1, engine.version());
+		assertSame(before, limiter(engine));
+	}
+	
+	@Test
+	void reloaderReadsThePolicyFile(@TempDir Path dir) throws Exception {
+		Path file = dir.resolve("policies.yml");
+		Files.writeString(file, yaml(5));
+		PolicyEngine engine = PolicyEngineTest.engine();
+		PolicyReloader reloader = new PolicyReloader(engine, file.toString(), false, 0);
+		
+		assertEquals(5, engine.policies().get(0).limits()[0].count());
+		
+		Files.writeString(file, yaml(9));
+		assertEquals(3, reloader.reloadFromFile());
+		assertEquals(9, reloader.status().policies().get(0).limits().get(0).count());
+		
+		Files.writeString(file, "rate.policy.rules[0].path: /a/**/b\n");
+		assertThrows(IllegalArgumentException.class, reloader::reloadFromFile);
+		assertNotNull(reloader.lastError());
+		assertEquals(3, engine.version());
+		assertFalse(engine.policies().isEmpty());
+	}
+	
+	@Test
+	void reloaderWithoutFileOnlyTakesUploads() throws Exception {
+		PolicyEngine engine = PolicyEngineTest.engine();
+		PolicyReloader reloader = new PolicyReloader(engine, "", true, 0);
+		
+		assertEquals(-1, reloader.reloadFromFile());
+		assertEquals(2, reloader.reloadFromYaml(yaml(3)));
+		assertTrue(engine.policies().get(0).limits()[0].limiter().decision("u", NOW).isAllowed());
+	}
+	
+	private static Rule rule(RateLimiterAlgorithm algorithm, int count) {
+		return new Rule("api", "/api/**", List.of(), null, Map.of(), KeySource.USER, null,
+				List.of(new Limit(algorithm, count, Duration.ofMinutes(1), null, null)));
+	}
+	
+	private static PolicyProperties properties(Rule... rules) {
+		return new PolicyProperties(true, RateLimiterAlgorithm.TOKEN_BUCKET, "X-Tenant-Tier", "X-Tenant-Id", List.of(rules));
+	}
+	
+	private static RateLimiter limiter(PolicyEngine engine) {
+		return engine.policies().get(0).limits()[0].limiter();
+	}
+	
+	private static String yaml(int count) {
+		return """
+				rate:
+				  policy:
+				    rules:
+				      - name: api
+				        path: /api/**
+				        limits:
+				          - algorithm: FIXED_WINDOW
+				            count: %d
+				            period: 1m
+				""".formatted(count);
+	}
+}
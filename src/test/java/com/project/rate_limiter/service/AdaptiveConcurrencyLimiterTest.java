@@ -0,0 +1,115 @@
+package com.project.rate_limiter.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.project.rate_limiter.entity.RateLimiterDecision;
+
+class AdaptiveConcurrencyLimiterTest {
+	
+	private static final long MS = 1_000_000L;
+	
+	private final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test",
+			new AdaptiveLimitSettings(10, 2, 100, 0.2, 1.5, 10, 600));
+	
+	@Test
+	void admitsUpToTheLimitInFlightWhateverTheKey() {
+		for(int i=0; i<10; i++) {
+			assertTrue(limiter.decision("user-" + i, 0).isAllowed());
+		}
+		RateLimiterDecision blocked = limiter.decision("someone-else", 0);
+		assertFalse(blocked.isAllowed());
+		assertTrue(blocked.retryAfterMs() >= 1);
+		
+		// a refund frees the slot without a latency sample
+		limiter.refund("user-0", 0, 1);
+		assertEquals(0, limiter.shortRttNanos());
+		assertTrue(limiter.decision("someone-else", 0).isAllowed());
+	}
+	
+	@Test
+	void limitGrowsToTheMaximumWhileLatencyHoldsSteady() {
+		for(int round=0; round<100; round++) {
+			serveRound(10 * MS);
+		}
+		assertEquals(100, limiter.limit());
+		assertEquals(10 * MS, limiter.longRttNanos(), MS / 100);
+	}
+	
+	@Test
+	void limitShrinksWhenLatencyRisesAndOnOverload() {
+		for(int round=0; round<100; round++) {
+			serveRound(10 * MS);
+		}
+		for(int round=0; round<3; round++) {
+			serveRound(100 * MS);
+		}
+		int congested = limiter.limit();
+		assertTrue(congested < 50, "limit " + congested);
+		
+		assertTrue(limiter.decision("k", 0).isAllowed());
+		limiter.release("k", 1 * MS, true);
+		assertEquals((int) (congested * 0.9), limiter.limit(), 1);
+	}
+	
+	@Test
+	void everyOverloadCutsTheLimitEvenWhenTheyRace() throws Exception {
+		for(int round=0; round<100; round++) {
+			serveRound(10 * MS);
+		}
+		for(int i=0; i<20; i++) {
+			assertTrue(limiter.decision("k", 0).isAllowed());
+		}
+		Thread[] threads = new Thread[4];
+		for(int t=0; t<threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for(int i=0; i<5; i++) {
+					limiter.release("k", 1 * MS, true);
+				}
+			});
+			threads[t].start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals((int) (100 * Math.pow(0.9, 20)), limiter.limit());
+	}
+	
+	@Test
+	void anIdleLimitDoesNotGrow() {
+		for(int i=0; i<1_000; i++) {
+			assertTrue(limiter.decision("k", 0).isAllowed());
+			limiter.release("k", 10 * MS, false);
+		}
+		assertEquals(10, limiter.limit());
+	}
+	
+	@Test
+	void reconfiguredLimitKeepsTheRequestsInFlight() {
+		for(int i=0; i<10; i++) {
+			limiter.decision("k", 0);
+		}
+		RateLimiter smaller = limiter.withLimits(5, 1_000, 0);
+		assertFalse(smaller.decision("k", 0).isAllowed());
+		
+		// requests admitted by the old instance free their slots in the new one
+		for(int i=0; i<6; i++) {
+			limiter.release("k", 10 * MS, false);
+		}
+		assertTrue(smaller.decision("k", 0).isAllowed());
+	}
+	
+	/** Fills the limit, then completes every request with the same latency. */
+	private void serveRound(long latencyNanos) {
+		int admitted = 0;
+		while(limiter.decision("k", 0).isAllowed()) {
+			admitted++;
+		}
+		for(int i=0; i<admitted; i++) {
+			limiter.release("k", latencyNanos, false);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.project.rate_limiter.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.project.rate_limiter.entity.MutableDecision;
+import com.project.rate_limiter.store.StateStoreSettings;
+
+class CompositeRateLimiterTest {
+	
+	private static final long START = 1_700_000_000_000L;
+	
+	private final MutableDecision decision = new MutableDecision();
+	private final MutableDecision scratch = new MutableDecision();
+	
+	@Test
+	void blockedLevelLeavesTheOthersUncharged() {
+		FixedSizeRateLimiterService user = new FixedSizeRateLimiterService(2, 1_000, StateStoreSettings.DEFAULTS);
+		TokenBucketRateLimiterService global = new TokenBucketRateLimiterService(3, 0.01, StateStoreSettings.DEFAULTS);
+		CompositeRateLimiter composite = new CompositeRateLimiter(new RateLimiter[] {user, global}, null);
+		
+		assertTrue(decide(composite, "a", START).isAllowed());
+		assertTrue(decide(composite, "a", START).isAllowed());
+		assertEquals(0, composite.decision(new String[] {"a", "*"}, START, 1, decision, scratch));
+		assertFalse(decision.isAllowed());
+		
+		// a's third request was refunded at the global level, which still admits one more
+		assertEquals(1, composite.decision(new String[] {"b", "*"}, START, 1, decision, scratch));
+		assertTrue(decision.isAllowed());
+		assertEquals(0, decision.remaining());
+		assertEquals(1, composite.decision(new String[] {"c", "*"}, START, 1, decision, scratch));
+		assertFalse(decision.isAllowed());
+		// and c was not left charged at the user level
+		assertEquals(1, user.decision("c", START).remaining());
+	}
+	
+	@Test
+	void longestWaitIsReportedWhenSeveralLevelsBlock() {
+		FixedSizeRateLimiterService perSecond = new FixedSizeRateLimiterService(1, 1_000, StateStoreSettings.DEFAULTS);
+		SlidingWindowRateLimiterService perMinute = new SlidingWindowRateLimiterService(1, 60_000, StateStoreSettings.DEFAULTS);
+		CompositeRateLimiter composite = new CompositeRateLimiter(new RateLimiter[] {perSecond, perMinute}, null);
+		
+		composite.decision(new String[] {"a", "a"}, START, 1, decision, scratch);
+		assertTrue(decision.isAllowed());
+		assertEquals(1, composite.decision(new String[] {"a", "a"}, START + 10, 1, decision, scratch));
+		assertFalse(decision.isAllowed());
+		assertEquals(59_990, decision.retryAfterMs());
+	}
+	
+	@Test
+	void everyLocalAlgorithmGivesBackARefundedRequest() {
+		RateLimiter[] limiters = {
+				new TokenBucketRateLimiterService(1, 0.01, StateStoreSettings.DEFAULTS),
+				new FixedSizeRateLimiterService(1, 1_000, StateStoreSettings.DEFAULTS),
+				new SlidingWindowRateLimiterService(1, 1_000, StateStoreSettings.DEFAULTS),
+				new SlidingWindowCounterRateLimiterService(1, 1_000, 10, StateStoreSettings.DEFAULTS),
+				new SlidingWindowRingRateLimiterService(1, 1_000, 10, StateStoreSettings.DEFAULTS),
+				new LeakyBucketRateLimiterService(1, 0.01, 1_000, StateStoreSettings.DEFAULTS),
+				new GcraRateLimiterService(1, 1_000, StateStoreSettings.DEFAULTS)
+		};
+		for(RateLimiter limiter : limiters) {
+			assertTrue(limiter.decision("u", START).isAllowed(), limiter.algorithm().name());
+			limiter.refund("u", START, 1);
+			assertTrue(limiter.decision("u", START).isAllowed(), limiter.algorithm().name());
+			assertFalse(limiter.decision("u", START).isAllowed(), limiter.algorithm().name());
+		}
+	}
+	
+	@Test
+	void admittedRequestCarriesTheShapingDelayAndABlockGivesItBack() {
+		LeakyBucketRateLimiterService user = new LeakyBucketRateLimiterService(5, 10, 1_000, StateStoreSettings.DEFAULTS);
+		FixedSizeRateLimiterService global = new FixedSizeRateLimiterService(2, 1_000, StateStoreSettings.DEFAULTS);
+		CompositeRateLimiter composite = new CompositeRateLimiter(new RateLimiter[] {user, global}, null);
+		
+		assertEquals(0, decide(composite, "a", START).delayMs());
+		MutableDecision second = decide(composite, "a", START);
+		assertTrue(second.isAllowed());
+		assertEquals(100, second.delayMs());
+		
+		assertEquals(1, composite.decision(new String[] {"a", "*"}, START, 1, decision, scratch));
+		assertFalse(decision.isAllowed());
+		assertEquals(0, decision.delayMs());
+		// the blocked request's place in the queue was given back
+		assertEquals(200, user.decision("a", START).delayMs());
+	}
+	
+	private MutableDecision decide(CompositeRateLimiter composite, String user, long now) {
+		composite.decision(new String[] {user, "*"}, now, 1, decision, scratch);
+		return decision;
+	}
+}
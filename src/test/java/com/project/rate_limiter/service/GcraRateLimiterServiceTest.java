@@ -0,0 +1,61 @@
+package com.project.rate_limiter.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.project.rate_limiter.entity.RateLimiterDecision;
+import com.project.rate_limiter.store.StateStoreSettings;
+
+class GcraRateLimiterServiceTest {
+	
+	private static final long START = 1_700_000_000_000L;
+	
+	@Test
+	void burstOfTheLimitThenOneRequestPerInterval() {
+		GcraRateLimiterService service = new GcraRateLimiterService(4, 1_000, StateStoreSettings.DEFAULTS);
+		
+		for(int i=0; i<4; i++) {
+			RateLimiterDecision decision = service.decision("u", START);
+			assertTrue(decision.isAllowed());
+			assertEquals(3 - i, decision.remaining());
+		}
+		RateLimiterDecision blocked = service.decision("u", START);
+		assertFalse(blocked.isAllowed());
+		assertEquals(250, blocked.retryAfterMs());
+		assertFalse(service.decision("u", START + 249).isAllowed());
+		
+		RateLimiterDecision next = service.decision("u", START + 250);
+		assertTrue(next.isAllowed());
+		assertEquals(0, next.remaining());
+		// a full period of quiet restores the whole burst
+		assertEquals(1_000, next.timeToFullMs());
+		assertEquals(3, service.decision("u", START + 1_250).remaining());
+	}
+	
+	@Test
+	void steadyTrafficAtTheRateIsNeverRejected() {
+		GcraRateLimiterService service = new GcraRateLimiterService(10, 1_000, StateStoreSettings.DEFAULTS);
+		
+		int allowed = 0;
+		for(long t=0; t<10_000; t+=100) {
+			if(service.decision("u", START + t).isAllowed()) { allowed++; }
+		}
+		assertEquals(100, allowed);
+	}
+	
+	@Test
+	void neverAdmitsMoreThanTheLimitInAnyPeriod() {
+		GcraRateLimiterService service = new GcraRateLimiterService(3, 1_000, StateStoreSettings.DEFAULTS);
+		
+		// polled every ms for 10 s: the burst of 3, then one per 1000 / 3 ms rounded up
+		int allowed = 0;
+		for(long t=0; t<10_000; t++) {
+			if(service.decision("u", START + t).isAllowed()) { allowed++; }
+		}
+		assertTrue(allowed <= 3 + 30, String.valueOf(allowed));
+		assertTrue(allowed >= 3 + 29, String.valueOf(allowed));
+	}
+}
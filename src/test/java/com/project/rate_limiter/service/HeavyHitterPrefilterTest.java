@@ -0,0 +1,73 @@
+package com.project.rate_limiter.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.project.rate_limiter.entity.RateLimiterDecision;
+import com.project.rate_limiter.metrics.SpaceSavingTopK.HeavyHitter;
+import com.project.rate_limiter.store.StateStoreSettings;
+
+class HeavyHitterPrefilterTest {
+	
+	private final HeavyHitterPrefilter prefilter = new HeavyHitterPrefilter(true, 256, 4, 60_000, 3, 10, 5);
+	
+	private final RateLimiter exact = new FixedSizeRateLimiterService(5, 60_000, StateStoreSettings.DEFAULTS);
+	
+	private final RateLimiter limiter = prefilter.wrap(exact);
+	
+	@Test
+	void oneOffKeysAreAdmittedWithoutExactState() {
+		long now = System.currentTimeMillis();
+		for(int k=0; k<10_000; k++) {
+			assertTrue(limiter.decision("client-" + k, now).isAllowed());
+		}
+		// only the few keys the sketch overestimates reached the exact limiter
+		assertTrue(exact.storeStats().size() < 100, exact.storeStats().size() + " keys in the exact limiter");
+		assertTrue(prefilter.stats().passed() > 9_900);
+		assertEquals(List.of(), prefilter.heavyHitters(10));
+	}
+	
+	@Test
+	void aKeyOverTheThresholdIsLimitedExactlyAndListed() {
+		long now = System.currentTimeMillis();
+		int admitted = 0;
+		for(int i=0; i<20; i++) {
+			admitted += limiter.decision("abuser", now).isAllowed() ? 1 : 0;
+		}
+		// three requests under the threshold, then the exact limit of five
+		assertEquals(3 + 5, admitted);
+		assertTrue(exact.hasState("abuser"));
+		
+		List<HeavyHitter> heavy = prefilter.heavyHitters(10);
+		assertEquals("abuser", heavy.get(0).key());
+		assertTrue(heavy.get(0).count() >= 20);
+		
+		// a known key stays exact even after its count has decayed under the threshold
+		long checked = prefilter.stats().checked();
+		limiter.decision("abuser", now + 600_000);
+		assertEquals(checked + 1, prefilter.stats().checked());
+	}
+	
+	@Test
+	void passedRequestsReportTheConfiguredLimitAndAreNotRefunded() {
+		long now = System.currentTimeMillis();
+		RateLimiterDecision decision = limiter.decision("newcomer", now);
+		
+		// what the exact limit of five leaves a fresh key, not the prefilter's headroom of two
+		assertEquals(4, decision.remaining());
+		limiter.refund("newcomer", now, 1);
+		assertFalse(exact.hasState("newcomer"));
+	}
+	
+	@Test
+	void disabledPrefilterLeavesLimitersAlone() {
+		assertSame(exact, HeavyHitterPrefilter.DISABLED.wrap(exact));
+		assertFalse(HeavyHitterPrefilter.DISABLED.stats().enabled());
+	}
+}
@@ -0,0 +1,61 @@
+package com.project.rate_limiter.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.project.rate_limiter.entity.RateLimiterDecision;
+import com.project.rate_limiter.store.StateStoreSettings;
+
+class LeakyBucketRateLimiterServiceTest {
+	
+	private static final long START = 1_700_000_000_000L;
+	
+	@Test
+	void burstIsSpacedOutToTheLeakRateInsteadOfRejected() {
+		LeakyBucketRateLimiterService service = new LeakyBucketRateLimiterService(4, 10, 10_000, StateStoreSettings.DEFAULTS);
+		
+		for(int i=0; i<4; i++) {
+			RateLimiterDecision decision = service.decision("u", START);
+			assertTrue(decision.isAllowed());
+			assertEquals(i * 100L, decision.delayMs());
+			assertEquals(3 - i, decision.remaining());
+		}
+		// the bucket is full: the next request fits once one has leaked
+		RateLimiterDecision blocked = service.decision("u", START);
+		assertFalse(blocked.isAllowed());
+		assertEquals(100, blocked.retryAfterMs());
+		
+		RateLimiterDecision later = service.decision("u", START + 100);
+		assertTrue(later.isAllowed());
+		assertEquals(300, later.delayMs());
+		// other keys have their own bucket
+		assertEquals(0, service.decision("v", START).delayMs());
+	}
+	
+	@Test
+	void delayNeverExceedsTheMaximumWhateverRoomIsLeft() {
+		LeakyBucketRateLimiterService service = new LeakyBucketRateLimiterService(100, 10, 250, StateStoreSettings.DEFAULTS);
+		
+		assertEquals(0, service.decision("u", START).delayMs());
+		assertEquals(100, service.decision("u", START).delayMs());
+		assertEquals(200, service.decision("u", START).delayMs());
+		RateLimiterDecision blocked = service.decision("u", START);
+		assertFalse(blocked.isAllowed());
+		assertEquals(50, blocked.retryAfterMs());
+		assertEquals(250, service.decision("u", START + 50).delayMs());
+	}
+	
+	@Test
+	void idleBucketAdmitsAtOnceAgain() {
+		LeakyBucketRateLimiterService service = new LeakyBucketRateLimiterService(2, 2, 1_000, StateStoreSettings.DEFAULTS);
+		
+		service.decision("u", START);
+		assertEquals(500, service.decision("u", START).delayMs());
+		assertEquals(0, service.decision("u", START + 1_000).delayMs());
+		// more than the bucket holds never fits
+		assertFalse(service.decision("fresh", START, 3).isAllowed());
+	}
+}
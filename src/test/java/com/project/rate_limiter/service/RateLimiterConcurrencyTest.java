@@ -0,0 +1,92 @@
+package com.project.rate_limiter.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+
+import com.project.rate_limiter.store.StateStoreSettings;
+
+class RateLimiterConcurrencyTest {
+	
+	private static final int THREADS = 64;
+	private static final int CALLS_PER_THREAD = 2_000;
+	private static final int LIMIT = 1_000;
+	private static final long NOW = 1_700_000_000_000L;
+	
+	@Test
+	void fixedWindowNeverOverAdmits() throws Exception {
+		FixedSizeRateLimiterService service = new FixedSizeRateLimiterService(LIMIT, 60_000, StateStoreSettings.DEFAULTS);
+		assertEquals(LIMIT, hammer(user -> service.decision(user, NOW).isAllowed(), "shared"));
+	}
+	
+	@Test
+	void slidingWindowNeverOverAdmits() throws Exception {
+		SlidingWindowRateLimiterService service = new SlidingWindowRateLimiterService(LIMIT, 60_000, StateStoreSettings.DEFAULTS);
+		assertEquals(LIMIT, hammer(user -> service.decision(user, NOW).isAllowed(), "shared"));
+	}
+	
+	@Test
+	void slidingWindowCounterNeverOverAdmits() throws Exception {
+		SlidingWindowCounterRateLimiterService service = new SlidingWindowCounterRateLimiterService(LIMIT, 60_000, 10, StateStoreSettings.DEFAULTS);
+		assertEquals(LIMIT, hammer(user -> service.decision(user, NOW).isAllowed(), "shared"));
+	}
+	
+	@Test
+	void slidingWindowRingNeverOverAdmits() throws Exception {
+		SlidingWindowRingRateLimiterService service = new SlidingWindowRingRateLimiterService(LIMIT, 60_000, 10, StateStoreSettings.DEFAULTS);
+		assertEquals(LIMIT, hammer(user -> service.decision(user, NOW).isAllowed(), "shared"));
+	}
+	
+	@Test
+	void tokenBucketNeverOverAdmits() throws Exception {
+		TokenBucketRateLimiterService service = new TokenBucketRateLimiterService(LIMIT, 1, StateStoreSettings.DEFAULTS);
+		assertEquals(LIMIT, hammer(user -> service.decision(user, NOW).isAllowed(), "shared"));
+	}
+	
+	@Test
+	void independentKeysAreAdmittedIndependently() throws Exception {
+		FixedSizeRateLimiterService service = new FixedSizeRateLimiterService(LIMIT, 60_000, StateStoreSettings.DEFAULTS);
+		long allowed = hammer(user -> service.decision(user, NOW).isAllowed(), null);
+		assertEquals((long) THREADS * Math.min(LIMIT, CALLS_PER_THREAD), allowed);
+	}
+	
+	/**
+	 * Runs every thread against the same key (or its own key when {@code sharedKey} is null)
+	 * and returns the total number of admitted calls.
+	 */
+	private long hammer(Predicate<String> call, String sharedKey) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Long>> results = new ArrayList<>();
+		
+		for(int t=0; t<THREADS; t++) {
+			String user = sharedKey != null ? sharedKey : "user-" + t;
+			results.add(pool.submit(() -> {
+				start.await();
+				long allowed = 0;
+				for(int i=0; i<CALLS_PER_THREAD; i++) {
+					if(call.test(user)) { allowed++; }
+				}
+				return allowed;
+			}));
+		}
+		
+		start.countDown();
+		long total = 0;
+		for(Future<Long> result : results) {
+			total += result.get();
+		}
+		pool.shutdown();
+		pool.awaitTermination(10, TimeUnit.SECONDS);
+		return total;
+	}
+}
@@ -0,0 +1,49 @@
+package com.project.rate_limiter.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ShapingQueueTest {
+	
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	
+	@Test
+	void busyKeyCannotCrowdOutOthers() throws Exception {
+		ShapingQueue queue = new ShapingQueue(4, 1_000, registry);
+		
+		CompletableFuture<Void> first = queue.hold("a", 20);
+		assertNotNull(first);
+		assertNotNull(queue.hold("a", 20));
+		// alone, a key gets half the queue so that a newcomer still finds room
+		assertNull(queue.hold("a", 20));
+		assertNotNull(queue.hold("b", 20));
+		assertNotNull(queue.hold("c", 20));
+		assertNull(queue.hold("d", 20));
+		assertEquals(4, queue.depth());
+		assertEquals(4, registry.get("rate.limiter.shaping.queue.depth").gauge().value());
+		
+		first.get(2, TimeUnit.SECONDS);
+		long deadline = System.currentTimeMillis() + 2_000;
+		while(queue.depth() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(0, queue.depth());
+		assertEquals(2, registry.get("rate.limiter.shaping.rejected").counter().count());
+		assertTrue(registry.get("rate.limiter.shaping.delay").timer().totalTime(TimeUnit.MILLISECONDS) >= 4 * 20);
+		queue.shutdown();
+	}
+	
+	@Test
+	void queueWithoutCapacityHoldsNothing() {
+		assertNull(new ShapingQueue(0, 1_000, registry).hold("a", 10));
+	}
+}
@@ -0,0 +1,131 @@
+package com.project.rate_limiter.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.project.rate_limiter.entity.RateLimiterDecision;
+import com.project.rate_limiter.store.StateStoreSettings;
+
+class SlidingWindowApproximationTest {
+	
+	private static final long WINDOW = 60_000;
+	private static final long START = 1_700_000_040_000L - (1_700_000_040_000L % WINDOW);
+	
+	@Test
+	void counterWeightsPreviousWindow() {
+		// one sub-window per millisecond weighs the previous window exactly
+		SlidingWindowCounterRateLimiterService service = new SlidingWindowCounterRateLimiterService(10, WINDOW, (int) WINDOW, StateStoreSettings.DEFAULTS);
+		
+		for(int i=0; i<10; i++) {
+			assertTrue(service.decision("u", START + 1_000).isAllowed());
+		}
+		assertFalse(service.decision("u", START + 2_000).isAllowed());
+		
+		// a quarter into the next window 75% of the previous 10 still count: 7.5 -> 2 more fit
+		assertTrue(service.decision("u", START + WINDOW + WINDOW / 4).isAllowed());
+		assertTrue(service.decision("u", START + WINDOW + WINDOW / 4).isAllowed());
+		RateLimiterDecision blocked = service.decision("u", START + WINDOW + WINDOW / 4);
+		assertFalse(blocked.isAllowed());
+		assertTrue(blocked.retryAfterMs() > 0);
+		
+		assertTrue(service.decision("u", START + WINDOW + WINDOW / 4 + blocked.retryAfterMs()).isAllowed());
+	}
+	
+	@Test
+	void counterReleasesThePreviousWindowPerSubWindow() {
+		SlidingWindowCounterRateLimiterService service = new SlidingWindowCounterRateLimiterService(10, WINDOW, 6, StateStoreSettings.DEFAULTS);
+		long subWindow = WINDOW / 6;
+		
+		for(int i=0; i<10; i++) {
+			assertTrue(service.decision("u", START + 1_000).isAllowed());
+		}
+		// a quarter into the next window only one whole sub-window has passed: 10 * 5/6 still count
+		assertTrue(service.decision("u", START + WINDOW + WINDOW / 4).isAllowed());
+		RateLimiterDecision blocked = service.decision("u", START + WINDOW + WINDOW / 4);
+		assertFalse(blocked.isAllowed());
+		// at a fifth of the window the next permit would fit, but the weight only drops at the next sub-window
+		assertEquals(2 * subWindow - WINDOW / 4, blocked.retryAfterMs());
+		
+		assertFalse(service.decision("u", START + WINDOW + 2 * subWindow - 1).isAllowed());
+		assertTrue(service.decision("u", START + WINDOW + 2 * subWindow).isAllowed());
+	}
+	
+	@Test
+	void counterForgetsWindowsOlderThanPrevious() {
+		SlidingWindowCounterRateLimiterService service = new SlidingWindowCounterRateLimiterService(3, WINDOW, 10, StateStoreSettings.DEFAULTS);
+		
+		for(int i=0; i<3; i++) {
+			assertTrue(service.decision("u", START).isAllowed());
+		}
+		RateLimiterDecision decision = service.decision("u", START + 2 * WINDOW);
+		assertTrue(decision.isAllowed());
+		assertEquals(2, decision.remaining());
+	}
+	
+	@Test
+	void ringReleasesCapacityPerSubWindow() {
+		SlidingWindowRingRateLimiterService service = new SlidingWindowRingRateLimiterService(4, WINDOW, 6, StateStoreSettings.DEFAULTS);
+		long subWindow = WINDOW / 6;
+		
+		assertTrue(service.decision("u", START).isAllowed());
+		assertTrue(service.decision("u", START).isAllowed());
+		assertTrue(service.decision("u", START + 2 * subWindow).isAllowed());
+		assertTrue(service.decision("u", START + 2 * subWindow).isAllowed());
+		
+		RateLimiterDecision blocked = service.decision("u", START + 3 * subWindow);
+		assertFalse(blocked.isAllowed());
+		assertEquals(4 * subWindow, blocked.retryAfterMs());
+		
+		// a whole window after the end of the first sub-window its two requests are released together
+		assertFalse(service.decision("u", START + WINDOW).isAllowed());
+		assertTrue(service.decision("u", START + WINDOW + subWindow).isAllowed());
+		assertTrue(service.decision("u", START + WINDOW + subWindow).isAllowed());
+		assertFalse(service.decision("u", START + WINDOW + subWindow).isAllowed());
+	}
+	
+	@Test
+	void ringCoversTheWholeWindowWhenItDoesNotDivideEvenly() {
+		// three sub-windows of a 1000 ms window are rounded up to 334 ms
+		SlidingWindowRingRateLimiterService service = new SlidingWindowRingRateLimiterService(1, 1_000, 3, StateStoreSettings.DEFAULTS);
+		long start = 334L * 1_000_000;
+		
+		assertTrue(service.decision("u", start).isAllowed());
+		assertFalse(service.decision("u", start + 999).isAllowed());
+		assertFalse(service.decision("u", start + 3 * 334).isAllowed());
+		assertTrue(service.decision("u", start + 4 * 334).isAllowed());
+	}
+	
+	@Test
+	void ringNeverAdmitsMoreThanTheLimitInAnyWindow() {
+		assertWindowsHoldTheLimit(1, 1_000, 3);
+		assertWindowsHoldTheLimit(5, 6_000, 10);
+		assertWindowsHoldTheLimit(4, 1_000, 7);
+	}
+	
+	/** Sends a burst on either side of every sub-window edge and checks every window-long span. */
+	private static void assertWindowsHoldTheLimit(int limit, long window, int subWindows) {
+		SlidingWindowRingRateLimiterService service = new SlidingWindowRingRateLimiterService(limit, window, subWindows, StateStoreSettings.DEFAULTS);
+		long subWindow = (window + subWindows - 1) / subWindows;
+		List<Long> admitted = new ArrayList<>();
+		for(long edge=subWindow; edge<=5*window; edge+=subWindow) {
+			for(long time : new long[] { edge - 1, edge }) {
+				for(int i=0; i<limit; i++) {
+					if(service.decision("u", time).isAllowed()) {
+						admitted.add(time);
+					}
+				}
+			}
+		}
+		assertFalse(admitted.isEmpty());
+		for(long from : admitted) {
+			long inWindow = admitted.stream().filter(time -> time >= from && time < from + window).count();
+			assertTrue(inWindow <= limit, inWindow + " admitted in the window from " + from);
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.project.rate_limiter.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.project.rate_limiter.entity.RateLimiterDecision;
+import com.project.rate_limiter.store.StateStoreSettings;
+
+class TokenBucketRateLimiterServiceTest {
+	
+	private static final long START = 1_700_000_000_000L;
+	
+	@Test
+	void halfTokenPerSecondRefillsOneTokenEveryTwoSeconds() {
+		TokenBucketRateLimiterService service = new TokenBucketRateLimiterService(1, 0.5, StateStoreSettings.DEFAULTS);
+		
+		assertTrue(service.decision("u", START).isAllowed());
+		RateLimiterDecision blocked = service.decision("u", START + 1_999);
+		assertFalse(blocked.isAllowed());
+		// the bucket clock is in microseconds, so the ms hint may round up by one
+		assertTrue(blocked.retryAfterMs() >= 1 && blocked.retryAfterMs() <= 2);
+		assertTrue(service.decision("u", START + 2_000).isAllowed());
+	}
+	
+	@Test
+	void subSecondTrafficRefillsEvenly() {
+		TokenBucketRateLimiterService service = new TokenBucketRateLimiterService(10, 2000, StateStoreSettings.DEFAULTS);
+		
+		for(int i=0; i<10; i++) {
+			assertTrue(service.decision("u", START).isAllowed());
+		}
+		// one request per millisecond over one second at 2000/s: every request is admitted
+		int allowed = 0;
+		for(int ms=1; ms<=1_000; ms++) {
+			if(service.decision("u", START + ms).isAllowed()) { allowed++; }
+		}
+		assertEquals(1_000, allowed);
+	}
+	
+	@Test
+	void frequentPollingDoesNotDriftAboveRate() {
+		TokenBucketRateLimiterService service = new TokenBucketRateLimiterService(1, 0.3, StateStoreSettings.DEFAULTS);
+		
+		int allowed = 0;
+		// poll every 7 ms for 1000 s; exactly 0.3 tokens/s plus the initial token may be admitted
+		for(long t=0; t<=1_000_000; t+=7) {
+			if(service.decision("u", START + t).isAllowed()) { allowed++; }
+		}
+		assertEquals(1 + 300, allowed);
+	}
+	
+	@Test
+	void newLimitsKeepTheFractionOfTheBucketThatWasLeft() {
+		TokenBucketRateLimiterService service = new TokenBucketRateLimiterService(10, 0.01, StateStoreSettings.DEFAULTS);
+		for(int i=0; i<5; i++) {
+			assertTrue(service.decision("u", START).isAllowed());
+		}
+		
+		RateLimiter doubled = service.withLimits(20, 1_000, 0.01);
+		
+		// half full before, half full after: 10 of 20 tokens, one of them taken now
+		assertEquals(9, doubled.decision("u", START).remaining());
+		assertEquals(19, doubled.decision("other", START).remaining());
+	}
+}
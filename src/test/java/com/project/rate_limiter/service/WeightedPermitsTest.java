@@ -0,0 +1,83 @@
+package com.project.rate_limiter.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.project.rate_limiter.entity.RateLimiterDecision;
+import com.project.rate_limiter.entity.RequestLog;
+import com.project.rate_limiter.store.StateStoreSettings;
+
+class WeightedPermitsTest {
+	
+	private static final long START = 1_700_000_000_000L;
+	
+	@Test
+	void everyLocalAlgorithmTakesPermitsAllAtOnce() {
+		RateLimiter[] limiters = {
+				new TokenBucketRateLimiterService(10, 10, StateStoreSettings.DEFAULTS),
+				new FixedSizeRateLimiterService(10, 1_000, StateStoreSettings.DEFAULTS),
+				new SlidingWindowRateLimiterService(10, 1_000, StateStoreSettings.DEFAULTS),
+				new SlidingWindowCounterRateLimiterService(10, 1_000, 10, StateStoreSettings.DEFAULTS),
+				new SlidingWindowRingRateLimiterService(10, 1_000, 10, StateStoreSettings.DEFAULTS),
+				new LeakyBucketRateLimiterService(10, 10, 1_000, StateStoreSettings.DEFAULTS),
+				new GcraRateLimiterService(10, 1_000, StateStoreSettings.DEFAULTS)
+		};
+		for(RateLimiter limiter : limiters) {
+			String name = limiter.algorithm().name();
+			assertEquals(3, limiter.decision("u", START, 7).remaining(), name);
+			assertFalse(limiter.decision("u", START, 4).isAllowed(), name);
+			RateLimiterDecision last = limiter.decision("u", START, 3);
+			assertTrue(last.isAllowed(), name);
+			assertEquals(0, last.remaining(), name);
+			// more than the limit never fits
+			assertFalse(limiter.decision("fresh", START, 11).isAllowed(), name);
+		}
+	}
+	
+	@Test
+	void tokenBucketWaitsExactlyForTheMissingTokens() {
+		TokenBucketRateLimiterService service = new TokenBucketRateLimiterService(10, 2, StateStoreSettings.DEFAULTS);
+		
+		assertEquals(2, service.decision("u", START, 8).remaining());
+		RateLimiterDecision blocked = service.decision("u", START, 5);
+		assertFalse(blocked.isAllowed());
+		// three tokens short at two per second
+		assertEquals(1_500, blocked.retryAfterMs());
+		assertFalse(service.decision("u", START + 1_499, 5).isAllowed());
+		assertTrue(service.decision("u", START + 1_500, 5).isAllowed());
+	}
+	
+	@Test
+	void slidingLogWaitsForEnoughWeightToExpire() {
+		SlidingWindowRateLimiterService service = new SlidingWindowRateLimiterService(100, 1_000, StateStoreSettings.DEFAULTS);
+		
+		assertTrue(service.decision("u", START, 40).isAllowed());
+		assertTrue(service.decision("u", START + 100, 50).isAllowed());
+		// 30 more need the first entry's 40 to expire, not just one permit's worth
+		RateLimiterDecision blocked = service.decision("u", START + 200, 30);
+		assertFalse(blocked.isAllowed());
+		assertEquals(800, blocked.retryAfterMs());
+		assertTrue(service.decision("u", START + 1_001, 30).isAllowed());
+	}
+	
+	@Test
+	void requestLogKeepsOneEntryPerWeightedRequest() {
+		RequestLog log = new RequestLog(100);
+		log.add(START, 40);
+		log.add(START, 1);
+		log.add(START + 1, 9);
+		
+		assertEquals(2, log.size());
+		assertEquals(50, log.total());
+		assertEquals(START, log.expiring(41));
+		assertEquals(START + 1, log.expiring(42));
+		
+		log.refund(START + 1, 4);
+		assertEquals(46, log.total());
+		assertEquals(41, log.purgeOlderThan(START + 1));
+		assertEquals(5, log.total());
+	}
+}
@@ -0,0 +1,89 @@
+package com.project.rate_limiter.service.redis;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.util.List;
+
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import redis.embedded.RedisServer;
+
+/**
+ * Redis server bundled with the tests, started on a free local port.
+ */
+final class EmbeddedRedis implements AutoCloseable {
+	
+	private final int port;
+	private final RedisServer server;
+	private LettuceConnectionFactory connectionFactory;
+	
+	EmbeddedRedis() {
+		try {
+			this.port = freePort();
+			this.server = new RedisServer(port);
+			this.server.start();
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+	
+	private static int freePort() throws IOException {
+		try(ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+	
+	int port() {
+		return port;
+	}
+	
+	/** Template on a dedicated connection, for tests that run without a Spring context. */
+	StringRedisTemplate template() {
+		if(connectionFactory == null) {
+			connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+			connectionFactory.afterPropertiesSet();
+			connectionFactory.start();
+		}
+		return new StringRedisTemplate(connectionFactory);
+	}
+	
+	/**
+	 * Moves the timestamps kept under a limiter key {@code ms} into the past, as if that much time
+	 * had passed on the Redis clock, which the scripts read and a test cannot set.
+	 */
+	static void elapse(StringRedisTemplate template, String key, long ms) {
+		DataType type = template.type(key);
+		if(type == DataType.HASH) {
+			// token bucket or fixed window
+			for(String field : List.of("ts", "start")) {
+				if(template.opsForHash().hasKey(key, field)) {
+					template.opsForHash().increment(key, field, -ms);
+				}
+			}
+		} else if(type == DataType.LIST) {
+			// sliding log of "timestamp[:permits:total]" entries
+			List<String> entries = template.opsForList().range(key, 0, -1);
+			for(int i=0; i<entries.size(); i++) {
+				String entry = entries.get(i);
+				int colon = entry.indexOf(':');
+				long ts = Long.parseLong(colon < 0 ? entry : entry.substring(0, colon));
+				template.opsForList().set(key, i, (ts - ms) + (colon < 0 ? "" : entry.substring(colon)));
+			}
+		} else if(type == DataType.STRING) {
+			// GCRA arrival time in microseconds
+			template.opsForValue().decrement(key, ms * 1000);
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if(connectionFactory != null) {
+			connectionFactory.destroy();
+		}
+		server.stop();
+	}
+}
@@ -0,0 +1,115 @@
+package com.project.rate_limiter.service.redis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+
+class RedisDecisionBatcherTest {
+	
+	private static final long NOW = 1_700_000_000_000L;
+	
+	private static EmbeddedRedis redis;
+	private static StringRedisTemplate template;
+	
+	@BeforeAll
+	static void startRedis() {
+		redis = new EmbeddedRedis();
+		template = redis.template();
+	}
+	
+	@AfterAll
+	static void stopRedis() throws IOException {
+		redis.close();
+	}
+	
+	@Test
+	void concurrentDecisionsShareRoundTrips() throws Exception {
+		RedisDecisionBatcher batcher = new RedisDecisionBatcher(template, 500, 64, 10_000);
+		RedisFixedSizeRateLimiterService limiter = new RedisFixedSizeRateLimiterService(500, 60_000,
+				new RedisLimiterScripts(template, "batch-test", batcher));
+		
+		int threads = 32;
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Integer>> results = new ArrayList<>();
+		for(int t=0; t<threads; t++) {
+			results.add(pool.submit(() -> {
+				start.await();
+				int allowed = 0;
+				for(int i=0; i<50; i++) {
+					if(limiter.decision("shared", NOW).isAllowed()) { allowed++; }
+				}
+				return allowed;
+			}));
+		}
+		start.countDown();
+		int allowed = 0;
+		for(Future<Integer> result : results) {
+			allowed += result.get();
+		}
+		pool.shutdown();
+		batcher.shutdown();
+		
+		RedisBatchStats stats = batcher.stats();
+		assertEquals(500, allowed);
+		assertEquals(threads * 50, stats.decisions());
+		assertTrue(stats.batches() < stats.decisions() / 4, "batches: " + stats.batches());
+		assertTrue(stats.averageFillRatio() > 0);
+	}
+	
+	@Test
+	void reloadsScriptsAfterCacheFlush() {
+		RedisDecisionBatcher batcher = new RedisDecisionBatcher(template, 100, 16, 1_000);
+		RedisTokenBucketRateLimiterService limiter = new RedisTokenBucketRateLimiterService(2, 1,
+				new RedisLimiterScripts(template, "flush-test", batcher));
+		
+		assertTrue(limiter.decision("u", NOW).isAllowed());
+		template.execute((RedisCallback<Void>) connection -> {
+			connection.scriptingCommands().scriptFlush();
+			return null;
+		});
+		assertTrue(limiter.decision("u", NOW).isAllowed());
+		assertTrue(!limiter.decision("u", NOW).isAllowed());
+		batcher.shutdown();
+	}
+	
+	@Test
+	void replaysOnlyTheCallsWhoseScriptWasMissing() {
+		// a long window and a batch of two, so both calls go out in one pipeline
+		RedisDecisionBatcher batcher = new RedisDecisionBatcher(template, 1_000_000, 2, 16);
+		RedisLimiterScripts scripts = new RedisLimiterScripts(template, "mixed-test", batcher);
+		template.execute((RedisCallback<Void>) connection -> {
+			connection.scriptingCommands().scriptFlush();
+			connection.scriptingCommands().scriptLoad(RedisLimiterScripts.FIXED_WINDOW.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+			return null;
+		});
+		
+		CompletableFuture<List<Long>> cached = batcher.submit(RedisLimiterScripts.FIXED_WINDOW, 
+				scripts.key(RateLimiterAlgorithm.FIXED_WINDOW, "u"), "10", "60000", "1");
+		CompletableFuture<List<Long>> flushed = batcher.submit(RedisLimiterScripts.TOKEN_BUCKET, 
+				scripts.key(RateLimiterAlgorithm.TOKEN_BUCKET, "u"), "10", "1", "1");
+		
+		assertEquals(9L, cached.join().get(1));
+		assertEquals(9L, flushed.join().get(1));
+		assertEquals(1, batcher.stats().batches());
+		assertEquals("1", template.opsForHash().get(scripts.key(RateLimiterAlgorithm.FIXED_WINDOW, "u"), "count"));
+		batcher.shutdown();
+	}
+}
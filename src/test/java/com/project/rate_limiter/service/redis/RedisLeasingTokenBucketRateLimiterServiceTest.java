@@ -0,0 +1,90 @@
+package com.project.rate_limiter.service.redis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.entity.RateLimiterDecision;
+import com.project.rate_limiter.store.StateStoreSettings;
+
+class RedisLeasingTokenBucketRateLimiterServiceTest {
+	
+	/** The clock leases expire by; the bucket refills by the Redis clock. */
+	private static final long NOW = 1_700_000_000_000L;
+	
+	private static EmbeddedRedis redis;
+	private static RedisLimiterScripts scripts;
+	
+	@BeforeAll
+	static void startRedis() {
+		redis = new EmbeddedRedis();
+		scripts = new RedisLimiterScripts(redis.template(), "lease-test", null);
+	}
+	
+	@AfterAll
+	static void stopRedis() throws IOException {
+		redis.close();
+	}
+	
+	@Test
+	void hotKeyIsServedMostlyFromLocalLeases() {
+		RedisLeasingTokenBucketRateLimiterService limiter = limiter(1_000, 1);
+		
+		int allowed = 0;
+		long started = System.currentTimeMillis();
+		// 10 requests per ms for 1 s against a bucket of 1000 that barely refills
+		for(long t=0; t<1_000; t++) {
+			for(int i=0; i<10; i++) {
+				if(limiter.decision("hot", NOW + t).isAllowed()) { allowed++; }
+			}
+		}
+		long refilled = (System.currentTimeMillis() - started) / 1_000 + 1;
+		
+		assertTrue(allowed <= 1_000 + refilled, "admitted more than capacity + refill: " + allowed);
+		assertTrue(allowed >= 900, "leases left too many tokens unused: " + allowed);
+		assertTrue(limiter.remoteCalls() < 10_000 / 20, "remote calls: " + limiter.remoteCalls());
+	}
+	
+	@Test
+	void nodesSharingABucketNeverOverAdmit() {
+		RedisLeasingTokenBucketRateLimiterService nodeA = limiter(100, 1);
+		RedisLeasingTokenBucketRateLimiterService nodeB = limiter(100, 1);
+		
+		int allowed = 0;
+		long started = System.currentTimeMillis();
+		for(int i=0; i<500; i++) {
+			RedisLeasingTokenBucketRateLimiterService node = (i % 2 == 0) ? nodeA : nodeB;
+			if(node.decision("shared", NOW + i / 10).isAllowed()) { allowed++; }
+		}
+		long refilled = (System.currentTimeMillis() - started) / 1_000 + 1;
+		assertTrue(allowed <= 100 + refilled, "admitted " + allowed);
+	}
+	
+	@Test
+	void blockedKeyIsRejectedLocallyUntilRetryAfter() {
+		RedisLeasingTokenBucketRateLimiterService limiter = limiter(1, 1);
+		
+		assertTrue(limiter.decision("cold", NOW).isAllowed());
+		RateLimiterDecision blocked = limiter.decision("cold", NOW + 200);
+		assertFalse(blocked.isAllowed());
+		long calls = limiter.remoteCalls();
+		
+		for(int i=0; i<50; i++) {
+			assertFalse(limiter.decision("cold", NOW + 300).isAllowed());
+		}
+		assertEquals(calls, limiter.remoteCalls());
+		EmbeddedRedis.elapse(redis.template(), scripts.key(RateLimiterAlgorithm.TOKEN_BUCKET, "cold"), blocked.retryAfterMs());
+		assertTrue(limiter.decision("cold", NOW + 200 + blocked.retryAfterMs()).isAllowed());
+	}
+	
+	private static RedisLeasingTokenBucketRateLimiterService limiter(int capacity, double refillRate) {
+		return new RedisLeasingTokenBucketRateLimiterService(capacity, refillRate, 100, 50, scripts, StateStoreSettings.DEFAULTS);
+	}
+}
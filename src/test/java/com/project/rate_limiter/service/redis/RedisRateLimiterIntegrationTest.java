@@ -0,0 +1,303 @@
+package com.project.rate_limiter.service.redis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.project.rate_limiter.constants.RateLimiterAlgorithm;
+import com.project.rate_limiter.entity.MutableDecision;
+import com.project.rate_limiter.entity.RateLimiterDecision;
+import com.project.rate_limiter.service.CompositeRateLimiter;
+import com.project.rate_limiter.service.CompositeRateLimiter.Level;
+import com.project.rate_limiter.service.CompositeRateLimiter.LevelDecision;
+import com.project.rate_limiter.service.RateLimiter;
+import com.project.rate_limiter.service.RateLimiterFactory;
+
+@SpringBootTest(properties = {
+		"rate.limiter.backend=redis",
+		"rate.request.limit.count=3",
+		"rate.request.limit.timeperiod=1000",
+		"rate.request.limit.refill.rate=2"
+})
+class RedisRateLimiterIntegrationTest {
+	
+	/** The caller's clock; the scripts read the time from Redis instead. */
+	private static final long NOW = 1_700_000_000_000L;
+	
+	private static EmbeddedRedis redis;
+	
+	@Autowired
+	private List<RateLimiter> limiters;
+	
+	@Autowired
+	private StringRedisTemplate redisTemplate;
+	
+	@Autowired
+	private RateLimiterFactory factory;
+	
+	@BeforeAll
+	static void startRedis() {
+		redis = new EmbeddedRedis();
+	}
+	
+	@AfterAll
+	static void stopRedis() throws IOException {
+		redis.close();
+	}
+	
+	@DynamicPropertySource
+	static void redisProperties(DynamicPropertyRegistry registry) {
+		registry.add("spring.data.redis.port", () -> redis.port());
+	}
+	
+	@Test
+	void redisBackendReplacesLocalLimiters() {
+		Map<RateLimiterAlgorithm, RateLimiter> byAlgorithm = byAlgorithm();
+		assertInstanceOf(RedisTokenBucketRateLimiterService.class, byAlgorithm.get(RateLimiterAlgorithm.TOKEN_BUCKET));
+		assertInstanceOf(RedisFixedSizeRateLimiterService.class, byAlgorithm.get(RateLimiterAlgorithm.FIXED_WINDOW));
+		assertInstanceOf(RedisSlidingWindowRateLimiterService.class, byAlgorithm.get(RateLimiterAlgorithm.SLIDING_WINDOW));
+		assertInstanceOf(RedisGcraRateLimiterService.class, byAlgorithm.get(RateLimiterAlgorithm.GCRA));
+	}
+	
+	@Test
+	void inProcessOnlyAlgorithmsAreNotOffered() {
+		Map<RateLimiterAlgorithm, RateLimiter> byAlgorithm = byAlgorithm();
+		for(RateLimiterAlgorithm algorithm : List.of(RateLimiterAlgorithm.SLIDING_WINDOW_COUNTER, 
+				RateLimiterAlgorithm.SLIDING_WINDOW_RING, RateLimiterAlgorithm.LEAKY_BUCKET)) {
+			assertNull(byAlgorithm.get(algorithm));
+			assertFalse(factory.isAvailable(algorithm));
+			assertThrows(IllegalArgumentException.class, () -> factory.create("policy#0", algorithm, 3, 1_000, 2));
+		}
+	}
+	
+	@Test
+	void tokenBucketRefillsFromSharedState() {
+		RateLimiter limiter = byAlgorithm().get(RateLimiterAlgorithm.TOKEN_BUCKET);
+		
+		for(int i=0; i<3; i++) {
+			assertTrue(limiter.decision("tb", NOW).isAllowed());
+		}
+		RateLimiterDecision blocked = limiter.decision("tb", NOW);
+		assertFalse(blocked.isAllowed());
+		assertAbout(500, blocked.retryAfterMs());
+		
+		elapse(RateLimiterAlgorithm.TOKEN_BUCKET, "tb", 500);
+		assertTrue(limiter.decision("tb", NOW).isAllowed());
+		assertFalse(limiter.decision("tb", NOW).isAllowed());
+	}
+	
+	@Test
+	void fixedWindowResetsAfterWindow() {
+		RateLimiter limiter = byAlgorithm().get(RateLimiterAlgorithm.FIXED_WINDOW);
+		
+		for(int i=0; i<3; i++) {
+			assertEquals(2 - i, limiter.decision("fw", NOW).remaining());
+		}
+		elapse(RateLimiterAlgorithm.FIXED_WINDOW, "fw", 400);
+		RateLimiterDecision blocked = limiter.decision("fw", NOW);
+		assertFalse(blocked.isAllowed());
+		assertAbout(600, blocked.retryAfterMs());
+		
+		elapse(RateLimiterAlgorithm.FIXED_WINDOW, "fw", 601);
+		assertTrue(limiter.decision("fw", NOW).isAllowed());
+	}
+	
+	@Test
+	void slidingWindowReleasesOldestRequest() {
+		RateLimiter limiter = byAlgorithm().get(RateLimiterAlgorithm.SLIDING_WINDOW);
+		
+		assertTrue(limiter.decision("sw", NOW).isAllowed());
+		elapse(RateLimiterAlgorithm.SLIDING_WINDOW, "sw", 300);
+		assertTrue(limiter.decision("sw", NOW).isAllowed());
+		elapse(RateLimiterAlgorithm.SLIDING_WINDOW, "sw", 300);
+		assertTrue(limiter.decision("sw", NOW).isAllowed());
+		elapse(RateLimiterAlgorithm.SLIDING_WINDOW, "sw", 100);
+		RateLimiterDecision blocked = limiter.decision("sw", NOW);
+		assertFalse(blocked.isAllowed());
+		assertAbout(300, blocked.retryAfterMs());
+		
+		elapse(RateLimiterAlgorithm.SLIDING_WINDOW, "sw", 301);
+		assertTrue(limiter.decision("sw", NOW).isAllowed());
+		assertFalse(limiter.decision("sw", NOW).isAllowed());
+	}
+	
+	@Test
+	void gcraSpacesRequestsOneIntervalApartAfterTheBurst() {
+		RateLimiter limiter = byAlgorithm().get(RateLimiterAlgorithm.GCRA);
+		
+		for(int i=0; i<3; i++) {
+			assertEquals(2 - i, limiter.decision("gcra", NOW).remaining());
+		}
+		RateLimiterDecision blocked = limiter.decision("gcra", NOW);
+		assertFalse(blocked.isAllowed());
+		// one interval of 1000 / 3 ms, in whole ms
+		assertAbout(334, blocked.retryAfterMs());
+		
+		elapse(RateLimiterAlgorithm.GCRA, "gcra", 334);
+		assertTrue(limiter.decision("gcra", NOW).isAllowed());
+		assertFalse(limiter.decision("gcra", NOW).isAllowed());
+	}
+	
+	@Test
+	void scriptsTakePermitsAllAtOnce() {
+		for(RateLimiter limiter : limiters) {
+			String name = limiter.algorithm().name();
+			if(limiter.algorithm() != RateLimiterAlgorithm.TOKEN_BUCKET 
+					&& limiter.algorithm() != RateLimiterAlgorithm.FIXED_WINDOW 
+					&& limiter.algorithm() != RateLimiterAlgorithm.SLIDING_WINDOW
+					&& limiter.algorithm() != RateLimiterAlgorithm.GCRA) { continue; }
+			assertEquals(1, limiter.decision("permits", NOW, 2).remaining(), name);
+			assertFalse(limiter.decision("permits", NOW, 2).isAllowed(), name);
+			assertTrue(limiter.decision("permits", NOW, 1).isAllowed(), name);
+			assertFalse(limiter.decision("too-many", NOW, 4).isAllowed(), name);
+		}
+		// two permits are one entry of the sliding log
+		String log = new RedisLimiterScripts(redisTemplate, "rate", null).key(RateLimiterAlgorithm.SLIDING_WINDOW, "permits");
+		assertEquals(2L, redisTemplate.opsForList().size(log));
+	}
+	
+	@Test
+	void replicasShareOneQuota() {
+		RedisLimiterScripts otherNode = new RedisLimiterScripts(redisTemplate, "rate", null);
+		RedisFixedSizeRateLimiterService replicaA = new RedisFixedSizeRateLimiterService(3, 1_000, otherNode);
+		RedisFixedSizeRateLimiterService replicaB = new RedisFixedSizeRateLimiterService(3, 1_000, otherNode);
+		
+		int allowed = 0;
+		for(int i=0; i<6; i++) {
+			RedisFixedSizeRateLimiterService replica = (i % 2 == 0) ? replicaA : replicaB;
+			if(replica.decision("shared", NOW).isAllowed()) { allowed++; }
+		}
+		assertEquals(3, allowed);
+	}
+	
+	@Test
+	void replicaClocksDoNotMoveTheSharedWindow() {
+		RedisLimiterScripts scripts = new RedisLimiterScripts(redisTemplate, "rate", null);
+		RedisFixedSizeRateLimiterService replicaA = new RedisFixedSizeRateLimiterService(3, 1_000, scripts);
+		RedisFixedSizeRateLimiterService replicaB = new RedisFixedSizeRateLimiterService(3, 1_000, scripts);
+		
+		int allowed = 0;
+		for(int i=0; i<6; i++) {
+			// B runs ten minutes ahead, which would open a fresh window on every one of its calls
+			boolean admitted = (i % 2 == 0) 
+					? replicaA.decision("skewed", NOW).isAllowed() 
+					: replicaB.decision("skewed", NOW + 600_000).isAllowed();
+			if(admitted) { allowed++; }
+		}
+		assertEquals(3, allowed);
+	}
+	
+	@Test
+	void compositeChargesEveryRedisLevelOrNone() {
+		List<Level> levels = List.of(
+				level("composite#0", RateLimiterAlgorithm.FIXED_WINDOW, 2),
+				level("composite#1", RateLimiterAlgorithm.SLIDING_WINDOW, 3));
+		CompositeRateLimiter composite = factory.composite(levels);
+		MutableDecision decision = new MutableDecision();
+		MutableDecision scratch = new MutableDecision();
+		
+		assertEquals(0, composite.decision(new String[] {"a", "*"}, NOW, 1, decision, scratch));
+		assertEquals(1, decision.remaining());
+		composite.decision(new String[] {"a", "*"}, NOW, 1, decision, scratch);
+		assertEquals(0, composite.decision(new String[] {"a", "*"}, NOW, 1, decision, scratch));
+		assertFalse(decision.isAllowed());
+		
+		// the user level blocked, so the global level still has room for one more
+		assertEquals(1, composite.decision(new String[] {"b", "*"}, NOW, 1, decision, scratch));
+		assertTrue(decision.isAllowed());
+		elapse(RateLimiterAlgorithm.SLIDING_WINDOW, "composite#1:*", 400);
+		assertEquals(1, composite.decision(new String[] {"c", "*"}, NOW, 1, decision, scratch));
+		assertFalse(decision.isAllowed());
+		assertAbout(600, decision.retryAfterMs());
+		assertEquals(3L, redisTemplate.opsForList().size(
+				new RedisLimiterScripts(redisTemplate, "rate", null).key(RateLimiterAlgorithm.SLIDING_WINDOW, "composite#1:*")));
+	}
+	
+	@Test
+	void compositeDecidesGcraLevelsInTheScript() {
+		CompositeRateLimiter composite = factory.composite(List.of(
+				level("gcra#0", RateLimiterAlgorithm.GCRA, 2),
+				level("gcra#1", RateLimiterAlgorithm.FIXED_WINDOW, 3)));
+		MutableDecision decision = new MutableDecision();
+		MutableDecision scratch = new MutableDecision();
+		
+		assertEquals(0, composite.decision(new String[] {"a", "*"}, NOW, 1, decision, scratch));
+		assertEquals(1, decision.remaining());
+		composite.decision(new String[] {"a", "*"}, NOW, 1, decision, scratch);
+		assertEquals(0, composite.decision(new String[] {"a", "*"}, NOW, 1, decision, scratch));
+		assertFalse(decision.isAllowed());
+		assertAbout(500, decision.retryAfterMs());
+		
+		// the blocked request left the global window with room for one more
+		assertTrue(decide(composite, "b", decision, scratch).isAllowed());
+		assertFalse(decide(composite, "c", decision, scratch).isAllowed());
+	}
+	
+	@Test
+	void asyncDecisionsShareStateWithBlockingOnes() {
+		// the first asynchronous call then finds no cached script and has to fall back to EVAL
+		redisTemplate.execute((RedisCallback<Void>) connection -> {
+			connection.scriptingCommands().scriptFlush();
+			return null;
+		});
+		for(RateLimiter limiter : limiters) {
+			String name = limiter.algorithm().name();
+			if(limiter.algorithm() != RateLimiterAlgorithm.TOKEN_BUCKET 
+					&& limiter.algorithm() != RateLimiterAlgorithm.FIXED_WINDOW 
+					&& limiter.algorithm() != RateLimiterAlgorithm.SLIDING_WINDOW
+					&& limiter.algorithm() != RateLimiterAlgorithm.GCRA) { continue; }
+			assertEquals(2, limiter.decisionAsync("async", NOW, 1).toCompletableFuture().join().remaining(), name);
+			assertEquals(1, limiter.decision("async", NOW).remaining(), name);
+			assertEquals(0, limiter.decisionAsync("async", NOW, 1).toCompletableFuture().join().remaining(), name);
+			assertFalse(limiter.decisionAsync("async", NOW, 1).toCompletableFuture().join().isAllowed(), name);
+		}
+		
+		CompositeRateLimiter composite = factory.composite(List.of(level("async#0", RateLimiterAlgorithm.FIXED_WINDOW, 1)));
+		assertTrue(composite.decisionAsync(new String[] {"a"}, NOW, 1).toCompletableFuture().join().isAllowed());
+		LevelDecision blocked = composite.decisionAsync(new String[] {"a"}, NOW, 1).toCompletableFuture().join();
+		assertFalse(blocked.isAllowed());
+		assertEquals(0, blocked.level());
+	}
+	
+	private static MutableDecision decide(CompositeRateLimiter composite, String user, MutableDecision decision, MutableDecision scratch) {
+		composite.decision(new String[] {user, "*"}, NOW, 1, decision, scratch);
+		return decision;
+	}
+	
+	/** Only the milliseconds the test itself takes pass on the Redis clock. */
+	private static void assertAbout(long expected, long actual) {
+		assertTrue(actual <= expected && actual > expected - 100, "expected about " + expected + " but was " + actual);
+	}
+	
+	private void elapse(RateLimiterAlgorithm algorithm, String user, long ms) {
+		EmbeddedRedis.elapse(redisTemplate, new RedisLimiterScripts(redisTemplate, "rate", null).key(algorithm, user), ms);
+	}
+	
+	private Level level(String namespace, RateLimiterAlgorithm algorithm, int count) {
+		return new Level(namespace, algorithm, count, 1_000, count, factory.create(namespace, algorithm, count, 1_000, count));
+	}
+	
+	private Map<RateLimiterAlgorithm, RateLimiter> byAlgorithm() {
+		Map<RateLimiterAlgorithm, RateLimiter> map = new EnumMap<>(RateLimiterAlgorithm.class);
+		limiters.forEach(limiter -> map.put(limiter.algorithm(), limiter));
+		return map;
+	}
+}
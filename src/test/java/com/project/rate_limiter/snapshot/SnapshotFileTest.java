@@ -0,0 +1,101 @@
+package com.project.rate_limiter.snapshot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.project.rate_limiter.service.FixedSizeRateLimiterService;
+import com.project.rate_limiter.service.RateLimiter;
+import com.project.rate_limiter.service.SlidingWindowCounterRateLimiterService;
+import com.project.rate_limiter.service.SlidingWindowRateLimiterService;
+import com.project.rate_limiter.service.SlidingWindowRingRateLimiterService;
+import com.project.rate_limiter.service.TokenBucketRateLimiterService;
+import com.project.rate_limiter.store.StateStoreSettings;
+
+class SnapshotFileTest {
+	
+	private static final long NOW = 1_700_000_000_000L;
+	
+	@TempDir
+	Path dir;
+	
+	@Test
+	void restartedLimitersContinueWhereTheSnapshotLeftOff() throws IOException {
+		List<RateLimiter> before = limiters(10);
+		for(RateLimiter limiter : before) {
+			for(int i=0; i<4; i++) {
+				limiter.decision("u", NOW + i);
+			}
+		}
+		Path file = dir.resolve("state.snapshot");
+		SnapshotSummary written = SnapshotFile.write(file, sections(before), NOW);
+		assertEquals(5, written.entries());
+		
+		List<RateLimiter> after = limiters(10);
+		SnapshotSummary loaded = SnapshotFile.read(file, sections(after), NOW + 10);
+		
+		assertEquals(5, loaded.sections());
+		assertEquals(5, loaded.entries());
+		for(int i=0; i<after.size(); i++) {
+			assertEquals(before.get(i).decision("u", NOW + 10).remaining(), after.get(i).decision("u", NOW + 10).remaining(),
+					after.get(i).algorithm().name());
+		}
+	}
+	
+	@Test
+	void sectionsWrittenUnderOtherWindowsOrCorruptedAreSkipped() throws IOException {
+		Path file = dir.resolve("state.snapshot");
+		List<RateLimiter> before = limiters(10);
+		before.forEach(limiter -> limiter.decision("u", NOW));
+		SnapshotFile.write(file, sections(before), NOW);
+		
+		// the sliding counter and ring store window indexes, which change meaning with the period
+		Map<String, Snapshottable> otherWindow = sections(limiters(20));
+		assertEquals(2, SnapshotFile.read(file, otherWindow, NOW).skippedSections());
+		
+		byte[] bytes = Files.readAllBytes(file);
+		bytes[bytes.length - 1] ^= 1;
+		Files.write(file, bytes);
+		SnapshotSummary corrupted = SnapshotFile.read(file, sections(limiters(10)), NOW);
+		assertEquals(1, corrupted.skippedSections());
+		assertEquals(4, corrupted.entries());
+	}
+	
+	@Test
+	void otherFilesAreRejected() throws IOException {
+		Path file = dir.resolve("not-a.snapshot");
+		Files.writeString(file, "hello, world");
+		
+		assertThrows(IOException.class, () -> SnapshotFile.read(file, Map.of(), NOW));
+		assertFalse(Files.exists(dir.resolve("state.snapshot.tmp")));
+	}
+	
+	private static List<RateLimiter> limiters(int windowSeconds) {
+		long windowMs = windowSeconds * 1_000L;
+		StateStoreSettings settings = StateStoreSettings.DEFAULTS;
+		return List.of(
+				new TokenBucketRateLimiterService(10, 1, settings),
+				new FixedSizeRateLimiterService(10, windowMs, settings),
+				new SlidingWindowRateLimiterService(10, windowMs, settings),
+				new SlidingWindowCounterRateLimiterService(10, windowMs, 10, settings),
+				new SlidingWindowRingRateLimiterService(10, windowMs, 10, settings));
+	}
+	
+	private static Map<String, Snapshottable> sections(List<RateLimiter> limiters) {
+		Map<String, Snapshottable> sections = new LinkedHashMap<>();
+		for(RateLimiter limiter : limiters) {
+			sections.put(limiter.algorithm().name(), (Snapshottable) limiter);
+		}
+		return sections;
+	}
+}
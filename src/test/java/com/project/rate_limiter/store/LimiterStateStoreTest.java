@@ -0,0 +1,93 @@
+package com.project.rate_limiter.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class LimiterStateStoreTest {
+	
+	@Test
+	void expiredStateIsSweptByLaterInserts() {
+		LimiterStateStore<AtomicLong> store = new LimiterStateStore<>(AtomicLong::new,
+				(state, now) -> now - state.get() > 1_000, new StateStoreSettings(1_000, 60_000, 4));
+		
+		for(int i=0; i<100; i++) {
+			store.getOrCreate("old-" + i, 0);
+		}
+		for(int i=0; i<100; i++) {
+			store.getOrCreate("new-" + i, 5_000);
+		}
+		
+		assertEquals(100, store.size());
+		assertEquals(100, store.stats().expiredEvictions());
+	}
+	
+	@Test
+	void idleStateIsSweptAfterTtl() {
+		LimiterStateStore<AtomicLong> store = new LimiterStateStore<>(AtomicLong::new,
+				(state, now) -> false, new StateStoreSettings(1_000, 10_000, 4));
+		
+		store.getOrCreate("idle", 0);
+		for(int i=0; i<10; i++) {
+			store.getOrCreate("busy-" + i, 20_000);
+		}
+		
+		assertEquals(null, store.get("idle"));
+		assertEquals(1, store.stats().idleEvictions());
+	}
+	
+	@Test
+	void sizeStaysBoundedWhenNothingExpires() {
+		LimiterStateStore<AtomicLong> store = new LimiterStateStore<>(AtomicLong::new,
+				(state, now) -> false, new StateStoreSettings(500, 60_000, 4));
+		
+		for(int i=0; i<10_000; i++) {
+			store.getOrCreate("key-" + i, i);
+		}
+		
+		assertTrue(store.size() <= 500);
+		assertEquals(10_000 - store.size(), store.stats().capacityEvictions());
+	}
+	
+	@Test
+	void updateRetriesWhenEntryIsEvictedConcurrently() {
+		LimiterStateStore<AtomicLong> store = new LimiterStateStore<>(now -> new AtomicLong(),
+				(state, now) -> state.get() == 0, new StateStoreSettings(1_000, 60_000, 8));
+		
+		store.getOrCreate("k", 0);
+		long seen = store.update("k", 500, (state, now) -> {
+			if(state.get() == 0) {
+				// a later insert sweeps this still-fresh entry before the update lands
+				store.getOrCreate("other", 5_000);
+			}
+			return state.incrementAndGet();
+		});
+		
+		assertEquals(1, seen);
+		assertEquals(1, store.get("k").state().get());
+	}
+	
+	@Test
+	void keysMigrateFromPredecessorsOnFirstAccess() {
+		StateStoreSettings settings = new StateStoreSettings(1_000, 60_000, 4);
+		LimiterStateStore<AtomicLong> first = new LimiterStateStore<>(now -> new AtomicLong(), (state, now) -> false, settings);
+		first.getOrCreate("a", 0).state().set(3);
+		first.getOrCreate("b", 0).state().set(5);
+		
+		LimiterStateStore<AtomicLong> second = new LimiterStateStore<>(now -> new AtomicLong(), (state, now) -> false, settings);
+		second.migrateFrom(first, (state, now) -> new AtomicLong(state.get() * 2));
+		LimiterStateStore<AtomicLong> third = new LimiterStateStore<>(now -> new AtomicLong(), (state, now) -> false, settings);
+		third.migrateFrom(second, (state, now) -> new AtomicLong(state.get() + 1));
+		
+		assertEquals(6, second.getOrCreate("a", 10).state().get());
+		assertEquals(null, first.get("a"));
+		// "b" was never touched in the second generation; it is converted through both
+		assertEquals(11, third.getOrCreate("b", 10).state().get());
+		assertEquals(7, third.getOrCreate("a", 10).state().get());
+		assertEquals(0, third.getOrCreate("c", 10).state().get());
+		assertEquals(0, first.size() + second.size());
+	}
+}
@@ -0,0 +1,90 @@
+package com.project.rate_limiter.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.project.rate_limiter.entity.RateLimiterDecision;
+import com.project.rate_limiter.service.FixedSizeRateLimiterService;
+import com.project.rate_limiter.service.RateLimiter;
+import com.project.rate_limiter.service.TokenBucketRateLimiterService;
+
+class OffHeapStateTableTest {
+	
+	private static final long START = 1_700_000_000_000L;
+	
+	@Test
+	void decidesExactlyLikeTheHeapStore() {
+		RateLimiter heap = new TokenBucketRateLimiterService(5, 2, new StateStoreSettings(10_000, 3_600_000L, 8, false));
+		RateLimiter offHeap = new TokenBucketRateLimiterService(5, 2, new StateStoreSettings(10_000, 3_600_000L, 8, true));
+		
+		Random random = new Random(42);
+		long now = START;
+		for(int i=0; i<50_000; i++) {
+			now += random.nextInt(20);
+			String key = "10.0." + random.nextInt(16) + "." + random.nextInt(64);
+			RateLimiterDecision expected = heap.decision(key, now);
+			RateLimiterDecision actual = offHeap.decision(key, now);
+			assertEquals(expected, actual, key + " at " + now);
+		}
+	}
+	
+	@Test
+	void fullTableReusesExpiredSlotsBeforeEvictingLiveOnes() {
+		FixedSizeRateLimiterService limiter = new FixedSizeRateLimiterService(3, 1_000, new StateStoreSettings(1_000, 3_600_000L, 8, true));
+		
+		for(int i=0; i<5_000; i++) {
+			limiter.decision("old-" + i, START);
+		}
+		StateStoreStats full = limiter.storeStats();
+		assertEquals(2_048, full.size());
+		assertEquals(5_000 - 2_048, full.capacityEvictions());
+		
+		for(int i=0; i<1_000; i++) {
+			limiter.decision("new-" + i, START + 10_000);
+		}
+		
+		// every window of the second wave starts with an expired first-wave key
+		StateStoreStats after = limiter.storeStats();
+		assertEquals(full.capacityEvictions(), after.capacityEvictions());
+		assertEquals(1_000, after.expiredEvictions());
+	}
+	
+	@Test
+	void concurrentRequestsForOneKeyAreCountedExactly() throws Exception {
+		FixedSizeRateLimiterService limiter = new FixedSizeRateLimiterService(1_000, 60_000, new StateStoreSettings(1_000, 3_600_000L, 8, true));
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		AtomicInteger allowed = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		for(int t=0; t<8; t++) {
+			pool.submit(() -> {
+				start.await();
+				for(int i=0; i<500; i++) {
+					if(limiter.decision("shared", START).isAllowed()) { allowed.incrementAndGet(); }
+				}
+				return null;
+			});
+		}
+		start.countDown();
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+		
+		assertEquals(1_000, allowed.get());
+	}
+	
+	@Test
+	void tableIsSizedForMaxEntriesAtLoadFactor() {
+		OffHeapStateTable table = new OffHeapStateTable(now -> 0L, (state, now) -> false, new StateStoreSettings(1_000_000, 3_600_000L, 8, true));
+		
+		assertEquals(1L << 21, table.slots());
+		assertEquals((1L << 21) * OffHeapStateTable.SLOT_BYTES, table.estimatedBytes(24));
+	}
+}